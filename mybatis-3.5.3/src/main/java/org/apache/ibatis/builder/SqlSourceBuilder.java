@@ -16,8 +16,11 @@
 package org.apache.ibatis.builder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
@@ -25,6 +28,7 @@ import org.apache.ibatis.parsing.GenericTokenParser;
 import org.apache.ibatis.parsing.TokenHandler;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.scripting.xmltags.ForEachSqlNode;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 
@@ -34,6 +38,9 @@ import org.apache.ibatis.type.JdbcType;
 public class SqlSourceBuilder extends BaseBuilder {
 
   private static final String PARAMETER_PROPERTIES = "javaType,jdbcType,mode,numericScale,resultMap,typeHandler,jdbcTypeName";
+  // 同样的 #{} 内容只解析一次。foreach 改写出的内容（__frch_item_N）每个元素都不同，不缓存，否则会把缓存占满
+  private static final int PARAMETER_EXPRESSION_CACHE_SIZE = 10000;
+  private static final ConcurrentMap<String, Map<String, String>> parameterExpressionCache = new ConcurrentHashMap<>();
 
   public SqlSourceBuilder(Configuration configuration) {
     super(configuration);
@@ -47,6 +54,51 @@ public class SqlSourceBuilder extends BaseBuilder {
     return new StaticSqlSource(configuration, sql, handler.getParameterMappings());
   }
 
+  /**
+   * Builds the mappings of {@code #{}} placeholders that were parsed beforehand, the same way {@link #parse} does.
+   *
+   * @param contents
+   *          the content of each placeholder
+   * @param expressions
+   *          the content of each placeholder, as returned by {@link #parseParameterExpression(String)}
+   * @since 3.5.3
+   */
+  public List<ParameterMapping> buildParameterMappings(List<String> contents, List<? extends Map<String, String>> expressions,
+      Class<?> parameterType, Map<String, Object> additionalParameters) {
+    ParameterMappingTokenHandler handler = new ParameterMappingTokenHandler(configuration, parameterType, additionalParameters);
+    List<ParameterMapping> parameterMappings = new ArrayList<>(contents.size());
+    for (int i = 0, n = contents.size(); i < n; i++) {
+      parameterMappings.add(handler.buildParameterMapping(contents.get(i), expressions.get(i)));
+    }
+    return parameterMappings;
+  }
+
+  /**
+   * Parses the content of a {@code #{}} placeholder.
+   * <p>
+   * The result is shared by the placeholders with the same content and can not be modified. Contents rewritten by
+   * {@code <foreach>} differ for each element and are not shared.
+   *
+   * @since 3.5.3
+   */
+  public static Map<String, String> parseParameterExpression(String content) {
+    Map<String, String> expression = parameterExpressionCache.get(content);
+    if (expression == null) {
+      try {
+        expression = Collections.unmodifiableMap(new ParameterExpression(content));
+      } catch (BuilderException ex) {
+        throw ex;
+      } catch (Exception ex) {
+        throw new BuilderException("Parsing error was found in mapping #{" + content + "}.  Check syntax #{property|(expression), var1=value1, var2=value2, ...} ", ex);
+      }
+      if (!content.contains(ForEachSqlNode.ITEM_PREFIX)
+          && parameterExpressionCache.size() < PARAMETER_EXPRESSION_CACHE_SIZE) {
+        parameterExpressionCache.putIfAbsent(content, expression);
+      }
+    }
+    return expression;
+  }
+
   private static class ParameterMappingTokenHandler extends BaseBuilder implements TokenHandler {
     // 解析#{}中的参数名
     private List<ParameterMapping> parameterMappings = new ArrayList<>();
@@ -67,12 +119,11 @@ public class SqlSourceBuilder extends BaseBuilder {
 
     @Override
     public String handleToken(String content) {
-      parameterMappings.add(buildParameterMapping(content));
+      parameterMappings.add(buildParameterMapping(content, parseParameterExpression(content)));
       return "?";
     }
 
-    private ParameterMapping buildParameterMapping(String content) {
-      Map<String, String> propertiesMap = parseParameterMapping(content);
+    private ParameterMapping buildParameterMapping(String content, Map<String, String> propertiesMap) {
       String property = propertiesMap.get("property");
       Class<?> propertyType;
       if (metaParameters.hasGetter(property)) { // issue #448 get type from additional params
@@ -125,16 +176,6 @@ public class SqlSourceBuilder extends BaseBuilder {
       }
       return builder.build();
     }
-
-    private Map<String, String> parseParameterMapping(String content) {
-      try {
-        return new ParameterExpression(content);
-      } catch (BuilderException ex) {
-        throw ex;
-      } catch (Exception ex) {
-        throw new BuilderException("Parsing error was found in mapping #{" + content + "}.  Check syntax #{property|(expression), var1=value1, var2=value2, ...} ", ex);
-      }
-    }
   }
 
 }
@@ -15,9 +15,14 @@
  */
 package org.apache.ibatis.builder.xml;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.builder.BaseBuilder;
@@ -415,6 +420,9 @@ public class XMLConfigBuilder extends BaseBuilder {
         configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
         configuration.setDefaultFetchSize(integerValueOf(props.getProperty("defaultFetchSize"), null));
         configuration.setDefaultResultSetType(resolveResultSetType(props.getProperty("defaultResultSetType")));
+        configuration.setMaxBatchSize(integerValueOf(props.getProperty("maxBatchSize"), null));
+        configuration.setMaxBatchBytes(integerValueOf(props.getProperty("maxBatchBytes"), null));
+        configuration.setRewriteBatchedInserts(booleanValueOf(props.getProperty("rewriteBatchedInserts"), false));
         configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
         configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));
         configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
@@ -426,6 +434,19 @@ public class XMLConfigBuilder extends BaseBuilder {
         configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
         configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
         configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
+        configuration.setUseCompiledRowMappers(booleanValueOf(props.getProperty("useCompiledRowMappers"), false));
+        configuration.setUseMethodHandleInvokers(booleanValueOf(props.getProperty("useMethodHandleInvokers"), false));
+        configuration.setUseCompiledDynamicSql(booleanValueOf(props.getProperty("useCompiledDynamicSql"), false));
+        configuration.setDynamicSqlCacheSize(integerValueOf(props.getProperty("dynamicSqlCacheSize"), null));
+        configuration.setParallelMapperParsing(booleanValueOf(props.getProperty("parallelMapperParsing"), false));
+        configuration.setUseStaxMapperParser(booleanValueOf(props.getProperty("useStaxMapperParser"), false));
+        configuration.setLazyStatementBuilding(booleanValueOf(props.getProperty("lazyStatementBuilding"), false));
+        configuration.setPluginWeaving(booleanValueOf(props.getProperty("pluginWeaving"), false));
+        configuration.setAsyncSqlLogging(booleanValueOf(props.getProperty("asyncSqlLogging"), false));
+        configuration.setSqlLogSampling(integerValueOf(props.getProperty("sqlLogSampling"), null));
+        configuration.setSqlLogRateLimit(integerValueOf(props.getProperty("sqlLogRateLimit"), null));
+        configuration.setNestedSelectBatchSize(integerValueOf(props.getProperty("nestedSelectBatchSize"), null));
+        configuration.setMapperSnapshot(readMapperSnapshot(props.getProperty("mapperSnapshot")));
         configuration.setLogPrefix(props.getProperty("logPrefix"));
         configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
     }
@@ -531,10 +552,17 @@ public class XMLConfigBuilder extends BaseBuilder {
      */
     private void mapperElement(XNode parent) throws Exception {
         if (parent != null) {
+            List<XNode> children = parent.getChildren();
+            /**
+             * 并行解析模式下，先在 ForkJoinPool 中读取所有的 mapper.xml 并解析成文档，
+             * 注册到 Configuration 的过程仍然按照配置的顺序进行
+             */
+            List<CompletableFuture<XPathParser>> documents = configuration.isParallelMapperParsing() ? parseMapperDocuments(children) : null;
             /**
              * 获取我们mappers节点下的一个一个的mapper节点
              */
-            for (XNode child : parent.getChildren()) {
+            for (int i = 0; i < children.size(); i++) {
+                XNode child = children.get(i);
                 /**
                  * 判断我们mapper是不是通过批量注册的
                  * <package name="com.tuling.mapper"></package>
@@ -564,7 +592,11 @@ public class XMLConfigBuilder extends BaseBuilder {
                      * 我们得mappers节点只配置了
                      * <mapper resource="mybatis/mapper/EmployeeMapper.xml"/>
                      */
-                    if (resource != null && url == null && mapperClass == null) {
+                    if (documents != null && (resource == null) != (url == null) && mapperClass == null) {
+                        ErrorContext.instance().resource(resource != null ? resource : url);
+                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(getMapperDocument(documents.get(i)), configuration, resource != null ? resource : url, configuration.getSqlFragments());
+                        mapperParser.parseMapper();
+                    } else if (resource != null && url == null && mapperClass == null) {
                         ErrorContext.instance().resource(resource);
                         /**
                          * 把我们的文件读取出一个流
@@ -573,7 +605,7 @@ public class XMLConfigBuilder extends BaseBuilder {
                         /**
                          * 创建读取XmlMapper构建器对象,用于来解析我们的mapper.xml文件
                          */
-                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
+                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(createMapperParser(resource, inputStream), configuration, resource, configuration.getSqlFragments());
                         /**
                          * 真正的解析我们的mapper.xml配置文件(说白了就是来解析我们的sql)
                          */
@@ -581,7 +613,7 @@ public class XMLConfigBuilder extends BaseBuilder {
                     } else if (resource == null && url != null && mapperClass == null) {
                         ErrorContext.instance().resource(url);
                         InputStream inputStream = Resources.getUrlAsStream(url);
-                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, url, configuration.getSqlFragments());
+                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(createMapperParser(url, inputStream), configuration, url, configuration.getSqlFragments());
                         mapperParser.parse();
                     } else if (resource == null && url == null && mapperClass != null) {
                         Class<?> mapperInterface = Resources.classForName(mapperClass);
@@ -591,6 +623,68 @@ public class XMLConfigBuilder extends BaseBuilder {
                     }
                 }
             }
+            if (documents != null) {
+                /**
+                 * 所有 mapper 注册完之后，一次性处理引用了后面 mapper 的元素
+                 */
+                XMLMapperBuilder.parsePendingElements(configuration);
+            }
+        }
+    }
+
+    private List<CompletableFuture<XPathParser>> parseMapperDocuments(List<XNode> children) {
+        List<CompletableFuture<XPathParser>> documents = new ArrayList<>(children.size());
+        // 线程池中的线程没有当前线程的上下文类加载器，资源要用它来查找
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        for (XNode child : children) {
+            String resource = child.getStringAttribute("resource");
+            String url = child.getStringAttribute("url");
+            if ("package".equals(child.getName()) || (resource == null) == (url == null) || child.getStringAttribute("class") != null) {
+                documents.add(null);
+            } else {
+                documents.add(CompletableFuture.supplyAsync(() -> {
+                    try (InputStream inputStream = resource != null ? Resources.getResourceAsStream(classLoader, resource) : Resources.getUrlAsStream(url)) {
+                        return createMapperParser(resource != null ? resource : url, inputStream);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }));
+            }
+        }
+        return documents;
+    }
+
+    private XPathParser createMapperParser(String resource, InputStream inputStream) throws IOException {
+        XmlDocumentSnapshot snapshot = configuration.getMapperSnapshot();
+        if (snapshot == null) {
+            return XMLMapperBuilder.newParser(inputStream, configuration);
+        }
+        /**
+         * mapper.xml 没有修改过时直接使用快照中已经校验过的文档
+         */
+        return snapshot.newParser(resource, inputStream, configuration.getVariables());
+    }
+
+    private XmlDocumentSnapshot readMapperSnapshot(String resource) {
+        if (resource == null) {
+            return null;
+        }
+        try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+            return XmlDocumentSnapshot.read(inputStream);
+        } catch (IOException e) {
+            throw new BuilderException("Error reading the mapper snapshot " + resource + ".  Cause: " + e, e);
+        }
+    }
+
+    private XPathParser getMapperDocument(CompletableFuture<XPathParser> document) throws Exception {
+        try {
+            return document.join();
+        } catch (CompletionException e) {
+            // 抛出与串行解析时相同的异常
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
         }
     }
 
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 
 import org.apache.ibatis.builder.BaseBuilder;
@@ -41,6 +42,7 @@ import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.ResultFlag;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.parsing.StaxDocumentBuilder;
 import org.apache.ibatis.parsing.XNode;
 import org.apache.ibatis.parsing.XPathParser;
 import org.apache.ibatis.reflection.MetaClass;
@@ -77,11 +79,10 @@ public class XMLMapperBuilder extends BaseBuilder {
   }
 
   public XMLMapperBuilder(InputStream inputStream, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
-    this(new XPathParser(inputStream, true, configuration.getVariables(), new XMLMapperEntityResolver()),
-        configuration, resource, sqlFragments);
+    this(newParser(inputStream, configuration), configuration, resource, sqlFragments);
   }
 
-  private XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
+  XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
     super(configuration);
     this.builderAssistant = new MapperBuilderAssistant(configuration, resource);
     this.parser = parser;
@@ -97,6 +98,16 @@ public class XMLMapperBuilder extends BaseBuilder {
    * @date:2019/8/30 16:43
    */
   public void parse() {
+    parseMapper();
+    parsePendingResultMaps(configuration);
+    parsePendingCacheRefs(configuration);
+    parsePendingStatements(configuration);
+  }
+
+  /**
+   * 解析 mapper 但不处理等待其他 mapper 的元素，由调用方在所有 mapper 注册后调用 {@link #parsePendingElements}
+   */
+  void parseMapper() {
     /**
      * 判断当前的Mapper是否被加载过
      */
@@ -113,10 +124,39 @@ public class XMLMapperBuilder extends BaseBuilder {
 
       bindMapperForNamespace();
     }
+  }
 
-    parsePendingResultMaps();
-    parsePendingCacheRefs();
-    parsePendingStatements();
+  /**
+   * 反复处理未完成的 resultMap、cache-ref 和语句，直到无法再解析更多
+   */
+  static void parsePendingElements(Configuration configuration) {
+    int pending = countPendingElements(configuration);
+    while (pending > 0) {
+      parsePendingResultMaps(configuration);
+      parsePendingCacheRefs(configuration);
+      parsePendingStatements(configuration);
+      int remaining = countPendingElements(configuration);
+      if (remaining == pending) {
+        break;
+      }
+      pending = remaining;
+    }
+  }
+
+  private static int countPendingElements(Configuration configuration) {
+    return configuration.getIncompleteResultMaps().size() + configuration.getIncompleteCacheRefs().size()
+        + configuration.getIncompleteStatements().size();
+  }
+
+  /**
+   * 创建 mapper.xml 的解析器，开启 useStaxMapperParser 时用 StAX 构建文档且不做 DTD 校验
+   */
+  static XPathParser newParser(InputStream inputStream, Configuration configuration) {
+    if (configuration.isUseStaxMapperParser()) {
+      XMLMapperEntityResolver entityResolver = new XMLMapperEntityResolver();
+      return new XPathParser(StaxDocumentBuilder.build(inputStream, entityResolver), false, configuration.getVariables(), entityResolver);
+    }
+    return new XPathParser(inputStream, true, configuration.getVariables(), new XMLMapperEntityResolver());
   }
 
   public XNode getSqlFragment(String refid) {
@@ -215,6 +255,16 @@ public class XMLMapperBuilder extends BaseBuilder {
        * 创建一个xmlStatement的构建器对象
        */
       final XMLStatementBuilder statementParser = new XMLStatementBuilder(configuration, builderAssistant, context, requiredDatabaseId);
+      if (configuration.isLazyStatementBuilding()) {
+        /**
+         * 延迟构建: 只登记语句id, 第一次获取语句时才解析
+         */
+        if (Objects.equals(requiredDatabaseId, context.getStringAttribute("databaseId"))) {
+          String id = builderAssistant.applyCurrentNamespace(context.getStringAttribute("id"), false);
+          configuration.addLazyStatement(id, statementParser);
+        }
+        continue;
+      }
       try {
         statementParser.parseStatementNode();
       } catch (IncompleteElementException e) {
@@ -223,7 +273,7 @@ public class XMLMapperBuilder extends BaseBuilder {
     }
   }
 
-  private void parsePendingResultMaps() {
+  private static void parsePendingResultMaps(Configuration configuration) {
     Collection<ResultMapResolver> incompleteResultMaps = configuration.getIncompleteResultMaps();
     synchronized (incompleteResultMaps) {
       Iterator<ResultMapResolver> iter = incompleteResultMaps.iterator();
@@ -238,7 +288,7 @@ public class XMLMapperBuilder extends BaseBuilder {
     }
   }
 
-  private void parsePendingCacheRefs() {
+  private static void parsePendingCacheRefs(Configuration configuration) {
     Collection<CacheRefResolver> incompleteCacheRefs = configuration.getIncompleteCacheRefs();
     synchronized (incompleteCacheRefs) {
       Iterator<CacheRefResolver> iter = incompleteCacheRefs.iterator();
@@ -253,7 +303,7 @@ public class XMLMapperBuilder extends BaseBuilder {
     }
   }
 
-  private void parsePendingStatements() {
+  private static void parsePendingStatements(Configuration configuration) {
     Collection<XMLStatementBuilder> incompleteStatements = configuration.getIncompleteStatements();
     synchronized (incompleteStatements) {
       Iterator<XMLStatementBuilder> iter = incompleteStatements.iterator();
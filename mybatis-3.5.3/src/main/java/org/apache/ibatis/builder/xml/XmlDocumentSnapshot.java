@@ -0,0 +1,302 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Validated mapper documents, stored in a compact binary form so that the mapper xml files do not have to be parsed
+ * and validated against the DTD again on each start.
+ * <p>
+ * Each document is stored with the checksum of its source. A document is only taken from the snapshot when the
+ * source read at startup has the same checksum, otherwise the source is parsed as usual. The documents are stored
+ * before any property is replaced, so the same snapshot can be used with different properties.
+ * <p>
+ * The snapshot is written at build time by {@link #main(String[])} and used through the {@code mapperSnapshot}
+ * setting, or {@link org.apache.ibatis.session.Configuration#setMapperSnapshot(XmlDocumentSnapshot)}.
+ *
+ * @since 3.5.3
+ */
+public final class XmlDocumentSnapshot {
+
+  private static final Log log = LogFactory.getLog(XmlDocumentSnapshot.class);
+
+  private static final int MAGIC = 0x4D425344;
+  private static final int VERSION = 1;
+
+  private static final byte ELEMENT = 1;
+  private static final byte TEXT = 2;
+  private static final byte CDATA = 3;
+  private static final byte END = 0;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+  /**
+   * Parses and validates a mapper xml file, and adds its document to this snapshot.
+   *
+   * @param resource
+   *          the resource or url of the mapper, as written in the configuration
+   * @param source
+   *          the content of the mapper xml file
+   */
+  public void add(String resource, byte[] source) {
+    XNode root = new XPathParser(new ByteArrayInputStream(source), true, null, new XMLMapperEntityResolver()).evalNode("/");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(source.length);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      writeChildren(root.getNode(), out, new HashMap<>());
+    } catch (IOException e) {
+      throw new BuilderException("Error writing the snapshot of " + resource + ".  Cause: " + e, e);
+    }
+    entries.put(resource, new Entry(checksum(source), bytes.toByteArray()));
+  }
+
+  public Set<String> getResources() {
+    return entries.keySet();
+  }
+
+  /**
+   * Returns whether the snapshot holds the document of this source.
+   */
+  public boolean isUpToDate(String resource, byte[] source) {
+    Entry entry = entries.get(resource);
+    return entry != null && entry.checksum == checksum(source);
+  }
+
+  /**
+   * Returns a parser of the mapper read from the input stream, on the document of the snapshot if it is up to date.
+   */
+  public XPathParser newParser(String resource, InputStream inputStream, Properties variables) throws IOException {
+    byte[] source = readFully(inputStream);
+    if (isUpToDate(resource, source)) {
+      return new XPathParser(entries.get(resource).toDocument(), false, variables, new XMLMapperEntityResolver());
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Parsing " + resource + (entries.containsKey(resource) ? " changed since" : " missing from") + " the mapper snapshot");
+    }
+    return new XPathParser(new ByteArrayInputStream(source), true, variables, new XMLMapperEntityResolver());
+  }
+
+  public void write(OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(entries.size());
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue().checksum);
+      out.writeInt(entry.getValue().document.length);
+      out.write(entry.getValue().document);
+    }
+    out.flush();
+  }
+
+  public static XmlDocumentSnapshot read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(inputStream);
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new BuilderException("The mapper snapshot was not written by this version of MyBatis.");
+    }
+    XmlDocumentSnapshot snapshot = new XmlDocumentSnapshot();
+    for (int i = in.readInt(); i > 0; i--) {
+      String resource = in.readUTF();
+      long checksum = in.readLong();
+      byte[] document = new byte[in.readInt()];
+      in.readFully(document);
+      snapshot.entries.put(resource, new Entry(checksum, document));
+    }
+    return snapshot;
+  }
+
+  /**
+   * Writes the snapshot of the mappers listed by {@code resource} or {@code url} in a configuration file.
+   * <p>
+   * Usage: {@code XmlDocumentSnapshot <configuration resource> <snapshot file>}
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: XmlDocumentSnapshot <configuration resource> <snapshot file>");
+    }
+    XmlDocumentSnapshot snapshot = new XmlDocumentSnapshot();
+    try (InputStream config = Resources.getResourceAsStream(args[0])) {
+      XPathParser parser = new XPathParser(config, true, null, new XMLMapperEntityResolver());
+      for (XNode mapper : parser.evalNodes("/configuration/mappers/mapper")) {
+        String resource = mapper.getStringAttribute("resource");
+        String url = mapper.getStringAttribute("url");
+        if (resource != null) {
+          try (InputStream source = Resources.getResourceAsStream(resource)) {
+            snapshot.add(resource, readFully(source));
+          }
+        } else if (url != null) {
+          try (InputStream source = Resources.getUrlAsStream(url)) {
+            snapshot.add(url, readFully(source));
+          }
+        }
+      }
+    }
+    try (OutputStream out = new FileOutputStream(args[1])) {
+      snapshot.write(out);
+    }
+  }
+
+  private static long checksum(byte[] source) {
+    CRC32 crc = new CRC32();
+    crc.update(source, 0, source.length);
+    return crc.getValue();
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int n;
+    while ((n = inputStream.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  private static void writeChildren(Node parent, DataOutputStream out, Map<String, Integer> strings) throws IOException {
+    NodeList children = parent.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      Node child = children.item(i);
+      switch (child.getNodeType()) {
+        case Node.ELEMENT_NODE:
+          out.writeByte(ELEMENT);
+          writeString(child.getNodeName(), out, strings);
+          NamedNodeMap attributes = child.getAttributes();
+          out.writeShort(attributes.getLength());
+          for (int j = 0; j < attributes.getLength(); j++) {
+            writeString(attributes.item(j).getNodeName(), out, strings);
+            writeString(attributes.item(j).getNodeValue(), out, strings);
+          }
+          writeChildren(child, out, strings);
+          break;
+        case Node.CDATA_SECTION_NODE:
+          out.writeByte(CDATA);
+          writeString(child.getNodeValue(), out, strings);
+          break;
+        case Node.TEXT_NODE:
+          out.writeByte(TEXT);
+          writeString(child.getNodeValue(), out, strings);
+          break;
+        default:
+          // the doctype and processing instructions are not used by the builders
+          break;
+      }
+    }
+    out.writeByte(END);
+  }
+
+  // each distinct string (element and attribute names mostly) is only written once
+  private static void writeString(String value, DataOutputStream out, Map<String, Integer> strings) throws IOException {
+    Integer index = strings.get(value);
+    if (index != null) {
+      out.writeInt(index);
+    } else {
+      strings.put(value, strings.size());
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(-1);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static final class Entry {
+
+    private final long checksum;
+    private final byte[] document;
+
+    private Entry(long checksum, byte[] document) {
+      this.checksum = checksum;
+      this.document = document;
+    }
+
+    private Document toDocument() {
+      try {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        readChildren(document, document, new DataInputStream(new ByteArrayInputStream(this.document)), new ArrayList<>());
+        return document;
+      } catch (IOException | ParserConfigurationException e) {
+        throw new BuilderException("Error reading the mapper snapshot.  Cause: " + e, e);
+      }
+    }
+
+    private static void readChildren(Document document, Node parent, DataInputStream in, List<String> strings) throws IOException {
+      for (byte type = in.readByte(); type != END; type = in.readByte()) {
+        switch (type) {
+          case ELEMENT:
+            Element element = document.createElement(readString(in, strings));
+            for (int i = in.readShort(); i > 0; i--) {
+              element.setAttribute(readString(in, strings), readString(in, strings));
+            }
+            readChildren(document, element, in, strings);
+            parent.appendChild(element);
+            break;
+          case CDATA:
+            parent.appendChild(document.createCDATASection(readString(in, strings)));
+            break;
+          case TEXT:
+            parent.appendChild(document.createTextNode(readString(in, strings)));
+            break;
+          default:
+            throw new IOException("Unknown node type " + type);
+        }
+      }
+    }
+
+    private static String readString(DataInputStream in, List<String> strings) throws IOException {
+      int index = in.readInt();
+      if (index != -1) {
+        return strings.get(index);
+      }
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      strings.add(value);
+      return value;
+    }
+  }
+
+}
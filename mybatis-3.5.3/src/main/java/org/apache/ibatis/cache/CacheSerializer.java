@@ -0,0 +1,39 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Turns cached values into bytes and back, for caches that do not keep the values on the heap.
+ * <p>
+ * Implementations must be thread-safe and have a public no-arg constructor.
+ *
+ * @since 3.5.3
+ */
+public interface CacheSerializer {
+
+  /**
+   * @param value The value to store, may be null
+   * @return The serialized form of the value
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * @param bytes Bytes returned by {@link #serialize(Object)}
+   * @return A copy of the value that was serialized
+   */
+  Object deserialize(byte[] bytes);
+
+}
@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -26,7 +28,18 @@ public class LoggingCache implements Cache {
 
   private final Log log;
   private final Cache delegate;
+  // 没有 SynchronizedCache 包装时（ThreadSafeCache）也会被并发调用
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder hitCount = new LongAdder();
+  /**
+   * @deprecated not updated atomically when the cache is called concurrently, the hit ratio is not computed from it
+   */
+  @Deprecated
   protected int requests = 0;
+  /**
+   * @deprecated not updated atomically when the cache is called concurrently, the hit ratio is not computed from it
+   */
+  @Deprecated
   protected int hits = 0;
 
   public LoggingCache(Cache delegate) {
@@ -51,9 +64,11 @@ public class LoggingCache implements Cache {
 
   @Override
   public Object getObject(Object key) {
+    requestCount.increment();
     requests++;
     final Object value = delegate.getObject(key);
     if (value != null) {
+      hitCount.increment();
       hits++;
     }
     if (log.isDebugEnabled()) {
@@ -83,7 +98,7 @@ public class LoggingCache implements Cache {
   }
 
   private double getHitRatio() {
-    return (double) hits / (double) requests;
+    return (double) hitCount.sum() / (double) requestCount.sum();
   }
 
 }
@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 import org.apache.ibatis.cache.Cache;
 
 /**
@@ -22,9 +24,13 @@ import org.apache.ibatis.cache.Cache;
  */
 public class ScheduledCache implements Cache {
 
+  // 没有 SynchronizedCache 包装时（ThreadSafeCache）也会被并发调用，只有移动了时间戳的线程清空缓存
+  private static final AtomicLongFieldUpdater<ScheduledCache> LAST_CLEAR =
+      AtomicLongFieldUpdater.newUpdater(ScheduledCache.class, "lastClear");
+
   private final Cache delegate;
-  protected long clearInterval;
-  protected long lastClear;
+  protected volatile long clearInterval;
+  protected volatile long lastClear;
 
   public ScheduledCache(Cache delegate) {
     this.delegate = delegate;
@@ -81,8 +87,12 @@ public class ScheduledCache implements Cache {
   }
 
   private boolean clearWhenStale() {
-    if (System.currentTimeMillis() - lastClear > clearInterval) {
-      clear();
+    long last = lastClear;
+    long now = System.currentTimeMillis();
+    if (now - last > clearInterval) {
+      if (LAST_CLEAR.compareAndSet(this, last, now)) {
+        delegate.clear();
+      }
       return true;
     }
     return false;
@@ -0,0 +1,544 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Externalizable;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * {@link CacheSerializer} with a compact tagged binary format.
+ * <p>
+ * Strings, numbers, dates, the common collections and maps, enums and plain serializable beans are written
+ * directly, beans field by field like Java serialization does but without class descriptors. Shared and
+ * circular references are preserved. Any other value, including classes that customize their serialization
+ * (e.g. lazy loading proxies), is delegated to {@link JavaCacheSerializer}.
+ * <p>
+ * The format is not meant to be persisted: class layouts are only guaranteed to match within the same JVM.
+ *
+ * @since 3.5.3
+ */
+public class CompactCacheSerializer implements CacheSerializer {
+
+  private static final byte NULL = 0;
+  private static final byte REFERENCE = 1;
+  private static final byte STRING = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte FLOAT = 6;
+  private static final byte SHORT = 7;
+  private static final byte BYTE = 8;
+  private static final byte TRUE = 9;
+  private static final byte FALSE = 10;
+  private static final byte CHARACTER = 11;
+  private static final byte BIG_DECIMAL = 12;
+  private static final byte BIG_INTEGER = 13;
+  private static final byte DATE = 14;
+  private static final byte SQL_DATE = 15;
+  private static final byte SQL_TIME = 16;
+  private static final byte TIMESTAMP = 17;
+  private static final byte BYTES = 18;
+  private static final byte ARRAY_LIST = 19;
+  private static final byte LINKED_LIST = 20;
+  private static final byte HASH_MAP = 21;
+  private static final byte LINKED_HASH_MAP = 22;
+  private static final byte HASH_SET = 23;
+  private static final byte LINKED_HASH_SET = 24;
+  private static final byte ENUM = 25;
+  private static final byte OBJECT = 26;
+  private static final byte JAVA = 27;
+
+  private static final List<String> SERIALIZATION_HOOKS = Arrays.asList(
+      "writeObject", "readObject", "readObjectNoData", "writeReplace", "readResolve");
+  private static final ClassLayout UNSUPPORTED = new ClassLayout(null, null);
+
+  private final ConcurrentMap<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<>();
+  private final JavaCacheSerializer fallback = new JavaCacheSerializer();
+
+  @Override
+  public byte[] serialize(Object value) {
+    if (value != null && !(value instanceof Serializable)) {
+      throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + value);
+    }
+    try {
+      Output output = new Output();
+      output.writeValue(value);
+      return output.toByteArray();
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error serializing object.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) {
+    try {
+      return new Input(bytes).readValue();
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  private ClassLayout layoutOf(Class<?> type) {
+    ClassLayout layout = layouts.get(type);
+    if (layout == null) {
+      layout = layouts.computeIfAbsent(type, CompactCacheSerializer::createLayout);
+    }
+    return layout;
+  }
+
+  private static ClassLayout createLayout(Class<?> type) {
+    if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+        || type.isArray() || Proxy.isProxyClass(type)) {
+      return UNSUPPORTED;
+    }
+    Constructor<?> constructor;
+    try {
+      constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+    } catch (NoSuchMethodException | RuntimeException e) {
+      return UNSUPPORTED;
+    }
+    List<Field> fields = new ArrayList<>();
+    // like Java serialization, fields of non serializable super classes are left to their constructors
+    for (Class<?> current = type; current != null && Serializable.class.isAssignableFrom(current); current = current.getSuperclass()) {
+      for (Method method : current.getDeclaredMethods()) {
+        if (SERIALIZATION_HOOKS.contains(method.getName())) {
+          return UNSUPPORTED;
+        }
+      }
+      for (Field field : current.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+        } catch (RuntimeException e) {
+          return UNSUPPORTED;
+        }
+        fields.add(field);
+      }
+    }
+    return new ClassLayout(constructor, fields.toArray(new Field[0]));
+  }
+
+  private static final class ClassLayout {
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+
+    ClassLayout(Constructor<?> constructor, Field[] fields) {
+      this.constructor = constructor;
+      this.fields = fields;
+    }
+  }
+
+  private final class Output {
+    private byte[] buffer = new byte[256];
+    private int position;
+    private final Map<Object, Integer> handles = new IdentityHashMap<>();
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+    void writeValue(Object value) throws IllegalAccessException {
+      if (value == null) {
+        writeByte(NULL);
+      } else if (!writeImmutable(value)) {
+        Integer handle = handles.get(value);
+        if (handle != null) {
+          writeByte(REFERENCE);
+          writeVarInt(handle);
+        } else {
+          handles.put(value, handles.size());
+          writeMutable(value);
+        }
+      }
+    }
+
+    private boolean writeImmutable(Object value) {
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        writeByte(STRING);
+        writeString((String) value);
+      } else if (type == Integer.class) {
+        writeByte(INTEGER);
+        writeVarLong(zigZag((Integer) value));
+      } else if (type == Long.class) {
+        writeByte(LONG);
+        writeVarLong(zigZag((Long) value));
+      } else if (type == Double.class) {
+        writeByte(DOUBLE);
+        writeFixedLong(Double.doubleToRawLongBits((Double) value));
+      } else if (type == Float.class) {
+        writeByte(FLOAT);
+        writeVarInt(Float.floatToRawIntBits((Float) value));
+      } else if (type == Short.class) {
+        writeByte(SHORT);
+        writeVarLong(zigZag((Short) value));
+      } else if (type == Byte.class) {
+        writeByte(BYTE);
+        writeByte((Byte) value);
+      } else if (type == Boolean.class) {
+        writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (type == Character.class) {
+        writeByte(CHARACTER);
+        writeVarInt((Character) value);
+      } else if (type == BigDecimal.class) {
+        BigDecimal decimal = (BigDecimal) value;
+        writeByte(BIG_DECIMAL);
+        writeVarLong(zigZag(decimal.scale()));
+        writeBytes(decimal.unscaledValue().toByteArray());
+      } else if (type == BigInteger.class) {
+        writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == Date.class) {
+        writeByte(DATE);
+        writeVarLong(zigZag(((Date) value).getTime()));
+      } else if (type == java.sql.Date.class) {
+        writeByte(SQL_DATE);
+        writeVarLong(zigZag(((Date) value).getTime()));
+      } else if (type == Time.class) {
+        writeByte(SQL_TIME);
+        writeVarLong(zigZag(((Date) value).getTime()));
+      } else if (type == Timestamp.class) {
+        writeByte(TIMESTAMP);
+        writeVarLong(zigZag(((Timestamp) value).getTime()));
+        writeVarInt(((Timestamp) value).getNanos());
+      } else if (type == byte[].class) {
+        writeByte(BYTES);
+        writeBytes((byte[]) value);
+      } else if (value instanceof Enum) {
+        writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        writeString(((Enum<?>) value).name());
+      } else {
+        return false;
+      }
+      return true;
+    }
+
+    private void writeMutable(Object value) throws IllegalAccessException {
+      Class<?> type = value.getClass();
+      if (type == ArrayList.class) {
+        writeCollection(ARRAY_LIST, (Collection<?>) value);
+      } else if (type == LinkedList.class) {
+        writeCollection(LINKED_LIST, (Collection<?>) value);
+      } else if (type == HashSet.class) {
+        writeCollection(HASH_SET, (Collection<?>) value);
+      } else if (type == LinkedHashSet.class) {
+        writeCollection(LINKED_HASH_SET, (Collection<?>) value);
+      } else if (type == HashMap.class) {
+        writeMap(HASH_MAP, (Map<?, ?>) value);
+      } else if (type == LinkedHashMap.class) {
+        writeMap(LINKED_HASH_MAP, (Map<?, ?>) value);
+      } else {
+        ClassLayout layout = layoutOf(type);
+        if (layout == UNSUPPORTED) {
+          writeByte(JAVA);
+          writeBytes(fallback.serialize(value));
+        } else {
+          writeByte(OBJECT);
+          writeClass(type);
+          for (Field field : layout.fields) {
+            writeValue(field.get(value));
+          }
+        }
+      }
+    }
+
+    private void writeCollection(byte tag, Collection<?> collection) throws IllegalAccessException {
+      writeByte(tag);
+      writeVarInt(collection.size());
+      for (Object element : collection) {
+        writeValue(element);
+      }
+    }
+
+    private void writeMap(byte tag, Map<?, ?> map) throws IllegalAccessException {
+      writeByte(tag);
+      writeVarInt(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeValue(entry.getKey());
+        writeValue(entry.getValue());
+      }
+    }
+
+    private void writeClass(Class<?> type) {
+      Integer index = classes.get(type);
+      if (index == null) {
+        classes.put(type, classes.size());
+        writeVarInt(0);
+        writeString(type.getName());
+      } else {
+        writeVarInt(index + 1);
+      }
+    }
+
+    private void writeString(String value) {
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] bytes) {
+      writeVarInt(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    private void writeVarInt(int value) {
+      writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    private void writeFixedLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+  }
+
+  private final class Input {
+    private final byte[] buffer;
+    private int position;
+    private final List<Object> handles = new ArrayList<>();
+    private final List<Class<?>> classes = new ArrayList<>();
+
+    Input(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Object readValue() throws ReflectiveOperationException {
+      byte tag = buffer[position++];
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return handles.get(readVarInt());
+        case STRING:
+          return readString();
+        case INTEGER:
+          return (int) unZigZag(readVarLong());
+        case LONG:
+          return unZigZag(readVarLong());
+        case DOUBLE:
+          return Double.longBitsToDouble(readFixedLong());
+        case FLOAT:
+          return Float.intBitsToFloat(readVarInt());
+        case SHORT:
+          return (short) unZigZag(readVarLong());
+        case BYTE:
+          return buffer[position++];
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case CHARACTER:
+          return (char) readVarInt();
+        case BIG_DECIMAL:
+          int scale = (int) unZigZag(readVarLong());
+          return new BigDecimal(new BigInteger(readBytes()), scale);
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case DATE:
+          return new Date(unZigZag(readVarLong()));
+        case SQL_DATE:
+          return new java.sql.Date(unZigZag(readVarLong()));
+        case SQL_TIME:
+          return new Time(unZigZag(readVarLong()));
+        case TIMESTAMP:
+          Timestamp timestamp = new Timestamp(unZigZag(readVarLong()));
+          timestamp.setNanos(readVarInt());
+          return timestamp;
+        case BYTES:
+          return readBytes();
+        case ENUM:
+          Class enumType = readClass();
+          return Enum.valueOf(enumType, readString());
+        case ARRAY_LIST:
+          int listSize = readVarInt();
+          return readCollection(new ArrayList<>(listSize), listSize);
+        case LINKED_LIST:
+          return readCollection(new LinkedList<>(), readVarInt());
+        case HASH_SET:
+          int setSize = readVarInt();
+          return readCollection(new HashSet<>(capacity(setSize)), setSize);
+        case LINKED_HASH_SET:
+          int linkedSetSize = readVarInt();
+          return readCollection(new LinkedHashSet<>(capacity(linkedSetSize)), linkedSetSize);
+        case HASH_MAP:
+          int mapSize = readVarInt();
+          return readMap(new HashMap<>(capacity(mapSize)), mapSize);
+        case LINKED_HASH_MAP:
+          int linkedMapSize = readVarInt();
+          return readMap(new LinkedHashMap<>(capacity(linkedMapSize)), linkedMapSize);
+        case OBJECT:
+          return readObject(readClass());
+        case JAVA:
+          Object value = fallback.deserialize(readBytes());
+          handles.add(value);
+          return value;
+        default:
+          throw new CacheException("Unknown tag " + tag + " at position " + (position - 1) + ".");
+      }
+    }
+
+    private Object readCollection(Collection<Object> collection, int size) throws ReflectiveOperationException {
+      handles.add(collection);
+      for (int i = 0; i < size; i++) {
+        collection.add(readValue());
+      }
+      return collection;
+    }
+
+    private Object readMap(Map<Object, Object> map, int size) throws ReflectiveOperationException {
+      handles.add(map);
+      for (int i = 0; i < size; i++) {
+        Object key = readValue();
+        map.put(key, readValue());
+      }
+      return map;
+    }
+
+    private Object readObject(Class<?> type) throws ReflectiveOperationException {
+      ClassLayout layout = layoutOf(type);
+      if (layout == UNSUPPORTED) {
+        throw new CacheException("Class " + type.getName() + " cannot be deserialized field by field.");
+      }
+      Object object = layout.constructor.newInstance();
+      handles.add(object);
+      for (Field field : layout.fields) {
+        field.set(object, readValue());
+      }
+      return object;
+    }
+
+    private Class<?> readClass() throws ClassNotFoundException {
+      int index = readVarInt();
+      if (index > 0) {
+        return classes.get(index - 1);
+      }
+      Class<?> type = Resources.classForName(readString());
+      classes.add(type);
+      return type;
+    }
+
+    private String readString() {
+      int length = readVarInt();
+      String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    private byte[] readBytes() {
+      int length = readVarInt();
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    private int readVarInt() {
+      return (int) readVarLong();
+    }
+
+    private long readVarLong() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    private long readFixedLong() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (buffer[position++] & 0xFF);
+      }
+      return value;
+    }
+  }
+
+  private static int capacity(int size) {
+    return Math.max((int) (size / .75f) + 1, 16);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+}
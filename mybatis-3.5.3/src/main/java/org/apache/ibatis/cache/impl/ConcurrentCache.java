@@ -0,0 +1,174 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.ThreadSafeCache;
+
+/**
+ * Size bounded cache that can be read and written by several threads without a global lock.
+ * <p>
+ * Reads never change the structure of the cache, they only set the reference bit of the entry.
+ * When the cache grows over its size, entries are evicted with the CLOCK (second chance) policy:
+ * entries are visited in insertion order, referenced ones get their bit cleared and another chance,
+ * the first unreferenced one is removed.
+ * <p>
+ * Because it evicts by itself, eviction decorators are not applied on top of this cache.
+ *
+ * @since 3.5.3
+ */
+public class ConcurrentCache implements ThreadSafeCache {
+
+  private final String id;
+
+  private final ConcurrentMap<Object, Entry> cache = new ConcurrentHashMap<>();
+  private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private volatile int size = 1024;
+
+  public ConcurrentCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+    evictIfNeeded();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    Entry entry = new Entry(key, value);
+    Entry existing = cache.putIfAbsent(key, entry);
+    if (existing != null) {
+      existing.value = value;
+      existing.referenced = true;
+      return;
+    }
+    clock.offer(entry);
+    evictIfNeeded();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.referenced) {
+      entry.referenced = true;
+    }
+    return entry.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Entry entry = cache.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    entry.removed = true;
+    return entry.value;
+  }
+
+  @Override
+  public void clear() {
+    // clock first, so that an entry put concurrently cannot stay in the map without its clock node
+    clock.clear();
+    cache.clear();
+  }
+
+  private void evictIfNeeded() {
+    if (cache.size() <= size || !evictionLock.tryLock()) {
+      // another thread is already evicting, it will also remove the entries we added
+      return;
+    }
+    try {
+      int secondChances = 0;
+      while (cache.size() > size) {
+        Entry candidate = clock.poll();
+        if (candidate == null) {
+          break;
+        }
+        if (candidate.removed) {
+          continue;
+        }
+        // readers may keep setting the bits, so stop giving second chances after a full round
+        if (candidate.referenced && secondChances++ <= size) {
+          candidate.referenced = false;
+          clock.offer(candidate);
+        } else if (cache.remove(candidate.key, candidate)) {
+          candidate.removed = true;
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static final class Entry {
+    private final Object key;
+    private volatile Object value;
+    private volatile boolean referenced;
+    private volatile boolean removed;
+
+    Entry(Object key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+}
@@ -0,0 +1,359 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.cache.ThreadSafeCache;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Cache that keeps its values serialized in direct memory, outside of the Java heap, so that large caches
+ * do not add to the garbage collection work.
+ * <p>
+ * The memory is split into lock striped segments. Each segment owns a fixed part of the capacity, divided in
+ * blocks of equal size, and stores every value in as many blocks as it needs. When a segment has no free
+ * block or too many entries, entries are evicted with the CLOCK (second chance) policy. Keys stay on the
+ * heap so that they can be hashed and compared.
+ * <p>
+ * Every read returns a new copy of the value, thus this cache is always read/write. Because it evicts by
+ * itself, eviction decorators are not applied on top of it.
+ *
+ * @since 3.5.3
+ */
+public class OffHeapCache implements ThreadSafeCache, InitializingObject {
+
+  private final String id;
+
+  private long capacity = 64L * 1024 * 1024;
+  private int blockSize = 256;
+  private int segmentCount = 16;
+  private volatile int size = Integer.MAX_VALUE;
+  private CacheSerializer serializer = new CompactCacheSerializer();
+
+  private volatile Segment[] segments;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @param capacity The memory reserved for the values, in bytes
+   */
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+  }
+
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  public void setSegments(int segments) {
+    this.segmentCount = segments;
+  }
+
+  /**
+   * @param size The maximum number of entries, only the capacity limits the cache when not set
+   */
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  /**
+   * @param serializer Fully qualified class name of the {@link CacheSerializer} to use, {@link CompactCacheSerializer} by default
+   */
+  public void setSerializer(String serializer) {
+    try {
+      this.serializer = (CacheSerializer) Resources.classForName(serializer).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache serializer '" + serializer + "'.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public void initialize() {
+    if (capacity <= 0 || blockSize <= 0 || segmentCount <= 0) {
+      throw new CacheException("Cache '" + id + "' requires a positive capacity, blockSize and segments.");
+    }
+    int count = 1;
+    while (count < segmentCount) {
+      count <<= 1;
+    }
+    long blocksPerSegment = capacity / count / blockSize;
+    if (blocksPerSegment < 1 || blocksPerSegment * blockSize > Integer.MAX_VALUE) {
+      throw new CacheException("Cache '" + id + "' cannot split " + capacity + " bytes in " + count
+          + " segments of blocks of " + blockSize + " bytes.");
+    }
+    Segment[] created = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      created[i] = new Segment((int) blocksPerSegment, blockSize);
+    }
+    segments = created;
+  }
+
+  @Override
+  public int getSize() {
+    Segment[] current = segments;
+    if (current == null) {
+      return 0;
+    }
+    int total = 0;
+    for (Segment segment : current) {
+      total += segment.size();
+    }
+    return total;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    byte[] bytes = serializer.serialize(value);
+    Segment[] current = segments();
+    current[indexFor(key, current.length)].put(key, bytes, maxEntriesPerSegment(current.length));
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Segment[] current = segments();
+    byte[] bytes = current[indexFor(key, current.length)].get(key);
+    // deserialized outside of the segment lock
+    return bytes == null ? null : serializer.deserialize(bytes);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Segment[] current = segments();
+    byte[] bytes = current[indexFor(key, current.length)].remove(key);
+    return bytes == null ? null : serializer.deserialize(bytes);
+  }
+
+  @Override
+  public void clear() {
+    Segment[] current = segments;
+    if (current != null) {
+      for (Segment segment : current) {
+        segment.clear();
+      }
+    }
+  }
+
+  private Segment[] segments() {
+    Segment[] current = segments;
+    if (current == null) {
+      synchronized (this) {
+        current = segments;
+        if (current == null) {
+          initialize();
+          current = segments;
+        }
+      }
+    }
+    return current;
+  }
+
+  private int maxEntriesPerSegment(int count) {
+    int max = size;
+    return max == Integer.MAX_VALUE ? max : Math.max(1, (max + count - 1) / count);
+  }
+
+  private static int indexFor(Object key, int count) {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    return h & (count - 1);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static final class Segment {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer memory;
+    private final int blockSize;
+    private final int[] freeBlocks;
+    private int freeCount;
+    // insertion order is the order of the clock hand
+    private final Map<Object, Entry> entries = new LinkedHashMap<>();
+
+    Segment(int blocks, int blockSize) {
+      this.memory = ByteBuffer.allocateDirect(blocks * blockSize);
+      this.blockSize = blockSize;
+      this.freeBlocks = new int[blocks];
+      for (int i = 0; i < blocks; i++) {
+        freeBlocks[i] = blocks - 1 - i;
+      }
+      this.freeCount = blocks;
+    }
+
+    int size() {
+      lock.lock();
+      try {
+        return entries.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void put(Object key, byte[] bytes, int maxEntries) {
+      int needed = (bytes.length + blockSize - 1) / blockSize;
+      lock.lock();
+      try {
+        release(entries.remove(key));
+        if (needed > freeBlocks.length) {
+          // larger than the whole segment, not cached
+          return;
+        }
+        while (freeCount < needed || entries.size() >= maxEntries) {
+          evict();
+        }
+        int[] blocks = new int[needed];
+        for (int i = 0; i < needed; i++) {
+          blocks[i] = freeBlocks[--freeCount];
+          int offset = i * blockSize;
+          memory.position(blocks[i] * blockSize);
+          memory.put(bytes, offset, Math.min(blockSize, bytes.length - offset));
+        }
+        entries.put(key, new Entry(blocks, bytes.length));
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    byte[] get(Object key) {
+      lock.lock();
+      try {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+          return null;
+        }
+        entry.referenced = true;
+        return read(entry);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    byte[] remove(Object key) {
+      lock.lock();
+      try {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+          return null;
+        }
+        byte[] bytes = read(entry);
+        release(entry);
+        return bytes;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void clear() {
+      lock.lock();
+      try {
+        for (Entry entry : entries.values()) {
+          release(entry);
+        }
+        entries.clear();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void evict() {
+      int secondChances = entries.size();
+      Iterator<Map.Entry<Object, Entry>> hand = entries.entrySet().iterator();
+      while (true) {
+        Map.Entry<Object, Entry> candidate = hand.next();
+        Entry entry = candidate.getValue();
+        if (entry.referenced && secondChances-- > 0) {
+          // move to the tail of the clock
+          entry.referenced = false;
+          hand.remove();
+          entries.put(candidate.getKey(), entry);
+          hand = entries.entrySet().iterator();
+        } else {
+          hand.remove();
+          release(entry);
+          return;
+        }
+      }
+    }
+
+    private byte[] read(Entry entry) {
+      byte[] bytes = new byte[entry.length];
+      int[] blocks = entry.blocks;
+      for (int i = 0; i < blocks.length; i++) {
+        int offset = i * blockSize;
+        memory.position(blocks[i] * blockSize);
+        memory.get(bytes, offset, Math.min(blockSize, bytes.length - offset));
+      }
+      return bytes;
+    }
+
+    private void release(Entry entry) {
+      if (entry != null) {
+        for (int block : entry.blocks) {
+          freeBlocks[freeCount++] = block;
+        }
+      }
+    }
+  }
+
+  private static final class Entry {
+    private final int[] blocks;
+    private final int length;
+    private boolean referenced;
+
+    Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+}
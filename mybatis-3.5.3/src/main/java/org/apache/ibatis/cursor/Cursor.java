@@ -16,6 +16,12 @@
 package org.apache.ibatis.cursor;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Cursor contract to handle fetching items lazily using an Iterator.
@@ -43,4 +49,27 @@ public interface Cursor<T> extends Closeable, Iterable<T> {
    * @return -1 if the first cursor item has not been retrieved. The index of the current item retrieved.
    */
   int getCurrentIndex();
+
+  /**
+   * Returns a sequential stream over the items of this cursor. Items are fetched from the database only as the
+   * stream is consumed, one row at a time, and closing the stream closes the cursor. Use it in a try-with-resources
+   * block when the stream may not be fully consumed (e.g. with {@code limit} or {@code findFirst}).
+   *
+   * @return a stream over the items that have not been fetched yet
+   * @since 3.5.3
+   */
+  default Stream<T> stream() {
+    return StreamSupport.stream(this::spliterator, Spliterator.ORDERED | Spliterator.NONNULL, false).onClose(() -> {
+      try {
+        close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  @Override
+  default Spliterator<T> spliterator() {
+    return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+  }
 }
@@ -125,6 +125,8 @@ public class DefaultCursor<T> implements Cursor<T> {
       // ignore
     } finally {
       status = CursorStatus.CLOSED;
+      // no more rows will be mapped, do not keep the objects of nested result maps until the session ends
+      resultSetHandler.releaseNestedResultState();
     }
   }
 
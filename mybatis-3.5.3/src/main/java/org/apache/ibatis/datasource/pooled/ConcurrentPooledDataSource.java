@@ -0,0 +1,521 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A thread-safe connection pool that does not serialize checkouts on a global monitor.
+ * <p>
+ * Every physical connection is owned by an entry whose state is switched with compare-and-set. A thread first
+ * tries to take back the entry it returned last, then scans the shared entry list, and only when the pool is
+ * exhausted does it wait on a fair hand-off queue that returning threads feed directly. The configuration
+ * properties and the {@link PoolState} statistics are the same as those of {@link PooledDataSource}.
+ *
+ * @since 3.5.3
+ */
+public class ConcurrentPooledDataSource extends PooledDataSource {
+
+  private static final Log log = LogFactory.getLog(ConcurrentPooledDataSource.class);
+
+  private final ConcurrentPoolState state = new ConcurrentPoolState(this);
+
+  private final UnpooledDataSource dataSource;
+
+  private final List<PoolEntry> entries = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<PoolEntry> lastReturned = new ThreadLocal<>();
+  private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger totalConnections = new AtomicInteger();
+  private final AtomicInteger idleConnections = new AtomicInteger();
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  private volatile int expectedConnectionTypeCode;
+
+  public ConcurrentPooledDataSource() {
+    this(new UnpooledDataSource());
+  }
+
+  public ConcurrentPooledDataSource(UnpooledDataSource dataSource) {
+    super(dataSource);
+    this.dataSource = dataSource;
+    this.expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, String username, String password) {
+    this(new UnpooledDataSource(driver, url, username, password));
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, Properties driverProperties) {
+    this(new UnpooledDataSource(driver, url, driverProperties));
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username, String password) {
+    this(new UnpooledDataSource(driverClassLoader, driver, url, username, password));
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, Properties driverProperties) {
+    this(new UnpooledDataSource(driverClassLoader, driver, url, driverProperties));
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return popConnection(username, password).getProxyConnection();
+  }
+
+  /**
+   * Closes all active and idle connections in the pool.
+   */
+  @Override
+  public void forceCloseAll() {
+    expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    for (PoolEntry entry : entries) {
+      PooledConnection conn = entry.takeConnection();
+      if (conn != null) {
+        conn.invalidate();
+      }
+      discard(entry);
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("ConcurrentPooledDataSource forcefully closed/removed all connections.");
+    }
+  }
+
+  @Override
+  public PoolState getPoolState() {
+    return state;
+  }
+
+  int getIdleConnectionCount() {
+    return idleConnections.get();
+  }
+
+  int getActiveConnectionCount() {
+    int count = 0;
+    for (PoolEntry entry : entries) {
+      int entryState = entry.state.get();
+      if (entryState == PoolEntry.IN_USE || entryState == PoolEntry.RESERVED) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  protected void pushConnection(PooledConnection conn) throws SQLException {
+    PoolEntry entry = ((EntryConnection) conn).entry;
+    if (!entry.releaseConnection(conn)) {
+      // the connection has been claimed as overdue or force closed in the meantime
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.badConnectionCount.increment();
+      return;
+    }
+    // the wrapper published below has no checkout time yet, it must not be claimed as overdue
+    entry.state.set(PoolEntry.RESERVED);
+    if (!conn.isValid()) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.badConnectionCount.increment();
+      discard(entry);
+      return;
+    }
+    state.accumulatedCheckoutTime.add(conn.getCheckoutTime());
+    if (getIdleConnectionCount() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+        && !isExpired(conn)) {
+      boolean rolledBack = false;
+      try {
+        if (!conn.getRealConnection().getAutoCommit()) {
+          conn.getRealConnection().rollback();
+        }
+        rolledBack = true;
+      } finally {
+        if (!rolledBack) {
+          // the entry is reserved, give its slot back before the exception reaches the caller
+          conn.invalidate();
+          discard(entry);
+        }
+      }
+      PooledConnection newConn = new EntryConnection(conn.getRealConnection(), this, entry);
+      newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+      newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+      conn.invalidate();
+      entry.connection = newConn;
+      if (log.isDebugEnabled()) {
+        log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+      }
+      requite(entry);
+    } else {
+      conn.invalidate();
+      discard(entry);
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  private PooledConnection popConnection(String username, String password) throws SQLException {
+    boolean countedWait = false;
+    long t = System.currentTimeMillis();
+    int localBadConnectionCount = 0;
+    startHousekeeping();
+
+    while (true) {
+      PoolEntry entry = borrow();
+      if (entry == null) {
+        entry = createEntry();
+      }
+      if (entry == null) {
+        entry = claimOverdueEntry();
+      }
+      if (entry == null) {
+        if (!countedWait) {
+          state.hadToWaitCount.increment();
+          countedWait = true;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+        }
+        long wt = System.currentTimeMillis();
+        try {
+          entry = awaitEntry();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        } finally {
+          state.accumulatedWaitTime.add(System.currentTimeMillis() - wt);
+        }
+        if (entry == null) {
+          continue;
+        }
+      }
+
+      // read once, forceCloseAll() may take the connection of a reserved entry at any time
+      PooledConnection conn = entry.connection;
+      if (conn == null) {
+        // the entry has been removed, it is not ours to discard
+        continue;
+      }
+      // ping to server and check the connection is valid or not
+      if (conn.isValid() && rollback(conn)) {
+        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        if (!entry.state.compareAndSet(PoolEntry.RESERVED, PoolEntry.IN_USE)) {
+          // removed while being checked out, the connection has been invalidated
+          continue;
+        }
+        state.requestCount.increment();
+        state.accumulatedRequestTime.add(System.currentTimeMillis() - t);
+        if (log.isDebugEnabled()) {
+          log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+        }
+        return conn;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+      }
+      state.badConnectionCount.increment();
+      localBadConnectionCount++;
+      entry.takeConnection();
+      conn.invalidate();
+      discard(entry);
+      if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+    }
+    throw new SQLException("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+  }
+
+  @Override
+  protected void housekeep() {
+    for (PoolEntry entry : entries) {
+      PooledConnection conn = entry.connection;
+      if (conn == null || !reserve(entry)) {
+        continue;
+      }
+      if (isExpired(conn)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Retired connection " + conn.getRealHashCode() + " after its maximum lifetime.");
+        }
+        entry.takeConnection();
+        conn.invalidate();
+        discard(entry);
+      } else if (conn.getTimeElapsedSinceLastUse() >= poolHousekeepingInterval && !validateConnection(conn)) {
+        state.badConnectionCount.increment();
+        entry.takeConnection();
+        conn.invalidate();
+        discard(entry);
+      } else {
+        release(entry);
+      }
+    }
+    fillIdleConnections();
+  }
+
+  @Override
+  protected void fillIdleConnections() {
+    while (getIdleConnectionCount() < Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections)) {
+      PoolEntry entry;
+      try {
+        entry = createEntry();
+      } catch (SQLException e) {
+        log.warn("Could not open an idle connection: " + e.getMessage());
+        return;
+      }
+      if (entry == null) {
+        return;
+      }
+      release(entry);
+    }
+  }
+
+  private boolean rollback(PooledConnection conn) {
+    try {
+      if (!conn.getRealConnection().getAutoCommit()) {
+        conn.getRealConnection().rollback();
+      }
+      return true;
+    } catch (SQLException e) {
+      log.debug("Bad connection. Could not roll back");
+      return false;
+    }
+  }
+
+  private boolean reserve(PoolEntry entry) {
+    if (entry.state.compareAndSet(PoolEntry.IDLE, PoolEntry.RESERVED)) {
+      idleConnections.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  private PoolEntry borrow() {
+    PoolEntry entry = lastReturned.get();
+    if (entry != null) {
+      if (reserve(entry)) {
+        return entry;
+      }
+      if (entry.state.get() == PoolEntry.REMOVED) {
+        lastReturned.remove();
+      }
+    }
+    for (PoolEntry candidate : entries) {
+      if (reserve(candidate)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private PoolEntry createEntry() throws SQLException {
+    int total = totalConnections.get();
+    while (total < poolMaximumActiveConnections) {
+      if (totalConnections.compareAndSet(total, total + 1)) {
+        PoolEntry entry = new PoolEntry();
+        try {
+          entry.connection = new EntryConnection(dataSource.getConnection(), this, entry);
+        } catch (SQLException | RuntimeException e) {
+          totalConnections.decrementAndGet();
+          throw e;
+        }
+        entries.add(entry);
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + entry.connection.getRealHashCode() + ".");
+        }
+        return entry;
+      }
+      total = totalConnections.get();
+    }
+    return null;
+  }
+
+  private PoolEntry claimOverdueEntry() {
+    for (PoolEntry entry : entries) {
+      PooledConnection oldest = entry.connection;
+      if (entry.state.get() != PoolEntry.IN_USE || oldest == null) {
+        continue;
+      }
+      long longestCheckoutTime = oldest.getCheckoutTime();
+      if (longestCheckoutTime > poolMaximumCheckoutTime && entry.releaseConnection(oldest)) {
+        entry.state.set(PoolEntry.RESERVED);
+        state.claimedOverdueConnectionCount.increment();
+        state.accumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+        state.accumulatedCheckoutTime.add(longestCheckoutTime);
+        try {
+          if (!oldest.getRealConnection().getAutoCommit()) {
+            oldest.getRealConnection().rollback();
+          }
+        } catch (SQLException e) {
+          // same as PooledDataSource: let the validity check below decide whether the connection is usable
+          log.debug("Bad connection. Could not roll back");
+        }
+        PooledConnection conn = new EntryConnection(oldest.getRealConnection(), this, entry);
+        conn.setCreatedTimestamp(oldest.getCreatedTimestamp());
+        conn.setLastUsedTimestamp(oldest.getLastUsedTimestamp());
+        oldest.invalidate();
+        entry.connection = conn;
+        if (log.isDebugEnabled()) {
+          log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+        }
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private PoolEntry awaitEntry() throws InterruptedException {
+    waiters.incrementAndGet();
+    try {
+      // an entry may have been returned between the scan and the registration as a waiter
+      PoolEntry entry = borrow();
+      if (entry != null) {
+        return entry;
+      }
+      entry = handoffQueue.poll(poolTimeToWait, TimeUnit.MILLISECONDS);
+      if (entry != null && reserve(entry)) {
+        return entry;
+      }
+      return null;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  private void requite(PoolEntry entry) {
+    lastReturned.set(entry);
+    release(entry);
+  }
+
+  private void release(PoolEntry entry) {
+    // counted first, so that a concurrent reserve never takes the counter below zero
+    idleConnections.incrementAndGet();
+    if (!entry.state.compareAndSet(PoolEntry.RESERVED, PoolEntry.IDLE)) {
+      // force closed in the meantime
+      idleConnections.decrementAndGet();
+      return;
+    }
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (entry.state.get() != PoolEntry.IDLE || handoffQueue.offer(entry)) {
+        return;
+      }
+      if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+
+  private void discard(PoolEntry entry) {
+    int previousState = entry.state.getAndSet(PoolEntry.REMOVED);
+    if (previousState == PoolEntry.REMOVED) {
+      return;
+    }
+    if (previousState == PoolEntry.IDLE) {
+      idleConnections.decrementAndGet();
+    }
+    entries.remove(entry);
+    totalConnections.decrementAndGet();
+    Connection realConn = entry.realConnection;
+    if (realConn == null) {
+      return;
+    }
+    try {
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  private int assembleConnectionTypeCode(String url, String username, String password) {
+    return ("" + url + username + password).hashCode();
+  }
+
+  /**
+   * Slot of the pool that owns one physical connection for its whole life.
+   * The wrapper handed to the application is replaced on every return, as {@link PooledDataSource} does.
+   */
+  private static final class PoolEntry {
+
+    private static final int IDLE = 0;
+    // handed to a thread that has not finished checking it out yet, must not be claimed as overdue
+    private static final int RESERVED = 1;
+    private static final int IN_USE = 2;
+    private static final int REMOVED = -1;
+
+    private static final AtomicReferenceFieldUpdater<PoolEntry, PooledConnection> CONNECTION_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(PoolEntry.class, PooledConnection.class, "connection");
+
+    private final AtomicInteger state = new AtomicInteger(RESERVED);
+    private volatile PooledConnection connection;
+    private Connection realConnection;
+
+    /**
+     * Takes ownership of the entry back from the given wrapper.
+     *
+     * @return false if the wrapper does not own the entry anymore
+     */
+    boolean releaseConnection(PooledConnection conn) {
+      return CONNECTION_UPDATER.compareAndSet(this, conn, null);
+    }
+
+    PooledConnection takeConnection() {
+      return CONNECTION_UPDATER.getAndSet(this, null);
+    }
+  }
+
+  private static final class EntryConnection extends PooledConnection {
+
+    private final PoolEntry entry;
+
+    EntryConnection(Connection connection, ConcurrentPooledDataSource dataSource, PoolEntry entry) {
+      super(connection, dataSource);
+      this.entry = entry;
+      entry.realConnection = connection;
+    }
+  }
+
+}
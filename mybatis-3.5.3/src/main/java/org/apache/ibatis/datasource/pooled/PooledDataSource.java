@@ -22,6 +22,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
 
@@ -53,8 +56,15 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumLifetime;
+  protected int poolHousekeepingInterval;
+  protected int poolValidationTimeout = 5;
 
   private int expectedConnectionTypeCode;
+  // 正在被 housekeep 校验的空闲连接数，计入活动连接的上限，由 state 锁保护
+  private int validatingConnections;
+  private volatile PoolHousekeeper housekeeper;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -247,6 +257,52 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * The number of idle connections the housekeeping task keeps open, and that are opened by {@link #warmUp()}.
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   * @since 3.5.3
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time a connection may live in the pool. Older connections are closed when they are returned
+   * or when the housekeeping task finds them idle. A value of zero means connections are never retired.
+   *
+   * @param milliseconds the maximum lifetime
+   * @since 3.5.3
+   */
+  public void setPoolMaximumLifetime(int milliseconds) {
+    this.poolMaximumLifetime = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * How often idle connections are validated, retired and topped up by a background thread.
+   * A value of zero disables housekeeping.
+   *
+   * @param milliseconds the delay between two housekeeping runs
+   * @since 3.5.3
+   */
+  public void setPoolHousekeepingInterval(int milliseconds) {
+    stopHousekeeping();
+    this.poolHousekeepingInterval = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * The timeout passed to {@link Connection#isValid(int)} when the housekeeping task validates idle connections.
+   *
+   * @param seconds the validation timeout
+   * @since 3.5.3
+   */
+  public void setPoolValidationTimeout(int seconds) {
+    this.poolValidationTimeout = seconds;
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -314,6 +370,45 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolHousekeepingInterval() {
+    return poolHousekeepingInterval;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolValidationTimeout() {
+    return poolValidationTimeout;
+  }
+
+  /**
+   * Starts the housekeeping task if it is enabled and opens the minimum number of idle connections,
+   * so that the first requests do not pay for establishing connections.
+   *
+   * @since 3.5.3
+   */
+  public void warmUp() {
+    startHousekeeping();
+    fillIdleConnections();
+  }
+
   /**
    * Closes all active and idle connections in the pool.
    */
@@ -367,7 +462,8 @@ public class PooledDataSource implements DataSource {
     synchronized (state) {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isExpired(conn)) {
           state.accumulatedCheckoutTime += conn.getCheckoutTime();
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
@@ -406,6 +502,7 @@ public class PooledDataSource implements DataSource {
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
     int localBadConnectionCount = 0;
+    startHousekeeping();
 
     while (conn == null) {   // 注意这里有个循环
       synchronized (state) {
@@ -418,7 +515,7 @@ public class PooledDataSource implements DataSource {
         } else {
           // Pool does not have available connection
           // PoolState对象中的activeConnections活动连接数小于最大活动连接数（默认10）
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {
+          if (state.activeConnections.size() + validatingConnections < poolMaximumActiveConnections) {
             // Can create new connection
             conn = new PooledConnection(dataSource.getConnection(), this);
             if (log.isDebugEnabled()) {
@@ -426,10 +523,11 @@ public class PooledDataSource implements DataSource {
             }
           } else {
             // Cannot create new connection
-            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+            // 所有连接都在校验时没有活动连接可以回收，只能等待
+            PooledConnection oldestActiveConnection = state.activeConnections.isEmpty() ? null : state.activeConnections.get(0);
+            long longestCheckoutTime = oldestActiveConnection == null ? 0 : oldestActiveConnection.getCheckoutTime();
             // 连接超过了最长连接
-            if (longestCheckoutTime > poolMaximumCheckoutTime) {
+            if (oldestActiveConnection != null && longestCheckoutTime > poolMaximumCheckoutTime) {
               // Can claim overdue connection
               state.claimedOverdueConnectionCount++;    // 过期连接数++
               state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
@@ -521,6 +619,154 @@ public class PooledDataSource implements DataSource {
     return conn;
   }
 
+  /**
+   * Validates, retires and tops up idle connections. Called periodically by the housekeeping task.
+   * <p>
+   * Connections are taken out of the pool while they are checked so that the database round trips
+   * happen outside of the pool lock. They still count against the maximum active connections meanwhile.
+   *
+   * @since 3.5.3
+   */
+  protected void housekeep() {
+    List<PooledConnection> candidates = new ArrayList<>();
+    synchronized (state) {
+      Iterator<PooledConnection> iterator = state.idleConnections.iterator();
+      while (iterator.hasNext()) {
+        PooledConnection conn = iterator.next();
+        if (isExpired(conn) || conn.getTimeElapsedSinceLastUse() >= poolHousekeepingInterval) {
+          iterator.remove();
+          candidates.add(conn);
+        }
+      }
+      validatingConnections += candidates.size();
+    }
+    for (PooledConnection conn : candidates) {
+      boolean returned = false;
+      if (isExpired(conn)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Retired connection " + conn.getRealHashCode() + " after its maximum lifetime.");
+        }
+      } else if (!validateConnection(conn)) {
+        synchronized (state) {
+          state.badConnectionCount++;
+        }
+      } else {
+        synchronized (state) {
+          if (state.idleConnections.size() < poolMaximumIdleConnections) {
+            state.idleConnections.add(conn);
+            returned = true;
+          }
+        }
+      }
+      if (!returned) {
+        closeQuietly(conn);
+      }
+      synchronized (state) {
+        // 归还或关闭后才释放名额，等待的线程可以继续获取或创建连接
+        validatingConnections--;
+        state.notifyAll();
+      }
+    }
+    fillIdleConnections();
+  }
+
+  /**
+   * Opens connections until the pool holds {@link #getPoolMinimumIdleConnections()} idle connections,
+   * within the limits of the maximum active and idle connections.
+   *
+   * @since 3.5.3
+   */
+  protected void fillIdleConnections() {
+    while (true) {
+      synchronized (state) {
+        if (!canAddIdleConnection()) {
+          return;
+        }
+      }
+      PooledConnection conn;
+      try {
+        conn = new PooledConnection(dataSource.getConnection(), this);
+      } catch (SQLException e) {
+        log.warn("Could not open an idle connection: " + e.getMessage());
+        return;
+      }
+      synchronized (state) {
+        if (canAddIdleConnection()) {
+          state.idleConnections.add(conn);
+          state.notifyAll();
+          if (log.isDebugEnabled()) {
+            log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+          }
+          continue;
+        }
+      }
+      closeQuietly(conn);
+      return;
+    }
+  }
+
+  private boolean canAddIdleConnection() {
+    int idle = state.idleConnections.size();
+    return idle < poolMinimumIdleConnections && idle < poolMaximumIdleConnections
+        && idle + state.activeConnections.size() + validatingConnections < poolMaximumActiveConnections;
+  }
+
+  boolean isExpired(PooledConnection conn) {
+    return poolMaximumLifetime > 0 && conn.getAge() > poolMaximumLifetime;
+  }
+
+  /**
+   * Checks an idle connection with {@link Connection#isValid(int)}.
+   *
+   * @param conn - the connection to check
+   * @return True if the connection is still usable
+   */
+  boolean validateConnection(PooledConnection conn) {
+    try {
+      if (conn.getRealConnection().isValid(poolValidationTimeout)) {
+        return true;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD.");
+      }
+    } catch (SQLException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+      }
+    }
+    return false;
+  }
+
+  void closeQuietly(PooledConnection conn) {
+    conn.invalidate();
+    try {
+      Connection realConn = conn.getRealConnection();
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  void startHousekeeping() {
+    if (poolHousekeepingInterval > 0 && housekeeper == null) {
+      synchronized (this) {
+        if (housekeeper == null) {
+          housekeeper = PoolHousekeeper.schedule(this, poolHousekeepingInterval);
+        }
+      }
+    }
+  }
+
+  private synchronized void stopHousekeeping() {
+    if (housekeeper != null) {
+      housekeeper.cancel();
+      housekeeper = null;
+    }
+  }
+
   /**
    * Method to check to see if a connection is still usable
    *
@@ -593,6 +839,7 @@ public class PooledDataSource implements DataSource {
 
   @Override
   protected void finalize() throws Throwable {
+    stopHousekeeping();
     forceCloseAll();
     super.finalize();
   }
@@ -26,6 +26,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
 import org.apache.ibatis.executor.statement.StatementUtil;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -126,7 +127,20 @@ public abstract class BaseExecutor implements Executor {
       throw new ExecutorException("Executor was closed.");
     }
     clearLocalCache();
-    return doUpdate(ms, parameter);
+    StatementMetrics metrics = configuration.getStatementMetrics();
+    if (metrics == null) {
+      return doUpdate(ms, parameter);
+    }
+    long start = System.nanoTime();
+    int updateCount;
+    try {
+      updateCount = doUpdate(ms, parameter);
+    } catch (Throwable t) {
+      metrics.statementFailed(ms, System.nanoTime() - start);
+      throw t;
+    }
+    metrics.statementCompleted(ms, System.nanoTime() - start, updateCount);
+    return updateCount;
   }
 
   @Override
@@ -155,13 +169,43 @@ public abstract class BaseExecutor implements Executor {
   public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
     //获取sql
     BoundSql boundSql = ms.getBoundSql(parameter);
+    if (!isLocalCacheRequired(ms)) {
+      // the local cache would be cleared right after this query, do not even build the key
+      return measuredQuery(ms, parameter, rowBounds, resultHandler, null, boundSql);
+    }
     CacheKey key = createCacheKey(ms, parameter, rowBounds, boundSql);
     return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
+    return measuredQuery(ms, parameter, rowBounds, resultHandler, key, boundSql);
+  }
+
+  /**
+   * A null key skips the local cache. It is only passed internally, callers of the public methods always get a key.
+   */
+  private <E> List<E> measuredQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql)
+      throws SQLException {
+    StatementMetrics metrics = configuration.getStatementMetrics();
+    if (metrics == null) {
+      return queryWithLocalCache(ms, parameter, rowBounds, resultHandler, key, boundSql, null);
+    }
+    long start = System.nanoTime();
+    List<E> list;
+    try {
+      list = queryWithLocalCache(ms, parameter, rowBounds, resultHandler, key, boundSql, metrics);
+    } catch (Throwable t) {
+      metrics.statementFailed(ms, System.nanoTime() - start);
+      throw t;
+    }
+    metrics.statementCompleted(ms, System.nanoTime() - start, list == null ? 0 : list.size());
+    return list;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <E> List<E> queryWithLocalCache(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql,
+      StatementMetrics metrics) throws SQLException {
     ErrorContext.instance().resource(ms.getResource()).activity("executing a query").object(ms.getId());
     //已经关闭，则抛出 ExecutorException 异常
     if (closed) {
@@ -175,7 +219,10 @@ public abstract class BaseExecutor implements Executor {
     try {
       // <4.1> 从一级缓存中，获取查询结果,这样递归调用到上面的时候就不会再清局部缓存了
       queryStack++;
-      list = resultHandler == null ? (List<E>) localCache.getObject(key) : null;
+      list = resultHandler == null && key != null ? (List<E>) localCache.getObject(key) : null;
+      if (metrics != null && resultHandler == null && key != null) {
+        metrics.cacheAccessed(ms, StatementMetrics.CacheLevel.LOCAL, list != null);
+      }
       // <4.2> 获取到，则进行处理
       if (list != null) {
         //处理存过的
@@ -204,7 +251,21 @@ public abstract class BaseExecutor implements Executor {
   @Override
   public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
     BoundSql boundSql = ms.getBoundSql(parameter);
-    return doQueryCursor(ms, parameter, rowBounds, boundSql);
+    StatementMetrics metrics = configuration.getStatementMetrics();
+    if (metrics == null) {
+      return doQueryCursor(ms, parameter, rowBounds, boundSql);
+    }
+    // the rows are fetched later, only the time to open the cursor is recorded
+    long start = System.nanoTime();
+    Cursor<E> cursor;
+    try {
+      cursor = doQueryCursor(ms, parameter, rowBounds, boundSql);
+    } catch (Throwable t) {
+      metrics.statementFailed(ms, System.nanoTime() - start);
+      throw t;
+    }
+    metrics.statementCompleted(ms, System.nanoTime() - start, 0);
+    return cursor;
   }
 
   @Override
@@ -225,12 +286,13 @@ public abstract class BaseExecutor implements Executor {
     if (closed) {
       throw new ExecutorException("Executor was closed.");
     }
-    CacheKey cacheKey = new CacheKey();
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    // id, offset, limit, sql, parameters and environment id
+    CacheKey cacheKey = new CacheKey(parameterMappings.size() + 5);
     cacheKey.update(ms.getId());
     cacheKey.update(rowBounds.getOffset());
     cacheKey.update(rowBounds.getLimit());
     cacheKey.update(boundSql.getSql());
-    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
     // mimic DefaultParameterHandler logic
     for (ParameterMapping parameterMapping : parameterMappings) {
@@ -257,6 +319,17 @@ public abstract class BaseExecutor implements Executor {
     return cacheKey;
   }
 
+  /**
+   * The results of a top level query are only worth caching locally when they outlive the statement, or when
+   * nested queries of the same statement may look them up.
+   */
+  private boolean isLocalCacheRequired(MappedStatement ms) {
+    return queryStack > 0
+        || configuration.getLocalCacheScope() != LocalCacheScope.STATEMENT
+        || ms.getStatementType() == StatementType.CALLABLE
+        || ms.hasNestedQueries();
+  }
+
   /**
    * 判断是否被缓存
    * @param ms
@@ -369,6 +442,9 @@ public abstract class BaseExecutor implements Executor {
    * @throws SQLException
    */
   private <E> List<E> queryFromDatabase(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
+    if (key == null) {
+      return doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+    }
     List<E> list;
     // 在一级缓存中存放执行的标识符
     localCache.putObject(key, EXECUTION_PLACEHOLDER);
@@ -389,7 +465,8 @@ public abstract class BaseExecutor implements Executor {
 
   protected Connection getConnection(Log statementLog) throws SQLException {
     Connection connection = transaction.getConnection();
-    if (statementLog.isDebugEnabled()) {
+    // 开启异步 SQL 日志时由 StatementHandler 记录日志，不再代理连接
+    if (statementLog.isDebugEnabled() && configuration.getAsyncSqlLogger() == null) {
       return ConnectionLogger.newInstance(connection, statementLog, queryStack);
     } else {
       return connection;
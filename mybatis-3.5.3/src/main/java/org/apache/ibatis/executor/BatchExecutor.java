@@ -17,9 +17,11 @@ package org.apache.ibatis.executor;
 
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -27,9 +29,18 @@ import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -41,12 +52,22 @@ import org.apache.ibatis.transaction.Transaction;
 public class BatchExecutor extends BaseExecutor {
 
   public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
+  // limits of one rewritten multi-row insert, low enough for most databases
+  private static final int MULTI_ROW_INSERT_MAX_ROWS = 1000;
+  private static final int MULTI_ROW_INSERT_MAX_PARAMETERS = 2000;
+
   // Statement集合
   private final List<Statement> statementList = new ArrayList<>();
   // batch结果集合
   private final List<BatchResult> batchResultList = new ArrayList<>();
+  // 改写为多行 insert 的批次（与 statementList 对应，未改写的为 null）
+  private final List<PendingInsert> pendingInsertList = new ArrayList<>();
+  // 自动 flush 的结果，没有 BatchResultListener 时留给下一次 flushStatements 返回
+  private final List<BatchResult> flushedResultList = new ArrayList<>();
   private String currentSql;
   private MappedStatement currentStatement;
+  private int queuedRows;
+  private long queuedBytes;
 
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
@@ -61,32 +82,138 @@ public class BatchExecutor extends BaseExecutor {
     // 获得Sql语句
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
-    final Statement stmt;
-    // 如果sql语句等于当前sql MappedStatement 等于当前Map碰到Statement
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+    final boolean sameStatement = sql.equals(currentSql) && ms.equals(currentStatement);
+    PendingInsert pendingInsert = sameStatement ? pendingInsertList.get(pendingInsertList.size() - 1) : null;
+    MultiRowInsert multiRowInsert = pendingInsert != null ? pendingInsert.multiRowInsert
+        : !sameStatement && configuration.isRewriteBatchedInserts() ? toMultiRowInsert(ms, boundSql) : null;
+    if (multiRowInsert != null) {
+      // 先绑定参数，参数对象的延迟加载可能会提前执行已有的批次
+      MultiRowInsert.Row row = MultiRowInsert.bindRow(handler.getParameterHandler(), getConnection(ms.getStatementLog()));
+      if (pendingInsert != null && sql.equals(currentSql)) {
+        batchResultList.get(batchResultList.size() - 1).addParameterObject(parameterObject);
+      } else {
+        pendingInsert = new PendingInsert(multiRowInsert);
+        currentSql = sql;
+        currentStatement = ms;
+        // 多行 insert 在 flush 时才创建 Statement
+        statementList.add(null);
+        batchResultList.add(new BatchResult(ms, sql, parameterObject));
+        pendingInsertList.add(pendingInsert);
+      }
+      pendingInsert.rows.add(row);
+    } else if (sameStatement) {
       int last = statementList.size() - 1;
       // 获得最后一个
-      stmt = statementList.get(last);
+      Statement stmt = statementList.get(last);
       applyTransactionTimeout(stmt);
       handler.parameterize(stmt);//fix Issues 322
       BatchResult batchResult = batchResultList.get(last);
       batchResult.addParameterObject(parameterObject);
+      // 最终是调用jdbc的批处理操作
+      handler.batch(stmt);
     } else {
       // 如果不存在就创建一个批处理操作
       Connection connection = getConnection(ms.getStatementLog());
-      stmt = handler.prepare(connection, transaction.getTimeout());
+      Statement stmt = handler.prepare(connection, transaction.getTimeout());
       handler.parameterize(stmt);    //fix Issues 322
       currentSql = sql;
       currentStatement = ms;
       // 添加批量处理操作
       statementList.add(stmt);
       batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      pendingInsertList.add(null);
+      // 最终是调用jdbc的批处理操作
+      handler.batch(stmt);
+    }
+    queuedRows++;
+    if (configuration.getMaxBatchBytes() != null) {
+      queuedBytes += estimateSize(configuration, boundSql, parameterObject);
+    }
+    if (isBatchFull(configuration)) {
+      // 达到批次上限，提前执行，避免驱动端无限制地积累
+      List<BatchResult> results = executeBatches();
+      if (configuration.getBatchResultListener() == null) {
+        flushedResultList.addAll(results);
+      }
     }
-    // 最终是调用jdbc的批处理操作
-    handler.batch(stmt);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private boolean isBatchFull(Configuration configuration) {
+    Integer maxBatchSize = configuration.getMaxBatchSize();
+    Integer maxBatchBytes = configuration.getMaxBatchBytes();
+    return (maxBatchSize != null && queuedRows >= maxBatchSize)
+        || (maxBatchBytes != null && queuedBytes >= maxBatchBytes);
+  }
+
+  private MultiRowInsert toMultiRowInsert(MappedStatement ms, BoundSql boundSql) {
+    if (ms.getSqlCommandType() != SqlCommandType.INSERT
+        || ms.getStatementType() != StatementType.PREPARED
+        || !NoKeyGenerator.class.equals(ms.getKeyGenerator().getClass())
+        || hasParameterBindingPlugins()) {
+      return null;
+    }
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    for (ParameterMapping parameterMapping : parameterMappings) {
+      if (parameterMapping.getMode() != ParameterMode.IN) {
+        return null;
+      }
+    }
+    MultiRowInsert multiRowInsert = MultiRowInsert.parse(boundSql.getSql());
+    return multiRowInsert != null && multiRowInsert.getParameterCount() == parameterMappings.size() ? multiRowInsert : null;
+  }
+
+  /**
+   * The rows of a rewritten insert are bound once, on a recording statement, and replayed on the multi-row statement.
+   * Plugins of the parameter binding would not see the statement they expect, so their inserts are not rewritten.
+   */
+  private boolean hasParameterBindingPlugins() {
+    for (Interceptor interceptor : configuration.getInterceptors()) {
+      Intercepts intercepts = interceptor.getClass().getAnnotation(Intercepts.class);
+      if (intercepts == null) {
+        // wraps its targets by itself, assume the worst
+        return true;
+      }
+      for (Signature signature : intercepts.value()) {
+        if (ParameterHandler.class.equals(signature.type())
+            || StatementHandler.class.equals(signature.type()) && "parameterize".equals(signature.method())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static long estimateSize(Configuration configuration, BoundSql boundSql, Object parameterObject) {
+    // resolves the values as DefaultParameterHandler does
+    long size = 0;
+    MetaObject metaObject = null;
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      String propertyName = parameterMapping.getProperty();
+      Object value;
+      if (boundSql.hasAdditionalParameter(propertyName)) {
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(propertyName);
+      }
+      if (value instanceof CharSequence) {
+        size += 2L * ((CharSequence) value).length();
+      } else if (value instanceof byte[]) {
+        size += ((byte[]) value).length;
+      } else {
+        size += 8;
+      }
+    }
+    return size;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -119,18 +246,47 @@ public class BatchExecutor extends BaseExecutor {
   // 刷新Statement，记录执行次数
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+    if (isRollback) {
+      flushedResultList.clear();
+      discardBatches();
+      return Collections.emptyList();
+    }
+    List<BatchResult> results = executeBatches();
+    if (!flushedResultList.isEmpty()) {
+      flushedResultList.addAll(results);
+      results = new ArrayList<>(flushedResultList);
+      flushedResultList.clear();
+    }
+    return results;
+  }
+
+  private void discardBatches() {
+    for (Statement stmt : statementList) {
+      closeStatement(stmt);
+    }
+    currentSql = null;
+    statementList.clear();
+    batchResultList.clear();
+    pendingInsertList.clear();
+    queuedRows = 0;
+    queuedBytes = 0;
+  }
+
+  private List<BatchResult> executeBatches() throws SQLException {
     try {
       List<BatchResult> results = new ArrayList<>();
-      if (isRollback) {
-        return Collections.emptyList();
-      }
       for (int i = 0, n = statementList.size(); i < n; i++) {
         Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
         // 记录批量处理执行操作的条数
         BatchResult batchResult = batchResultList.get(i);
         try {
-          batchResult.setUpdateCounts(stmt.executeBatch());
+          PendingInsert pendingInsert = pendingInsertList.get(i);
+          if (pendingInsert != null) {
+            batchResult.setUpdateCounts(executeMultiRowInsert(pendingInsert, batchResult));
+          } else {
+            applyTransactionTimeout(stmt);
+            batchResult.setUpdateCounts(stmt.executeBatch());
+          }
           MappedStatement ms = batchResult.getMappedStatement();
           List<Object> parameterObjects = batchResult.getParameterObjects();
           KeyGenerator keyGenerator = ms.getKeyGenerator();
@@ -161,14 +317,55 @@ public class BatchExecutor extends BaseExecutor {
         // 记录对象
         results.add(batchResult);
       }
+      BatchResultListener listener = configuration.getBatchResultListener();
+      if (listener != null && !results.isEmpty()) {
+        listener.onBatchExecuted(results);
+      }
       return results;
     } finally {
-      for (Statement stmt : statementList) {
+      discardBatches();
+    }
+  }
+
+  private int[] executeMultiRowInsert(PendingInsert pendingInsert, BatchResult batchResult) throws SQLException {
+    final MappedStatement ms = batchResult.getMappedStatement();
+    final List<Object> parameterObjects = batchResult.getParameterObjects();
+    final MultiRowInsert multiRowInsert = pendingInsert.multiRowInsert;
+    final int parameterCount = multiRowInsert.getParameterCount();
+    final int rows = pendingInsert.rows.size();
+    final int rowsPerStatement = Math.max(1,
+        Math.min(MULTI_ROW_INSERT_MAX_ROWS, MULTI_ROW_INSERT_MAX_PARAMETERS / Math.max(1, parameterCount)));
+    final int[] updateCounts = new int[rows];
+    Connection connection = getConnection(ms.getStatementLog());
+    for (int from = 0; from < rows; from += rowsPerStatement) {
+      int to = Math.min(rows, from + rowsPerStatement);
+      Object firstParameter = parameterObjects.get(from);
+      BoundSql boundSql = new BoundSql(configuration, multiRowInsert.getSql(to - from), Collections.emptyList(), firstParameter);
+      StatementHandler handler = configuration.newStatementHandler(this, ms, firstParameter, RowBounds.DEFAULT, null, boundSql);
+      Statement stmt = null;
+      try {
+        stmt = handler.prepare(connection, transaction.getTimeout());
+        PreparedStatement ps = (PreparedStatement) stmt;
+        for (int row = from; row < to; row++) {
+          pendingInsert.rows.get(row).setParameters(ps, (row - from) * parameterCount);
+        }
+        int count = ps.executeUpdate();
+        Arrays.fill(updateCounts, from, to, count == to - from ? 1 : Statement.SUCCESS_NO_INFO);
+      } catch (SQLException e) {
+        throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), Arrays.copyOf(updateCounts, from), e);
+      } finally {
         closeStatement(stmt);
       }
-      currentSql = null;
-      statementList.clear();
-      batchResultList.clear();
+    }
+    return updateCounts;
+  }
+
+  private static class PendingInsert {
+    private final MultiRowInsert multiRowInsert;
+    private final List<MultiRowInsert.Row> rows = new ArrayList<>();
+
+    PendingInsert(MultiRowInsert multiRowInsert) {
+      this.multiRowInsert = multiRowInsert;
     }
   }
 
@@ -0,0 +1,34 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.List;
+
+/**
+ * Receives the results of every batch a {@link BatchExecutor} executes, including the batches it flushes by itself
+ * once {@code maxBatchSize} or {@code maxBatchBytes} is reached.
+ * <p>
+ * Without a listener, the results of those automatic flushes are kept and returned by the next
+ * {@link org.apache.ibatis.session.SqlSession#flushStatements()}, parameter objects included.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.session.Configuration#setBatchResultListener(BatchResultListener)
+ */
+public interface BatchResultListener {
+
+  void onBatchExecuted(List<BatchResult> results);
+
+}
@@ -22,6 +22,7 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.TransactionalCacheManager;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
@@ -87,6 +88,10 @@ public class CachingExecutor implements Executor {
    */
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+    if (ms.getCache() == null) {
+      // no second level cache, let the delegate decide whether it needs a key for its local cache
+      return delegate.query(ms, parameterObject, rowBounds, resultHandler);
+    }
     // 通过参数对象解析我们的sql select id,user_name,create_time from t_user where id=?:1:development
     BoundSql boundSql = ms.getBoundSql(parameterObject);
     // 创建缓存 Cacgekey
@@ -118,6 +123,10 @@ public class CachingExecutor implements Executor {
         // 先去二级缓存中获取
         @SuppressWarnings("unchecked")
         List<E> list = (List<E>) tcm.getObject(cache, key);
+        StatementMetrics metrics = ms.getConfiguration().getStatementMetrics();
+        if (metrics != null) {
+          metrics.cacheAccessed(ms, StatementMetrics.CacheLevel.SECOND_LEVEL, list != null);
+        }
         // 二级缓存中没有获取到
         if (list == null) {
           // 通过查询数据库去查询（查询逻辑先查询一级缓存，如果缓存中有，返回，没有在去查询数据库）
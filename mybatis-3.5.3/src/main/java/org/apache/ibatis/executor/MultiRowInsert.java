@@ -0,0 +1,181 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * A single row {@code INSERT ... VALUES (...)} statement, that can be rewritten to insert several rows at once.
+ *
+ * @since 3.5.3
+ */
+final class MultiRowInsert {
+
+  private final String prefix;
+  private final String row;
+  private final int parameterCount;
+
+  private MultiRowInsert(String prefix, String row, int parameterCount) {
+    this.prefix = prefix;
+    this.row = row;
+    this.parameterCount = parameterCount;
+  }
+
+  /**
+   * Returns the statement if the sql is an insert ending with a single {@code VALUES} row holding all the
+   * placeholders, {@code null} otherwise. Literals containing a backslash are not parsed, as its meaning depends
+   * on the database.
+   */
+  static MultiRowInsert parse(String sql) {
+    final String insert = sql.trim();
+    if (!insert.regionMatches(true, 0, "insert", 0, 6) || insert.contains("--") || insert.contains("/*")) {
+      return null;
+    }
+    int valuesEnd = -1;
+    int rowStart = -1;
+    int rowEnd = -1;
+    int depth = 0;
+    int placeholders = 0;
+    char quote = 0;
+    for (int i = 0; i < insert.length(); i++) {
+      char c = insert.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          // escapes the quote in some dialects (e.g. 'it\'s' in MySQL) but not in standard SQL
+          return null;
+        }
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (rowEnd >= 0 && !Character.isWhitespace(c)) {
+        // e.g. ON DUPLICATE KEY UPDATE, RETURNING
+        return null;
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '?') {
+        if (rowStart < 0) {
+          return null;
+        }
+        placeholders++;
+      } else if (c == '(') {
+        if (depth == 0 && valuesEnd >= 0) {
+          rowStart = i;
+        }
+        depth++;
+      } else if (c == ')') {
+        depth--;
+        if (depth == 0 && rowStart >= 0) {
+          rowEnd = i;
+        }
+      } else if (depth == 0 && valuesEnd < 0 && isKeyword(insert, i, "values")) {
+        valuesEnd = i + 6;
+        i = valuesEnd - 1;
+      }
+    }
+    if (rowEnd < 0 || quote != 0 || depth != 0) {
+      return null;
+    }
+    return new MultiRowInsert(insert.substring(0, rowStart), insert.substring(rowStart, rowEnd + 1), placeholders);
+  }
+
+  private static boolean isKeyword(String sql, int index, String keyword) {
+    int end = index + keyword.length();
+    return sql.regionMatches(true, index, keyword, 0, keyword.length())
+        && (index == 0 || !Character.isJavaIdentifierPart(sql.charAt(index - 1)))
+        && (end == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(end)));
+  }
+
+  int getParameterCount() {
+    return parameterCount;
+  }
+
+  String getSql(int rows) {
+    StringBuilder sql = new StringBuilder(prefix.length() + rows * (row.length() + 2));
+    sql.append(prefix).append(row);
+    for (int i = 1; i < rows; i++) {
+      sql.append(", ").append(row);
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Records the parameters of one row, as set by the handler, so that they can be set later on a multi-row statement.
+   * Parameter objects may change or load lazy properties once the update is queued, so values are taken right away.
+   */
+  static Row bindRow(ParameterHandler parameterHandler, Connection connection) throws SQLException {
+    final Row row = new Row();
+    InvocationHandler recorder = (proxy, method, args) -> {
+      if (Object.class.equals(method.getDeclaringClass())) {
+        return method.invoke(row, args);
+      } else if (isParameterSetter(method)) {
+        row.setters.add(method);
+        row.args.add(args);
+        return null;
+      } else if ("getConnection".equals(method.getName()) && method.getParameterCount() == 0) {
+        // e.g. arrays are created from the connection
+        return connection;
+      }
+      throw new SQLFeatureNotSupportedException("Method " + method.getName() + " is not supported while binding a multi-row insert.");
+    };
+    parameterHandler.setParameters((PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        new Class<?>[] {PreparedStatement.class}, recorder));
+    return row;
+  }
+
+  private static boolean isParameterSetter(Method method) {
+    return PreparedStatement.class.equals(method.getDeclaringClass()) && method.getName().startsWith("set");
+  }
+
+  static final class Row {
+
+    private final List<Method> setters = new ArrayList<>();
+    private final List<Object[]> args = new ArrayList<>();
+
+    private Row() {
+    }
+
+    /**
+     * Sets the recorded parameters on the statement, {@code offset} positions after their original indexes.
+     */
+    void setParameters(PreparedStatement statement, int offset) throws SQLException {
+      for (int i = 0, n = setters.size(); i < n; i++) {
+        Object[] shifted = args.get(i).clone();
+        shifted[0] = (Integer) shifted[0] + offset;
+        try {
+          setters.get(i).invoke(statement, shifted);
+        } catch (ReflectiveOperationException e) {
+          Throwable cause = ExceptionUtil.unwrapThrowable(e);
+          if (cause instanceof SQLException) {
+            throw (SQLException) cause;
+          }
+          throw new ExecutorException("Error setting parameters of a multi-row insert. Cause: " + cause, cause);
+        }
+      }
+    }
+  }
+
+}
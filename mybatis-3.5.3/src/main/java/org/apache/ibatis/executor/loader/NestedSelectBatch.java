@@ -0,0 +1,286 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Loads the results of the {@link ResultLoader}s of one nested select with one query, instead of one query per
+ * loader.
+ * <p>
+ * The nested select has to compare one column with its only parameter, like
+ * {@code select * from post where blog_id = ? order by id}. The batch rewrites the comparison to
+ * {@code blog_id in (?, ?, ...)} with the distinct parameters of up to {@code batchSize} loaders, and gives every loader
+ * the rows whose property mapped from that column equals its parameter. Statements that could return other rows for a
+ * batch than for its loaders one by one (joins, subqueries, {@code or}, limits, grouping ...) are not batched. When a
+ * row of a batch does not belong to any of its loaders, for instance because the column is not selected, its loaders
+ * query one by one.
+ * <p>
+ * Nothing is batched with plugins of the {@link Executor} or the {@link ParameterHandler}: the batch queries with a
+ * parameter and a {@link BoundSql} of its own, that a plugin calling {@link MappedStatement#getBoundSql(Object)} with
+ * that parameter would not get.
+ *
+ * @since 3.5.3
+ */
+public class NestedSelectBatch {
+
+  private static final Log log = LogFactory.getLog(NestedSelectBatch.class);
+
+  private static final Pattern KEY_COMPARISON = Pattern.compile("([\\w$.\"`\\[\\]]+)\\s*=\\s*\\?");
+  private static final Pattern WHERE = Pattern.compile("(?i)\\bwhere\\b");
+  private static final Pattern SELECT = Pattern.compile("(?i)\\bselect\\b");
+  private static final Pattern NOT_BATCHABLE = Pattern.compile(
+      "(?i)\\b(or|join|limit|offset|fetch|top|rownum|group|having|union|intersect|except|minus|for)\\b");
+  private static final Pattern FROM = Pattern.compile("(?i)\\bfrom\\b");
+  private static final String KEY_PARAMETER = "__nestedSelectBatch_";
+
+  private final Configuration configuration;
+  private final String sqlPrefix;
+  private final String sqlSuffix;
+  private final ParameterMapping keyMapping;
+  private final String keyProperty;
+  private final int batchSize;
+
+  // 等待加载的加载器及其参数
+  private final Map<ResultLoader, Object> pendingLoaders = new LinkedHashMap<>();
+  // 已随其他加载器查出的结果
+  private final Map<ResultLoader, List<Object>> loadedResults = new IdentityHashMap<>();
+
+  private NestedSelectBatch(Configuration configuration, String sqlPrefix, String sqlSuffix, ParameterMapping keyMapping,
+      String keyProperty, int batchSize) {
+    this.configuration = configuration;
+    this.sqlPrefix = sqlPrefix;
+    this.sqlSuffix = sqlSuffix;
+    this.keyMapping = keyMapping;
+    this.keyProperty = keyProperty;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Creates a batch for the loaders of a nested select.
+   *
+   * @param configuration the configuration
+   * @param nestedQuery the nested select
+   * @param boundSql the sql of the nested select, the loaders added to the batch must have the same sql
+   * @param batchSize the maximum number of parameters of a query
+   * @return the batch, or {@code null} when the nested select cannot be batched
+   */
+  public static NestedSelectBatch create(Configuration configuration, MappedStatement nestedQuery, BoundSql boundSql, int batchSize) {
+    if (batchSize < 2 || hasParameterDependentPlugins(configuration) || nestedQuery.getSqlCommandType() != SqlCommandType.SELECT
+        || nestedQuery.getStatementType() != StatementType.PREPARED || nestedQuery.getResultSets() != null
+        || nestedQuery.getResultMaps().size() != 1 || nestedQuery.getResultMaps().get(0).hasNestedResultMaps()
+        || boundSql.getParameterMappings().size() != 1) {
+      return null;
+    }
+    final String sql = boundSql.getSql();
+    final Matcher matcher = KEY_COMPARISON.matcher(sql);
+    if (sql.indexOf('?') != sql.lastIndexOf('?') || !matcher.find() || NOT_BATCHABLE.matcher(sql).find()
+        || count(SELECT.matcher(sql)) != 1 || !isSingleTable(sql.substring(0, matcher.start()))) {
+      return null;
+    }
+    final String keyProperty = findKeyProperty(configuration, nestedQuery.getResultMaps().get(0), matcher.group(1));
+    if (keyProperty == null) {
+      return null;
+    }
+    return new NestedSelectBatch(configuration, sql.substring(0, matcher.start()) + matcher.group(1) + " IN (",
+        ")" + sql.substring(matcher.end()), boundSql.getParameterMappings().get(0), keyProperty, batchSize);
+  }
+
+  private static boolean hasParameterDependentPlugins(Configuration configuration) {
+    for (Interceptor interceptor : configuration.getInterceptors()) {
+      final Intercepts intercepts = interceptor.getClass().getAnnotation(Intercepts.class);
+      if (intercepts == null) {
+        // 自行包装目标对象, 无法判断
+        return true;
+      }
+      for (Signature signature : intercepts.value()) {
+        if (Executor.class.equals(signature.type()) || ParameterHandler.class.equals(signature.type())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // 比较之前必须是 from 单表 where
+  private static boolean isSingleTable(String sql) {
+    final Matcher from = FROM.matcher(sql);
+    final Matcher where = WHERE.matcher(sql);
+    return from.find() && where.find(from.end()) && sql.substring(from.end(), where.start()).indexOf(',') < 0;
+  }
+
+  private static int count(Matcher matcher) {
+    int count = 0;
+    while (matcher.find()) {
+      count++;
+    }
+    return count;
+  }
+
+  private static String findKeyProperty(Configuration configuration, ResultMap resultMap, String keyColumn) {
+    String column = keyColumn.substring(keyColumn.lastIndexOf('.') + 1);
+    column = column.replaceAll("[\"`\\[\\]]", "");
+    final MetaClass metaClass = MetaClass.forClass(resultMap.getType(), configuration.getReflectorFactory());
+    for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
+      if (column.equalsIgnoreCase(resultMapping.getColumn()) && resultMapping.getProperty() != null
+          && resultMapping.getNestedQueryId() == null && resultMapping.getNestedResultMapId() == null) {
+        return metaClass.hasGetter(resultMapping.getProperty()) ? resultMapping.getProperty() : null;
+      }
+    }
+    final boolean autoMapping = resultMap.getAutoMapping() != null ? resultMap.getAutoMapping()
+        : configuration.getAutoMappingBehavior() != AutoMappingBehavior.NONE;
+    if (!autoMapping) {
+      return null;
+    }
+    final String property = metaClass.findProperty(column, configuration.isMapUnderscoreToCamelCase());
+    return property != null && metaClass.hasGetter(property) ? property : null;
+  }
+
+  /**
+   * Adds a loader of the nested select, {@link ResultLoader#loadResult()} then loads it with the others.
+   *
+   * @param resultLoader the loader
+   */
+  public synchronized void add(ResultLoader resultLoader) {
+    final Object key = DefaultParameterHandler.getParameterValue(configuration, resultLoader.boundSql,
+        resultLoader.parameterObject, resultLoader.boundSql.getParameterMappings().get(0));
+    if (key != null) {
+      pendingLoaders.put(resultLoader, key);
+      resultLoader.batch = this;
+    }
+  }
+
+  /**
+   * Returns the rows of a loader, running the query of its batch if they were not loaded yet.
+   *
+   * @param resultLoader the loader
+   * @return the rows, or {@code null} when the loader has to run its own query
+   */
+  synchronized List<Object> load(ResultLoader resultLoader) throws SQLException {
+    final List<Object> results = loadedResults.remove(resultLoader);
+    if (results != null || !pendingLoaders.containsKey(resultLoader)) {
+      return results;
+    }
+    // 当前加载器优先，其余按添加顺序补足
+    final Map<ResultLoader, Object> loaders = new LinkedHashMap<>();
+    final Set<Object> keys = new LinkedHashSet<>();
+    loaders.put(resultLoader, pendingLoaders.remove(resultLoader));
+    keys.add(normalize(loaders.get(resultLoader)));
+    for (Iterator<Map.Entry<ResultLoader, Object>> iterator = pendingLoaders.entrySet().iterator(); iterator.hasNext();) {
+      final Map.Entry<ResultLoader, Object> entry = iterator.next();
+      if (keys.size() == batchSize && !keys.contains(normalize(entry.getValue()))) {
+        break;
+      }
+      keys.add(normalize(entry.getValue()));
+      loaders.put(entry.getKey(), entry.getValue());
+      iterator.remove();
+    }
+    if (loaders.size() == 1) {
+      return null;
+    }
+    final Map<Object, List<Object>> rows = query(resultLoader, loaders.values());
+    if (rows == null) {
+      return null;
+    }
+    for (Map.Entry<ResultLoader, Object> entry : loaders.entrySet()) {
+      final List<Object> loaderRows = rows.get(normalize(entry.getValue()));
+      loadedResults.put(entry.getKey(), loaderRows == null ? new ArrayList<>() : new ArrayList<>(loaderRows));
+    }
+    return loadedResults.remove(resultLoader);
+  }
+
+  private Map<Object, List<Object>> query(ResultLoader resultLoader, Iterable<Object> parameters) throws SQLException {
+    final Map<Object, Object> distinctParameters = new LinkedHashMap<>();
+    for (Object parameter : parameters) {
+      distinctParameters.putIfAbsent(normalize(parameter), parameter);
+    }
+    final StringBuilder sql = new StringBuilder(sqlPrefix);
+    final List<ParameterMapping> parameterMappings = new ArrayList<>(distinctParameters.size());
+    final Map<String, Object> additionalParameters = new HashMap<>();
+    for (Object parameter : distinctParameters.values()) {
+      final String property = KEY_PARAMETER + parameterMappings.size();
+      sql.append(parameterMappings.isEmpty() ? "?" : ", ?");
+      parameterMappings.add(new ParameterMapping.Builder(configuration, property, keyMapping.getTypeHandler())
+          .javaType(keyMapping.getJavaType()).jdbcType(keyMapping.getJdbcType()).numericScale(keyMapping.getNumericScale())
+          .build());
+      additionalParameters.put(property, parameter);
+    }
+    sql.append(sqlSuffix);
+    final BoundSql boundSql = new BoundSql(configuration, sql.toString(), parameterMappings, additionalParameters);
+    additionalParameters.forEach(boundSql::setAdditionalParameter);
+    final List<Object> results = resultLoader.selectList(additionalParameters, null, boundSql);
+    // 按子对象的属性值分组，值不属于任何加载器时退回逐个查询
+    final Map<Object, List<Object>> rows = new HashMap<>();
+    for (Object result : results) {
+      final Object key = result == null ? null : normalize(configuration.newMetaObject(result).getValue(keyProperty));
+      if (key == null || !distinctParameters.containsKey(key)) {
+        if (log.isDebugEnabled()) {
+          log.debug("The rows of " + resultLoader.mappedStatement.getId() + " could not be matched with their parameters by the property '"
+              + keyProperty + "', its loaders query one by one.");
+        }
+        return null;
+      }
+      rows.computeIfAbsent(key, k -> new ArrayList<>()).add(result);
+    }
+    return rows;
+  }
+
+  // 父对象的列值和子对象的属性可能是不同的数字类型
+  static Object normalize(Object value) {
+    if ((value instanceof Double || value instanceof Float)
+        && (Double.isNaN(((Number) value).doubleValue()) || Double.isInfinite(((Number) value).doubleValue()))) {
+      // BigDecimal 不能表示 NaN 和无穷大
+      return ((Number) value).doubleValue();
+    } else if (value instanceof Number && !(value instanceof BigDecimal)) {
+      return new BigDecimal(value.toString()).stripTrailingZeros();
+    } else if (value instanceof BigDecimal) {
+      return ((BigDecimal) value).stripTrailingZeros();
+    }
+    return value;
+  }
+
+}
@@ -52,6 +52,8 @@ public class ResultLoader {
 
   protected boolean loaded;
   protected Object resultObject;
+  // 所属的嵌套查询批量加载
+  NestedSelectBatch batch;
 
   public ResultLoader(Configuration config, Executor executor, MappedStatement mappedStatement, Object parameterObject, Class<?> targetType, CacheKey cacheKey, BoundSql boundSql) {
     this.configuration = config;
@@ -67,18 +69,30 @@ public class ResultLoader {
   }
 
   public Object loadResult() throws SQLException {
-    List<Object> list = selectList();
+    List<Object> list = batch == null ? null : batch.load(this);
+    if (list == null) {
+      list = selectList();
+    }
     resultObject = resultExtractor.extractObjectFromList(list, targetType);
     return resultObject;
   }
 
   private <E> List<E> selectList() throws SQLException {
+    return selectList(parameterObject, cacheKey, boundSql);
+  }
+
+  /**
+   * 用本加载器的执行器执行语句，只有 boundSql 时由执行器创建 cacheKey（反序列化后的加载器两者都为 null）
+   */
+  <E> List<E> selectList(Object parameterObject, CacheKey cacheKey, BoundSql boundSql) throws SQLException {
     Executor localExecutor = executor;
     if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
       localExecutor = newExecutor();
     }
     try {
-      return localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
+      final CacheKey key = cacheKey == null && boundSql != null
+          ? localExecutor.createCacheKey(mappedStatement, parameterObject, RowBounds.DEFAULT, boundSql) : cacheKey;
+      return localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, key, boundSql);
     } finally {
       if (localExecutor != executor) {
         localExecutor.close(false);
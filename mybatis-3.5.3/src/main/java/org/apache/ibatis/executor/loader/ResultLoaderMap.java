@@ -48,6 +48,17 @@ import org.apache.ibatis.session.RowBounds;
 public class ResultLoaderMap {
 
   private final Map<String, LoadPair> loaderMap = new HashMap<>();
+  private Listener listener;
+
+  /**
+   * 设置新增加载器时的回调，生成子类的延迟加载对象借此维护属性级的加载标记
+   *
+   * @param listener the listener, or {@code null} to remove it
+   * @since 3.5.3
+   */
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
 
   public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader) {
     String upperFirst = getUppercaseFirstProperty(property);
@@ -57,6 +68,9 @@ public class ResultLoaderMap {
               + " already exists in the result map. The leftmost property of all lazy loaded properties must be unique within a result map.");
     }
     loaderMap.put(upperFirst, new LoadPair(property, metaResultObject, resultLoader));
+    if (listener != null) {
+      listener.loaderAdded(upperFirst);
+    }
   }
 
   public final Map<String, LoadPair> getProperties() {
@@ -101,6 +115,22 @@ public class ResultLoaderMap {
     return parts[0].toUpperCase(Locale.ENGLISH);
   }
 
+  /**
+   * Callback notified when a property to load is added.
+   *
+   * @since 3.5.3
+   */
+  public interface Listener {
+
+    /**
+     * Called after a loader was added.
+     *
+     * @param property the upper case leftmost name of the property, the key of {@link #getProperties()}
+     */
+    void loaderAdded(String property);
+
+  }
+
   /**
    * Property which was not loaded yet.
    */
@@ -0,0 +1,427 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader.javassist;
+
+import java.io.ObjectStreamException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.LoaderClassPath;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.ResultLoaderMap;
+import org.apache.ibatis.executor.loader.WriteReplaceInterface;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.property.PropertyCopier;
+import org.apache.ibatis.reflection.property.PropertyNamer;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Creates lazy loading objects as instances of one generated subclass per result type, instead of one javassist proxy
+ * and method handler per object.
+ * <p>
+ * The generated subclass keeps a flag per property in a {@code long} of the object itself. A getter checks the flag of
+ * its property and calls the super method directly once the property is loaded, a setter clears the flag of its
+ * property, and the methods of {@link Configuration#getLazyLoadTriggerMethods()} (every method when
+ * {@link Configuration#isAggressiveLazyLoading()}) load all the properties. Only the loads themselves synchronize on
+ * the {@link ResultLoaderMap}, like every call does with the {@link JavassistProxyFactory proxies}.
+ * <p>
+ * The types that cannot be subclassed (final classes, more than 63 properties, a class loader not seeing MyBatis ...)
+ * get the proxies of {@link JavassistProxyFactory}. A serialized object with unloaded properties is deserialized as such
+ * a proxy too.
+ *
+ * @since 3.5.3
+ */
+public class JavassistSubclassProxyFactory extends JavassistProxyFactory {
+
+  private static final Log log = LogFactory.getLog(JavassistSubclassProxyFactory.class);
+
+  private static final String FINALIZE_METHOD = "finalize";
+  private static final String WRITE_REPLACE_METHOD = "writeReplace";
+  private static final int MAX_PROPERTIES = 63;
+  // 没有对应 getter/setter 的属性共用最高位，只能被 loadAll 加载
+  private static final long OTHER_PROPERTIES = 1L << MAX_PROPERTIES;
+
+  private static final AtomicInteger classCounter = new AtomicInteger();
+
+  private final Map<Class<?>, Optional<LazyType>> lazyTypes = new ConcurrentHashMap<>();
+
+  @Override
+  public Object createProxy(Object target, ResultLoaderMap lazyLoader, Configuration configuration, ObjectFactory objectFactory, List<Class<?>> constructorArgTypes, List<Object> constructorArgs) {
+    final LazyType lazyType = getLazyType(target.getClass(), configuration, objectFactory);
+    if (lazyType == null) {
+      return super.createProxy(target, lazyLoader, configuration, objectFactory, constructorArgTypes, constructorArgs);
+    }
+    return lazyType.newInstance(target, lazyLoader, constructorArgTypes, constructorArgs);
+  }
+
+  private LazyType getLazyType(Class<?> type, Configuration configuration, ObjectFactory objectFactory) {
+    final boolean aggressive = configuration.isAggressiveLazyLoading();
+    final Set<String> lazyLoadTriggerMethods = configuration.getLazyLoadTriggerMethods();
+    Optional<LazyType> lazyType = lazyTypes.get(type);
+    // 配置变化后重新生成子类
+    if (lazyType == null || lazyType.isPresent() && !lazyType.get().matches(aggressive, lazyLoadTriggerMethods, objectFactory)) {
+      lazyType = Optional.ofNullable(generate(type, aggressive, new HashSet<>(lazyLoadTriggerMethods), objectFactory));
+      lazyTypes.put(type, lazyType);
+    }
+    return lazyType.orElse(null);
+  }
+
+  private static LazyType generate(Class<?> type, boolean aggressive, Set<String> lazyLoadTriggerMethods, ObjectFactory objectFactory) {
+    if (Modifier.isFinal(type.getModifiers()) || !isVisible(type.getClassLoader())) {
+      return null;
+    }
+    final Map<String, Integer> indexes = new HashMap<>();
+    final Map<Method, String> bodies = new LinkedHashMap<>();
+    for (Method method : getOverridableMethods(type)) {
+      final String name = method.getName();
+      final String superCall = (method.getReturnType() == void.class ? "" : "return ") + "super." + name + "($$);";
+      if (aggressive || lazyLoadTriggerMethods.contains(name)) {
+        bodies.put(method, "{ if (lazyMask$ != 0L) { lazyType$.loadAll(this); } " + superCall + " }");
+      } else if (PropertyNamer.isSetter(name) || PropertyNamer.isGetter(name)) {
+        final String property = PropertyNamer.methodToProperty(name).toUpperCase(Locale.ENGLISH);
+        final int index = indexes.computeIfAbsent(property, k -> indexes.size());
+        if (index >= MAX_PROPERTIES) {
+          if (log.isDebugEnabled()) {
+            log.debug(type.getName() + " has more than " + MAX_PROPERTIES + " properties, it gets lazy loading proxies.");
+          }
+          return null;
+        }
+        final String call = PropertyNamer.isSetter(name) ? "remove" : "load";
+        bodies.put(method, "{ if ((lazyMask$ & " + (1L << index) + "L) != 0L) { lazyType$." + call + "(this, " + index + "); } "
+            + superCall + " }");
+      }
+    }
+    try {
+      final String[] properties = new String[indexes.size()];
+      indexes.forEach((property, index) -> properties[index] = property);
+      final Class<?> enhancedClass = generate(type, bodies);
+      final LazyType lazyType = new LazyType(type, enhancedClass, aggressive, lazyLoadTriggerMethods, objectFactory, indexes, properties);
+      final Field lazyTypeField = enhancedClass.getDeclaredField("lazyType$");
+      lazyTypeField.setAccessible(true);
+      lazyTypeField.set(null, lazyType);
+      return lazyType;
+    } catch (Exception | LinkageError e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Could not generate a lazy loading subclass of " + type.getName() + ", it gets lazy loading proxies. Cause: " + e);
+      }
+      return null;
+    }
+  }
+
+  private static boolean isVisible(ClassLoader classLoader) {
+    try {
+      return classLoader != null
+          && Class.forName(JavassistSubclassProxyFactory.class.getName(), false, classLoader) == JavassistSubclassProxyFactory.class;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static List<Method> getOverridableMethods(Class<?> type) {
+    final Map<String, Method> methods = new LinkedHashMap<>();
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      for (Method method : current.getDeclaredMethods()) {
+        final int modifiers = method.getModifiers();
+        if (method.isBridge() || Modifier.isStatic(modifiers)) {
+          continue;
+        }
+        final StringBuilder key = new StringBuilder(method.getName());
+        for (Class<?> parameterType : method.getParameterTypes()) {
+          key.append(',').append(parameterType.getName());
+        }
+        // 子类的方法覆盖父类的同签名方法，即使它不能被覆盖
+        methods.putIfAbsent(key.toString(), method);
+      }
+    }
+    final List<Method> overridable = new ArrayList<>();
+    for (Method method : methods.values()) {
+      final int modifiers = method.getModifiers();
+      final boolean noParameters = method.getParameterCount() == 0;
+      if (Modifier.isFinal(modifiers) || Modifier.isPrivate(modifiers)
+          || !Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers) && !isSamePackage(type, method.getDeclaringClass())
+          || noParameters && (FINALIZE_METHOD.equals(method.getName()) || WRITE_REPLACE_METHOD.equals(method.getName()))) {
+        continue;
+      }
+      overridable.add(method);
+    }
+    return overridable;
+  }
+
+  private static boolean isSamePackage(Class<?> type, Class<?> other) {
+    return type.getClassLoader() == other.getClassLoader()
+        && type.getName().substring(0, Math.max(0, type.getName().lastIndexOf('.')))
+            .equals(other.getName().substring(0, Math.max(0, other.getName().lastIndexOf('.'))));
+  }
+
+  private static Class<?> generate(Class<?> type, Map<Method, String> bodies) throws Exception {
+    final ClassPool pool = new ClassPool(true);
+    pool.appendClassPath(new LoaderClassPath(type.getClassLoader()));
+    pool.appendClassPath(new ClassClassPath(JavassistSubclassProxyFactory.class));
+    final CtClass ctClass = pool.makeClass(type.getName() + "$$MyBatisLazy$" + classCounter.incrementAndGet(), pool.get(type.getName()));
+    try {
+      ctClass.addInterface(pool.get(LazyObject.class.getName()));
+      try {
+        type.getDeclaredMethod(WRITE_REPLACE_METHOD);
+        // ObjectOutputStream will call writeReplace of objects returned by writeReplace
+        if (log.isDebugEnabled()) {
+          log.debug(WRITE_REPLACE_METHOD + " method was found on bean " + type + ", make sure it returns this");
+        }
+      } catch (NoSuchMethodException e) {
+        ctClass.addInterface(pool.get(WriteReplaceInterface.class.getName()));
+      }
+      final String lazyTypeName = LazyType.class.getName();
+      final String lazyLoaderName = ResultLoaderMap.class.getName();
+      ctClass.addField(CtField.make("private static " + lazyTypeName + " lazyType$;", ctClass));
+      ctClass.addField(CtField.make("private volatile long lazyMask$;", ctClass));
+      ctClass.addField(CtField.make("private " + lazyLoaderName + " lazyLoader$;", ctClass));
+      ctClass.addField(CtField.make("private java.util.List lazyArgTypes$;", ctClass));
+      ctClass.addField(CtField.make("private java.util.List lazyArgs$;", ctClass));
+
+      for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+        if (!Modifier.isPrivate(constructor.getModifiers())) {
+          ctClass.addConstructor(CtNewConstructor.make(ctClasses(pool, constructor.getParameterTypes()),
+              ctClasses(pool, constructor.getExceptionTypes()), "{ super($$); }", ctClass));
+        }
+      }
+      for (Map.Entry<Method, String> entry : bodies.entrySet()) {
+        final Method method = entry.getKey();
+        final CtMethod ctMethod = new CtMethod(pool.get(typeName(method.getReturnType())), method.getName(),
+            ctClasses(pool, method.getParameterTypes()), ctClass);
+        ctMethod.setModifiers(method.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED));
+        ctMethod.setExceptionTypes(ctClasses(pool, method.getExceptionTypes()));
+        ctMethod.setBody(entry.getValue());
+        ctClass.addMethod(ctMethod);
+      }
+
+      ctClass.addMethod(CtMethod.make("public Object writeReplace() throws java.io.ObjectStreamException {"
+          + " return lazyType$.writeReplace(this); }", ctClass));
+      ctClass.addMethod(CtMethod.make("public void loaderAdded(String property) { lazyType$.loaderAdded(this, property); }", ctClass));
+      ctClass.addMethod(CtMethod.make("public void lazyInit$(" + lazyLoaderName + " lazyLoader, java.util.List argTypes, java.util.List args) {"
+          + " lazyLoader$ = lazyLoader; lazyArgTypes$ = argTypes; lazyArgs$ = args; }", ctClass));
+      ctClass.addMethod(CtMethod.make("public " + lazyLoaderName + " lazyLoader$() { return lazyLoader$; }", ctClass));
+      ctClass.addMethod(CtMethod.make("public long lazyMask$() { return lazyMask$; }", ctClass));
+      ctClass.addMethod(CtMethod.make("public void lazyMask$(long mask) { lazyMask$ = mask; }", ctClass));
+      ctClass.addMethod(CtMethod.make("public java.util.List lazyArgTypes$() { return lazyArgTypes$; }", ctClass));
+      ctClass.addMethod(CtMethod.make("public java.util.List lazyArgs$() { return lazyArgs$; }", ctClass));
+      return ctClass.toClass(type.getClassLoader(), type.getProtectionDomain());
+    } finally {
+      ctClass.detach();
+    }
+  }
+
+  private static CtClass[] ctClasses(ClassPool pool, Class<?>[] types) throws Exception {
+    final CtClass[] ctClasses = new CtClass[types.length];
+    for (int i = 0; i < types.length; i++) {
+      ctClasses[i] = pool.get(typeName(types[i]));
+    }
+    return ctClasses;
+  }
+
+  private static String typeName(Class<?> type) {
+    return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+  }
+
+  /**
+   * Implemented by the generated subclasses.
+   */
+  public interface LazyObject extends ResultLoaderMap.Listener {
+
+    void lazyInit$(ResultLoaderMap lazyLoader, List<Class<?>> constructorArgTypes, List<Object> constructorArgs);
+
+    ResultLoaderMap lazyLoader$();
+
+    long lazyMask$();
+
+    void lazyMask$(long mask);
+
+    List<Class<?>> lazyArgTypes$();
+
+    List<Object> lazyArgs$();
+
+  }
+
+  /**
+   * The state shared by the objects of a generated subclass, and the slow paths of its methods.
+   */
+  public static final class LazyType {
+
+    private final Class<?> type;
+    private final Class<?> enhancedClass;
+    private final Constructor<?> defaultConstructor;
+    private final boolean aggressive;
+    private final Set<String> lazyLoadTriggerMethods;
+    private final ObjectFactory objectFactory;
+    // key: 大写的属性名，value: 标记位
+    private final Map<String, Integer> indexes;
+    private final String[] properties;
+
+    private LazyType(Class<?> type, Class<?> enhancedClass, boolean aggressive, Set<String> lazyLoadTriggerMethods,
+        ObjectFactory objectFactory, Map<String, Integer> indexes, String[] properties) {
+      this.type = type;
+      this.enhancedClass = enhancedClass;
+      this.defaultConstructor = getDefaultConstructor(enhancedClass);
+      this.aggressive = aggressive;
+      this.lazyLoadTriggerMethods = lazyLoadTriggerMethods;
+      this.objectFactory = objectFactory;
+      this.indexes = indexes;
+      this.properties = properties;
+    }
+
+    private static Constructor<?> getDefaultConstructor(Class<?> enhancedClass) {
+      try {
+        return enhancedClass.getConstructor();
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
+    }
+
+    private boolean matches(boolean aggressive, Set<String> lazyLoadTriggerMethods, ObjectFactory objectFactory) {
+      return this.aggressive == aggressive && this.objectFactory == objectFactory
+          && this.lazyLoadTriggerMethods.equals(lazyLoadTriggerMethods);
+    }
+
+    private Object newInstance(Object target, ResultLoaderMap lazyLoader, List<Class<?>> constructorArgTypes, List<Object> constructorArgs) {
+      final Object enhanced;
+      try {
+        if (constructorArgTypes.isEmpty() && defaultConstructor != null) {
+          enhanced = defaultConstructor.newInstance();
+        } else {
+          enhanced = enhancedClass.getConstructor(constructorArgTypes.toArray(new Class[constructorArgTypes.size()]))
+              .newInstance(constructorArgs.toArray(new Object[constructorArgs.size()]));
+        }
+      } catch (Exception e) {
+        throw new ExecutorException("Error creating lazy proxy.  Cause: " + ExceptionUtil.unwrapThrowable(e), e);
+      }
+      PropertyCopier.copyBeanProperties(type, target, enhanced);
+      final LazyObject lazyObject = (LazyObject) enhanced;
+      // 构造参数只在序列化时使用，为空时不保存
+      lazyObject.lazyInit$(lazyLoader, constructorArgTypes.isEmpty() ? null : constructorArgTypes,
+          constructorArgs.isEmpty() ? null : constructorArgs);
+      synchronized (lazyLoader) {
+        long mask = 0;
+        for (String property : lazyLoader.getPropertyNames()) {
+          mask |= bit(property);
+        }
+        lazyObject.lazyMask$(mask);
+        lazyLoader.setListener(lazyObject);
+      }
+      return enhanced;
+    }
+
+    private long bit(String property) {
+      final Integer index = indexes.get(property);
+      return index == null ? OTHER_PROPERTIES : 1L << index;
+    }
+
+    public void loaderAdded(LazyObject enhanced, String property) {
+      synchronized (enhanced.lazyLoader$()) {
+        enhanced.lazyMask$(enhanced.lazyMask$() | bit(property));
+      }
+    }
+
+    /**
+     * Loads a property before its getter runs.
+     */
+    public void load(LazyObject enhanced, int index) throws SQLException {
+      final ResultLoaderMap lazyLoader = enhanced.lazyLoader$();
+      synchronized (lazyLoader) {
+        final long bit = 1L << index;
+        // 加载器已被移除说明正在加载（如嵌套属性加载时调用 getter），由外层清除标记
+        if ((enhanced.lazyMask$() & bit) != 0 && lazyLoader.getPropertyNames().contains(properties[index])) {
+          try {
+            lazyLoader.load(properties[index]);
+          } finally {
+            enhanced.lazyMask$(enhanced.lazyMask$() & ~bit);
+          }
+        }
+      }
+    }
+
+    /**
+     * Drops the loader of a property before its setter runs.
+     */
+    public void remove(LazyObject enhanced, int index) {
+      final ResultLoaderMap lazyLoader = enhanced.lazyLoader$();
+      synchronized (lazyLoader) {
+        final long bit = 1L << index;
+        if ((enhanced.lazyMask$() & bit) != 0 && lazyLoader.getPropertyNames().contains(properties[index])) {
+          lazyLoader.remove(properties[index]);
+          enhanced.lazyMask$(enhanced.lazyMask$() & ~bit);
+        }
+      }
+    }
+
+    public void loadAll(LazyObject enhanced) throws SQLException {
+      final ResultLoaderMap lazyLoader = enhanced.lazyLoader$();
+      synchronized (lazyLoader) {
+        if (enhanced.lazyMask$() != 0) {
+          try {
+            lazyLoader.loadAll();
+          } finally {
+            enhanced.lazyMask$(0);
+          }
+        }
+      }
+    }
+
+    public Object writeReplace(LazyObject enhanced) throws ObjectStreamException {
+      final ResultLoaderMap lazyLoader = enhanced.lazyLoader$();
+      synchronized (lazyLoader) {
+        final List<Class<?>> constructorArgTypes = enhanced.lazyArgTypes$();
+        final List<Object> constructorArgs = enhanced.lazyArgs$();
+        final Object original;
+        if (constructorArgTypes == null) {
+          original = objectFactory.create(type);
+        } else {
+          original = objectFactory.create(type, constructorArgTypes, constructorArgs);
+        }
+        PropertyCopier.copyBeanProperties(type, enhanced, original);
+        if (lazyLoader.size() > 0) {
+          return new JavassistSerialStateHolder(original, lazyLoader.getProperties(), objectFactory,
+              constructorArgTypes == null ? new ArrayList<>() : constructorArgTypes,
+              constructorArgs == null ? new ArrayList<>() : constructorArgs);
+        } else {
+          return original;
+        }
+      }
+    }
+  }
+
+}
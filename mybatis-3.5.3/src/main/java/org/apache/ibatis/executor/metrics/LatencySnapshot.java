@@ -0,0 +1,79 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+/**
+ * The latencies recorded by a {@link LatencyHistogram}, in nanoseconds. The percentiles are the highest value of their
+ * bucket, capped by the maximum.
+ *
+ * @since 3.5.3
+ */
+public class LatencySnapshot {
+
+  private final long count;
+  private final long mean;
+  private final long max;
+  private final long median;
+  private final long percentile90;
+  private final long percentile99;
+  private final long percentile999;
+
+  public LatencySnapshot(long count, long mean, long max, long median, long percentile90, long percentile99,
+      long percentile999) {
+    this.count = count;
+    this.mean = mean;
+    this.max = max;
+    this.median = median;
+    this.percentile90 = percentile90;
+    this.percentile99 = percentile99;
+    this.percentile999 = percentile999;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMean() {
+    return mean;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public long getMedian() {
+    return median;
+  }
+
+  public long getPercentile90() {
+    return percentile90;
+  }
+
+  public long getPercentile99() {
+    return percentile99;
+  }
+
+  public long getPercentile999() {
+    return percentile999;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + count + ", mean=" + mean + ", max=" + max + ", p50=" + median + ", p90=" + percentile90
+        + ", p99=" + percentile99 + ", p99.9=" + percentile999;
+  }
+
+}
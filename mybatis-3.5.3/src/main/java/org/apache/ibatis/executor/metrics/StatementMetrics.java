@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * Receives the execution events of the mapped statements, see
+ * {@link org.apache.ibatis.session.Configuration#setStatementMetrics(StatementMetrics)}. The events are sent by the
+ * executing thread, so implementations must be thread safe and should return quickly.
+ * <p>
+ * Without metrics, the executors and handlers do not even read the clock.
+ *
+ * @since 3.5.3
+ * @see StatementMetricsRegistry
+ */
+public interface StatementMetrics {
+
+  /**
+   * Called once a query or an update of the executor returns.
+   *
+   * @param ms the statement
+   * @param nanos the time spent in the executor, local cache lookup and nested queries included
+   * @param rows the number of results of a query, or the update count of an update (negative when unknown, as in a
+   *          batch)
+   */
+  void statementCompleted(MappedStatement ms, long nanos, int rows);
+
+  /**
+   * Called once a query or an update of the executor throws an exception.
+   */
+  void statementFailed(MappedStatement ms, long nanos);
+
+  /**
+   * Called once a phase of the execution of a statement against the database completes.
+   */
+  void phaseCompleted(MappedStatement ms, Phase phase, long nanos);
+
+  /**
+   * Called when a query looks its results up in the local (session) cache or in the second level cache.
+   */
+  void cacheAccessed(MappedStatement ms, CacheLevel level, boolean hit);
+
+  enum Phase {
+    /**
+     * Creating the JDBC statement, and setting its timeout and fetch size.
+     */
+    PREPARE,
+    /**
+     * Executing the JDBC statement.
+     */
+    EXECUTE,
+    /**
+     * Mapping the result sets to objects.
+     */
+    MAP
+  }
+
+  enum CacheLevel {
+    LOCAL, SECOND_LEVEL
+  }
+
+}
@@ -0,0 +1,147 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ibatis.mapping.MappedStatement;
+
+/**
+ * Keeps lock-free counters and latency histograms per statement id, readable with {@link #snapshot()} or through JMX
+ * once {@link #registerMBean(String)} is called.
+ *
+ * <pre>
+ * StatementMetricsRegistry metrics = new StatementMetricsRegistry();
+ * configuration.setStatementMetrics(metrics);
+ * metrics.registerMBean("blog");
+ * </pre>
+ *
+ * @since 3.5.3
+ */
+public class StatementMetricsRegistry implements StatementMetrics, StatementMetricsRegistryMXBean {
+
+  private final ConcurrentMap<String, StatementStatistics> statistics = new ConcurrentHashMap<>();
+  private ObjectName objectName;
+
+  @Override
+  public void statementCompleted(MappedStatement ms, long nanos, int rows) {
+    final StatementStatistics stats = statistics(ms);
+    stats.calls.increment();
+    stats.latency.record(nanos);
+    if (rows > 0) {
+      stats.rows.add(rows);
+    }
+  }
+
+  @Override
+  public void statementFailed(MappedStatement ms, long nanos) {
+    final StatementStatistics stats = statistics(ms);
+    stats.calls.increment();
+    stats.failures.increment();
+    stats.latency.record(nanos);
+  }
+
+  @Override
+  public void phaseCompleted(MappedStatement ms, Phase phase, long nanos) {
+    statistics(ms).phaseLatency(phase).record(nanos);
+  }
+
+  @Override
+  public void cacheAccessed(MappedStatement ms, CacheLevel level, boolean hit) {
+    final StatementStatistics stats = statistics(ms);
+    if (level == CacheLevel.LOCAL) {
+      (hit ? stats.localCacheHits : stats.localCacheMisses).increment();
+    } else {
+      (hit ? stats.cacheHits : stats.cacheMisses).increment();
+    }
+  }
+
+  /**
+   * Returns the metrics of the statements run since the creation or the last {@link #reset()}, by statement id.
+   */
+  public Map<String, StatementSnapshot> snapshot() {
+    final Map<String, StatementSnapshot> snapshot = new TreeMap<>();
+    for (StatementStatistics stats : statistics.values()) {
+      final StatementSnapshot statementSnapshot = stats.snapshot();
+      snapshot.put(statementSnapshot.getId(), statementSnapshot);
+    }
+    return Collections.unmodifiableMap(snapshot);
+  }
+
+  /**
+   * Returns the metrics of a statement, or {@code null} if it was not run.
+   */
+  public StatementSnapshot snapshot(String id) {
+    final StatementStatistics stats = statistics.get(id);
+    return stats == null ? null : stats.snapshot();
+  }
+
+  @Override
+  public List<StatementSnapshot> getStatements() {
+    return new ArrayList<>(snapshot().values());
+  }
+
+  @Override
+  public void reset() {
+    for (StatementStatistics stats : statistics.values()) {
+      stats.reset();
+    }
+  }
+
+  /**
+   * Registers this registry in the platform MBean server, as
+   * {@code org.apache.ibatis:type=StatementMetrics,name=<name>}.
+   */
+  public synchronized ObjectName registerMBean(String name) throws JMException {
+    if (objectName != null) {
+      throw new IllegalStateException("The statement metrics are already registered as " + objectName + ".");
+    }
+    final ObjectName newObjectName = new ObjectName("org.apache.ibatis:type=StatementMetrics,name="
+        + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, newObjectName);
+    objectName = newObjectName;
+    return objectName;
+  }
+
+  public synchronized void unregisterMBean() throws JMException {
+    if (objectName != null) {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try {
+        server.unregisterMBean(objectName);
+      } finally {
+        objectName = null;
+      }
+    }
+  }
+
+  private StatementStatistics statistics(MappedStatement ms) {
+    final String id = ms.getId();
+    final StatementStatistics stats = statistics.get(id);
+    return stats != null ? stats : statistics.computeIfAbsent(id, StatementStatistics::new);
+  }
+
+}
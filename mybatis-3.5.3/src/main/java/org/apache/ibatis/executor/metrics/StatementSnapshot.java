@@ -0,0 +1,135 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+/**
+ * The metrics of a statement at the time of the snapshot. The latencies are in nanoseconds.
+ *
+ * @since 3.5.3
+ */
+public class StatementSnapshot {
+
+  private final String id;
+  private final long calls;
+  private final long failures;
+  private final long rows;
+  private final long localCacheHits;
+  private final long localCacheMisses;
+  private final long cacheHits;
+  private final long cacheMisses;
+  private final LatencySnapshot latency;
+  private final LatencySnapshot prepareLatency;
+  private final LatencySnapshot executeLatency;
+  private final LatencySnapshot mapLatency;
+
+  public StatementSnapshot(String id, long calls, long failures, long rows, long localCacheHits,
+      long localCacheMisses, long cacheHits, long cacheMisses, LatencySnapshot latency, LatencySnapshot prepareLatency,
+      LatencySnapshot executeLatency, LatencySnapshot mapLatency) {
+    this.id = id;
+    this.calls = calls;
+    this.failures = failures;
+    this.rows = rows;
+    this.localCacheHits = localCacheHits;
+    this.localCacheMisses = localCacheMisses;
+    this.cacheHits = cacheHits;
+    this.cacheMisses = cacheMisses;
+    this.latency = latency;
+    this.prepareLatency = prepareLatency;
+    this.executeLatency = executeLatency;
+    this.mapLatency = mapLatency;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the number of queries and updates run by the executor, failed ones included. The queries answered by the
+   * second level cache do not reach the executor and are not counted.
+   */
+  public long getCalls() {
+    return calls;
+  }
+
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns the number of results returned by the queries plus the update counts of the updates.
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  public long getLocalCacheHits() {
+    return localCacheHits;
+  }
+
+  public long getLocalCacheMisses() {
+    return localCacheMisses;
+  }
+
+  public double getLocalCacheHitRatio() {
+    return ratio(localCacheHits, localCacheMisses);
+  }
+
+  /**
+   * Returns the number of hits in the second level cache.
+   */
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  public double getCacheHitRatio() {
+    return ratio(cacheHits, cacheMisses);
+  }
+
+  /**
+   * Returns the latencies of the calls, as seen by the executor.
+   */
+  public LatencySnapshot getLatency() {
+    return latency;
+  }
+
+  public LatencySnapshot getPrepareLatency() {
+    return prepareLatency;
+  }
+
+  public LatencySnapshot getExecuteLatency() {
+    return executeLatency;
+  }
+
+  public LatencySnapshot getMapLatency() {
+    return mapLatency;
+  }
+
+  private static double ratio(long hits, long misses) {
+    final long requests = hits + misses;
+    return requests == 0 ? 0 : (double) hits / requests;
+  }
+
+  @Override
+  public String toString() {
+    return id + ": calls=" + calls + ", failures=" + failures + ", rows=" + rows + ", latency=[" + latency
+        + "], prepare=[" + prepareLatency + "], execute=[" + executeLatency + "], map=[" + mapLatency + "]";
+  }
+
+}
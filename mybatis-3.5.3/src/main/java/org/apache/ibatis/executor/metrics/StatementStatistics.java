@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The live counters and histograms of a statement.
+ *
+ * @since 3.5.3
+ */
+class StatementStatistics {
+
+  private final String id;
+  final LongAdder calls = new LongAdder();
+  final LongAdder failures = new LongAdder();
+  final LongAdder rows = new LongAdder();
+  final LongAdder localCacheHits = new LongAdder();
+  final LongAdder localCacheMisses = new LongAdder();
+  final LongAdder cacheHits = new LongAdder();
+  final LongAdder cacheMisses = new LongAdder();
+  final LatencyHistogram latency = new LatencyHistogram();
+  final LatencyHistogram prepareLatency = new LatencyHistogram();
+  final LatencyHistogram executeLatency = new LatencyHistogram();
+  final LatencyHistogram mapLatency = new LatencyHistogram();
+
+  StatementStatistics(String id) {
+    this.id = id;
+  }
+
+  LatencyHistogram phaseLatency(StatementMetrics.Phase phase) {
+    switch (phase) {
+      case PREPARE:
+        return prepareLatency;
+      case EXECUTE:
+        return executeLatency;
+      default:
+        return mapLatency;
+    }
+  }
+
+  void reset() {
+    calls.reset();
+    failures.reset();
+    rows.reset();
+    localCacheHits.reset();
+    localCacheMisses.reset();
+    cacheHits.reset();
+    cacheMisses.reset();
+    latency.reset();
+    prepareLatency.reset();
+    executeLatency.reset();
+    mapLatency.reset();
+  }
+
+  StatementSnapshot snapshot() {
+    return new StatementSnapshot(id, calls.sum(), failures.sum(), rows.sum(), localCacheHits.sum(),
+        localCacheMisses.sum(), cacheHits.sum(), cacheMisses.sum(), latency.snapshot(), prepareLatency.snapshot(),
+        executeLatency.snapshot(), mapLatency.snapshot());
+  }
+
+}
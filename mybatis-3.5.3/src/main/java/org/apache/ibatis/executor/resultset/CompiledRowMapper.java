@@ -0,0 +1,136 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * {@link RowMapper} prepared for one simple result map and one column layout. Columns are read by index and
+ * properties are set through their setter invokers, without resolving anything per row. Only compiled when column
+ * labels are used and every type handler can be read by index.
+ *
+ * @see ResultSetWrapper#getResultColumnIndex(TypeHandler, String)
+ * @since 3.5.3
+ */
+final class CompiledRowMapper implements RowMapper {
+
+  private final Class<?> type;
+  private final ObjectFactory objectFactory;
+  private final Constructor<?> constructor;
+  private final ColumnMapping[] columns;
+  private final boolean callSettersOnNulls;
+  private final boolean returnInstanceForEmptyRow;
+
+  CompiledRowMapper(Class<?> type, ObjectFactory objectFactory, List<ColumnMapping> columns,
+      boolean callSettersOnNulls, boolean returnInstanceForEmptyRow) {
+    this.type = type;
+    this.objectFactory = objectFactory;
+    this.constructor = resolveConstructor(type, objectFactory);
+    this.columns = columns.toArray(new ColumnMapping[0]);
+    this.callSettersOnNulls = callSettersOnNulls;
+    this.returnInstanceForEmptyRow = returnInstanceForEmptyRow;
+  }
+
+  @Override
+  public Object map(ResultSet rs) throws SQLException {
+    final Object rowValue = newInstance();
+    boolean foundValues = false;
+    for (ColumnMapping column : columns) {
+      final Object value = column.typeHandler.getResult(rs, column.index);
+      if (value != null) {
+        foundValues = true;
+      }
+      if (value != null || (callSettersOnNulls && !column.primitive)) {
+        column.set(rowValue, value);
+      }
+    }
+    return foundValues || returnInstanceForEmptyRow ? rowValue : null;
+  }
+
+  private Object newInstance() {
+    if (constructor == null) {
+      return objectFactory.create(type);
+    }
+    try {
+      return constructor.newInstance();
+    } catch (Exception e) {
+      // same message as DefaultObjectFactory
+      throw new ReflectionException("Error instantiating " + type + " with invalid types () or values (). Cause: " + e, e);
+    }
+  }
+
+  private static Constructor<?> resolveConstructor(Class<?> type, ObjectFactory objectFactory) {
+    // a custom factory may do more than calling the default constructor
+    if (objectFactory.getClass() != DefaultObjectFactory.class) {
+      return null;
+    }
+    try {
+      Constructor<?> constructor = type.getDeclaredConstructor();
+      if (!Modifier.isPublic(constructor.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+        if (!Reflector.canControlMemberAccessible()) {
+          return null;
+        }
+        constructor.setAccessible(true);
+      }
+      return constructor;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  static final class ColumnMapping {
+    private final int index;
+    private final String property;
+    private final TypeHandler<?> typeHandler;
+    private final Invoker setter;
+    private final boolean primitive;
+
+    ColumnMapping(int index, String property, TypeHandler<?> typeHandler, Invoker setter, boolean primitive) {
+      this.index = index;
+      this.property = property;
+      this.typeHandler = typeHandler;
+      this.setter = setter;
+      this.primitive = primitive;
+    }
+
+    private void set(Object target, Object value) {
+      try {
+        try {
+          setter.invoke(target, new Object[] {value});
+        } catch (Throwable t) {
+          throw ExceptionUtil.unwrapThrowable(t);
+        }
+      } catch (Throwable t) {
+        // same message as BeanWrapper
+        throw new ReflectionException("Could not set property '" + property + "' of '" + target.getClass()
+            + "' with value '" + value + "' Cause: " + t.toString(), t);
+      }
+    }
+  }
+
+}
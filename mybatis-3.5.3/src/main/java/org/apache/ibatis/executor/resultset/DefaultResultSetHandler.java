@@ -21,12 +21,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.annotations.AutomapConstructor;
 import org.apache.ibatis.binding.MapperMethod.ParamMap;
@@ -36,8 +40,10 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.NestedSelectBatch;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
@@ -51,8 +57,10 @@ import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
@@ -71,6 +79,10 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
 public class DefaultResultSetHandler implements ResultSetHandler {
 
     private static final Object DEFERRED = new Object();
+    // 非延迟的嵌套查询已加入批量加载, 值未知, 不算作找到的值
+    private static final Object BATCHED = new Object();
+
+    private static final int MAX_COMPILED_ROW_MAPPERS = 64;
 
     private final Executor executor;
     private final Configuration configuration;
@@ -93,24 +105,49 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<>();
 
     // Cached Automappings
-    private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
+    private final Map<ResultSetWrapper.ResultMapColumns, List<UnMappedColumnAutoMapping>> autoMappingsCache = new IdentityHashMap<>();
 
     // temporary marking flag that indicate using constructor mapping (use field to reduce memory usage)
     private boolean useConstructorMappings;
 
+    // Compiled row mapper of the last result set and simple result map, a cursor asks for it on every row
+    private ResultSetWrapper compiledRowMapperRsw;
+    private ResultMap compiledRowMapperResultMap;
+    private RowMapper compiledRowMapper;
+
     private static class PendingRelation {
         public MetaObject metaObject;
         public ResultMapping propertyMapping;
     }
 
+    // nested selects loaded in batches
+    private final Map<String, Optional<NestedSelectBatch>> nestedSelectBatches = new HashMap<>();
+    // 非延迟的嵌套查询在结果集映射完成后批量加载，为 null 时逐行加载
+    private List<PendingNestedSelect> pendingNestedSelects;
+
+    private static class PendingNestedSelect {
+        private final MetaObject metaObject;
+        private final String property;
+        private final ResultLoader resultLoader;
+
+        PendingNestedSelect(MetaObject metaObject, String property, ResultLoader resultLoader) {
+            this.metaObject = metaObject;
+            this.property = property;
+            this.resultLoader = resultLoader;
+        }
+    }
+
     private static class UnMappedColumnAutoMapping {
         private final String column;
+        // 列序号, 0 表示按列名读取
+        private final int columnIndex;
         private final String property;
         private final TypeHandler<?> typeHandler;
         private final boolean primitive;
 
-        public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive) {
+        public UnMappedColumnAutoMapping(String column, int columnIndex, String property, TypeHandler<?> typeHandler, boolean primitive) {
             this.column = column;
+            this.columnIndex = columnIndex;
             this.property = property;
             this.typeHandler = typeHandler;
             this.primitive = primitive;
@@ -179,6 +216,19 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     //
     @Override
     public List<Object> handleResultSets(Statement stmt) throws SQLException {
+        StatementMetrics metrics = configuration.getStatementMetrics();
+        if (metrics == null) {
+            return handleAllResultSets(stmt);
+        }
+        long start = System.nanoTime();
+        try {
+            return handleAllResultSets(stmt);
+        } finally {
+            metrics.phaseCompleted(mappedStatement, StatementMetrics.Phase.MAP, System.nanoTime() - start);
+        }
+    }
+
+    private List<Object> handleAllResultSets(Statement stmt) throws SQLException {
         ErrorContext.instance().activity("handling results").object(mappedStatement.getId());
 
         // 多 ResultSet 的结果集， 每个 ResultSet 对应一个 Object 对象，而实际上，每个 Object 是 List<Object>对象
@@ -320,8 +370,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 if (resultHandler == null) {
                     // 创建 DefaultResultHandler
                     DefaultResultHandler defaultResultHandler = new DefaultResultHandler(objectFactory);
-                    // 处理 ResultSet 返回的每一行 Row
-                    handleRowValues(rsw, resultMap, defaultResultHandler, rowBounds, null);
+                    pendingNestedSelects = configuration.getNestedSelectBatchSize() == null ? null : new ArrayList<>();
+                    try {
+                        // 处理 ResultSet 返回的每一行 Row
+                        handleRowValues(rsw, resultMap, defaultResultHandler, rowBounds, null);
+                        loadPendingNestedSelects();
+                    } finally {
+                        pendingNestedSelects = null;
+                    }
                     // 添加 defaultResultHandler 的处理器的结果到 multipleResults 中
                     multipleResults.add(defaultResultHandler.getResultList());
                 } else {
@@ -336,6 +392,38 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
     }
 
+    private void loadPendingNestedSelects() throws SQLException {
+        if (pendingNestedSelects == null) {
+            return;
+        }
+        for (PendingNestedSelect pending : pendingNestedSelects) {
+            loadPendingNestedSelect(pending);
+        }
+    }
+
+    // 行中没有其他值时, 立即加载该行等待批量加载的嵌套查询, 以判断是否为空行
+    private boolean loadRowNestedSelects(int firstPending) throws SQLException {
+        if (pendingNestedSelects == null || pendingNestedSelects.size() == firstPending) {
+            return false;
+        }
+        final List<PendingNestedSelect> rowSelects = pendingNestedSelects.subList(firstPending, pendingNestedSelects.size());
+        boolean foundValues = false;
+        for (PendingNestedSelect pending : rowSelects) {
+            foundValues = loadPendingNestedSelect(pending) || foundValues;
+        }
+        rowSelects.clear();
+        return foundValues;
+    }
+
+    private boolean loadPendingNestedSelect(PendingNestedSelect pending) throws SQLException {
+        // 第一个加载器执行整批查询，其余直接取结果
+        final Object value = pending.resultLoader.loadResult();
+        if (value != null || (configuration.isCallSettersOnNulls() && !pending.metaObject.getSetterType(pending.property).isPrimitive())) {
+            pending.metaObject.setValue(pending.property, value);
+        }
+        return value != null;
+    }
+
     @SuppressWarnings("unchecked")
     private List<Object> collapseSingleResultList(List<Object> multipleResults) {
         return multipleResults.size() == 1 ? (List<Object>) multipleResults.get(0) : multipleResults;
@@ -369,6 +457,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                     + "or ensure your statement returns ordered data and set resultOrdered=true on it.");
         }
     }
+    /**
+     * Releases the objects kept to map nested result maps across rows. Used by cursors once no more rows will be read.
+     *
+     * @since 3.5.3
+     */
+    public void releaseNestedResultState() {
+        nestedResultObjects.clear();
+        ancestorObjects.clear();
+        previousRowValue = null;
+    }
+
     // 处理 ResultSet 返回的每一行 Row (简单结果映射)
     private void handleRowValuesForSimpleResultMap(ResultSetWrapper rsw, ResultMap resultMap, ResultHandler<?> resultHandler, RowBounds rowBounds, ResultMapping parentMapping)
             throws SQLException {
@@ -380,9 +479,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         skipRows(resultSet, rowBounds);
         // 没有超过限制数量 && 结果集没有关闭 && 存在下一条数据
         while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
-            ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
-            // 重要： 获取返回行的值，封装为返回对象
-            Object rowValue = getRowValue(rsw, discriminatedResultMap, null);
+            // 开启 useCompiledRowMappers 时，按列下标直接映射
+            RowMapper rowMapper = getCompiledRowMapper(rsw, resultMap);
+            Object rowValue;
+            if (rowMapper != null) {
+                rowValue = rowMapper.map(resultSet);
+            } else {
+                ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
+                // 重要： 获取返回行的值，封装为返回对象
+                rowValue = getRowValue(rsw, discriminatedResultMap, null);
+            }
             storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
         }
     }
@@ -434,18 +540,121 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             // 2.创建返回值对象吗的元数据信息对象
             final MetaObject metaObject = configuration.newMetaObject(rowValue);
             boolean foundValues = this.useConstructorMappings;
+            final int firstPending = pendingNestedSelects == null ? 0 : pendingNestedSelects.size();
             // 3.通过自动映射处理数据
             if (shouldApplyAutomaticMappings(resultMap, false)) {
                 foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
             }
             // 4.通过类型处理器处理映射数据
             foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
+            if (!foundValues && !configuration.isReturnInstanceForEmptyRow()) {
+                foundValues = loadRowNestedSelects(firstPending);
+            }
             foundValues = lazyLoader.size() > 0 || foundValues;
             rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
         }
         return rowValue;
     }
 
+    //
+    // COMPILED ROW MAPPERS
+    //
+
+    private RowMapper getCompiledRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+        if (!configuration.isUseCompiledRowMappers()) {
+            return null;
+        }
+        if (compiledRowMapperRsw != rsw || compiledRowMapperResultMap != resultMap) {
+            final ConcurrentMap<String, Optional<RowMapper>> rowMappers = mappedStatement.getRowMappers();
+            final String key = createRowMapperKey(rsw, resultMap);
+            Optional<RowMapper> rowMapper = rowMappers.get(key);
+            if (rowMapper == null) {
+                rowMapper = compileRowMapper(rsw, resultMap);
+                // statements with many column layouts (e.g. ${} columns) are not worth it
+                if (rowMappers.size() < MAX_COMPILED_ROW_MAPPERS) {
+                    Optional<RowMapper> existing = rowMappers.putIfAbsent(key, rowMapper);
+                    if (existing != null) {
+                        rowMapper = existing;
+                    }
+                }
+            }
+            compiledRowMapperRsw = rsw;
+            compiledRowMapperResultMap = resultMap;
+            compiledRowMapper = rowMapper.orElse(null);
+        }
+        return compiledRowMapper;
+    }
+
+    private String createRowMapperKey(ResultSetWrapper rsw, ResultMap resultMap) {
+        final StringBuilder key = new StringBuilder(resultMap.getId());
+        final List<String> columnNames = rsw.getColumnNames();
+        final List<String> classNames = rsw.getClassNames();
+        final List<JdbcType> jdbcTypes = rsw.getJdbcTypes();
+        for (int i = 0; i < columnNames.size(); i++) {
+            key.append(':').append(columnNames.get(i)).append(',').append(jdbcTypes.get(i)).append(',').append(classNames.get(i));
+        }
+        return key.toString();
+    }
+
+    // 返回 Optional.empty() 表示该 resultMap 与列布局只能反射映射
+    private Optional<RowMapper> compileRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+        final Class<?> resultType = resultMap.getType();
+        // 只处理简单的 resultMap：无鉴别器、无嵌套、无构造器映射、默认构造器创建的普通 JavaBean
+        if (resultMap.getDiscriminator() != null
+                || resultMap.hasNestedResultMaps()
+                || resultMap.hasNestedQueries()
+                || !resultMap.getConstructorResultMappings().isEmpty()
+                || resultType.isInterface()
+                || Map.class.isAssignableFrom(resultType)
+                || Collection.class.isAssignableFrom(resultType)
+                || hasTypeHandlerForResultObject(rsw, resultType)
+                || configuration.getObjectWrapperFactory().getClass() != DefaultObjectWrapperFactory.class
+                || !MetaClass.forClass(resultType, reflectorFactory).hasDefaultConstructor()) {
+            return Optional.empty();
+        }
+        final Object sample = objectFactory.create(resultType);
+        if (sample == null || sample.getClass() != resultType) {
+            return Optional.empty();
+        }
+        final Reflector reflector = reflectorFactory.findForClass(resultType);
+        final List<CompiledRowMapper.ColumnMapping> columns = new ArrayList<>();
+        if (shouldApplyAutomaticMappings(resultMap, false)) {
+            final MetaObject metaObject = configuration.newMetaObject(sample);
+            for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, metaObject, null)) {
+                // 只有能按序号读取的类型处理器才能编译, 否则按名称读取的实现会被跳过
+                final int index = rsw.getResultColumnIndex(mapping.typeHandler, mapping.column);
+                if (index <= 0 || !isSimpleProperty(mapping.property)) {
+                    return Optional.empty();
+                }
+                columns.add(new CompiledRowMapper.ColumnMapping(index, mapping.property, mapping.typeHandler,
+                        reflector.getSetInvoker(mapping.property), mapping.primitive));
+            }
+        }
+        final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+        for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+            if (propertyMapping.isCompositeResult() || propertyMapping.getResultSet() != null) {
+                return Optional.empty();
+            }
+            final String column = propertyMapping.getColumn();
+            final String property = propertyMapping.getProperty();
+            if (column == null || property == null || !mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+                continue;
+            }
+            final int index = rsw.getResultColumnIndex(propertyMapping.getTypeHandler(), column);
+            if (index <= 0 || !isSimpleProperty(property) || !reflector.hasSetter(property)) {
+                return Optional.empty();
+            }
+            columns.add(new CompiledRowMapper.ColumnMapping(index, property, propertyMapping.getTypeHandler(),
+                    reflector.getSetInvoker(property), reflector.getSetterType(property).isPrimitive()));
+        }
+        return Optional.of(new CompiledRowMapper(resultType, objectFactory, columns,
+                configuration.isCallSettersOnNulls(), configuration.isReturnInstanceForEmptyRow()));
+    }
+
+    private boolean isSimpleProperty(String property) {
+        return property.indexOf('.') < 0 && property.indexOf('[') < 0;
+    }
+
     private boolean shouldApplyAutomaticMappings(ResultMap resultMap, boolean isNested) {
         if (resultMap.getAutoMapping() != null) {
             return resultMap.getAutoMapping();
@@ -464,22 +673,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
     private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, ResultLoaderMap lazyLoader, String columnPrefix)
             throws SQLException {
-        final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
+        // 列序号在每个结果集上只解析一次, 0 表示结果集中没有该列
+        final ResultSetWrapper.ResultMapColumns columns = rsw.getResultMapColumns(resultMap, columnPrefix);
         boolean foundValues = false;
         final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
         // 根据resultMap处理数据了， 大家都知道resultMap 里面有很多逻辑， 我们就不去看了
         // 最简答的方式就是  根据类型处理器获取数据
         // 还有嵌套查询、嵌套结果、多结果集 等等逻辑处理
-        for (ResultMapping propertyMapping : propertyMappings) {
-            String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-            if (propertyMapping.getNestedResultMapId() != null) {
-                // the user added a column attribute to a nested result map, ignore it
-                column = null;
-            }
+        for (int i = 0; i < propertyMappings.size(); i++) {
+            final ResultMapping propertyMapping = propertyMappings.get(i);
+            final int columnIndex = columns.getPropertyColumnIndex(i);
             if (propertyMapping.isCompositeResult()
-                    || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
+                    || columnIndex != 0
                     || propertyMapping.getResultSet() != null) {
-                Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+                Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix, columnIndex);
                 // issue #541 make property optional
                 final String property = propertyMapping.getProperty();
                 if (property == null) {
@@ -487,6 +694,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 } else if (value == DEFERRED) {
                     foundValues = true;
                     continue;
+                } else if (value == BATCHED) {
+                    continue;
                 }
                 if (value != null) {
                     foundValues = true;
@@ -500,8 +709,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return foundValues;
     }
 
-    private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
-            throws SQLException {
+    private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix,
+                                           int columnIndex) throws SQLException {
         if (propertyMapping.getNestedQueryId() != null) {  // 是不是有嵌套查询
             return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
         } else if (propertyMapping.getResultSet() != null) {  // 多结果集
@@ -509,13 +718,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             return DEFERRED;
         } else {   // 直接调用类型处理器获取数据了
             final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
+            if (columnIndex > 0) {
+                return typeHandler.getResult(rs, columnIndex);
+            }
             final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
             return typeHandler.getResult(rs, column);
         }
     }
 
     private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
-        final String mapKey = resultMap.getId() + ":" + columnPrefix;
+        final ResultSetWrapper.ResultMapColumns mapKey = rsw.getResultMapColumns(resultMap, columnPrefix);
         List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
         if (autoMapping == null) {
             autoMapping = new ArrayList<>();    // 获取未进行自动映射的列名
@@ -543,7 +755,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                     // 判断是否有该类型和列的JDBC类型对应的TypeHandler,
                     if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
                         final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
+                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, rsw.getResultColumnIndex(typeHandler, columnName),
+                                property, typeHandler, propertyType.isPrimitive()));
                     } else {
                         // 默认是不处理
                         configuration.getAutoMappingUnknownColumnBehavior()
@@ -568,7 +781,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         if (!autoMapping.isEmpty()) {
             // 2. 遍历自动映射的列名，获取数据，并设置到实体类中
             for (UnMappedColumnAutoMapping mapping : autoMapping) {
-                final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+                final Object value = mapping.columnIndex > 0
+                        ? mapping.typeHandler.getResult(rsw.getResultSet(), mapping.columnIndex)
+                        : mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
                 if (value != null) {
                     foundValues = true;
                 }
@@ -731,7 +946,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             Class<?> parameterType = constructor.getParameterTypes()[i];
             String columnName = rsw.getColumnNames().get(i);
             TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-            Object value = typeHandler.getResult(rsw.getResultSet(), columnName);
+            int columnIndex = rsw.getResultColumnIndex(typeHandler, columnName);
+            Object value = columnIndex > 0 ? typeHandler.getResult(rsw.getResultSet(), columnIndex)
+                    : typeHandler.getResult(rsw.getResultSet(), columnName);
             constructorArgTypes.add(parameterType);
             constructorArgs.add(value);
             foundValues = value != null || foundValues;
@@ -776,7 +993,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             columnName = rsw.getColumnNames().get(0);
         }
         final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-        return typeHandler.getResult(rsw.getResultSet(), columnName);
+        final int columnIndex = rsw.getResultColumnIndex(typeHandler, columnName);
+        return columnIndex > 0 ? typeHandler.getResult(rsw.getResultSet(), columnIndex)
+                : typeHandler.getResult(rsw.getResultSet(), columnName);
     }
 
     //
@@ -799,6 +1018,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return value;
     }
 
+    private NestedSelectBatch getNestedSelectBatch(MappedStatement nestedQuery, BoundSql nestedBoundSql) {
+        final Integer batchSize = configuration.getNestedSelectBatchSize();
+        if (batchSize == null) {
+            return null;
+        }
+        // 同一语句的动态 SQL 可能不同，按语句和 SQL 分批
+        return nestedSelectBatches.computeIfAbsent(nestedQuery.getId() + '\n' + nestedBoundSql.getSql(),
+                k -> Optional.ofNullable(NestedSelectBatch.create(configuration, nestedQuery, nestedBoundSql, batchSize))).orElse(null);
+    }
+
     private Object getNestedQueryMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
             throws SQLException {
         final String nestedQueryId = propertyMapping.getNestedQueryId();
@@ -818,9 +1047,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 final ResultLoader resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
                 if (propertyMapping.isLazy()) {
                     lazyLoader.addLoader(property, metaResultObject, resultLoader);
+                    final NestedSelectBatch batch = getNestedSelectBatch(nestedQuery, nestedBoundSql);
+                    if (batch != null) {
+                        batch.add(resultLoader);
+                    }
                     value = DEFERRED;
                 } else {
-                    value = resultLoader.loadResult();
+                    final NestedSelectBatch batch = pendingNestedSelects == null ? null : getNestedSelectBatch(nestedQuery, nestedBoundSql);
+                    if (batch != null) {
+                        batch.add(resultLoader);
+                        pendingNestedSelects.add(new PendingNestedSelect(metaResultObject, property, resultLoader));
+                        value = BATCHED;
+                    } else {
+                        value = resultLoader.loadResult();
+                    }
                 }
             }
         }
@@ -962,6 +1202,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
                 final MetaObject metaObject = configuration.newMetaObject(rowValue);
                 boolean foundValues = this.useConstructorMappings;
+                final int firstPending = pendingNestedSelects == null ? 0 : pendingNestedSelects.size();
                 if (shouldApplyAutomaticMappings(resultMap, true)) {
                     foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
                 }
@@ -969,6 +1210,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 putAncestor(rowValue, resultMapId);
                 foundValues = applyNestedResultMappings(rsw, resultMap, metaObject, columnPrefix, combinedKey, true) || foundValues;
                 ancestorObjects.remove(resultMapId);
+                if (!foundValues && !configuration.isReturnInstanceForEmptyRow()) {
+                    foundValues = loadRowNestedSelects(firstPending);
+                }
                 foundValues = lazyLoader.size() > 0 || foundValues;
                 rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
             }
@@ -22,13 +22,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.ColumnIndexAccess;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.ObjectTypeHandler;
 import org.apache.ibatis.type.TypeHandler;
@@ -50,24 +53,32 @@ public class ResultSetWrapper {
   private final List<String> classNames = new ArrayList<>();
   // JDBC 类型
   private final List<JdbcType> jdbcTypes = new ArrayList<>();
-  // 类型处理器映射
-  private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
-  // 映射列名
-  private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
-  // 未映射列名
-  private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
+  // 列序号(从1开始), key 为大写列名, 同名列取第一个, 与ResultSet#findColumn一致
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+  // 是否可以按列序号读取: 列名为label时, 与驱动按列名读取的是同一列
+  private final boolean columnIndexAccess;
+  // 类型处理器映射, 按列序号
+  private final Map<Class<?>, TypeHandler<?>>[] typeHandlers;
+  // resultMap及列前缀对应的映射列、未映射列
+  private final Map<ResultMap, Map<String, ResultMapColumns>> resultMapColumns = new IdentityHashMap<>();
 
+  @SuppressWarnings("unchecked")
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
     super();
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.resultSet = rs;
+    this.columnIndexAccess = configuration.isUseColumnLabel();
     final ResultSetMetaData metaData = rs.getMetaData();
     final int columnCount = metaData.getColumnCount();
     for (int i = 1; i <= columnCount; i++) {
       columnNames.add(configuration.isUseColumnLabel() ? metaData.getColumnLabel(i) : metaData.getColumnName(i));
       jdbcTypes.add(JdbcType.forCode(metaData.getColumnType(i)));
       classNames.add(metaData.getColumnClassName(i));
+      if (columnNames.get(i - 1) != null) {
+        columnIndexes.putIfAbsent(columnNames.get(i - 1).toUpperCase(Locale.ENGLISH), i);
+      }
     }
+    this.typeHandlers = new Map[columnCount + 1];
   }
 
   public ResultSet getResultSet() {
@@ -87,12 +98,32 @@ public class ResultSetWrapper {
   }
 
   public JdbcType getJdbcType(String columnName) {
-    for (int i = 0 ; i < columnNames.size(); i++) {
-      if (columnNames.get(i).equalsIgnoreCase(columnName)) {
-        return jdbcTypes.get(i);
-      }
+    final int index = getColumnIndex(columnName);
+    return index > 0 ? jdbcTypes.get(index - 1) : null;
+  }
+
+  /**
+   * Returns the index of the first column with the name, ignoring case, or -1 if there is none.
+   *
+   * @since 3.5.3
+   */
+  public int getColumnIndex(String columnName) {
+    final Integer index = columnName == null ? null : columnIndexes.get(columnName.toUpperCase(Locale.ENGLISH));
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Returns the index the type handler can read the column at, or 0 when it has to read it by name.
+   * Only the type handlers that {@link ColumnIndexAccess} accepts are known to read the same value by index as by
+   * name, a custom one may only implement reading by name.
+   *
+   * @since 3.5.3
+   */
+  public int getResultColumnIndex(TypeHandler<?> typeHandler, String columnName) {
+    if (!columnIndexAccess || columnName == null || !ColumnIndexAccess.isAccessible(typeHandler)) {
+      return 0;
     }
-    return null;
+    return Math.max(getColumnIndex(columnName), 0);
   }
 
   /**
@@ -106,21 +137,22 @@ public class ResultSetWrapper {
    */
   public TypeHandler<?> getTypeHandler(Class<?> propertyType, String columnName) {
     TypeHandler<?> handler = null;
-    Map<Class<?>, TypeHandler<?>> columnHandlers = typeHandlerMap.get(columnName);
+    final int index = getColumnIndex(columnName);
+    final int slot = Math.max(index, 0);
+    Map<Class<?>, TypeHandler<?>> columnHandlers = typeHandlers[slot];
     if (columnHandlers == null) {
       columnHandlers = new HashMap<>();
-      typeHandlerMap.put(columnName, columnHandlers);
+      typeHandlers[slot] = columnHandlers;
     } else {
       handler = columnHandlers.get(propertyType);
     }
     if (handler == null) {
-      JdbcType jdbcType = getJdbcType(columnName);
+      JdbcType jdbcType = index > 0 ? jdbcTypes.get(index - 1) : null;
       handler = typeHandlerRegistry.getTypeHandler(propertyType, jdbcType);
       // Replicate logic of UnknownTypeHandler#resolveTypeHandler
       // See issue #59 comment 10
       if (handler == null || handler instanceof UnknownTypeHandler) {
-        final int index = columnNames.indexOf(columnName);
-        final Class<?> javaType = resolveClass(classNames.get(index));
+        final Class<?> javaType = index > 0 ? resolveClass(classNames.get(index - 1)) : null;
         if (javaType != null && jdbcType != null) {
           handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
         } else if (javaType != null) {
@@ -149,7 +181,24 @@ public class ResultSetWrapper {
     return null;
   }
 
-  private void loadMappedAndUnmappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
+  /**
+   * Returns the columns of the result set mapped by the result map with the column prefix, resolved on the first call.
+   */
+  ResultMapColumns getResultMapColumns(ResultMap resultMap, String columnPrefix) {
+    Map<String, ResultMapColumns> prefixColumns = resultMapColumns.get(resultMap);
+    if (prefixColumns == null) {
+      prefixColumns = new HashMap<>();
+      resultMapColumns.put(resultMap, prefixColumns);
+    }
+    ResultMapColumns columns = prefixColumns.get(columnPrefix);
+    if (columns == null) {
+      columns = loadResultMapColumns(resultMap, columnPrefix);
+      prefixColumns.put(columnPrefix, columns);
+    }
+    return columns;
+  }
+
+  private ResultMapColumns loadResultMapColumns(ResultMap resultMap, String columnPrefix) {
     List<String> mappedColumnNames = new ArrayList<>();
     List<String> unmappedColumnNames = new ArrayList<>();
     final String upperColumnPrefix = columnPrefix == null ? null : columnPrefix.toUpperCase(Locale.ENGLISH);
@@ -162,30 +211,30 @@ public class ResultSetWrapper {
         unmappedColumnNames.add(columnName);
       }
     }
-    mappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), mappedColumnNames);
-    unMappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), unmappedColumnNames);
+    final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
+    final int[] propertyColumnIndexes = new int[propertyMappings.size()];
+    for (int i = 0; i < propertyColumnIndexes.length; i++) {
+      final ResultMapping propertyMapping = propertyMappings.get(i);
+      if (propertyMapping.getNestedResultMapId() != null || propertyMapping.getColumn() == null) {
+        // the user added a column attribute to a nested result map, ignore it
+        continue;
+      }
+      final String column = columnPrefix == null || columnPrefix.isEmpty() || propertyMapping.getColumn().isEmpty()
+          ? propertyMapping.getColumn() : columnPrefix + propertyMapping.getColumn();
+      if (mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+        final int index = getResultColumnIndex(propertyMapping.getTypeHandler(), column);
+        propertyColumnIndexes[i] = index > 0 ? index : ResultMapColumns.BY_NAME;
+      }
+    }
+    return new ResultMapColumns(mappedColumnNames, unmappedColumnNames, propertyColumnIndexes);
   }
 
   public List<String> getMappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
-    List<String> mappedColumnNames = mappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    if (mappedColumnNames == null) {
-      loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
-      mappedColumnNames = mappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    }
-    return mappedColumnNames;
+    return getResultMapColumns(resultMap, columnPrefix).mappedColumnNames;
   }
 
   public List<String> getUnmappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
-    List<String> unMappedColumnNames = unMappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    if (unMappedColumnNames == null) {
-      loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
-      unMappedColumnNames = unMappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    }
-    return unMappedColumnNames;
-  }
-
-  private String getMapKey(ResultMap resultMap, String columnPrefix) {
-    return resultMap.getId() + ":" + columnPrefix;
+    return getResultMapColumns(resultMap, columnPrefix).unmappedColumnNames;
   }
 
   private Set<String> prependPrefixes(Set<String> columnNames, String prefix) {
@@ -199,4 +248,35 @@ public class ResultSetWrapper {
     return prefixed;
   }
 
+  /**
+   * The columns of a result set mapped by a result map with a column prefix.
+   *
+   * @since 3.5.3
+   */
+  static final class ResultMapColumns {
+
+    // 映射列, 按列名读取
+    static final int BY_NAME = -1;
+
+    private final List<String> mappedColumnNames;
+    private final List<String> unmappedColumnNames;
+    // 与resultMap.getPropertyResultMappings()一一对应: 0 未映射, >0 列序号, BY_NAME 按列名读取
+    private final int[] propertyColumnIndexes;
+
+    private ResultMapColumns(List<String> mappedColumnNames, List<String> unmappedColumnNames,
+        int[] propertyColumnIndexes) {
+      this.mappedColumnNames = mappedColumnNames;
+      this.unmappedColumnNames = unmappedColumnNames;
+      this.propertyColumnIndexes = propertyColumnIndexes;
+    }
+
+    /**
+     * Returns the index of the column of the property mapping at the position, {@link #BY_NAME} when the column has to
+     * be read by name, or 0 when the column is not in the result set.
+     */
+    int getPropertyColumnIndex(int propertyMapping) {
+      return propertyColumnIndexes[propertyMapping];
+    }
+  }
+
 }
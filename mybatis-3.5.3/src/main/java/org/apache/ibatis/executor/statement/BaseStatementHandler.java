@@ -18,16 +18,23 @@ package org.apache.ibatis.executor.statement;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.logging.jdbc.AsyncSqlLogger;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -55,6 +62,12 @@ public abstract class BaseStatementHandler implements StatementHandler {
   protected final RowBounds rowBounds;
   // 绑定SQL对象
   protected BoundSql boundSql;
+  // 执行指标，未配置时为 null
+  protected final StatementMetrics metrics;
+  // 异步 SQL 日志，未开启或语句日志不是 debug 级别时为 null
+  protected final AsyncSqlLogger sqlLogger;
+  // 本次执行是否已写入SQL日志, 结果只在语句已记录时输出
+  private boolean statementLogged;
 
   protected BaseStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
     this.configuration = mappedStatement.getConfiguration();
@@ -64,6 +77,9 @@ public abstract class BaseStatementHandler implements StatementHandler {
 
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.objectFactory = configuration.getObjectFactory();
+    this.metrics = configuration.getStatementMetrics();
+    AsyncSqlLogger asyncSqlLogger = configuration.getAsyncSqlLogger();
+    this.sqlLogger = asyncSqlLogger != null && mappedStatement.getStatementLog().isDebugEnabled() ? asyncSqlLogger : null;
 
     if (boundSql == null) { // issue #435, get the key before calculating the statement
       generateKeys(parameterObject);
@@ -91,6 +107,7 @@ public abstract class BaseStatementHandler implements StatementHandler {
   public Statement prepare(Connection connection, Integer transactionTimeout) throws SQLException {
     ErrorContext.instance().sql(boundSql.getSql());
     Statement statement = null;
+    long start = startPhase();
     try {
       // 初始化 Statement对象，根据connection按照正常jdbc的形式创建
       statement = instantiateStatement(connection);
@@ -98,12 +115,15 @@ public abstract class BaseStatementHandler implements StatementHandler {
       setStatementTimeout(statement, transactionTimeout);
       // 设置批次大小
       setFetchSize(statement);
+      endPhase(StatementMetrics.Phase.PREPARE, start);
       return statement;
     } catch (SQLException e) {
       closeStatement(statement);
+      logStatement(-1L, -1, false);
       throw e;
     } catch (Exception e) {
       closeStatement(statement);
+      logStatement(-1L, -1, false);
       throw new ExecutorException("Error preparing statement.  Cause: " + e, e);
     }
   }
@@ -145,6 +165,104 @@ public abstract class BaseStatementHandler implements StatementHandler {
     }
   }
 
+  /**
+   * Returns the start time of a phase, or 0 without metrics nor sql logger.
+   */
+  protected long startPhase() {
+    return metrics == null && sqlLogger == null ? 0L : System.nanoTime();
+  }
+
+  /**
+   * Returns the duration of the phase, or 0 without metrics nor sql logger.
+   */
+  protected long endPhase(StatementMetrics.Phase phase, long start) {
+    if (metrics == null && sqlLogger == null) {
+      return 0L;
+    }
+    long nanos = System.nanoTime() - start;
+    if (metrics != null) {
+      metrics.phaseCompleted(mappedStatement, phase, nanos);
+    }
+    return nanos;
+  }
+
+  /**
+   * Executes the statement, recording the execute phase, and logs it before its results are handled. A statement
+   * failing is logged without result.
+   *
+   * @return the execution time, or 0 without metrics nor sql logger
+   * @see #logResult(long, int, boolean)
+   */
+  protected long execute(Execution execution) throws SQLException {
+    if (metrics == null && sqlLogger == null) {
+      execution.execute();
+      return 0L;
+    }
+    long start = System.nanoTime();
+    try {
+      execution.execute();
+    } catch (SQLException | RuntimeException e) {
+      logStatement(System.nanoTime() - start, -1, false);
+      throw e;
+    }
+    long nanos = endPhase(StatementMetrics.Phase.EXECUTE, start);
+    logStatement(nanos, -1, false);
+    return nanos;
+  }
+
+  /**
+   * Queues the statement for the sql logger, if any.
+   *
+   * @param nanos the execution time, negative if not executed yet
+   * @param rows the update count or the number of results, negative if unknown
+   */
+  protected void logStatement(long nanos, int rows, boolean update) {
+    if (sqlLogger == null) {
+      return;
+    }
+    try {
+      long skipped = sqlLogger.sample(mappedStatement.getId());
+      if (skipped >= 0) {
+        sqlLogger.log(mappedStatement.getStatementLog(), boundSql.getSql(), getParameterValues(), nanos, rows, update, skipped);
+        statementLogged = true;
+      }
+    } catch (RuntimeException e) {
+      // 参数取值或格式化失败时不记录, 不能掩盖语句本身的异常
+      statementLogged = false;
+    }
+  }
+
+  /**
+   * Queues the result of the statement logged by {@link #execute(Execution)} for the sql logger, if any.
+   *
+   * @param nanos the execution time
+   * @param rows the update count or the number of results
+   */
+  protected void logResult(long nanos, int rows, boolean update) {
+    if (statementLogged) {
+      sqlLogger.logResult(mappedStatement.getStatementLog(), nanos, rows, update);
+    }
+  }
+
+  /**
+   * Returns the values of the parameters set on the statement, for logging.
+   */
+  protected Object[] getParameterValues() {
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    List<Object> values = new ArrayList<>(parameterMappings.size());
+    for (ParameterMapping parameterMapping : parameterMappings) {
+      if (parameterMapping.getMode() != ParameterMode.OUT) {
+        values.add(DefaultParameterHandler.getParameterValue(configuration, boundSql, parameterHandler.getParameterObject(), parameterMapping));
+      }
+    }
+    return values.toArray();
+  }
+
+  @FunctionalInterface
+  protected interface Execution {
+    void execute() throws SQLException;
+  }
+
   protected void generateKeys(Object parameter) {
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
     ErrorContext.instance().store();
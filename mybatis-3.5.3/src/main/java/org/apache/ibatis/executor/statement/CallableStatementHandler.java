@@ -48,8 +48,9 @@ public class CallableStatementHandler extends BaseStatementHandler {
   public int update(Statement statement) throws SQLException {
     // 用来调用存储过程,它提供了对输出和输入/输出参数的支持
     CallableStatement cs = (CallableStatement) statement;
-    cs.execute();
+    long nanos = execute(cs::execute);
     int rows = cs.getUpdateCount();
+    logResult(nanos, rows, true);
     Object parameterObject = boundSql.getParameterObject();
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
     keyGenerator.processAfter(executor, mappedStatement, cs, parameterObject);
@@ -61,21 +62,23 @@ public class CallableStatementHandler extends BaseStatementHandler {
   public void batch(Statement statement) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
     cs.addBatch();
+    logStatement(-1L, -1, true);
   }
 
   @Override
   public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
-    cs.execute();
+    long nanos = execute(cs::execute);
     List<E> resultList = resultSetHandler.handleResultSets(cs);
     resultSetHandler.handleOutputParameters(cs);
+    logResult(nanos, resultList.size(), false);
     return resultList;
   }
 
   @Override
   public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
-    cs.execute();
+    execute(cs::execute);
     Cursor<E> resultList = resultSetHandler.handleCursorResultSets(cs);
     resultSetHandler.handleOutputParameters(cs);
     return resultList;
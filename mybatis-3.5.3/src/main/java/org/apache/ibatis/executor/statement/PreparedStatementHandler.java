@@ -44,8 +44,9 @@ public class PreparedStatementHandler extends BaseStatementHandler {
   @Override
   public int update(Statement statement) throws SQLException {
     PreparedStatement ps = (PreparedStatement) statement;
-    ps.execute();
+    long nanos = execute(ps::execute);
     int rows = ps.getUpdateCount();
+    logResult(nanos, rows, true);
     Object parameterObject = boundSql.getParameterObject();
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
     // keyGenerator在执行之后运行
@@ -57,21 +58,24 @@ public class PreparedStatementHandler extends BaseStatementHandler {
   public void batch(Statement statement) throws SQLException {
     PreparedStatement ps = (PreparedStatement) statement;
     ps.addBatch();
+    logStatement(-1L, -1, true);
   }
 
   @Override
   public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
     PreparedStatement ps = (PreparedStatement) statement;
     // 真正的jdbc执行sql
-    ps.execute();
+    long nanos = execute(ps::execute);
     // 处理结果集的映射
-    return resultSetHandler.handleResultSets(ps);
+    List<E> results = resultSetHandler.handleResultSets(ps);
+    logResult(nanos, results.size(), false);
+    return results;
   }
 
   @Override
   public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
     PreparedStatement ps = (PreparedStatement) statement;
-    ps.execute();
+    execute(ps::execute);
     return resultSetHandler.handleCursorResultSets(ps);
   }
 
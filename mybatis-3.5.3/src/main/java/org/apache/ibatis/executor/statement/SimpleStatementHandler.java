@@ -51,19 +51,23 @@ public class SimpleStatementHandler extends BaseStatementHandler {
     // 获取主键生成
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
     int rows;
+    long nanos;
     // statement执行sql语句返回更新数目
     if (keyGenerator instanceof Jdbc3KeyGenerator) {
-      statement.execute(sql, Statement.RETURN_GENERATED_KEYS);
+      nanos = execute(() -> statement.execute(sql, Statement.RETURN_GENERATED_KEYS));
       rows = statement.getUpdateCount();
+      logResult(nanos, rows, true);
       keyGenerator.processAfter(executor, mappedStatement, statement, parameterObject);
     } else if (keyGenerator instanceof SelectKeyGenerator) {
-      statement.execute(sql);
+      nanos = execute(() -> statement.execute(sql));
       rows = statement.getUpdateCount();
+      logResult(nanos, rows, true);
       keyGenerator.processAfter(executor, mappedStatement, statement, parameterObject);
     } else {
       // 如果没有keyGenerator，直接调用Statement.execute和Statement.getUpdateCount
-      statement.execute(sql);
+      nanos = execute(() -> statement.execute(sql));
       rows = statement.getUpdateCount();
+      logResult(nanos, rows, true);
     }
     return rows;
   }
@@ -73,19 +77,22 @@ public class SimpleStatementHandler extends BaseStatementHandler {
   public void batch(Statement statement) throws SQLException {
     String sql = boundSql.getSql();
     statement.addBatch(sql);
+    logStatement(-1L, -1, true);
   }
 
   @Override
   public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
     String sql = boundSql.getSql();
-    statement.execute(sql);
-    return resultSetHandler.handleResultSets(statement);
+    long nanos = execute(() -> statement.execute(sql));
+    List<E> results = resultSetHandler.handleResultSets(statement);
+    logResult(nanos, results.size(), false);
+    return results;
   }
 
   @Override
   public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
     String sql = boundSql.getSql();
-    statement.execute(sql);
+    execute(() -> statement.execute(sql));
     return resultSetHandler.handleCursorResultSets(statement);
   }
 
@@ -104,4 +111,10 @@ public class SimpleStatementHandler extends BaseStatementHandler {
     // N/A
   }
 
+  @Override
+  protected Object[] getParameterValues() {
+    // 没有参数，日志中输出 Executing
+    return null;
+  }
+
 }
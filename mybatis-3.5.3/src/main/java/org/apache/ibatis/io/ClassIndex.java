@@ -0,0 +1,154 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * The classes listed by the {@value #RESOURCE} resources written by {@link ClassIndexProcessor}, with their
+ * supertypes, so that the classes of an indexed package can be found and tested without listing the class path and
+ * loading every class.
+ *
+ * @since 3.5.3
+ */
+final class ClassIndex {
+
+  static final String RESOURCE = "META-INF/mybatis/class-index";
+
+  private static final Log log = LogFactory.getLog(ClassIndex.class);
+  private static final ClassIndex EMPTY = new ClassIndex(Collections.emptyList());
+  private static final Map<ClassLoader, ClassIndex> indexes = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final List<Entry> entries;
+  private final Set<String> packages = new HashSet<>();
+
+  private ClassIndex(List<Entry> entries) {
+    this.entries = entries;
+    for (Entry entry : entries) {
+      packages.add(entry.getPackageName());
+    }
+  }
+
+  static ClassIndex forClassLoader(ClassLoader classLoader) {
+    return indexes.computeIfAbsent(classLoader, ClassIndex::load);
+  }
+
+  private static ClassIndex load(ClassLoader classLoader) {
+    List<Entry> entries = new ArrayList<>();
+    try {
+      Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+      while (resources.hasMoreElements()) {
+        URL url = resources.nextElement();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+          for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (!line.isEmpty()) {
+              entries.add(Entry.parse(line));
+            }
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      log.warn("Could not read the class index, the class path is listed instead. Cause: " + e);
+      return EMPTY;
+    }
+    return entries.isEmpty() ? EMPTY : new ClassIndex(entries);
+  }
+
+  /**
+   * Returns whether classes of the package or of its sub-packages are indexed.
+   */
+  boolean isIndexed(String packageName) {
+    if (packages.contains(packageName)) {
+      return true;
+    }
+    String prefix = packageName + '.';
+    for (String indexed : packages) {
+      if (indexed.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the indexed classes of the package and of its sub-packages.
+   */
+  List<Entry> getEntries(String packageName) {
+    List<Entry> result = new ArrayList<>();
+    String prefix = packageName + '.';
+    for (Entry entry : entries) {
+      if (entry.name.startsWith(prefix)) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  static final class Entry {
+
+    private final String name;
+    private final Set<String> supertypes;
+
+    Entry(String name, Set<String> supertypes) {
+      this.name = name;
+      this.supertypes = supertypes;
+    }
+
+    // name;supertype,supertype...
+    static Entry parse(String line) {
+      int separator = line.indexOf(';');
+      if (separator == -1) {
+        return new Entry(line, Collections.emptySet());
+      }
+      String supertypes = line.substring(separator + 1);
+      return new Entry(line.substring(0, separator),
+          supertypes.isEmpty() ? Collections.emptySet() : new HashSet<>(Arrays.asList(supertypes.split(","))));
+    }
+
+    String getName() {
+      return name;
+    }
+
+    String getPackageName() {
+      int index = name.lastIndexOf('.');
+      return index == -1 ? "" : name.substring(0, index);
+    }
+
+    /**
+     * Returns whether the class is the type or one of its subtypes.
+     */
+    boolean isA(Class<?> type) {
+      return type == Object.class || type.getName().equals(name) || supertypes.contains(type.getName());
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor writing the {@code META-INF/mybatis/class-index} resource, that lists the classes compiled with
+ * their supertypes. When the resource is found, the {@code package} elements of the type aliases, type handlers and
+ * mappers find the classes of the indexed packages from it, instead of listing the class path and loading every class.
+ * <p>
+ * The processor is not registered as a service and has to be declared in the build, e.g. with the
+ * {@code annotationProcessors} of the maven-compiler-plugin. The index only lists the classes of the compilation
+ * that wrote it, so it has to be written by a full build, not by an incremental compilation.
+ *
+ * @since 3.5.3
+ */
+@SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends AbstractProcessor {
+
+  private final Map<String, Set<String>> classes = new TreeMap<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getRootElements()) {
+      if (element instanceof TypeElement) {
+        addType((TypeElement) element);
+      }
+    }
+    if (roundEnv.processingOver() && !classes.isEmpty()) {
+      writeIndex();
+    }
+    // the annotations are left to the other processors
+    return false;
+  }
+
+  private void addType(TypeElement type) {
+    Set<String> supertypes = new LinkedHashSet<>();
+    addSupertypes(type.asType(), supertypes);
+    classes.put(processingEnv.getElementUtils().getBinaryName(type).toString(), supertypes);
+    for (Element member : type.getEnclosedElements()) {
+      if (member instanceof TypeElement) {
+        addType((TypeElement) member);
+      }
+    }
+  }
+
+  private void addSupertypes(TypeMirror type, Set<String> supertypes) {
+    for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type)) {
+      if (supertype.getKind() == TypeKind.DECLARED) {
+        TypeElement element = (TypeElement) ((DeclaredType) supertype).asElement();
+        if (supertypes.add(processingEnv.getElementUtils().getBinaryName(element).toString())) {
+          addSupertypes(supertype, supertypes);
+        }
+      }
+    }
+  }
+
+  private void writeIndex() {
+    try {
+      FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ClassIndex.RESOURCE);
+      try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+        for (Map.Entry<String, Set<String>> entry : classes.entrySet()) {
+          writer.write(entry.getKey());
+          writer.write(';');
+          writer.write(String.join(",", entry.getValue()));
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + ClassIndex.RESOURCE + ": " + e);
+    }
+  }
+
+}
@@ -214,6 +214,18 @@ public class ResolverUtil<T> {
    *        classes, e.g. {@code net.sourceforge.stripes}
    */
   public ResolverUtil<T> find(Test test, String packageName) {
+    ClassIndex index = ClassIndex.forClassLoader(getClassLoader());
+    if (index.isIndexed(packageName)) {
+      // 编译期生成的类索引, 不必扫描类路径, 也不必加载父类型不符的类
+      Class<?> parent = test.getClass() == IsA.class ? ((IsA) test).parent : Object.class;
+      for (ClassIndex.Entry entry : index.getEntries(packageName)) {
+        if (entry.isA(parent)) {
+          addIfMatching(test, entry.getName().replace('.', '/') + ".class");
+        }
+      }
+      return this;
+    }
+
     String path = getPackagePath(packageName); // 将.替换成/
 
     try {
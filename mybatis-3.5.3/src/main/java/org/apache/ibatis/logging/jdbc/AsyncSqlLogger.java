@@ -0,0 +1,317 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging.jdbc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Logs the executed statements from a background thread, instead of wrapping the JDBC objects in logging proxies.
+ * <p>
+ * The executing thread only stores the sql, the parameter values and the execution time into a preallocated ring
+ * buffer; the messages are formatted and written to the statement log by a single daemon thread shared by all the
+ * loggers. Parameter values that may change after the execution are converted to strings by the executing thread. When the buffer is full, the statement is not logged rather than blocking the executing thread. The
+ * statements of a statement id can be sampled (one execution logged out of {@code sampling}) and rate limited (at most
+ * {@code rateLimit} executions logged per second); the number of executions not logged is reported with the next
+ * logged one.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.session.Configuration#setAsyncSqlLogging(boolean)
+ */
+public final class AsyncSqlLogger {
+
+  private static final Log log = LogFactory.getLog(AsyncSqlLogger.class);
+
+  private static final ExecutorService formatter = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "mybatis-sql-logger");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Entry[] entries;
+  private final int mask;
+  private final AtomicLong claimed = new AtomicLong();
+  private volatile long consumed;
+  private final AtomicBoolean draining = new AtomicBoolean();
+  private final LongAdder overflows = new LongAdder();
+
+  private final int sampling;
+  private final int rateLimit;
+  private final ConcurrentMap<String, StatementState> states = new ConcurrentHashMap<>();
+
+  /**
+   * @param capacity the number of statements the buffer holds, rounded up to a power of two
+   * @param sampling logs one execution of a statement id out of {@code sampling}, 1 or less to log them all
+   * @param rateLimit the maximum number of executions of a statement id logged per second, 0 or less for no limit
+   */
+  public AsyncSqlLogger(int capacity, int sampling, int rateLimit) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.entries = new Entry[size];
+    for (int i = 0; i < size; i++) {
+      entries[i] = new Entry();
+    }
+    this.mask = size - 1;
+    this.sampling = sampling;
+    this.rateLimit = rateLimit;
+  }
+
+  /**
+   * Returns whether the current execution of the statement should be logged.
+   *
+   * @return -1 if it should not, otherwise the number of executions not logged since the last logged one
+   */
+  public long sample(String statementId) {
+    if (sampling <= 1 && rateLimit <= 0) {
+      return 0;
+    }
+    StatementState state = states.get(statementId);
+    if (state == null) {
+      state = states.computeIfAbsent(statementId, k -> new StatementState());
+    }
+    return state.sample(sampling, rateLimit);
+  }
+
+  /**
+   * Queues the statement for logging. The result is logged with it if known, or later with
+   * {@link #logResult(Log, long, int, boolean)}.
+   *
+   * @param statementLog the log of the statement
+   * @param sql the sql
+   * @param parameters the parameter values, {@code null} for a statement without parameters
+   * @param nanos the execution time, negative if not executed yet (as in a batch)
+   * @param rows the update count of an update or the number of results of a query, negative if unknown
+   * @param update whether the statement is an update
+   * @param skipped the number of executions not logged, as returned by {@link #sample(String)}
+   */
+  public void log(Log statementLog, String sql, Object[] parameters, long nanos, int rows, boolean update,
+      long skipped) {
+    queue(statementLog, sql, snapshot(parameters), nanos, rows, update, skipped);
+  }
+
+  /**
+   * Queues the result of a statement queued before without it, e.g. the number of results once they are mapped.
+   *
+   * @param statementLog the log of the statement
+   * @param nanos the execution time
+   * @param rows the update count of an update or the number of results of a query
+   * @param update whether the statement is an update
+   */
+  public void logResult(Log statementLog, long nanos, int rows, boolean update) {
+    queue(statementLog, null, null, nanos, rows, update, 0);
+  }
+
+  private void queue(Log statementLog, String sql, Object[] parameters, long nanos, int rows, boolean update,
+      long skipped) {
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - consumed >= entries.length) {
+        overflows.increment();
+        return;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+    final Entry entry = entries[(int) sequence & mask];
+    entry.statementLog = statementLog;
+    entry.sql = sql;
+    entry.parameters = parameters;
+    entry.nanos = nanos;
+    entry.rows = rows;
+    entry.update = update;
+    entry.skipped = skipped;
+    // publishes the entry
+    entry.sequence = sequence;
+    if (draining.compareAndSet(false, true)) {
+      formatter.execute(this::drain);
+    }
+  }
+
+  /**
+   * Waits until the statements queued before this call are logged.
+   *
+   * @return whether they were logged before the timeout
+   */
+  public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+    final long target = claimed.get();
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (consumed < target) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      TimeUnit.MILLISECONDS.sleep(1);
+    }
+    return true;
+  }
+
+  private void drain() {
+    do {
+      long sequence = consumed;
+      while (sequence < claimed.get()) {
+        final Entry entry = entries[(int) sequence & mask];
+        while (entry.sequence != sequence) {
+          // claimed but not published yet
+          Thread.yield();
+        }
+        try {
+          write(entry);
+        } catch (RuntimeException e) {
+          log.warn("Could not log a statement. Cause: " + e);
+        } finally {
+          entry.clear();
+          consumed = ++sequence;
+        }
+      }
+      final long lost = overflows.sumThenReset();
+      if (lost > 0) {
+        log.warn(lost + " statement(s) were not logged because the sql log buffer was full.");
+      }
+      draining.set(false);
+    } while (consumed < claimed.get() && draining.compareAndSet(false, true));
+  }
+
+  private static void write(Entry entry) {
+    final Log statementLog = entry.statementLog;
+    if (!statementLog.isDebugEnabled()) {
+      return;
+    }
+    if (entry.skipped > 0) {
+      statementLog.debug(BaseJdbcLogger.prefix(1, true) + "   Skipped: " + entry.skipped + " execution(s) not logged");
+    }
+    // no sql for the result of a statement logged before
+    if (entry.sql != null) {
+      final String sql = BaseJdbcLogger.collapseWhitespace(entry.sql);
+      if (entry.parameters == null) {
+        statementLog.debug(BaseJdbcLogger.prefix(1, true) + " Executing: " + sql);
+      } else {
+        statementLog.debug(BaseJdbcLogger.prefix(1, true) + " Preparing: " + sql);
+        statementLog.debug(BaseJdbcLogger.prefix(1, true) + "Parameters: " + parameterValueString(entry.parameters));
+      }
+    }
+    if (entry.rows >= 0) {
+      final String time = entry.nanos < 0 ? "" : ", Time: " + String.format("%.3f", entry.nanos / 1e6) + " ms";
+      statementLog.debug(BaseJdbcLogger.prefix(1, false) + (entry.update ? "   Updates: " : "     Total: ")
+          + entry.rows + time);
+    }
+  }
+
+  private static String parameterValueString(Object[] parameters) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < parameters.length; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      final Object value = parameters[i];
+      if (value == null) {
+        builder.append("null");
+      } else if (value instanceof FormattedValue) {
+        builder.append(((FormattedValue) value).text);
+      } else {
+        builder.append(BaseJdbcLogger.valueString(value)).append('(').append(value.getClass().getSimpleName())
+            .append(')');
+      }
+    }
+    return builder.toString();
+  }
+
+  /*
+   * Keeps the values that cannot change, formats the other ones now.
+   */
+  private static Object[] snapshot(Object[] parameters) {
+    if (parameters == null) {
+      return null;
+    }
+    final Object[] values = new Object[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      final Object value = parameters[i];
+      values[i] = value == null || isImmutable(value) ? value
+          : new FormattedValue(BaseJdbcLogger.valueString(value) + '(' + value.getClass().getSimpleName() + ')');
+    }
+    return values;
+  }
+
+  private static boolean isImmutable(Object value) {
+    return value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Short
+        || value instanceof Byte || value instanceof Double || value instanceof Float || value instanceof Boolean
+        || value instanceof Character || value instanceof BigDecimal || value instanceof BigInteger
+        || value instanceof UUID || value instanceof Enum || value instanceof TemporalAccessor;
+  }
+
+  private static final class FormattedValue {
+    private final String text;
+
+    private FormattedValue(String text) {
+      this.text = text;
+    }
+  }
+
+  private static final class Entry {
+    private volatile long sequence = -1;
+    private Log statementLog;
+    private String sql;
+    private Object[] parameters;
+    private long nanos;
+    private int rows;
+    private boolean update;
+    private long skipped;
+
+    private void clear() {
+      statementLog = null;
+      sql = null;
+      parameters = null;
+    }
+  }
+
+  private static final class StatementState {
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicInteger logged = new AtomicInteger();
+    private volatile long second;
+
+    private long sample(int sampling, int rateLimit) {
+      if (sampling > 1 && executions.getAndIncrement() % sampling != 0) {
+        skipped.incrementAndGet();
+        return -1;
+      }
+      if (rateLimit > 0) {
+        final long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        if (now != second) {
+          // a few more executions may be logged when two threads start the same second
+          second = now;
+          logged.set(0);
+        }
+        if (logged.incrementAndGet() > rateLimit) {
+          skipped.incrementAndGet();
+          return -1;
+        }
+      }
+      return skipped.getAndSet(0);
+    }
+  }
+
+}
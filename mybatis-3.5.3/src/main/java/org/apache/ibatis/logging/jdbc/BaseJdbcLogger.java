@@ -100,6 +100,10 @@ public abstract class BaseJdbcLogger {
   }
 
   protected String objectValueString(Object value) {
+    return valueString(value);
+  }
+
+  static String valueString(Object value) {
     if (value instanceof Array) {
       try {
         return ArrayUtil.toString(((Array) value).getArray());
@@ -121,6 +125,10 @@ public abstract class BaseJdbcLogger {
   }
 
   protected String removeBreakingWhitespace(String original) {
+    return collapseWhitespace(original);
+  }
+
+  static String collapseWhitespace(String original) {
     StringTokenizer whitespaceStripper = new StringTokenizer(original);
     StringBuilder builder = new StringBuilder();
     while (whitespaceStripper.hasMoreTokens()) {
@@ -140,17 +148,17 @@ public abstract class BaseJdbcLogger {
 
   protected void debug(String text, boolean input) {
     if (statementLog.isDebugEnabled()) {
-      statementLog.debug(prefix(input) + text);
+      statementLog.debug(prefix(queryStack, input) + text);
     }
   }
 
   protected void trace(String text, boolean input) {
     if (statementLog.isTraceEnabled()) {
-      statementLog.trace(prefix(input) + text);
+      statementLog.trace(prefix(queryStack, input) + text);
     }
   }
 
-  private String prefix(boolean isInput) {
+  static String prefix(int queryStack, boolean isInput) {
     char[] buffer = new char[queryStack * 2 + 2];
     Arrays.fill(buffer, '=');
     buffer[queryStack * 2 + 1] = ' ';
@@ -17,12 +17,18 @@ package org.apache.ibatis.mapping;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.resultset.RowMapper;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
@@ -71,11 +77,13 @@ public final class MappedStatement {
   // 主键列名
   private String[] keyColumns;
   private boolean hasNestedResultMaps;
+  private volatile Boolean hasNestedQueries;
   // 数据库ID
   private String databaseId;
   private Log statementLog;
   private LanguageDriver lang;
   private String[] resultSets;
+  private final ConcurrentMap<String, Optional<RowMapper>> rowMappers = new ConcurrentHashMap<>();
 
   MappedStatement() {
     // constructor disabled
@@ -313,6 +321,67 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * Returns whether mapping the results of this statement may run nested select statements, looking through
+   * nested and discriminated result maps too.
+   *
+   * @since 3.5.3
+   */
+  public boolean hasNestedQueries() {
+    Boolean nested = hasNestedQueries;
+    if (nested == null) {
+      // computed on first use, result maps may still be incomplete while the statement is built
+      Set<String> visited = new HashSet<>();
+      nested = false;
+      for (ResultMap resultMap : resultMaps) {
+        if (hasNestedQueries(resultMap, visited)) {
+          nested = true;
+          break;
+        }
+      }
+      hasNestedQueries = nested;
+    }
+    return nested;
+  }
+
+  private boolean hasNestedQueries(ResultMap resultMap, Set<String> visited) {
+    if (!visited.add(resultMap.getId())) {
+      return false;
+    }
+    if (resultMap.hasNestedQueries()) {
+      return true;
+    }
+    for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+      if (resultMapping.getNestedResultMapId() != null && hasNestedQueries(resultMapping.getNestedResultMapId(), visited)) {
+        return true;
+      }
+    }
+    Discriminator discriminator = resultMap.getDiscriminator();
+    if (discriminator != null) {
+      for (String resultMapId : discriminator.getDiscriminatorMap().values()) {
+        if (hasNestedQueries(resultMapId, visited)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean hasNestedQueries(String resultMapId, Set<String> visited) {
+    // assume the worst for result maps that cannot be resolved
+    return !configuration.hasResultMap(resultMapId) || hasNestedQueries(configuration.getResultMap(resultMapId), visited);
+  }
+
+  /**
+   * Returns the row mappers compiled for the results of this statement, keyed by result map and column layout.
+   * An empty value marks a layout that has to be mapped reflectively.
+   *
+   * @since 3.5.3
+   */
+  public ConcurrentMap<String, Optional<RowMapper>> getRowMappers() {
+    return rowMappers;
+  }
+
   public BoundSql getBoundSql(Object parameterObject) {
     // 拼接sqlNode,替换替换符 #{}
     BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
@@ -41,57 +41,64 @@ public class GenericTokenParser {
         if (start == -1) {
             return text;
         }
-        char[] src = text.toCharArray();
         int offset = 0;
-        final StringBuilder builder = new StringBuilder();
+        // 替换后的长度通常与原文相近，预先分配避免扩容
+        final StringBuilder builder = new StringBuilder(text.length());
         StringBuilder expression = null;
         while (start > -1) {
-            if (start > 0 && src[start - 1] == '\\') {
+            if (start > 0 && text.charAt(start - 1) == '\\') {
                 // 先添加第一个 #{ 之前的sql
-                builder.append(src, offset, start - offset - 1).append(openToken);
+                builder.append(text, offset, start - 1).append(openToken);
                 offset = start + openToken.length();
             } else {
                 // found open token. let's search close token.
-                if (expression == null) {
-                    expression = new StringBuilder();
-                } else {
-                    expression.setLength(0);
-                }
                 // 添加从偏移量offset到 匹配到的#{之前的sql
-                builder.append(src, offset, start - offset);
+                builder.append(text, offset, start);
                 // 记录新的偏移量
                 offset = start + openToken.length();
                 // 获取到 } 的位置
                 int end = text.indexOf(closeToken, offset);
-                // 匹配到 }
-                while (end > -1) {
-                    if (end > offset && src[end - 1] == '\\') {
-                        // this close token is escaped. remove the backslash and continue.
-                        expression.append(src, offset, end - offset - 1).append(closeToken);
-                        offset = end + closeToken.length();
-                        end = text.indexOf(closeToken, offset);
+                String content = null;
+                if (end > -1 && (end == offset || text.charAt(end - 1) != '\\')) {
+                    // 没有被转义的 }，直接截取 #{} 之间的内容
+                    content = text.substring(offset, end);
+                } else {
+                    if (expression == null) {
+                        expression = new StringBuilder();
                     } else {
-                        // 记录 #{} 之间的内容
-                        expression.append(src, offset, end - offset);
-                        break;
+                        expression.setLength(0);
+                    }
+                    // 匹配到 }
+                    while (end > -1) {
+                        if (end > offset && text.charAt(end - 1) == '\\') {
+                            // this close token is escaped. remove the backslash and continue.
+                            expression.append(text, offset, end - 1).append(closeToken);
+                            offset = end + closeToken.length();
+                            end = text.indexOf(closeToken, offset);
+                        } else {
+                            // 记录 #{} 之间的内容
+                            expression.append(text, offset, end);
+                            content = expression.toString();
+                            break;
+                        }
                     }
                 }
                 // 说明无法匹配到 } 了，说明已经到结尾了
                 if (end == -1) {
                     // close token was not found.
-                    builder.append(src, start, src.length - start);
-                    offset = src.length;
+                    builder.append(text, start, text.length());
+                    offset = text.length();
                 } else {
                     // 返回?  解析参数ParameterMapping 和参数的类型处理器
-                    builder.append(handler.handleToken(expression.toString()));
+                    builder.append(handler.handleToken(content));
                     // 记录新的偏移量
                     offset = end + closeToken.length();
                 }
             }
             start = text.indexOf(openToken, offset);
         }
-        if (offset < src.length) {
-            builder.append(src, offset, src.length - offset);
+        if (offset < text.length()) {
+            builder.append(text, offset, text.length());
         }
         return builder.toString();
     }
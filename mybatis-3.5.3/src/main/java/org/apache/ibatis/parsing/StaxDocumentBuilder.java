@@ -0,0 +1,123 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Builds a document with a streaming (StAX) parser, without validating it.
+ * <p>
+ * The document holds the nodes used by the builders (elements, attributes, text and CDATA sections), as the one
+ * {@link XPathParser} builds without validation: comments are ignored, entity references are replaced and adjacent
+ * texts are merged.
+ *
+ * @since 3.5.3
+ */
+public final class StaxDocumentBuilder {
+
+  // the option of the JDK parser reporting CDATA sections apart from the text
+  private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+  private StaxDocumentBuilder() {
+    // Prevent Instantiation of Static Class
+  }
+
+  public static Document build(InputStream inputStream, EntityResolver entityResolver) {
+    XMLStreamReader reader = null;
+    try {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+      factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+      factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+      if (factory.isPropertySupported(REPORT_CDATA)) {
+        factory.setProperty(REPORT_CDATA, true);
+      }
+      if (entityResolver != null) {
+        factory.setXMLResolver((publicId, systemId, baseUri, namespace) -> {
+          try {
+            InputSource source = entityResolver.resolveEntity(publicId, systemId);
+            return source == null ? null : source.getByteStream();
+          } catch (SAXException | IOException e) {
+            throw new XMLStreamException(e);
+          }
+        });
+      }
+      reader = factory.createXMLStreamReader(inputStream);
+      Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      Node parent = document;
+      StringBuilder text = new StringBuilder();
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event != XMLStreamConstants.CHARACTERS && event != XMLStreamConstants.SPACE && text.length() > 0) {
+          parent.appendChild(document.createTextNode(text.toString()));
+          text.setLength(0);
+        }
+        switch (event) {
+          case XMLStreamConstants.START_ELEMENT:
+            Element element = document.createElement(reader.getLocalName());
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+              element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+            parent.appendChild(element);
+            parent = element;
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            parent = parent.getParentNode();
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.SPACE:
+            if (parent != document) {
+              text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+            break;
+          case XMLStreamConstants.CDATA:
+            parent.appendChild(document.createCDATASection(reader.getText()));
+            break;
+          default:
+            // comments, processing instructions and the doctype are not kept
+            break;
+        }
+      }
+      return document;
+    } catch (Exception e) {
+      throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+}
@@ -198,6 +198,14 @@ public class XPathParser {
   }
 
   public List<XNode> evalNodes(Object root, String expression) {
+    List<Node> elements = selectElements(root, expression);
+    if (elements != null) {
+      List<XNode> xnodes = new ArrayList<>(elements.size());
+      for (Node element : elements) {
+        xnodes.add(new XNode(this, element, variables));
+      }
+      return xnodes;
+    }
     List<XNode> xnodes = new ArrayList<>();
     NodeList nodes = (NodeList) evaluate(expression, root, XPathConstants.NODESET);
     for (int i = 0; i < nodes.getLength(); i++) {
@@ -211,15 +219,100 @@ public class XPathParser {
   }
 
   public XNode evalNode(Object root, String expression) {
-    Node node = (Node) evaluate(expression, root, XPathConstants.NODE);
+    List<Node> elements = selectElements(root, expression);
+    Node node;
+    if (elements != null) {
+      node = elements.isEmpty() ? null : elements.get(0);
+    } else {
+      node = (Node) evaluate(expression, root, XPathConstants.NODE);
+    }
     if (node == null) {
       return null;
     }
     return new XNode(this, node, variables);
   }
 
+  /**
+   * Selects the nodes of the expressions made of element names only, like {@code /mapper/sql} or
+   * {@code select|insert|update|delete}, without compiling and evaluating an XPath expression.
+   *
+   * @return the selected nodes in document order, or {@code null} if the expression is not of that form
+   */
+  private static List<Node> selectElements(Object root, String expression) {
+    if (!(root instanceof Node)) {
+      return null;
+    }
+    Node context = (Node) root;
+    if (expression.startsWith("/")) {
+      context = context.getNodeType() == Node.DOCUMENT_NODE ? context : context.getOwnerDocument();
+      expression = expression.substring(1);
+      if (expression.isEmpty()) {
+        List<Node> result = new ArrayList<>(1);
+        result.add(context);
+        return result;
+      }
+    }
+    // each step is the names one of the selected elements must have, several for a union
+    String[][] steps;
+    if (expression.indexOf('|') != -1) {
+      steps = new String[][] { expression.split("\\|", -1) };
+    } else {
+      String[] path = expression.split("/", -1);
+      steps = new String[path.length][];
+      for (int i = 0; i < path.length; i++) {
+        steps[i] = new String[] { path[i] };
+      }
+    }
+    for (String[] step : steps) {
+      for (String name : step) {
+        if (!isElementName(name)) {
+          return null;
+        }
+      }
+    }
+    List<Node> current = new ArrayList<>(1);
+    current.add(context);
+    for (String[] step : steps) {
+      List<Node> next = new ArrayList<>();
+      for (Node parent : current) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+          if (child.getNodeType() == Node.ELEMENT_NODE && contains(step, child.getNodeName())) {
+            next.add(child);
+          }
+        }
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  private static boolean contains(String[] names, String name) {
+    for (String candidate : names) {
+      if (candidate.equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isElementName(String name) {
+    if (name.isEmpty() || !(Character.isLetter(name.charAt(0)) || name.charAt(0) == '_')) {
+      return false;
+    }
+    for (int i = 1; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private Object evaluate(String expression, Object root, QName returnType) {
     try {
+      if (xpath == null) {
+        xpath = XPathFactory.newInstance().newXPath();
+      }
       return xpath.evaluate(expression, root, returnType);
     } catch (Exception e) {
       throw new BuilderException("Error evaluating XPath.  Cause: " + e, e);
@@ -265,8 +358,6 @@ public class XPathParser {
     this.validation = validation;
     this.entityResolver = entityResolver;
     this.variables = variables;
-    XPathFactory factory = XPathFactory.newInstance();
-    this.xpath = factory.newXPath();
   }
 
 }
@@ -25,8 +25,12 @@ import java.util.List;
 public class InterceptorChain {
 
   private final List<Interceptor> interceptors = new ArrayList<>();
+  private boolean weaving;
 
   public Object pluginAll(Object target) {
+    if (weaving) {
+      return weaveAll(target);
+    }
     // 遍历所有的插件，调用plugin方法，封装成代理对象
     for (Interceptor interceptor : interceptors) {
       // 拦截器对每一个执行器，进行层层包装，当前执行器就绑定了所有的拦截器，当执行器运行时，拦截器就会根据规则进行拦截
@@ -35,6 +39,20 @@ public class InterceptorChain {
     return target;
   }
 
+  private Object weaveAll(Object target) {
+    // 连续的可织入拦截器合并为一个生成类，其余拦截器仍调用plugin方法
+    final List<Interceptor> run = new ArrayList<>();
+    for (Interceptor interceptor : interceptors) {
+      if (PluginWeaver.canWeave(interceptor)) {
+        run.add(interceptor);
+      } else {
+        target = interceptor.plugin(PluginWeaver.weave(target, run));
+        run.clear();
+      }
+    }
+    return PluginWeaver.weave(target, run);
+  }
+
   public void addInterceptor(Interceptor interceptor) {
     interceptors.add(interceptor);
   }
@@ -43,4 +61,21 @@ public class InterceptorChain {
     return Collections.unmodifiableList(interceptors);
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isWeaving() {
+    return weaving;
+  }
+
+  /**
+   * Sets whether the interceptors applied with {@link Plugin#wrap(Object, Interceptor)} are woven into one generated
+   * class per target, instead of wrapping the target in one proxy per interceptor.
+   *
+   * @since 3.5.3
+   */
+  public void setWeaving(boolean weaving) {
+    this.weaving = weaving;
+  }
+
 }
@@ -0,0 +1,353 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.plugin;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * Weaves interceptors around a target with one generated class, instead of one {@link Plugin} proxy per interceptor.
+ * The generated class implements the intercepted interfaces of the target and calls the target directly for the
+ * methods no interceptor intercepts. The other methods call the interceptors in the order the nested proxies would, and
+ * the last {@link Invocation#proceed()} calls the target directly too.
+ * <p>
+ * Unlike with the nested proxies, {@link Invocation#getTarget()} is the target itself for every interceptor.
+ *
+ * @since 3.5.3
+ */
+final class PluginWeaver {
+
+  private static final Log log = LogFactory.getLog(PluginWeaver.class);
+
+  private static final AtomicInteger classCounter = new AtomicInteger();
+  // key: target class, then the interceptor classes
+  private static final Map<List<Class<?>>, Optional<Weaving>> weavings = new ConcurrentHashMap<>();
+
+  private PluginWeaver() {
+    // Prevent Instantiation of Static Class
+  }
+
+  /**
+   * Returns whether the interceptor is applied by {@link Plugin#wrap(Object, Interceptor)}, the only way of applying
+   * it that can be woven.
+   */
+  static boolean canWeave(Interceptor interceptor) {
+    try {
+      return interceptor.getClass().getMethod("plugin", Object.class).getDeclaringClass() == Interceptor.class;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Applies the interceptors to the target, the last one being the first called, like applying them one after the
+   * other with {@link Plugin#wrap(Object, Interceptor)} does.
+   */
+  static Object weave(Object target, List<Interceptor> interceptors) {
+    if (interceptors.isEmpty()) {
+      return target;
+    }
+    final List<Class<?>> key = new ArrayList<>(interceptors.size() + 1);
+    key.add(target.getClass());
+    for (Interceptor interceptor : interceptors) {
+      key.add(interceptor.getClass());
+    }
+    Optional<Weaving> weaving = weavings.get(key);
+    if (weaving == null) {
+      weaving = Optional.ofNullable(createWeaving(target.getClass(), interceptors));
+      weavings.putIfAbsent(key, weaving);
+    }
+    if (!weaving.isPresent()) {
+      for (Interceptor interceptor : interceptors) {
+        target = Plugin.wrap(target, interceptor);
+      }
+      return target;
+    }
+    return weaving.get().newInstance(target, interceptors.toArray(new Interceptor[0]));
+  }
+
+  private static Weaving createWeaving(Class<?> type, List<Interceptor> interceptors) {
+    final List<Map<Class<?>, Set<Method>>> signatureMaps = new ArrayList<>(interceptors.size());
+    final Set<Class<?>> interfaces = new LinkedHashSet<>();
+    for (Interceptor interceptor : interceptors) {
+      Map<Class<?>, Set<Method>> signatureMap = Plugin.getSignatureMap(interceptor);
+      signatureMaps.add(signatureMap);
+      interfaces.addAll(Arrays.asList(Plugin.getAllInterfaces(type, signatureMap)));
+    }
+    if (interfaces.isEmpty()) {
+      return null;
+    }
+    for (Class<?> iface : interfaces) {
+      if (!Modifier.isPublic(iface.getModifiers()) || !isVisible(iface)) {
+        return null;
+      }
+    }
+    final Map<String, Method> methods = new LinkedHashMap<>();
+    for (Class<?> iface : interfaces) {
+      for (Method method : iface.getMethods()) {
+        if (!Modifier.isStatic(method.getModifiers())) {
+          methods.putIfAbsent(method.getName() + Arrays.toString(method.getParameterTypes()), method);
+        }
+      }
+    }
+    final List<Method> interceptedMethods = new ArrayList<>();
+    final List<int[]> chains = new ArrayList<>();
+    final Map<Method, Integer> methodIndexes = new LinkedHashMap<>();
+    for (Method method : methods.values()) {
+      // the last interceptor wraps the others, so it is called first
+      final List<Integer> chain = new ArrayList<>();
+      for (int i = interceptors.size() - 1; i >= 0; i--) {
+        Set<Method> intercepted = signatureMaps.get(i).get(method.getDeclaringClass());
+        if (intercepted != null && intercepted.contains(method)) {
+          chain.add(i);
+        }
+      }
+      if (!chain.isEmpty()) {
+        methodIndexes.put(method, interceptedMethods.size());
+        interceptedMethods.add(method);
+        chains.add(chain.stream().mapToInt(Integer::intValue).toArray());
+      }
+    }
+    try {
+      final Class<?> wovenClass = generate(type, interfaces, methods.values(), methodIndexes);
+      return new Weaving(wovenClass.getConstructor(Object.class, Chain.class),
+          interceptedMethods.toArray(new Method[0]), chains.toArray(new int[0][]));
+    } catch (Exception | LinkageError e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Could not weave the interceptors of " + type.getName() + ", they are applied with proxies. Cause: " + e);
+      }
+      return null;
+    }
+  }
+
+  private static boolean isVisible(Class<?> type) {
+    try {
+      return Class.forName(type.getName(), false, PluginWeaver.class.getClassLoader()) == type;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Class<?> generate(Class<?> type, Set<Class<?>> interfaces, Iterable<Method> methods,
+      Map<Method, Integer> methodIndexes) throws Exception {
+    final ClassPool pool = new ClassPool(true);
+    pool.appendClassPath(new ClassClassPath(PluginWeaver.class));
+    final CtClass ctClass = pool.makeClass(PluginWeaver.class.getPackage().getName() + ".Woven$"
+        + type.getSimpleName() + "$" + classCounter.incrementAndGet());
+    for (Class<?> iface : interfaces) {
+      ctClass.addInterface(pool.get(iface.getName()));
+    }
+    ctClass.addInterface(pool.get(Woven.class.getName()));
+    ctClass.addField(CtField.make("private final Object target;", ctClass));
+    ctClass.addField(CtField.make("private final " + Chain.class.getName() + " chain;", ctClass));
+    final CtConstructor constructor = CtNewConstructor.make(
+        new CtClass[] {pool.get(Object.class.getName()), pool.get(Chain.class.getName())}, new CtClass[0],
+        "{ this.target = $1; this.chain = $2; }", ctClass);
+    ctClass.addConstructor(constructor);
+
+    final StringBuilder proceed = new StringBuilder("{");
+    for (Method method : methods) {
+      final Integer index = methodIndexes.get(method);
+      final String call = "((" + typeName(method.getDeclaringClass()) + ") target)." + method.getName();
+      final String body;
+      if (index == null) {
+        body = method.getReturnType() == void.class ? "{ " + call + "($$); }" : "{ return " + call + "($$); }";
+      } else {
+        // a proxy passes null arguments to a method without parameters
+        final String args = method.getParameterCount() == 0 ? "null" : "$args";
+        final String invoke = "chain.invoke(target, this, " + index + ", " + args + ")";
+        body = method.getReturnType() == void.class ? "{ " + invoke + "; }" : "{ return ($r) " + invoke + "; }";
+        proceed.append("if ($1 == ").append(index).append(") { ");
+        final String directCall = call + "(" + arguments(method) + ")";
+        proceed.append(method.getReturnType() == void.class ? directCall + "; return null;" : "return ($w) " + directCall + ";");
+        proceed.append(" }");
+      }
+      addMethod(ctClass, pool, method, body);
+    }
+    proceed.append(" throw new IllegalArgumentException(String.valueOf($1)); }");
+    final CtMethod proceedMethod = new CtMethod(pool.get(Object.class.getName()), "proceed",
+        new CtClass[] {CtClass.intType, pool.get(Object[].class.getName())}, ctClass);
+    proceedMethod.setExceptionTypes(new CtClass[] {pool.get(Throwable.class.getName())});
+    proceedMethod.setBody(proceed.toString());
+    ctClass.addMethod(proceedMethod);
+
+    addMethod(ctClass, pool, Object.class.getMethod("equals", Object.class), "{ return target.equals($1); }");
+    addMethod(ctClass, pool, Object.class.getMethod("hashCode"), "{ return target.hashCode(); }");
+    addMethod(ctClass, pool, Object.class.getMethod("toString"), "{ return target.toString(); }");
+    try {
+      return ctClass.toClass(PluginWeaver.class.getClassLoader(), PluginWeaver.class.getProtectionDomain());
+    } finally {
+      ctClass.detach();
+    }
+  }
+
+  private static void addMethod(CtClass ctClass, ClassPool pool, Method method, String body) throws Exception {
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    final CtClass[] ctParameterTypes = new CtClass[parameterTypes.length];
+    for (int i = 0; i < parameterTypes.length; i++) {
+      ctParameterTypes[i] = pool.get(typeName(parameterTypes[i]));
+    }
+    final CtMethod ctMethod = new CtMethod(pool.get(typeName(method.getReturnType())), method.getName(),
+        ctParameterTypes, ctClass);
+    final Class<?>[] exceptionTypes = method.getExceptionTypes();
+    final CtClass[] ctExceptionTypes = new CtClass[exceptionTypes.length];
+    for (int i = 0; i < exceptionTypes.length; i++) {
+      ctExceptionTypes[i] = pool.get(exceptionTypes[i].getName());
+    }
+    ctMethod.setExceptionTypes(ctExceptionTypes);
+    ctMethod.setBody(body);
+    ctClass.addMethod(ctMethod);
+  }
+
+  private static String arguments(Method method) {
+    final StringBuilder arguments = new StringBuilder();
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i > 0) {
+        arguments.append(", ");
+      }
+      final Class<?> parameterType = parameterTypes[i];
+      if (parameterType.isPrimitive()) {
+        final String wrapper = wrapperName(parameterType);
+        arguments.append("((").append(wrapper).append(") $2[").append(i).append("]).")
+            .append(parameterType.getName()).append("Value()");
+      } else {
+        arguments.append("(").append(typeName(parameterType)).append(") $2[").append(i).append("]");
+      }
+    }
+    return arguments.toString();
+  }
+
+  private static String wrapperName(Class<?> primitiveType) {
+    if (primitiveType == int.class) {
+      return Integer.class.getName();
+    } else if (primitiveType == char.class) {
+      return Character.class.getName();
+    }
+    final String name = primitiveType.getName();
+    return "java.lang." + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private static String typeName(Class<?> type) {
+    return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+  }
+
+  /**
+   * Implemented by the generated classes, calls a method of the target directly.
+   */
+  interface Woven {
+    Object proceed(int method, Object[] args) throws Throwable;
+  }
+
+  private static final class Weaving {
+    private final Constructor<?> constructor;
+    private final Method[] methods;
+    private final int[][] chains;
+
+    private Weaving(Constructor<?> constructor, Method[] methods, int[][] chains) {
+      this.constructor = constructor;
+      this.methods = methods;
+      this.chains = chains;
+    }
+
+    private Object newInstance(Object target, Interceptor[] interceptors) {
+      try {
+        return constructor.newInstance(target, new Chain(this, interceptors));
+      } catch (Exception e) {
+        throw new PluginException("Could not weave the interceptors of " + target.getClass().getName() + ". Cause: " + e, e);
+      }
+    }
+  }
+
+  /**
+   * The interceptors woven around a target.
+   */
+  static final class Chain {
+    private final Weaving weaving;
+    private final Interceptor[] interceptors;
+
+    private Chain(Weaving weaving, Interceptor[] interceptors) {
+      this.weaving = weaving;
+      this.interceptors = interceptors;
+    }
+
+    public Object invoke(Object target, Woven woven, int method, Object[] args) throws Throwable {
+      try {
+        return proceed(target, woven, method, args, 0);
+      } catch (Exception e) {
+        throw ExceptionUtil.unwrapThrowable(e);
+      }
+    }
+
+    private Object proceed(Object target, Woven woven, int method, Object[] args, int position) throws Throwable {
+      final int[] chain = weaving.chains[method];
+      if (position < chain.length) {
+        return interceptors[chain[position]].intercept(new WovenInvocation(target, this, woven, method, args, position));
+      }
+      return woven.proceed(method, args);
+    }
+  }
+
+  private static final class WovenInvocation extends Invocation {
+    private final Chain chain;
+    private final Woven woven;
+    private final int method;
+    private final int position;
+
+    private WovenInvocation(Object target, Chain chain, Woven woven, int method, Object[] args, int position) {
+      super(target, chain.weaving.methods[method], args);
+      this.chain = chain;
+      this.woven = woven;
+      this.method = method;
+      this.position = position;
+    }
+
+    @Override
+    public Object proceed() throws InvocationTargetException, IllegalAccessException {
+      try {
+        return chain.proceed(getTarget(), woven, method, getArgs(), position + 1);
+      } catch (Throwable t) {
+        // as Method#invoke on the next proxy or on the target would
+        throw new InvocationTargetException(ExceptionUtil.unwrapThrowable(t));
+      }
+    }
+  }
+
+}
@@ -20,6 +20,7 @@ import java.util.concurrent.ConcurrentMap;
 
 public class DefaultReflectorFactory implements ReflectorFactory {
   private boolean classCacheEnabled = true;
+  private boolean methodHandlesEnabled;
   private final ConcurrentMap<Class<?>, Reflector> reflectorMap = new ConcurrentHashMap<>();
 
   public DefaultReflectorFactory() {
@@ -35,13 +36,33 @@ public class DefaultReflectorFactory implements ReflectorFactory {
     this.classCacheEnabled = classCacheEnabled;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isMethodHandlesEnabled() {
+    return methodHandlesEnabled;
+  }
+
+  /**
+   * Sets whether the created reflectors access properties through method handles. The reflectors cached so far
+   * are dropped when the value changes.
+   *
+   * @since 3.5.3
+   */
+  public void setMethodHandlesEnabled(boolean methodHandlesEnabled) {
+    if (this.methodHandlesEnabled != methodHandlesEnabled) {
+      this.methodHandlesEnabled = methodHandlesEnabled;
+      reflectorMap.clear();
+    }
+  }
+
   @Override
   public Reflector findForClass(Class<?> type) {
     if (classCacheEnabled) {
       // synchronized (type) removed see issue #461
-      return reflectorMap.computeIfAbsent(type, Reflector::new);
+      return reflectorMap.computeIfAbsent(type, t -> new Reflector(t, methodHandlesEnabled));
     } else {
-      return new Reflector(type);
+      return new Reflector(type, methodHandlesEnabled);
     }
   }
 
@@ -37,6 +37,7 @@ import java.util.Map.Entry;
 import org.apache.ibatis.reflection.invoker.AmbiguousMethodInvoker;
 import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
 import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodHandleInvokers;
 import org.apache.ibatis.reflection.invoker.MethodInvoker;
 import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
 import org.apache.ibatis.reflection.property.PropertyNamer;
@@ -67,12 +68,25 @@ public class Reflector {
   private final Map<String, Class<?>> getTypes = new HashMap<>();
   // 构造器（无参构造器）
   private Constructor<?> defaultConstructor;
+  // 是否使用 MethodHandle/LambdaMetafactory 生成的 Invoker
+  private final boolean useMethodHandles;
 
   // 大小写不敏感的属性  key：纯大写的属性名 ,value： 原属性
   private Map<String, String> caseInsensitivePropertyMap = new HashMap<>();
 
   public Reflector(Class<?> clazz) {
+    this(clazz, false);
+  }
+
+  /**
+   * @param clazz the reflected class
+   * @param useMethodHandles whether the properties are accessed through method handles rather than core reflection
+   * @since 3.5.3
+   * @see MethodHandleInvokers
+   */
+  public Reflector(Class<?> clazz, boolean useMethodHandles) {
     type = clazz;
+    this.useMethodHandles = useMethodHandles;
     addDefaultConstructor(clazz);
     addGetMethods(clazz);
     addSetMethods(clazz);
@@ -155,7 +169,7 @@ public class Reflector {
             "Illegal overloaded getter method with ambiguous type for property ''{0}'' in class ''{1}''. This breaks the JavaBeans specification and can cause unpredictable results.",
             name, method.getDeclaringClass().getName()))
           // 正常方法调用
-        : new MethodInvoker(method);
+        : newMethodInvoker(method);
     getMethods.put(name, invoker);
     // 寻找出方法返回值解析类型 （TODO : 具体查看代码逻辑）
     Type returnType = TypeParameterResolver.resolveReturnType(method, type);
@@ -226,12 +240,16 @@ public class Reflector {
   }
 
   private void addSetMethod(String name, Method method) {
-    MethodInvoker invoker = new MethodInvoker(method);
+    MethodInvoker invoker = newMethodInvoker(method);
     setMethods.put(name, invoker);
     Type[] paramTypes = TypeParameterResolver.resolveParamTypes(method, type);
     setTypes.put(name, typeToClass(paramTypes[0]));
   }
 
+  private MethodInvoker newMethodInvoker(Method method) {
+    return useMethodHandles ? MethodHandleInvokers.forMethod(method) : new MethodInvoker(method);
+  }
+
   /**
    * 将 Type 转化为 Class 对象
    * @param src
@@ -286,7 +304,7 @@ public class Reflector {
 
   private void addSetField(Field field) {
     if (isValidPropertyName(field.getName())) {
-      setMethods.put(field.getName(), new SetFieldInvoker(field));
+      setMethods.put(field.getName(), useMethodHandles ? MethodHandleInvokers.forSetter(field) : new SetFieldInvoker(field));
       Type fieldType = TypeParameterResolver.resolveFieldType(field, type);
       setTypes.put(field.getName(), typeToClass(fieldType));
     }
@@ -298,7 +316,7 @@ public class Reflector {
    */
   private void addGetField(Field field) {
     if (isValidPropertyName(field.getName())) {
-      getMethods.put(field.getName(), new GetFieldInvoker(field));
+      getMethods.put(field.getName(), useMethodHandles ? MethodHandleInvokers.forGetter(field) : new GetFieldInvoker(field));
       Type fieldType = TypeParameterResolver.resolveFieldType(field, type);
       getTypes.put(field.getName(), typeToClass(fieldType));
     }
@@ -0,0 +1,59 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * {@link MethodInvoker} calling a getter or a setter through a function spun by
+ * {@link java.lang.invoke.LambdaMetafactory}, which the JIT compiles like a direct call.
+ *
+ * @since 3.5.3
+ */
+public class LambdaMethodInvoker extends MethodInvoker {
+
+  private final Function<Object, Object> getter;
+  private final BiConsumer<Object, Object> setter;
+
+  public LambdaMethodInvoker(Method method, Function<Object, Object> getter) {
+    super(method);
+    this.getter = getter;
+    this.setter = null;
+  }
+
+  public LambdaMethodInvoker(Method method, BiConsumer<Object, Object> setter) {
+    super(method);
+    this.getter = null;
+    this.setter = setter;
+  }
+
+  @Override
+  public Object invoke(Object target, Object[] args) throws InvocationTargetException {
+    try {
+      if (setter != null) {
+        setter.accept(target, args[0]);
+        return null;
+      }
+      return getter.apply(target);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+}
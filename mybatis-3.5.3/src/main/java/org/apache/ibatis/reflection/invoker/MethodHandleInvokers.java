@@ -0,0 +1,172 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.ibatis.lang.UsesJava7;
+import org.apache.ibatis.reflection.Reflector;
+
+/**
+ * Creates invokers that do not go through core reflection on every call.
+ * <p>
+ * Public getters and setters whose types are public and visible from MyBatis are called through functions spun
+ * by {@link LambdaMetafactory}; other methods and fields through {@link MethodHandle}s. The reflective invokers are
+ * returned for static members and when the access to a member is denied.
+ *
+ * @since 3.5.3
+ */
+public final class MethodHandleInvokers {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private MethodHandleInvokers() {
+    // Prevent Instantiation
+  }
+
+  public static MethodInvoker forMethod(Method method) {
+    if (Modifier.isStatic(method.getModifiers())) {
+      return new MethodInvoker(method);
+    }
+    try {
+      MethodInvoker invoker = lambdaInvoker(method);
+      if (invoker != null) {
+        return invoker;
+      }
+      MethodHandle handle = unreflect(method);
+      handle = handle.asType(handle.type().generic()).asSpreader(Object[].class, method.getParameterCount());
+      return new MethodHandleMethodInvoker(method, handle);
+    } catch (IllegalAccessException | RuntimeException e) {
+      return new MethodInvoker(method);
+    }
+  }
+
+  public static GetFieldInvoker forGetter(Field field) {
+    if (Modifier.isStatic(field.getModifiers())) {
+      return new GetFieldInvoker(field);
+    }
+    try {
+      MethodHandle handle;
+      try {
+        handle = LOOKUP.unreflectGetter(field);
+      } catch (IllegalAccessException e) {
+        if (!Reflector.canControlMemberAccessible()) {
+          throw e;
+        }
+        field.setAccessible(true);
+        handle = LOOKUP.unreflectGetter(field);
+      }
+      return new MethodHandleGetFieldInvoker(field, handle.asType(GETTER_TYPE));
+    } catch (IllegalAccessException | RuntimeException e) {
+      return new GetFieldInvoker(field);
+    }
+  }
+
+  public static SetFieldInvoker forSetter(Field field) {
+    if (Modifier.isStatic(field.getModifiers())) {
+      return new SetFieldInvoker(field);
+    }
+    try {
+      MethodHandle handle;
+      try {
+        handle = LOOKUP.unreflectSetter(field);
+      } catch (IllegalAccessException e) {
+        // final fields can only be written once made accessible
+        if (!Reflector.canControlMemberAccessible()) {
+          throw e;
+        }
+        field.setAccessible(true);
+        handle = LOOKUP.unreflectSetter(field);
+      }
+      return new MethodHandleSetFieldInvoker(field, handle.asType(SETTER_TYPE));
+    } catch (IllegalAccessException | RuntimeException e) {
+      return new SetFieldInvoker(field);
+    }
+  }
+
+  // invokeExact is signature polymorphic, animal-sniffer cannot match its call sites against the Java 8 signature
+  @UsesJava7
+  @SuppressWarnings("unchecked")
+  private static MethodInvoker lambdaInvoker(Method method) {
+    final Class<?> declaringClass = method.getDeclaringClass();
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    if (!Modifier.isPublic(method.getModifiers()) || !isAccessible(declaringClass)) {
+      return null;
+    }
+    try {
+      if (parameterTypes.length == 0 && method.getReturnType() != void.class && isAccessible(method.getReturnType())) {
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+            GETTER_TYPE, LOOKUP.unreflect(method), MethodType.methodType(wrap(method.getReturnType()), declaringClass));
+        return new LambdaMethodInvoker(method, (Function<Object, Object>) site.getTarget().invokeExact());
+      } else if (parameterTypes.length == 1 && isAccessible(parameterTypes[0])) {
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+            SETTER_TYPE, LOOKUP.unreflect(method), MethodType.methodType(void.class, declaringClass, wrap(parameterTypes[0])));
+        return new LambdaMethodInvoker(method, (BiConsumer<Object, Object>) site.getTarget().invokeExact());
+      }
+    } catch (Throwable t) {
+      // fall back to a method handle
+    }
+    return null;
+  }
+
+  private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+    try {
+      return LOOKUP.unreflect(method);
+    } catch (IllegalAccessException e) {
+      if (!Reflector.canControlMemberAccessible()) {
+        throw e;
+      }
+      method.setAccessible(true);
+      return LOOKUP.unreflect(method);
+    }
+  }
+
+  private static boolean isAccessible(Class<?> type) {
+    // the spun classes are defined by the class loader of MyBatis and can only link to the types it sees
+    Class<?> componentType = type;
+    while (componentType.isArray()) {
+      componentType = componentType.getComponentType();
+    }
+    if (componentType.isPrimitive()) {
+      return true;
+    }
+    if (!Modifier.isPublic(componentType.getModifiers())) {
+      return false;
+    }
+    try {
+      return Class.forName(componentType.getName(), false, MethodHandleInvokers.class.getClassLoader()) == componentType;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    return MethodType.methodType(type).wrap().returnType();
+  }
+
+}
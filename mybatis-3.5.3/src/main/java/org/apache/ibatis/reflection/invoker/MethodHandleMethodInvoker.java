@@ -0,0 +1,52 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.ibatis.lang.UsesJava7;
+
+/**
+ * {@link MethodInvoker} calling the method through a {@link MethodHandle} instead of {@link Method#invoke}.
+ *
+ * @since 3.5.3
+ */
+public class MethodHandleMethodInvoker extends MethodInvoker {
+
+  private final MethodHandle handle;
+
+  /**
+   * @param method the invoked method
+   * @param handle handle of type {@code (Object, Object[])Object} calling the method
+   */
+  public MethodHandleMethodInvoker(Method method, MethodHandle handle) {
+    super(method);
+    this.handle = handle;
+  }
+
+  @UsesJava7
+  @Override
+  public Object invoke(Object target, Object[] args) throws InvocationTargetException {
+    try {
+      return (Object) handle.invokeExact(target, args);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+}
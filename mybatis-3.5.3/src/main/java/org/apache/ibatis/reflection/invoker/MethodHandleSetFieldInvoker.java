@@ -0,0 +1,55 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+
+import org.apache.ibatis.lang.UsesJava7;
+import org.apache.ibatis.reflection.ReflectionException;
+
+/**
+ * {@link SetFieldInvoker} writing the field through a {@link MethodHandle}.
+ *
+ * @since 3.5.3
+ */
+public class MethodHandleSetFieldInvoker extends SetFieldInvoker {
+
+  private final MethodHandle setter;
+
+  /**
+   * @param field the written field
+   * @param setter handle of type {@code (Object, Object)void} writing the field
+   */
+  public MethodHandleSetFieldInvoker(Field field, MethodHandle setter) {
+    super(field);
+    this.setter = setter;
+  }
+
+  @UsesJava7
+  @Override
+  public Object invoke(Object target, Object[] args) {
+    try {
+      setter.invokeExact(target, args[0]);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new ReflectionException(t);
+    }
+    return null;
+  }
+
+}
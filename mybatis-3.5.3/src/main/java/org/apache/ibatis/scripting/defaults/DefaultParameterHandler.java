@@ -30,7 +30,6 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeException;
 import org.apache.ibatis.type.TypeHandler;
-import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
  * @author Clinton Begin
@@ -38,8 +37,6 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
  */
 public class DefaultParameterHandler implements ParameterHandler {
 
-  // 类型处理器注册表
-  private final TypeHandlerRegistry typeHandlerRegistry;
   // Mapper XML 中配置的参数映射信息
   private final MappedStatement mappedStatement;
   // 参数对象
@@ -52,7 +49,6 @@ public class DefaultParameterHandler implements ParameterHandler {
   public DefaultParameterHandler(MappedStatement mappedStatement, Object parameterObject, BoundSql boundSql) {
     this.mappedStatement = mappedStatement;
     this.configuration = mappedStatement.getConfiguration();
-    this.typeHandlerRegistry = mappedStatement.getConfiguration().getTypeHandlerRegistry();
     this.parameterObject = parameterObject;
     this.boundSql = boundSql;
   }
@@ -72,23 +68,7 @@ public class DefaultParameterHandler implements ParameterHandler {
         ParameterMapping parameterMapping = parameterMappings.get(i);
         // 如果不是OUT，才设进去
         if (parameterMapping.getMode() != ParameterMode.OUT) {
-          Object value;
-          String propertyName = parameterMapping.getProperty();
-          // 判断是否参数映射中存在该属性，若存在则设为参数映射中的值
-          if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
-            // 若有额外的参数, 设为额外的参数
-            value = boundSql.getAdditionalParameter(propertyName);
-          } else if (parameterObject == null) {
-            // 若参数对象为空, 设为 null
-            value = null;
-          // 如果已经存在该参数的类型处理器那直接设置成value,反正类型处理器会解析value
-          } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
-            value = parameterObject;
-          } else {
-            // 一般情况是个POJO，  需要根据属性名通过反射（属性处理器）拿到对象中的属性值
-            MetaObject metaObject = configuration.newMetaObject(parameterObject);
-            value = metaObject.getValue(propertyName);
-          }
+          Object value = getParameterValue(configuration, boundSql, parameterObject, parameterMapping);
           // 获取 typeHandler 和 jdbcType 属性
           TypeHandler typeHandler = parameterMapping.getTypeHandler(); // 这个类型处理器是在解析BoundSql的时候就解析好了的
           JdbcType jdbcType = parameterMapping.getJdbcType();
@@ -107,4 +87,29 @@ public class DefaultParameterHandler implements ParameterHandler {
     }
   }
 
+  /**
+   * Returns the value {@link #setParameters(PreparedStatement)} sets for a parameter mapping.
+   *
+   * @since 3.5.3
+   */
+  public static Object getParameterValue(Configuration configuration, BoundSql boundSql, Object parameterObject,
+      ParameterMapping parameterMapping) {
+    String propertyName = parameterMapping.getProperty();
+    // 判断是否参数映射中存在该属性，若存在则设为参数映射中的值
+    if (boundSql.hasAdditionalParameter(propertyName)) { // issue #448 ask first for additional params
+      // 若有额外的参数, 设为额外的参数
+      return boundSql.getAdditionalParameter(propertyName);
+    } else if (parameterObject == null) {
+      // 若参数对象为空, 设为 null
+      return null;
+    // 如果已经存在该参数的类型处理器那直接设置成value,反正类型处理器会解析value
+    } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+      return parameterObject;
+    } else {
+      // 一般情况是个POJO，  需要根据属性名通过反射（属性处理器）拿到对象中的属性值
+      MetaObject metaObject = configuration.newMetaObject(parameterObject);
+      return metaObject.getValue(propertyName);
+    }
+  }
+
 }
@@ -0,0 +1,467 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ognl.OgnlException;
+import ognl.OgnlOps;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+
+/**
+ * An expression of the subset of OGNL used by most test expressions, parsed once and evaluated without OGNL contexts.
+ * <p>
+ * The subset holds {@code null}, boolean, integer, decimal and string literals, property paths, method calls without
+ * arguments, comparisons and the {@code and}, {@code or} and {@code not} operators. The operators use the
+ * {@link OgnlOps} rules, so the results are the ones OGNL returns. Other expressions are not compiled. A step that
+ * this class does not resolve the way OGNL would (e.g. a property of {@code null}) is evaluated by OGNL on the value
+ * computed so far, so no getter or method of the parameter is called twice.
+ *
+ * @since 3.5.3
+ */
+final class CompiledExpression {
+
+  private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList("and", "or", "not", "eq", "neq",
+      "lt", "lte", "gt", "gte", "in", "instanceof", "shl", "shr", "ushr", "band", "bor", "xor", "new"));
+  // names that OGNL resolves to something else than the entries of a map
+  private static final Set<String> MAP_PROPERTIES = new HashSet<>(Arrays.asList("size", "keys", "keySet",
+      "values", "isEmpty"));
+  private static final Object[] NO_ARGUMENTS = {};
+  private static final ReflectorFactory REFLECTOR_FACTORY = new DefaultReflectorFactory();
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Optional<Method>>> METHODS = new ConcurrentHashMap<>();
+
+  private final Node root;
+
+  private CompiledExpression(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns the compiled expression, or {@code null} if it is not part of the supported subset.
+   */
+  static CompiledExpression compile(String expression) {
+    Parser parser = new Parser(expression);
+    Node node = parser.parseOr();
+    return node != null && parser.atEnd() ? new CompiledExpression(node) : null;
+  }
+
+  /**
+   * Returns the value of the expression.
+   *
+   * @throws EvaluationException if OGNL could not evaluate a step, or a getter or method failed
+   */
+  Object getValue(Object rootObject) {
+    return root.getValue(rootObject);
+  }
+
+  private interface Node {
+    Object getValue(Object rootObject);
+  }
+
+  private static Object getRootProperty(Object rootObject, String name) {
+    if (!(rootObject instanceof DynamicContext.ContextMap)) {
+      return getProperty(rootObject, name);
+    }
+    // same as DynamicContext.ContextAccessor
+    Map<?, ?> map = (Map<?, ?>) rootObject;
+    Object result = map.get(name);
+    if (map.containsKey(name) || result != null) {
+      return result;
+    }
+    Object parameterObject = map.get(DynamicContext.PARAMETER_OBJECT_KEY);
+    if (parameterObject instanceof Map) {
+      return ((Map<?, ?>) parameterObject).get(name);
+    }
+    return null;
+  }
+
+  private static Object getProperty(Object target, String name) {
+    if (target == null
+        || target instanceof Map && MAP_PROPERTIES.contains(name)
+        || target instanceof Collection || target instanceof Iterator || target instanceof Enumeration
+        || target.getClass().isArray()) {
+      return evaluateWithOgnl(name, target);
+    }
+    if (target instanceof Map) {
+      return ((Map<?, ?>) target).get(name);
+    }
+    Reflector reflector = REFLECTOR_FACTORY.findForClass(target.getClass());
+    if (!reflector.hasGetter(name)) {
+      return evaluateWithOgnl(name, target);
+    }
+    try {
+      return reflector.getGetInvoker(name).invoke(target, NO_ARGUMENTS);
+    } catch (Exception e) {
+      throw new EvaluationException(ExceptionUtil.unwrapThrowable(e));
+    }
+  }
+
+  private static Object invokeMethod(Object target, String name) {
+    if (target == null) {
+      return evaluateWithOgnl(name + "()", null);
+    }
+    Optional<Method> method = METHODS.computeIfAbsent(target.getClass(), c -> new ConcurrentHashMap<>())
+        .computeIfAbsent(name, n -> Optional.ofNullable(findPublicMethod(target.getClass(), n)));
+    if (!method.isPresent()) {
+      return evaluateWithOgnl(name + "()", target);
+    }
+    try {
+      return method.get().invoke(target, NO_ARGUMENTS);
+    } catch (Exception e) {
+      throw new EvaluationException(ExceptionUtil.unwrapThrowable(e));
+    }
+  }
+
+  // evaluates only this step, on the value computed so far
+  private static Object evaluateWithOgnl(String step, Object target) {
+    try {
+      return OgnlCache.evaluate(step, target);
+    } catch (OgnlException e) {
+      throw new EvaluationException(e);
+    }
+  }
+
+  // a method of a public type, that can be called even if the class of the target is not public
+  private static Method findPublicMethod(Class<?> type, String name) {
+    if (type == null) {
+      return null;
+    }
+    if (Modifier.isPublic(type.getModifiers())) {
+      try {
+        return type.getMethod(name);
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
+    }
+    for (Class<?> interfaceType : type.getInterfaces()) {
+      Method method = findPublicMethod(interfaceType, name);
+      if (method != null) {
+        return method;
+      }
+    }
+    return findPublicMethod(type.getSuperclass(), name);
+  }
+
+  /**
+   * Reports a step that OGNL could not evaluate, or the exception of a getter or method of the parameter.
+   */
+  static final class EvaluationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private EvaluationException(Throwable cause) {
+      super(cause);
+    }
+  }
+
+  private static final class Parser {
+
+    private final String expression;
+    private int position;
+
+    private Parser(String expression) {
+      this.expression = expression;
+    }
+
+    private boolean atEnd() {
+      skipWhitespace();
+      return position == expression.length();
+    }
+
+    private Node parseOr() {
+      List<Node> operands = parseOperands("or", "||", true);
+      if (operands == null || operands.size() == 1) {
+        return operands == null ? null : operands.get(0);
+      }
+      Node[] nodes = operands.toArray(new Node[0]);
+      return rootObject -> {
+        Object result = null;
+        for (int i = 0; i < nodes.length; i++) {
+          result = nodes[i].getValue(rootObject);
+          if (i != nodes.length - 1 && OgnlOps.booleanValue(result)) {
+            break;
+          }
+        }
+        return result;
+      };
+    }
+
+    private Node parseAnd() {
+      List<Node> operands = parseOperands("and", "&&", false);
+      if (operands == null || operands.size() == 1) {
+        return operands == null ? null : operands.get(0);
+      }
+      Node[] nodes = operands.toArray(new Node[0]);
+      return rootObject -> {
+        Object result = null;
+        for (int i = 0; i < nodes.length; i++) {
+          result = nodes[i].getValue(rootObject);
+          if (i != nodes.length - 1 && !OgnlOps.booleanValue(result)) {
+            break;
+          }
+        }
+        return result;
+      };
+    }
+
+    private List<Node> parseOperands(String keyword, String symbol, boolean or) {
+      List<Node> operands = new ArrayList<>();
+      do {
+        Node operand = or ? parseAnd() : parseEquality();
+        if (operand == null) {
+          return null;
+        }
+        operands.add(operand);
+      } while (acceptKeyword(keyword) || accept(symbol));
+      return operands;
+    }
+
+    private Node parseEquality() {
+      Node left = parseRelational();
+      while (left != null) {
+        boolean equal;
+        if (acceptKeyword("eq") || accept("==")) {
+          equal = true;
+        } else if (acceptKeyword("neq") || accept("!=")) {
+          equal = false;
+        } else {
+          break;
+        }
+        Node l = left;
+        Node r = parseRelational();
+        if (r == null) {
+          return null;
+        }
+        left = rootObject -> OgnlOps.equal(l.getValue(rootObject), r.getValue(rootObject)) == equal;
+      }
+      return left;
+    }
+
+    private Node parseRelational() {
+      Node left = parseUnary();
+      while (left != null) {
+        String operator;
+        if (acceptKeyword("lte") || accept("<=")) {
+          operator = "<=";
+        } else if (acceptKeyword("gte") || accept(">=")) {
+          operator = ">=";
+        } else if (acceptKeyword("lt") || accept("<")) {
+          operator = "<";
+        } else if (acceptKeyword("gt") || accept(">")) {
+          operator = ">";
+        } else {
+          break;
+        }
+        Node l = left;
+        Node r = parseUnary();
+        if (r == null) {
+          return null;
+        }
+        switch (operator) {
+          case "<":
+            left = rootObject -> OgnlOps.less(l.getValue(rootObject), r.getValue(rootObject));
+            break;
+          case ">":
+            left = rootObject -> OgnlOps.greater(l.getValue(rootObject), r.getValue(rootObject));
+            break;
+          case "<=":
+            left = rootObject -> !OgnlOps.greater(l.getValue(rootObject), r.getValue(rootObject));
+            break;
+          default:
+            left = rootObject -> !OgnlOps.less(l.getValue(rootObject), r.getValue(rootObject));
+            break;
+        }
+      }
+      return left;
+    }
+
+    private Node parseUnary() {
+      if (acceptKeyword("not") || (peek() == '!' && peek(1) != '=' && accept("!"))) {
+        Node operand = parseUnary();
+        return operand == null ? null : rootObject -> !OgnlOps.booleanValue(operand.getValue(rootObject));
+      }
+      return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+      skipWhitespace();
+      char c = peek();
+      if (c == '(') {
+        position++;
+        Node node = parseOr();
+        return node != null && accept(")") ? node : null;
+      }
+      if (c == '\'' || c == '"') {
+        return parseString(c);
+      }
+      if (Character.isDigit(c)) {
+        return parseNumber();
+      }
+      String identifier = parseIdentifier();
+      if (identifier == null) {
+        return null;
+      }
+      switch (identifier) {
+        case "null":
+          return rootObject -> null;
+        case "true":
+          return rootObject -> Boolean.TRUE;
+        case "false":
+          return rootObject -> Boolean.FALSE;
+        default:
+          break;
+      }
+      if (RESERVED_WORDS.contains(identifier) || peek() == '(') {
+        return null;
+      }
+      Node node = rootObject -> getRootProperty(rootObject, identifier);
+      while (peek() == '.') {
+        position++;
+        String name = parseIdentifier();
+        if (name == null || RESERVED_WORDS.contains(name)) {
+          return null;
+        }
+        Node target = node;
+        if (peek() == '(') {
+          if (!accept("(") || !accept(")")) {
+            // methods with arguments are left to OGNL
+            return null;
+          }
+          node = rootObject -> invokeMethod(target.getValue(rootObject), name);
+        } else {
+          node = rootObject -> getProperty(target.getValue(rootObject), name);
+        }
+      }
+      return node;
+    }
+
+    private Node parseString(char quote) {
+      int end = expression.indexOf(quote, position + 1);
+      if (end == -1) {
+        return null;
+      }
+      String value = expression.substring(position + 1, end);
+      if (value.indexOf('\\') != -1) {
+        return null;
+      }
+      position = end + 1;
+      // OGNL reads a single character between single quotes as a char
+      Object literal = quote == '\'' && value.length() == 1 ? (Object) value.charAt(0) : value;
+      return rootObject -> literal;
+    }
+
+    private Node parseNumber() {
+      int start = position;
+      while (Character.isDigit(charAt(position))) {
+        position++;
+      }
+      boolean decimal = charAt(position) == '.' && Character.isDigit(charAt(position + 1));
+      if (decimal) {
+        position++;
+        while (Character.isDigit(charAt(position))) {
+          position++;
+        }
+      }
+      if (position < expression.length()
+          && (Character.isJavaIdentifierPart(charAt(position)) || charAt(position) == '.')) {
+        // suffixes (L, B, H, D, F), exponents, hexadecimal...
+        return null;
+      }
+      String text = expression.substring(start, position);
+      Object literal;
+      try {
+        literal = decimal ? (Object) Double.valueOf(text) : (Object) Integer.valueOf(text);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if (!decimal && text.length() > 1 && text.charAt(0) == '0') {
+        // octal
+        return null;
+      }
+      return rootObject -> literal;
+    }
+
+    private String parseIdentifier() {
+      skipWhitespace();
+      int start = position;
+      if (position < expression.length() && Character.isJavaIdentifierStart(expression.charAt(position))) {
+        position++;
+        while (position < expression.length() && Character.isJavaIdentifierPart(expression.charAt(position))) {
+          position++;
+        }
+        return expression.substring(start, position);
+      }
+      return null;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+      skipWhitespace();
+      int end = position + keyword.length();
+      if (expression.startsWith(keyword, position)
+          && (end == expression.length() || !Character.isJavaIdentifierPart(expression.charAt(end)))) {
+        position = end;
+        return true;
+      }
+      return false;
+    }
+
+    private boolean accept(String symbol) {
+      skipWhitespace();
+      if (expression.startsWith(symbol, position)) {
+        position += symbol.length();
+        return true;
+      }
+      return false;
+    }
+
+    private char peek() {
+      return peek(0);
+    }
+
+    private char peek(int offset) {
+      skipWhitespace();
+      return charAt(position + offset);
+    }
+
+    private char charAt(int index) {
+      return index < expression.length() ? expression.charAt(index) : 0;
+    }
+
+    private void skipWhitespace() {
+      while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+        position++;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.builder.BuilderException;
+
+/**
+ * Evaluates the expressions of the supported subset without OGNL, and the other ones with OGNL. A compiled expression
+ * is evaluated once, its errors are reported the way OGNL reports them.
+ *
+ * @since 3.5.3
+ * @see CompiledXMLLanguageDriver
+ */
+public class CompiledExpressionEvaluator extends ExpressionEvaluator {
+
+  private static final int MAX_CACHED_EXPRESSIONS = 1024;
+  // an empty value marks the expressions that OGNL evaluates
+  private static final ConcurrentMap<String, Optional<CompiledExpression>> EXPRESSION_CACHE = new ConcurrentHashMap<>();
+
+  @Override
+  protected Object getValue(String expression, Object parameterObject) {
+    Optional<CompiledExpression> compiled = EXPRESSION_CACHE.get(expression);
+    if (compiled == null) {
+      compiled = Optional.ofNullable(CompiledExpression.compile(expression));
+      if (EXPRESSION_CACHE.size() < MAX_CACHED_EXPRESSIONS) {
+        EXPRESSION_CACHE.putIfAbsent(expression, compiled);
+      }
+    }
+    if (!compiled.isPresent()) {
+      return super.getValue(expression, parameterObject);
+    }
+    try {
+      return compiled.get().getValue(parameterObject);
+    } catch (CompiledExpression.EvaluationException e) {
+      Throwable cause = e.getCause();
+      throw new BuilderException("Error evaluating expression '" + expression + "'. Cause: " + cause, cause);
+    }
+  }
+
+}
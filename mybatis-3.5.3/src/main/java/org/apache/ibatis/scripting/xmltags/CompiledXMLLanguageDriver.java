@@ -0,0 +1,33 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+/**
+ * {@link XMLLanguageDriver} that evaluates the test and collection expressions of the scripts with a
+ * {@link CompiledExpressionEvaluator}.
+ *
+ * @since 3.5.3
+ */
+public class CompiledXMLLanguageDriver extends XMLLanguageDriver {
+
+  private static final ExpressionEvaluator EVALUATOR = new CompiledExpressionEvaluator();
+
+  @Override
+  protected ExpressionEvaluator getExpressionEvaluator() {
+    return EVALUATOR;
+  }
+
+}
@@ -15,7 +15,9 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
 
@@ -44,6 +46,11 @@ public class DynamicContext {
   private final StringJoiner sqlBuilder = new StringJoiner(" ");
   // 用来提供唯一编号，通过每次获取后自增来保证得到的编号唯一
   private int uniqueNumber = 0;
+  // 构建 sql 时收集的 #{} 占位符，为 null 表示不收集
+  private List<String> parameterContents;
+  private List<Map<String, String>> parameterExpressions;
+  // 是否追加了未解析的 #{} 占位符，此时收集的占位符不完整
+  private boolean unparsedParameters;
 
   /**
    * 初始化 bindings，并设置入参和 databaseId
@@ -72,9 +79,49 @@ public class DynamicContext {
   }
 
   public void appendSql(String sql) {
+    if (parameterContents != null && sql.contains("#{")) {
+      unparsedParameters = true;
+    }
     sqlBuilder.add(sql);
   }
 
+  /**
+   * Makes the sql nodes replace the placeholders of their text by {@code ?} and collect them in this context.
+   */
+  void collectParameters() {
+    parameterContents = new ArrayList<>();
+    parameterExpressions = new ArrayList<>();
+  }
+
+  boolean isCollectingParameters() {
+    return parameterContents != null;
+  }
+
+  /**
+   * Appends a parsed text, only called while collecting parameters.
+   */
+  void appendSql(SqlFragment fragment) {
+    appendSql(fragment.toSql(this));
+  }
+
+  String appendParameter(SqlFragment.Parameter parameter) {
+    parameterContents.add(parameter.getContent());
+    parameterExpressions.add(parameter.getExpression());
+    return "?";
+  }
+
+  /**
+   * Returns the contents of the collected placeholders, or {@code null} if some of the sql was appended with unparsed
+   * placeholders.
+   */
+  List<String> getParameterContents() {
+    return unparsedParameters ? null : parameterContents;
+  }
+
+  List<Map<String, String>> getParameterExpressions() {
+    return unparsedParameters ? null : parameterExpressions;
+  }
+
   public String getSql() {
     return sqlBuilder.toString().trim();
   }
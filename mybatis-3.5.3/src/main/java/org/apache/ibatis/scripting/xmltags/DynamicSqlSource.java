@@ -15,9 +15,14 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.List;
+import java.util.Map;
+
 import org.apache.ibatis.builder.SqlSourceBuilder;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -28,10 +33,23 @@ public class DynamicSqlSource implements SqlSource {
     private final Configuration configuration;
     // 解析出来的动态sql节点
     private final SqlNode rootSqlNode;
+    // 解析过的 sql 缓存，未开启时为 null
+    private final SqlTemplateCache templateCache;
 
     public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
         this.configuration = configuration;
         this.rootSqlNode = rootSqlNode;
+        Integer cacheSize = configuration.getDynamicSqlCacheSize();
+        this.templateCache = cacheSize != null && cacheSize > 0 ? new SqlTemplateCache(cacheSize) : null;
+    }
+
+    /**
+     * Returns the cache of the parsed sql, or {@code null} if the {@code dynamicSqlCacheSize} setting is not set.
+     *
+     * @since 3.5.3
+     */
+    public SqlTemplateCache getTemplateCache() {
+        return templateCache;
     }
 
     /**
@@ -43,13 +61,22 @@ public class DynamicSqlSource implements SqlSource {
      */
     @Override
     public BoundSql getBoundSql(Object parameterObject) {
+        if (configuration.isUseCompiledDynamicSql()) {
+            BoundSql boundSql = getCompiledBoundSql(parameterObject);
+            if (boundSql != null) {
+                return boundSql;
+            }
+        }
         // 1.构建动态上下文
         DynamicContext context = new DynamicContext(configuration, parameterObject);
         // 2.归 责任链 处理一个个SqlNode   编译出一个完整sql
         rootSqlNode.apply(context);
+        Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+        if (templateCache != null) {
+            return getCachedBoundSql(context, parameterType, parameterObject, null);
+        }
         SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
         // 3.接下来处理 处理sql中的#{...} 并构建对应的 ParameterMapping，生成最终的 StaticSqlSource
-        Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
         // 怎么处理呢？ 很简单， 就是拿到#{}中的内容 封装为parameterMapper，  替换成?,
         // 在最后设置参数的时候就可以拿到队形转换器设置对应的方法  set{Type}()
         // 得到 StaticSqlSource
@@ -61,6 +88,61 @@ public class DynamicSqlSource implements SqlSource {
         return boundSql;
     }
 
+    /**
+     * 构建 sql 的同时收集各节点预先解析的 #{}，不再解析整条 sql
+     * @return 有节点追加了未解析的 #{} 时返回 null
+     */
+    private BoundSql getCompiledBoundSql(Object parameterObject) {
+        DynamicContext context = new DynamicContext(configuration, parameterObject);
+        context.collectParameters();
+        rootSqlNode.apply(context);
+        List<String> parameterContents = context.getParameterContents();
+        if (parameterContents == null) {
+            return null;
+        }
+        Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+        if (templateCache != null) {
+            return getCachedBoundSql(context, parameterType, parameterObject, parameterContents);
+        }
+        Map<String, Object> bindings = context.getBindings();
+        List<ParameterMapping> parameterMappings = new SqlSourceBuilder(configuration)
+            .buildParameterMappings(parameterContents, context.getParameterExpressions(), parameterType, bindings);
+        BoundSql boundSql = new BoundSql(configuration, context.getSql(), parameterMappings, parameterObject);
+        bindings.forEach(boundSql::setAdditionalParameter);
+        return boundSql;
+    }
+
+    /**
+     * 相同的 sql（即相同的分支、循环次数和 ${} 的值）复用解析过的 sql 和 ParameterMapping
+     * @param parameterContents 已收集的 #{}，为 null 时 #{} 还在 sql 中
+     */
+    private BoundSql getCachedBoundSql(DynamicContext context, Class<?> parameterType, Object parameterObject, List<String> parameterContents) {
+        String sql = context.getSql();
+        Map<String, Object> bindings = context.getBindings();
+        MetaObject metaParameters = configuration.newMetaObject(bindings);
+        SqlTemplateCache.Template template = templateCache.get(parameterType, sql, parameterContents, metaParameters);
+        String parsedSql;
+        List<ParameterMapping> parameterMappings;
+        if (template != null) {
+            parsedSql = template.getSql();
+            parameterMappings = template.getParameterMappings();
+        } else {
+            SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
+            if (parameterContents != null) {
+                parsedSql = sql;
+                parameterMappings = sqlSourceParser.buildParameterMappings(parameterContents, context.getParameterExpressions(), parameterType, bindings);
+            } else {
+                BoundSql parsed = sqlSourceParser.parse(sql, parameterType, bindings).getBoundSql(parameterObject);
+                parsedSql = parsed.getSql();
+                parameterMappings = parsed.getParameterMappings();
+            }
+            templateCache.put(parameterType, sql, parameterContents, parsedSql, parameterMappings, metaParameters);
+        }
+        BoundSql boundSql = new BoundSql(configuration, parsedSql, parameterMappings, parameterObject);
+        bindings.forEach(boundSql::setAdditionalParameter);
+        return boundSql;
+    }
+
 
 
 
@@ -46,7 +46,14 @@ public class ForEachSqlNode implements SqlNode {
   private final Configuration configuration;
 
   public ForEachSqlNode(Configuration configuration, SqlNode contents, String collectionExpression, String index, String item, String open, String close, String separator) {
-    this.evaluator = new ExpressionEvaluator();
+    this(configuration, contents, collectionExpression, index, item, open, close, separator, new ExpressionEvaluator());
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public ForEachSqlNode(Configuration configuration, SqlNode contents, String collectionExpression, String index, String item, String open, String close, String separator, ExpressionEvaluator evaluator) {
+    this.evaluator = evaluator;
     this.collectionExpression = collectionExpression;
     this.contents = contents;
     this.open = open;
@@ -196,6 +203,21 @@ public class ForEachSqlNode implements SqlNode {
       delegate.appendSql(parser.parse(sql));
     }
 
+    @Override
+    boolean isCollectingParameters() {
+      return delegate.isCollectingParameters();
+    }
+
+    @Override
+    String appendParameter(SqlFragment.Parameter parameter) {
+      // 与 appendSql 中的替换相同
+      SqlFragment.Parameter itemized = parameter.rename(item, itemizeItem(item, index));
+      if (itemIndex != null && itemized == parameter) {
+        itemized = parameter.rename(itemIndex, itemizeItem(itemIndex, index));
+      }
+      return delegate.appendParameter(itemized);
+    }
+
     @Override
     public int getUniqueNumber() {
       return delegate.getUniqueNumber();
@@ -248,6 +270,16 @@ public class ForEachSqlNode implements SqlNode {
     public int getUniqueNumber() {
       return delegate.getUniqueNumber();
     }
+
+    @Override
+    boolean isCollectingParameters() {
+      return delegate.isCollectingParameters();
+    }
+
+    @Override
+    String appendParameter(SqlFragment.Parameter parameter) {
+      return delegate.appendParameter(parameter);
+    }
   }
 
 }
@@ -0,0 +1,142 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.SqlSourceBuilder;
+
+/**
+ * The text of a sql node split at its {@code #{}} placeholders, which are parsed once instead of on every execution.
+ * Escaped and unclosed tokens are handled like {@link org.apache.ibatis.parsing.GenericTokenParser} does.
+ *
+ * @since 3.5.3
+ */
+final class SqlFragment {
+
+  private static final String OPEN_TOKEN = "#{";
+  private static final String CLOSE_TOKEN = "}";
+
+  // 占位符之间的文本，比占位符多一个
+  private final String[] texts;
+  private final Parameter[] parameters;
+
+  private SqlFragment(String[] texts, Parameter[] parameters) {
+    this.texts = texts;
+    this.parameters = parameters;
+  }
+
+  static SqlFragment parse(String text) {
+    List<String> texts = new ArrayList<>();
+    List<Parameter> parameters = new ArrayList<>();
+    int start = text.indexOf(OPEN_TOKEN);
+    if (start == -1) {
+      return new SqlFragment(new String[] {text}, new Parameter[0]);
+    }
+    int offset = 0;
+    StringBuilder builder = new StringBuilder(text.length());
+    StringBuilder expression = new StringBuilder();
+    while (start > -1) {
+      if (start > 0 && text.charAt(start - 1) == '\\') {
+        builder.append(text, offset, start - 1).append(OPEN_TOKEN);
+        offset = start + OPEN_TOKEN.length();
+      } else {
+        expression.setLength(0);
+        builder.append(text, offset, start);
+        offset = start + OPEN_TOKEN.length();
+        int end = text.indexOf(CLOSE_TOKEN, offset);
+        while (end > -1) {
+          if (end > offset && text.charAt(end - 1) == '\\') {
+            expression.append(text, offset, end - 1).append(CLOSE_TOKEN);
+            offset = end + CLOSE_TOKEN.length();
+            end = text.indexOf(CLOSE_TOKEN, offset);
+          } else {
+            expression.append(text, offset, end);
+            break;
+          }
+        }
+        if (end == -1) {
+          builder.append(text, start, text.length());
+          offset = text.length();
+        } else {
+          String content = expression.toString();
+          texts.add(builder.toString());
+          builder.setLength(0);
+          parameters.add(new Parameter(content, SqlSourceBuilder.parseParameterExpression(content)));
+          offset = end + CLOSE_TOKEN.length();
+        }
+      }
+      start = text.indexOf(OPEN_TOKEN, offset);
+    }
+    if (offset < text.length()) {
+      builder.append(text, offset, text.length());
+    }
+    texts.add(builder.toString());
+    return new SqlFragment(texts.toArray(new String[0]), parameters.toArray(new Parameter[0]));
+  }
+
+  /**
+   * Returns the sql of this fragment, with each placeholder replaced by what the context returns for it.
+   */
+  String toSql(DynamicContext context) {
+    if (parameters.length == 0) {
+      return texts[0];
+    }
+    StringBuilder sql = new StringBuilder(texts[0]);
+    for (int i = 0; i < parameters.length; i++) {
+      sql.append(context.appendParameter(parameters[i])).append(texts[i + 1]);
+    }
+    return sql.toString();
+  }
+
+  static final class Parameter {
+
+    private final String content;
+    private final Map<String, String> expression;
+
+    private Parameter(String content, Map<String, String> expression) {
+      this.content = content;
+      this.expression = expression;
+    }
+
+    String getContent() {
+      return content;
+    }
+
+    Map<String, String> getExpression() {
+      return expression;
+    }
+
+    /**
+     * Returns this parameter with its property renamed if it is {@code name} or one of its nested properties.
+     */
+    Parameter rename(String name, String newName) {
+      String property = expression.get("property");
+      if (name == null || property == null || !property.startsWith(name)
+          || (property.length() > name.length() && property.charAt(name.length()) != '.')) {
+        return this;
+      }
+      Map<String, String> renamed = new HashMap<>(expression);
+      renamed.put("property", newName + property.substring(name.length()));
+      String trimmed = content.trim();
+      return new Parameter(newName + trimmed.substring(Math.min(name.length(), trimmed.length())), renamed);
+    }
+  }
+
+}
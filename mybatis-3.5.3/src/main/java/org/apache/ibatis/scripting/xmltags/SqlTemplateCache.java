@@ -0,0 +1,166 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+
+/**
+ * Parsed sql and parameter mappings of a {@link DynamicSqlSource}, for each distinct sql its nodes produced.
+ * <p>
+ * The sql produced by the nodes only changes with the branches taken, the number of iterations and the {@code ${}}
+ * values, so it identifies the statement to reuse. A mapping that depends on the type of an additional parameter is
+ * only reused when that type did not change. Once {@code maxSize} statements are cached, other ones are parsed on
+ * every execution.
+ *
+ * @since 3.5.3
+ */
+public final class SqlTemplateCache {
+
+  private final int maxSize;
+  private final ConcurrentMap<Key, Template> templates = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  SqlTemplateCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public int getSize() {
+    return templates.size();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public double getHitRatio() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  /**
+   * Returns the cached statement for the sql built by the nodes, or {@code null}.
+   *
+   * @param parameterContents the collected placeholders, or {@code null} if they are still in the sql
+   */
+  Template get(Class<?> parameterType, String sql, List<String> parameterContents, MetaObject metaParameters) {
+    Template template = templates.get(new Key(parameterType, sql, parameterContents));
+    if (template != null && template.matches(metaParameters)) {
+      hits.increment();
+      return template;
+    }
+    misses.increment();
+    return null;
+  }
+
+  void put(Class<?> parameterType, String sql, List<String> parameterContents, String parsedSql,
+      List<ParameterMapping> parameterMappings, MetaObject metaParameters) {
+    Key key = new Key(parameterType, sql, parameterContents);
+    if (templates.size() < maxSize || templates.containsKey(key)) {
+      templates.put(key, new Template(parsedSql, parameterMappings, metaParameters));
+    }
+  }
+
+  static final class Template {
+
+    private final String sql;
+    private final List<ParameterMapping> parameterMappings;
+    // 从附加参数中得到类型的属性，记录当时的类型
+    private final Class<?>[] additionalParameterTypes;
+
+    private Template(String sql, List<ParameterMapping> parameterMappings, MetaObject metaParameters) {
+      this.sql = sql;
+      this.parameterMappings = parameterMappings;
+      this.additionalParameterTypes = new Class<?>[parameterMappings.size()];
+      for (int i = 0; i < additionalParameterTypes.length; i++) {
+        String property = parameterMappings.get(i).getProperty();
+        if (property != null && metaParameters.hasGetter(property)) {
+          additionalParameterTypes[i] = metaParameters.getGetterType(property);
+        }
+      }
+    }
+
+    String getSql() {
+      return sql;
+    }
+
+    List<ParameterMapping> getParameterMappings() {
+      return parameterMappings;
+    }
+
+    private boolean matches(MetaObject metaParameters) {
+      for (int i = 0; i < additionalParameterTypes.length; i++) {
+        String property = parameterMappings.get(i).getProperty();
+        boolean additional = property != null && metaParameters.hasGetter(property);
+        if (additional ? !Objects.equals(additionalParameterTypes[i], metaParameters.getGetterType(property))
+            : additionalParameterTypes[i] != null) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class Key {
+
+    private final Class<?> parameterType;
+    private final String sql;
+    private final List<String> parameterContents;
+    private final int hashCode;
+
+    private Key(Class<?> parameterType, String sql, List<String> parameterContents) {
+      this.parameterType = parameterType;
+      this.sql = sql;
+      this.parameterContents = parameterContents;
+      this.hashCode = 31 * (31 * parameterType.hashCode() + sql.hashCode()) + Objects.hashCode(parameterContents);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hashCode == other.hashCode && parameterType.equals(other.parameterType) && sql.equals(other.sql)
+          && Objects.equals(parameterContents, other.parameterContents);
+    }
+  }
+
+}
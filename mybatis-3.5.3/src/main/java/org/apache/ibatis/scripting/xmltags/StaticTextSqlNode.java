@@ -20,6 +20,8 @@ package org.apache.ibatis.scripting.xmltags;
  */
 public class StaticTextSqlNode implements SqlNode {
   private final String text;
+  // 解析过 #{} 的文本，第一次需要时才解析
+  private SqlFragment fragment;
 
   public StaticTextSqlNode(String text) {
     this.text = text;
@@ -27,7 +29,14 @@ public class StaticTextSqlNode implements SqlNode {
 
   @Override
   public boolean apply(DynamicContext context) {
-    context.appendSql(text);
+    if (context.isCollectingParameters()) {
+      if (fragment == null) {
+        fragment = SqlFragment.parse(text);
+      }
+      context.appendSql(fragment);
+    } else {
+      context.appendSql(text);
+    }
     return true;
   }
 
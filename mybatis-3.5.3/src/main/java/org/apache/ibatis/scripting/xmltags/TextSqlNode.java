@@ -48,7 +48,13 @@ public class TextSqlNode implements SqlNode {
   @Override
   public boolean apply(DynamicContext context) {
     GenericTokenParser parser = createParser(new BindingTokenParser(context, injectionFilter));
-    context.appendSql(parser.parse(text));
+    String sql = parser.parse(text);
+    if (context.isCollectingParameters()) {
+      // ${} 的值可能会组成 #{}，只能在替换后解析
+      context.appendSql(SqlFragment.parse(sql));
+    } else {
+      context.appendSql(sql);
+    }
     return true;
   }
 
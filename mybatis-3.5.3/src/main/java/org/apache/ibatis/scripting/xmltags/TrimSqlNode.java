@@ -136,6 +136,16 @@ public class TrimSqlNode implements SqlNode {
       sqlBuffer.append(sql);
     }
 
+    @Override
+    boolean isCollectingParameters() {
+      return delegate.isCollectingParameters();
+    }
+
+    @Override
+    String appendParameter(SqlFragment.Parameter parameter) {
+      return delegate.appendParameter(parameter);
+    }
+
     @Override
     public String getSql() {
       return delegate.getSql();
@@ -49,10 +49,19 @@ public class XMLLanguageDriver implements LanguageDriver {
   @Override
   public SqlSource createSqlSource(Configuration configuration, XNode script, Class<?> parameterType) {
     //  脚本语句，通过 XMLScriptBuilder 进行解析
-    XMLScriptBuilder builder = new XMLScriptBuilder(configuration, script, parameterType);
+    XMLScriptBuilder builder = new XMLScriptBuilder(configuration, script, parameterType, getExpressionEvaluator());
     return builder.parseScriptNode();
   }
 
+  /**
+   * Returns the evaluator of the test and collection expressions of the scripts.
+   *
+   * @since 3.5.3
+   */
+  protected ExpressionEvaluator getExpressionEvaluator() {
+    return new ExpressionEvaluator();
+  }
+
   //  解析脚本生成 SqlSource，处理注解中声明的 SQL 语句
   @Override
   public SqlSource createSqlSource(Configuration configuration, String script, Class<?> parameterType) {
@@ -39,6 +39,8 @@ public class XMLScriptBuilder extends BaseBuilder {
   private boolean isDynamic;
   // 参数类型
   private final Class<?> parameterType;
+  // test 和 collection 表达式的解析器
+  private final ExpressionEvaluator evaluator;
   // 保存节点对应的节点处理器
   private final Map<String, NodeHandler> nodeHandlerMap = new HashMap<>();
 
@@ -47,9 +49,17 @@ public class XMLScriptBuilder extends BaseBuilder {
   }
 
   public XMLScriptBuilder(Configuration configuration, XNode context, Class<?> parameterType) {
+    this(configuration, context, parameterType, new ExpressionEvaluator());
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public XMLScriptBuilder(Configuration configuration, XNode context, Class<?> parameterType, ExpressionEvaluator evaluator) {
     super(configuration);
     this.context = context;
     this.parameterType = parameterType;
+    this.evaluator = evaluator;
     initNodeHandlerMap();
   }
 
@@ -206,7 +216,7 @@ public class XMLScriptBuilder extends BaseBuilder {
       String open = nodeToHandle.getStringAttribute("open");
       String close = nodeToHandle.getStringAttribute("close");
       String separator = nodeToHandle.getStringAttribute("separator");
-      ForEachSqlNode forEachSqlNode = new ForEachSqlNode(configuration, mixedSqlNode, collection, index, item, open, close, separator);
+      ForEachSqlNode forEachSqlNode = new ForEachSqlNode(configuration, mixedSqlNode, collection, index, item, open, close, separator, evaluator);
       targetContents.add(forEachSqlNode);
     }
   }
@@ -220,7 +230,7 @@ public class XMLScriptBuilder extends BaseBuilder {
     public void handleNode(XNode nodeToHandle, List<SqlNode> targetContents) {
       MixedSqlNode mixedSqlNode = parseDynamicTags(nodeToHandle); //递归解析
       String test = nodeToHandle.getStringAttribute("test"); // 得到表达式
-      IfSqlNode ifSqlNode = new IfSqlNode(mixedSqlNode, test);
+      IfSqlNode ifSqlNode = new IfSqlNode(mixedSqlNode, test, evaluator);
       targetContents.add(ifSqlNode);
     }
   }
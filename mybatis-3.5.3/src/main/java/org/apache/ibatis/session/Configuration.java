@@ -15,8 +15,10 @@
  */
 package org.apache.ibatis.session;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -25,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -33,16 +36,21 @@ import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
+import org.apache.ibatis.builder.xml.XmlDocumentSnapshot;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
+import org.apache.ibatis.datasource.pooled.ConcurrentPooledDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResultListener;
 import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
@@ -51,6 +59,8 @@ import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
+import org.apache.ibatis.executor.loader.javassist.JavassistSubclassProxyFactory;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
@@ -59,6 +69,7 @@ import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.logging.jdbc.AsyncSqlLogger;
 import org.apache.ibatis.logging.commons.JakartaCommonsLoggingImpl;
 import org.apache.ibatis.logging.jdk14.Jdk14LoggingImpl;
 import org.apache.ibatis.logging.log4j.Log4jImpl;
@@ -86,6 +97,7 @@ import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.scripting.LanguageDriverRegistry;
 import org.apache.ibatis.scripting.defaults.RawLanguageDriver;
+import org.apache.ibatis.scripting.xmltags.CompiledXMLLanguageDriver;
 import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
@@ -113,6 +125,19 @@ public class Configuration {
   protected boolean callSettersOnNulls;
   protected boolean useActualParamName = true;
   protected boolean returnInstanceForEmptyRow;
+  protected boolean useCompiledRowMappers;
+  protected boolean useMethodHandleInvokers;
+  protected boolean useCompiledDynamicSql;
+  protected Integer dynamicSqlCacheSize;
+  protected boolean parallelMapperParsing;
+  protected boolean useStaxMapperParser;
+  protected boolean lazyStatementBuilding;
+  protected boolean asyncSqlLogging;
+  protected Integer sqlLogSampling;
+  protected Integer sqlLogRateLimit;
+  protected Integer nestedSelectBatchSize;
+  protected AsyncSqlLogger asyncSqlLogger;
+  protected XmlDocumentSnapshot mapperSnapshot;
   // 日志、缓存等配置
   protected String logPrefix;
   protected Class<? extends Log> logImpl;
@@ -123,6 +148,11 @@ public class Configuration {
   protected Integer defaultStatementTimeout;
   protected Integer defaultFetchSize;
   protected ResultSetType defaultResultSetType;
+  protected Integer maxBatchSize;
+  protected Integer maxBatchBytes;
+  protected boolean rewriteBatchedInserts;
+  protected BatchResultListener batchResultListener;
+  protected StatementMetrics statementMetrics;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
   protected AutoMappingUnknownColumnBehavior autoMappingUnknownColumnBehavior = AutoMappingUnknownColumnBehavior.NONE;
@@ -174,6 +204,17 @@ public class Configuration {
   protected final Map<String, XNode> sqlFragments = new StrictMap<>("XML fragments parsed from previous mappers");
 
   protected final Collection<XMLStatementBuilder> incompleteStatements = new LinkedList<>();
+  /**
+   * 延迟构建的语句, 第一次获取时才解析
+   * key : '${namespace}.${id}'
+   */
+  protected final Map<String, List<XMLStatementBuilder>> lazyStatements = new ConcurrentHashMap<>();
+  /**
+   * 延迟构建完成的语句, 不放入mappedStatements, 构建时不影响对mappedStatements的并发读取
+   */
+  protected final Map<String, MappedStatement> lazyMappedStatements = new ConcurrentHashMap<>();
+  // 正在构建的延迟语句, 在lazyStatements锁内赋值
+  private volatile LazyStatementBuild lazyStatementBuild;
   protected final Collection<CacheRefResolver> incompleteCacheRefs = new LinkedList<>();
   protected final Collection<ResultMapResolver> incompleteResultMaps = new LinkedList<>();
   protected final Collection<MethodResolver> incompleteMethods = new LinkedList<>();
@@ -196,6 +237,7 @@ public class Configuration {
 
     typeAliasRegistry.registerAlias("JNDI", JndiDataSourceFactory.class);
     typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
+    typeAliasRegistry.registerAlias("CONCURRENT_POOLED", ConcurrentPooledDataSourceFactory.class);
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
@@ -203,11 +245,14 @@ public class Configuration {
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+    typeAliasRegistry.registerAlias("CONCURRENT", ConcurrentCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
 
     typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
     typeAliasRegistry.registerAlias("XML", XMLLanguageDriver.class);
     typeAliasRegistry.registerAlias("RAW", RawLanguageDriver.class);
+    typeAliasRegistry.registerAlias("COMPILED_XML", CompiledXMLLanguageDriver.class);
 
     typeAliasRegistry.registerAlias("SLF4J", Slf4jImpl.class);
     typeAliasRegistry.registerAlias("COMMONS_LOGGING", JakartaCommonsLoggingImpl.class);
@@ -219,6 +264,7 @@ public class Configuration {
 
     typeAliasRegistry.registerAlias("CGLIB", CglibProxyFactory.class);
     typeAliasRegistry.registerAlias("JAVASSIST", JavassistProxyFactory.class);
+    typeAliasRegistry.registerAlias("SUBCLASS", JavassistSubclassProxyFactory.class);
 
     languageRegistry.setDefaultDriverClass(XMLLanguageDriver.class);
     languageRegistry.register(RawLanguageDriver.class);
@@ -278,6 +324,245 @@ public class Configuration {
     this.returnInstanceForEmptyRow = returnEmptyInstance;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isUseCompiledRowMappers() {
+    return useCompiledRowMappers;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setUseCompiledRowMappers(boolean useCompiledRowMappers) {
+    this.useCompiledRowMappers = useCompiledRowMappers;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isUseMethodHandleInvokers() {
+    return useMethodHandleInvokers;
+  }
+
+  /**
+   * Sets whether properties are accessed through method handles instead of core reflection. Only applies to a
+   * {@link DefaultReflectorFactory}.
+   *
+   * @since 3.5.3
+   */
+  public void setUseMethodHandleInvokers(boolean useMethodHandleInvokers) {
+    this.useMethodHandleInvokers = useMethodHandleInvokers;
+    configureReflectorFactory();
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isUseCompiledDynamicSql() {
+    return useCompiledDynamicSql;
+  }
+
+  /**
+   * Sets whether dynamic statements collect their parameter mappings while the sql is built, from the
+   * {@code #{}} placeholders parsed once per sql node, instead of parsing the whole sql again on every execution.
+   *
+   * @since 3.5.3
+   */
+  public void setUseCompiledDynamicSql(boolean useCompiledDynamicSql) {
+    this.useCompiledDynamicSql = useCompiledDynamicSql;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getDynamicSqlCacheSize() {
+    return dynamicSqlCacheSize;
+  }
+
+  /**
+   * Sets the number of distinct sql that each dynamic statement keeps parsed, along with their parameter mappings.
+   * Only applies to the statements built afterwards.
+   *
+   * @since 3.5.3
+   * @see org.apache.ibatis.scripting.xmltags.SqlTemplateCache
+   */
+  public void setDynamicSqlCacheSize(Integer dynamicSqlCacheSize) {
+    this.dynamicSqlCacheSize = dynamicSqlCacheSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isParallelMapperParsing() {
+    return parallelMapperParsing;
+  }
+
+  /**
+   * Sets whether the mapper xml files listed in the configuration are read and parsed into documents concurrently.
+   * The mappers are still registered one after the other, in the order of the configuration, and the elements
+   * waiting for another mapper are resolved once all the mappers are registered.
+   *
+   * @since 3.5.3
+   */
+  public void setParallelMapperParsing(boolean parallelMapperParsing) {
+    this.parallelMapperParsing = parallelMapperParsing;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isUseStaxMapperParser() {
+    return useStaxMapperParser;
+  }
+
+  /**
+   * Sets whether the mapper xml files are parsed with a streaming (StAX) parser, without validating them against the
+   * DTD.
+   *
+   * @since 3.5.3
+   */
+  public void setUseStaxMapperParser(boolean useStaxMapperParser) {
+    this.useStaxMapperParser = useStaxMapperParser;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isLazyStatementBuilding() {
+    return lazyStatementBuilding;
+  }
+
+  /**
+   * Sets whether the statements of the mapper xml files are only parsed on their first lookup, instead of when the
+   * mapper is loaded.
+   *
+   * @since 3.5.3
+   */
+  public void setLazyStatementBuilding(boolean lazyStatementBuilding) {
+    this.lazyStatementBuilding = lazyStatementBuilding;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isPluginWeaving() {
+    return interceptorChain.isWeaving();
+  }
+
+  /**
+   * Sets whether the plugins are woven into one generated class per plugged object, instead of wrapping it in one
+   * proxy per plugin.
+   *
+   * @since 3.5.3
+   */
+  public void setPluginWeaving(boolean pluginWeaving) {
+    interceptorChain.setWeaving(pluginWeaving);
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isAsyncSqlLogging() {
+    return asyncSqlLogging;
+  }
+
+  /**
+   * Sets whether the statements are logged from a background thread by an {@link AsyncSqlLogger}, instead of by
+   * proxies wrapping the connection, the statements and the result sets.
+   *
+   * @since 3.5.3
+   */
+  public void setAsyncSqlLogging(boolean asyncSqlLogging) {
+    this.asyncSqlLogging = asyncSqlLogging;
+    resetAsyncSqlLogger();
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getSqlLogSampling() {
+    return sqlLogSampling;
+  }
+
+  /**
+   * Sets the number of executions of a statement id out of which one is logged, when {@code asyncSqlLogging} is
+   * enabled.
+   *
+   * @since 3.5.3
+   */
+  public void setSqlLogSampling(Integer sqlLogSampling) {
+    this.sqlLogSampling = sqlLogSampling;
+    resetAsyncSqlLogger();
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getSqlLogRateLimit() {
+    return sqlLogRateLimit;
+  }
+
+  /**
+   * Sets the maximum number of executions of a statement id logged per second, when {@code asyncSqlLogging} is
+   * enabled.
+   *
+   * @since 3.5.3
+   */
+  public void setSqlLogRateLimit(Integer sqlLogRateLimit) {
+    this.sqlLogRateLimit = sqlLogRateLimit;
+    resetAsyncSqlLogger();
+  }
+
+  /**
+   * Returns the logger of the statements, or {@code null} when {@code asyncSqlLogging} is disabled.
+   *
+   * @since 3.5.3
+   */
+  public AsyncSqlLogger getAsyncSqlLogger() {
+    return asyncSqlLogger;
+  }
+
+  private void resetAsyncSqlLogger() {
+    // 缓冲区大小固定，满了之后丢弃日志而不阻塞执行线程
+    asyncSqlLogger = asyncSqlLogging ? new AsyncSqlLogger(1024, sqlLogSampling == null ? 1 : sqlLogSampling,
+        sqlLogRateLimit == null ? 0 : sqlLogRateLimit) : null;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getNestedSelectBatchSize() {
+    return nestedSelectBatchSize;
+  }
+
+  /**
+   * Sets the maximum number of parameters of the queries loading the nested selects of the rows of a result set
+   * together, or {@code null} to run one query per row.
+   *
+   * @since 3.5.3
+   */
+  public void setNestedSelectBatchSize(Integer nestedSelectBatchSize) {
+    this.nestedSelectBatchSize = nestedSelectBatchSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public XmlDocumentSnapshot getMapperSnapshot() {
+    return mapperSnapshot;
+  }
+
+  /**
+   * Sets the snapshot of the validated mapper documents, used instead of parsing the mapper xml files listed in the
+   * configuration that did not change since the snapshot was written.
+   *
+   * @since 3.5.3
+   */
+  public void setMapperSnapshot(XmlDocumentSnapshot mapperSnapshot) {
+    this.mapperSnapshot = mapperSnapshot;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -459,6 +744,85 @@ public class Configuration {
     this.defaultResultSetType = defaultResultSetType;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public Integer getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Sets the number of statements a {@link BatchExecutor} queues before it flushes them by itself.
+   *
+   * @since 3.5.3
+   */
+  public void setMaxBatchSize(Integer maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getMaxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  /**
+   * Sets the estimated size of the parameters a {@link BatchExecutor} queues before it flushes them by itself.
+   *
+   * @since 3.5.3
+   */
+  public void setMaxBatchBytes(Integer maxBatchBytes) {
+    this.maxBatchBytes = maxBatchBytes;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isRewriteBatchedInserts() {
+    return rewriteBatchedInserts;
+  }
+
+  /**
+   * Sets whether a {@link BatchExecutor} executes consecutive single row inserts as multi-row inserts.
+   *
+   * @since 3.5.3
+   */
+  public void setRewriteBatchedInserts(boolean rewriteBatchedInserts) {
+    this.rewriteBatchedInserts = rewriteBatchedInserts;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public BatchResultListener getBatchResultListener() {
+    return batchResultListener;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setBatchResultListener(BatchResultListener batchResultListener) {
+    this.batchResultListener = batchResultListener;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public StatementMetrics getStatementMetrics() {
+    return statementMetrics;
+  }
+
+  /**
+   * Sets the metrics receiving the execution events of the statements, {@code null} (the default) to disable them.
+   *
+   * @since 3.5.3
+   * @see org.apache.ibatis.executor.metrics.StatementMetricsRegistry
+   */
+  public void setStatementMetrics(StatementMetrics statementMetrics) {
+    this.statementMetrics = statementMetrics;
+  }
+
   public boolean isUseColumnLabel() {
     return useColumnLabel;
   }
@@ -524,6 +888,15 @@ public class Configuration {
 
   public void setReflectorFactory(ReflectorFactory reflectorFactory) {
     this.reflectorFactory = reflectorFactory;
+    if (useMethodHandleInvokers) {
+      configureReflectorFactory();
+    }
+  }
+
+  private void configureReflectorFactory() {
+    if (reflectorFactory instanceof DefaultReflectorFactory) {
+      ((DefaultReflectorFactory) reflectorFactory).setMethodHandlesEnabled(useMethodHandleInvokers);
+    }
   }
 
   public ObjectFactory getObjectFactory() {
@@ -652,6 +1025,13 @@ public class Configuration {
   }
 
   public void addKeyGenerator(String id, KeyGenerator keyGenerator) {
+    LazyStatementBuild build = currentLazyStatementBuild();
+    if (build != null && !keyGenerators.containsKey(id)) {
+      if (build.keyGenerators.putIfAbsent(id, keyGenerator) != null) {
+        throw new IllegalArgumentException("Key Generators collection already contains value for " + id);
+      }
+      return;
+    }
     keyGenerators.put(id, keyGenerator);
   }
 
@@ -664,11 +1044,16 @@ public class Configuration {
   }
 
   public KeyGenerator getKeyGenerator(String id) {
+    LazyStatementBuild build = currentLazyStatementBuild();
+    if (build != null && build.keyGenerators.containsKey(id)) {
+      return build.keyGenerators.get(id);
+    }
     return keyGenerators.get(id);
   }
 
   public boolean hasKeyGenerator(String id) {
-    return keyGenerators.containsKey(id);
+    LazyStatementBuild build = currentLazyStatementBuild();
+    return keyGenerators.containsKey(id) || build != null && build.keyGenerators.containsKey(id);
   }
 
   public void addCache(Cache cache) {
@@ -734,17 +1119,71 @@ public class Configuration {
   }
 
   public void addMappedStatement(MappedStatement ms) {
+    LazyStatementBuild build = currentLazyStatementBuild();
+    if (build != null) {
+      MappedStatement saved = mappedStatements.containsKey(ms.getId()) ? mappedStatements.get(ms.getId())
+          : lazyMappedStatements.get(ms.getId());
+      if (saved == null) {
+        saved = build.statements.putIfAbsent(ms.getId(), ms);
+      }
+      if (saved != null) {
+        throw new IllegalArgumentException(getMappedStatementConflictMessage(saved, ms));
+      }
+      return;
+    }
+    if (lazyStatements.containsKey(ms.getId()) || lazyMappedStatements.containsKey(ms.getId())) {
+      MappedStatement saved = getLazyMappedStatement(ms.getId());
+      if (saved != null) {
+        throw new IllegalArgumentException(getMappedStatementConflictMessage(saved, ms));
+      }
+    }
     mappedStatements.put(ms.getId(), ms);
   }
 
+  private String getMappedStatementConflictMessage(MappedStatement saved, MappedStatement target) {
+    return "Mapped Statements collection already contains value for " + target.getId() + ". please check "
+        + saved.getResource() + " and " + target.getResource();
+  }
+
   public Collection<String> getMappedStatementNames() {
     buildAllStatements();
-    return mappedStatements.keySet();
+    buildAllLazyStatements();
+    if (lazyMappedStatements.isEmpty()) {
+      return mappedStatements.keySet();
+    }
+    Set<String> names = new HashSet<>(mappedStatements.keySet());
+    names.addAll(lazyMappedStatements.keySet());
+    return names;
   }
 
   public Collection<MappedStatement> getMappedStatements() {
     buildAllStatements();
-    return mappedStatements.values();
+    buildAllLazyStatements();
+    if (lazyMappedStatements.isEmpty()) {
+      return mappedStatements.values();
+    }
+    List<MappedStatement> statements = new ArrayList<>(mappedStatements.values());
+    statements.addAll(lazyMappedStatements.values());
+    return statements;
+  }
+
+  /**
+   * Adds a statement that is parsed on its first lookup.
+   *
+   * @param id the statement id, including the namespace
+   * @since 3.5.3
+   */
+  public void addLazyStatement(String id, XMLStatementBuilder statementBuilder) {
+    lazyStatements.computeIfAbsent(id, k -> new ArrayList<>(1)).add(statementBuilder);
+  }
+
+  /**
+   * Returns the ids of the lazy statements that were not looked up yet.
+   *
+   * @since 3.5.3
+   */
+  public Collection<String> getLazyStatementNames() {
+    return lazyStatements.keySet();
   }
 
   public Collection<XMLStatementBuilder> getIncompleteStatements() {
@@ -787,6 +1226,12 @@ public class Configuration {
     if (validateIncompleteStatements) {
       buildAllStatements();
     }
+    if (!lazyStatements.isEmpty() || !lazyMappedStatements.isEmpty()) {
+      MappedStatement statement = getLazyMappedStatement(id);
+      if (statement != null) {
+        return statement;
+      }
+    }
     return mappedStatements.get(id);
   }
 
@@ -831,7 +1276,11 @@ public class Configuration {
     /**
      * 去mappedStatments的map中判断mappedStatements是存在
      */
-    return mappedStatements.containsKey(statementName);
+    if (mappedStatements.containsKey(statementName)) {
+      return true;
+    }
+    return (!lazyStatements.isEmpty() || !lazyMappedStatements.isEmpty())
+        && !findLazyStatementIds(statementName).isEmpty();
   }
 
   public void addCacheRef(String namespace, String referencedNamespace) {
@@ -868,6 +1317,118 @@ public class Configuration {
     }
   }
 
+  private MappedStatement getLazyMappedStatement(String id) {
+    MappedStatement statement = lazyMappedStatements.get(id);
+    if (statement != null) {
+      return statement;
+    }
+    Set<String> ids = findLazyStatementIds(id);
+    if (ids.isEmpty()) {
+      return null;
+    }
+    // 短id同时匹配mappedStatements中的语句时, 与StrictMap一样视为歧义
+    if (ids.size() > 1 || !ids.contains(id) && mappedStatements.containsKey(id)) {
+      throw new IllegalArgumentException(id + " is ambiguous in Mapped Statements collection (try using the full name"
+          + " including the namespace, or rename one of the entries)");
+    }
+    String fullId = ids.iterator().next();
+    LazyStatementBuild build = currentLazyStatementBuild();
+    if (build != null && build.statements.containsKey(fullId)) {
+      return build.statements.get(fullId);
+    }
+    buildLazyStatement(fullId);
+    return lazyMappedStatements.get(fullId);
+  }
+
+  /*
+   * Returns the ids of the lazy statements (built or not) matching the id, that is either a full id or a short one.
+   */
+  private Set<String> findLazyStatementIds(String id) {
+    LazyStatementBuild build = currentLazyStatementBuild();
+    if (lazyMappedStatements.containsKey(id) || lazyStatements.containsKey(id) && !isLazyStatementInBuild(id)
+        || build != null && build.statements.containsKey(id)) {
+      return Collections.singleton(id);
+    }
+    if (id.indexOf('.') != -1) {
+      return Collections.emptySet();
+    }
+    // 短id, 与StrictMap一样按最后一段匹配
+    Set<String> ids = new HashSet<>();
+    String suffix = '.' + id;
+    for (String fullId : lazyStatements.keySet()) {
+      if (fullId.endsWith(suffix) && !isLazyStatementInBuild(fullId)) {
+        ids.add(fullId);
+      }
+    }
+    for (String fullId : lazyMappedStatements.keySet()) {
+      if (fullId.endsWith(suffix)) {
+        ids.add(fullId);
+      }
+    }
+    if (build != null) {
+      for (String fullId : build.statements.keySet()) {
+        if (fullId.endsWith(suffix)) {
+          ids.add(fullId);
+        }
+      }
+    }
+    return ids;
+  }
+
+  /*
+   * Parses the statement nodes of a lazy statement, once. The statements of the different databaseIds sharing the id
+   * are parsed together, in the order of the mappers, so that the databaseId matching is the same as at loading. The
+   * built statements are published only if all the nodes are parsed; otherwise the next lookup parses them again.
+   */
+  private void buildLazyStatement(String id) {
+    if (!lazyStatements.containsKey(id) || isLazyStatementInBuild(id)) {
+      return;
+    }
+    synchronized (lazyStatements) {
+      List<XMLStatementBuilder> statementBuilders = lazyStatements.get(id);
+      if (statementBuilders == null) {
+        // 已由其他线程构建
+        return;
+      }
+      LazyStatementBuild previousBuild = lazyStatementBuild;
+      LazyStatementBuild build = new LazyStatementBuild(id);
+      lazyStatementBuild = build;
+      try {
+        for (XMLStatementBuilder statementBuilder : statementBuilders) {
+          statementBuilder.parseStatementNode();
+        }
+      } finally {
+        lazyStatementBuild = previousBuild;
+      }
+      build.keyGenerators.forEach(keyGenerators::put);
+      lazyMappedStatements.putAll(build.statements);
+      lazyStatements.remove(id);
+    }
+  }
+
+  /*
+   * Returns the lazy statement that the current thread is building, if any.
+   */
+  private LazyStatementBuild currentLazyStatementBuild() {
+    LazyStatementBuild build = lazyStatementBuild;
+    return build != null && build.thread == Thread.currentThread() ? build : null;
+  }
+
+  /*
+   * Returns whether the current thread is building the lazy statement, which is not visible yet while its statement
+   * nodes are parsed.
+   */
+  private boolean isLazyStatementInBuild(String id) {
+    LazyStatementBuild build = currentLazyStatementBuild();
+    return build != null && id.equals(build.id);
+  }
+
+  private void buildAllLazyStatements() {
+    for (String id : lazyStatements.keySet()) {
+      buildLazyStatement(id);
+    }
+  }
+
   private void parsePendingResultMaps() {
     if (incompleteResultMaps.isEmpty()) {
       return;
@@ -940,6 +1501,20 @@ public class Configuration {
     }
   }
 
+  /*
+   * The statements and key generators added while the statement nodes of a lazy statement are parsed.
+   */
+  private static final class LazyStatementBuild {
+    private final Thread thread = Thread.currentThread();
+    private final String id;
+    private final Map<String, MappedStatement> statements = new HashMap<>();
+    private final Map<String, KeyGenerator> keyGenerators = new HashMap<>();
+
+    private LazyStatementBuild(String id) {
+      this.id = id;
+    }
+  }
+
   protected static class StrictMap<V> extends HashMap<String, V> {
 
     private static final long serialVersionUID = -4950446264854982944L;
@@ -21,8 +21,10 @@ import java.io.Reader;
 import java.util.Properties;
 
 import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.executor.ErrorContext;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
 
 /**
@@ -92,6 +94,10 @@ public class SqlSessionFactoryBuilder {
 
   // 到这里配置文件已经解析成了Configuration
   public SqlSessionFactory build(Configuration config) {
+    Environment environment = config.getEnvironment();
+    if (environment != null && environment.getDataSource() instanceof PooledDataSource) {
+      ((PooledDataSource) environment.getDataSource()).warmUp();
+    }
     return new DefaultSqlSessionFactory(config);
   }
 
@@ -25,7 +25,7 @@ import java.sql.SQLException;
 /**
  * @author Paul Krause
  */
-public class BigIntegerTypeHandler extends BaseTypeHandler<BigInteger> {
+public class BigIntegerTypeHandler extends BaseTypeHandler<BigInteger> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, BigInteger parameter, JdbcType jdbcType) throws SQLException {
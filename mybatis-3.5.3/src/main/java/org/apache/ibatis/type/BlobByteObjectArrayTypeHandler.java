@@ -25,7 +25,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class BlobByteObjectArrayTypeHandler extends BaseTypeHandler<Byte[]> {
+public class BlobByteObjectArrayTypeHandler extends BaseTypeHandler<Byte[]> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Byte[] parameter, JdbcType jdbcType)
@@ -25,7 +25,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class BlobTypeHandler extends BaseTypeHandler<byte[]> {
+public class BlobTypeHandler extends BaseTypeHandler<byte[]> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, byte[] parameter, JdbcType jdbcType)
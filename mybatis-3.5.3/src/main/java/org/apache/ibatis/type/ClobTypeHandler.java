@@ -25,7 +25,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class ClobTypeHandler extends BaseTypeHandler<String> {
+public class ClobTypeHandler extends BaseTypeHandler<String> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
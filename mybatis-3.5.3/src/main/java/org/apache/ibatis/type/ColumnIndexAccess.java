@@ -0,0 +1,82 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.sql.ResultSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tells whether a type handler reads a column by index the same way as by name.
+ *
+ * @since 3.5.3
+ * @see ColumnIndexAccessible
+ */
+public final class ColumnIndexAccess {
+
+  private static final ConcurrentMap<Class<?>, Boolean> ACCESSIBLE_TYPES = new ConcurrentHashMap<>();
+
+  private ColumnIndexAccess() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Returns whether the type handler is marked {@link ColumnIndexAccessible}, and no subclass of the class marking it
+   * changes how a column is read by name. A subclass that does has to implement {@link ColumnIndexAccessible} itself.
+   *
+   * @param typeHandler the type handler, may be {@code null}
+   * @return whether the columns of the type handler can be read by index
+   */
+  public static boolean isAccessible(TypeHandler<?> typeHandler) {
+    return typeHandler instanceof ColumnIndexAccessible
+        && ACCESSIBLE_TYPES.computeIfAbsent(typeHandler.getClass(), ColumnIndexAccess::isAccessible);
+  }
+
+  private static boolean isAccessible(Class<?> type) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      if (marks(current)) {
+        return true;
+      }
+      if (declaresReadByName(current)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean marks(Class<?> type) {
+    for (Class<?> implemented : type.getInterfaces()) {
+      if (ColumnIndexAccessible.class.isAssignableFrom(implemented)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean declaresReadByName(Class<?> type) {
+    return declares(type, "getNullableResult") || declares(type, "getResult");
+  }
+
+  private static boolean declares(Class<?> type, String name) {
+    try {
+      type.getDeclaredMethod(name, ResultSet.class, String.class);
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+}
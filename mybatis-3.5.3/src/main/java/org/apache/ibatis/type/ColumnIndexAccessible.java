@@ -0,0 +1,31 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.sql.ResultSet;
+
+/**
+ * Marks a type handler that returns the same value from {@link TypeHandler#getResult(ResultSet, int)} as from
+ * {@link TypeHandler#getResult(ResultSet, String)} for the column at that index. The result set handler reads the
+ * columns of such a type handler by index. A subclass that changes how a column is read by name is read by name, unless
+ * it implements this interface itself.
+ *
+ * @since 3.5.3
+ * @see ColumnIndexAccess
+ */
+public interface ColumnIndexAccessible {
+
+}
@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class EnumOrdinalTypeHandler<E extends Enum<E>> extends BaseTypeHandler<E> {
+public class EnumOrdinalTypeHandler<E extends Enum<E>> extends BaseTypeHandler<E> implements ColumnIndexAccessible {
 
   private final Class<E> type;
   private final E[] enums;
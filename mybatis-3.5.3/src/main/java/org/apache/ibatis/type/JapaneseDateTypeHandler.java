@@ -29,7 +29,7 @@ import java.time.chrono.JapaneseDate;
  * @since 3.4.5
  * @author Kazuki Shimizu
  */
-public class JapaneseDateTypeHandler extends BaseTypeHandler<JapaneseDate> {
+public class JapaneseDateTypeHandler extends BaseTypeHandler<JapaneseDate> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, JapaneseDate parameter, JdbcType jdbcType)
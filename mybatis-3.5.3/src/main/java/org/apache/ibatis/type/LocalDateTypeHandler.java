@@ -25,7 +25,7 @@ import java.time.LocalDate;
  * @since 3.4.5
  * @author Tomas Rohovsky
  */
-public class LocalDateTypeHandler extends BaseTypeHandler<LocalDate> {
+public class LocalDateTypeHandler extends BaseTypeHandler<LocalDate> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, LocalDate parameter, JdbcType jdbcType)
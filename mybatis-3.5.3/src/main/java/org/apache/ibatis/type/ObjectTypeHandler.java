@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class ObjectTypeHandler extends BaseTypeHandler<Object> {
+public class ObjectTypeHandler extends BaseTypeHandler<Object> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Object parameter, JdbcType jdbcType)
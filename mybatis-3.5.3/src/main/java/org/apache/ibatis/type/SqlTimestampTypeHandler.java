@@ -24,7 +24,7 @@ import java.sql.Timestamp;
 /**
  * @author Clinton Begin
  */
-public class SqlTimestampTypeHandler extends BaseTypeHandler<Timestamp> {
+public class SqlTimestampTypeHandler extends BaseTypeHandler<Timestamp> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Timestamp parameter, JdbcType jdbcType)
@@ -27,7 +27,7 @@ import java.sql.SQLXML;
  * @since 3.5.0
  * @author Iwao AVE!
  */
-public class SqlxmlTypeHandler extends BaseTypeHandler<String> {
+public class SqlxmlTypeHandler extends BaseTypeHandler<String> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
@@ -28,7 +28,7 @@ import org.apache.ibatis.io.Resources;
 /**
  * @author Clinton Begin
  */
-public class UnknownTypeHandler extends BaseTypeHandler<Object> {
+public class UnknownTypeHandler extends BaseTypeHandler<Object> implements ColumnIndexAccessible {
 
   private static final ObjectTypeHandler OBJECT_TYPE_HANDLER = new ObjectTypeHandler();
 
@@ -55,10 +55,15 @@ public class UnknownTypeHandler extends BaseTypeHandler<Object> {
   @Override
   public Object getNullableResult(ResultSet rs, int columnIndex)
       throws SQLException {
-    TypeHandler<?> handler = resolveTypeHandler(rs.getMetaData(), columnIndex);
+    ResultSetMetaData rsmd = rs.getMetaData();
+    TypeHandler<?> handler = resolveTypeHandler(rsmd, columnIndex);
     if (handler == null || handler instanceof UnknownTypeHandler) {
       handler = OBJECT_TYPE_HANDLER;
     }
+    if (!ColumnIndexAccess.isAccessible(handler)) {
+      // the resolved type handler may only implement reading by name
+      return handler.getResult(rs, rsmd.getColumnLabel(columnIndex));
+    }
     return handler.getResult(rs, columnIndex);
   }
 
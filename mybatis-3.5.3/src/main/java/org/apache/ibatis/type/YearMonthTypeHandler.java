@@ -31,7 +31,7 @@ import java.time.YearMonth;
  * @since 3.4.5
  * @author Björn Raupach
  */
-public class YearMonthTypeHandler extends BaseTypeHandler<YearMonth> {
+public class YearMonthTypeHandler extends BaseTypeHandler<YearMonth> implements ColumnIndexAccessible {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, YearMonth yearMonth, JdbcType jt) throws SQLException {
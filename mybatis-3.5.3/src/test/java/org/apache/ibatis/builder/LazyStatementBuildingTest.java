@@ -0,0 +1,163 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.builder.xml.XMLStatementBuilder;
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class LazyStatementBuildingTest {
+
+  private static final String AUTHOR_MAPPER = "org.apache.ibatis.domain.blog.mappers.AuthorMapper";
+  private static final String MULTI_DB_MAPPER = "org.apache.ibatis.submitted.multidb.MultiDbMapper";
+
+  @Test
+  void shouldBuildStatementOnFirstLookup() throws Exception {
+    Configuration configuration = load(null, "org/apache/ibatis/builder/AuthorMapper.xml");
+    String id = AUTHOR_MAPPER + ".selectAllAuthors";
+    assertThat(configuration.getLazyStatementNames()).contains(id, AUTHOR_MAPPER + ".insertAuthor");
+    assertThat(configuration.hasStatement(id)).isTrue();
+    assertThat(configuration.getLazyStatementNames()).contains(id);
+
+    MappedStatement statement = configuration.getMappedStatement(id);
+    assertThat(statement.getId()).isEqualTo(id);
+    assertThat(statement.getResource()).isEqualTo("org/apache/ibatis/builder/AuthorMapper.xml");
+    assertThat(configuration.getLazyStatementNames()).doesNotContain(id).contains(AUTHOR_MAPPER + ".insertAuthor");
+    assertThat(configuration.getMappedStatement(id)).isSameAs(statement);
+    assertThat(configuration.getMappedStatement("selectAllAuthors")).isSameAs(statement);
+    assertThat(configuration.hasStatement("selectAllAuthors")).isTrue();
+    assertThat(configuration.hasStatement(AUTHOR_MAPPER + ".unknown")).isFalse();
+  }
+
+  @Test
+  void shouldBuildAllStatementsWhenListed() throws Exception {
+    Configuration configuration = load(null, "org/apache/ibatis/builder/AuthorMapper.xml");
+    assertThat(configuration.getMappedStatementNames()).contains(AUTHOR_MAPPER + ".selectAuthorWithInlineParams");
+    assertThat(configuration.getLazyStatementNames()).isEmpty();
+    assertThat(configuration.getMappedStatements())
+        .contains(configuration.getMappedStatement(AUTHOR_MAPPER + ".selectAuthorWithInlineParams"));
+  }
+
+  @Test
+  void shouldBuildStatementOnceWhenLookedUpConcurrently() throws Exception {
+    Configuration configuration = load(null, "org/apache/ibatis/builder/AuthorMapper.xml");
+    String id = AUTHOR_MAPPER + ".selectComplexAuthors";
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Callable<MappedStatement>> lookups = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        lookups.add(() -> configuration.getMappedStatement(id));
+      }
+      MappedStatement expected = null;
+      for (Future<MappedStatement> future : executor.invokeAll(lookups)) {
+        if (expected == null) {
+          expected = future.get();
+        }
+        assertThat(future.get()).isSameAs(expected);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void shouldPreferStatementOfCurrentDatabaseId() throws Exception {
+    Configuration configuration = load("hsql", "org/apache/ibatis/submitted/multidb/MultiDbMapper.xml");
+    assertThat(configuration.getMappedStatement(MULTI_DB_MAPPER + ".select1").getDatabaseId()).isEqualTo("hsql");
+    assertThat(configuration.getMappedStatement(MULTI_DB_MAPPER + ".select2").getDatabaseId()).isNull();
+
+    MappedStatement insert = configuration.getMappedStatement(MULTI_DB_MAPPER + ".insert2");
+    assertThat(insert.getKeyGenerator()).isInstanceOf(SelectKeyGenerator.class);
+    MappedStatement selectKey = configuration.getMappedStatement(MULTI_DB_MAPPER + ".insert2!selectKey");
+    assertThat(selectKey.getDatabaseId()).isEqualTo("hsql");
+  }
+
+  @Test
+  void shouldRejectStatementWithTheIdOfALazyStatement() throws Exception {
+    Configuration configuration = load(null, "org/apache/ibatis/builder/AuthorMapper.xml");
+    MappedStatement statement = new MappedStatement.Builder(configuration, AUTHOR_MAPPER + ".selectAllAuthors",
+        Mockito.mock(SqlSource.class), SqlCommandType.SELECT).resource("org/mybatis/TestMapper.xml").build();
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> configuration.addMappedStatement(statement));
+    assertThat(e.getMessage()).isEqualTo("Mapped Statements collection already contains value for " + AUTHOR_MAPPER
+        + ".selectAllAuthors. please check org/apache/ibatis/builder/AuthorMapper.xml and org/mybatis/TestMapper.xml");
+  }
+
+  @Test
+  void shouldLeaveNothingBehindWhenBuildFails() throws Exception {
+    Configuration configuration = new Configuration();
+    String id = "org.mybatis.TestMapper.select";
+    MappedStatement statement = new MappedStatement.Builder(configuration, id, Mockito.mock(SqlSource.class),
+        SqlCommandType.SELECT).databaseId("hsql").build();
+    XMLStatementBuilder first = Mockito.mock(XMLStatementBuilder.class);
+    Mockito.doAnswer(invocation -> {
+      configuration.addMappedStatement(statement);
+      return null;
+    }).when(first).parseStatementNode();
+    XMLStatementBuilder second = Mockito.mock(XMLStatementBuilder.class);
+    Mockito.doThrow(new BuilderException("broken")).when(second).parseStatementNode();
+    configuration.addLazyStatement(id, first);
+    configuration.addLazyStatement(id, second);
+
+    for (int i = 0; i < 2; i++) {
+      BuilderException e = assertThrows(BuilderException.class, () -> configuration.getMappedStatement(id));
+      assertThat(e.getMessage()).isEqualTo("broken");
+      assertThat(configuration.getLazyStatementNames()).contains(id);
+    }
+    Mockito.verify(first, Mockito.times(2)).parseStatementNode();
+    Mockito.doNothing().when(second).parseStatementNode();
+    assertThat(configuration.getMappedStatement(id)).isSameAs(statement);
+  }
+
+  @Test
+  void shouldRejectShortIdMatchingAlsoABuiltStatement() throws Exception {
+    Configuration configuration = load(null, "org/apache/ibatis/builder/AuthorMapper.xml");
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, "org.mybatis.TestMapper.selectAllAuthors",
+        Mockito.mock(SqlSource.class), SqlCommandType.SELECT).build());
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> configuration.getMappedStatement("selectAllAuthors"));
+    assertThat(e.getMessage()).startsWith("selectAllAuthors is ambiguous in Mapped Statements collection");
+  }
+
+  private Configuration load(String databaseId, String resource) throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setDatabaseId(databaseId);
+    configuration.setLazyStatementBuilding(true);
+    try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+      new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments()).parse();
+    }
+    return configuration;
+  }
+
+}
@@ -145,4 +145,31 @@ class ParameterExpressionTest {
     }
   }
 
+  @Test
+  void shouldParseSameContentOnce() {
+    Map<String, String> result = SqlSourceBuilder.parseParameterExpression("id, jdbcType=INTEGER");
+    Assertions.assertSame(result, SqlSourceBuilder.parseParameterExpression("id, jdbcType=INTEGER"));
+    Assertions.assertEquals(new ParameterExpression("id, jdbcType=INTEGER"), result);
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> result.put("property", "name"));
+  }
+
+  @Test
+  void shouldNotCacheForEachContent() {
+    Map<String, String> result = SqlSourceBuilder.parseParameterExpression("__frch_item_0.id, jdbcType=INTEGER");
+    Assertions.assertNotSame(result, SqlSourceBuilder.parseParameterExpression("__frch_item_0.id, jdbcType=INTEGER"));
+    Assertions.assertEquals(new ParameterExpression("__frch_item_0.id, jdbcType=INTEGER"), result);
+  }
+
+  @Test
+  void shouldNotCacheInvalidContent() {
+    for (int i = 0; i < 2; i++) {
+      try {
+        SqlSourceBuilder.parseParameterExpression("(expression)+");
+        Assertions.fail();
+      } catch (BuilderException e) {
+        Assertions.assertTrue(e.getMessage().contains("Parsing error in {(expression)+} in position 12"));
+      }
+    }
+  }
+
 }
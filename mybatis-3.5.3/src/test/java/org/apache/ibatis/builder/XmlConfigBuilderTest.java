@@ -96,6 +96,23 @@ class XmlConfigBuilderTest {
       assertThat(config.isSafeResultHandlerEnabled()).isTrue();
       assertThat(config.getDefaultScriptingLanuageInstance()).isInstanceOf(XMLLanguageDriver.class);
       assertThat(config.isCallSettersOnNulls()).isFalse();
+      assertThat(config.isUseCompiledRowMappers()).isFalse();
+      assertThat(config.isUseMethodHandleInvokers()).isFalse();
+      assertThat(config.isUseCompiledDynamicSql()).isFalse();
+      assertNull(config.getDynamicSqlCacheSize());
+      assertThat(config.isParallelMapperParsing()).isFalse();
+      assertThat(config.isUseStaxMapperParser()).isFalse();
+      assertThat(config.isLazyStatementBuilding()).isFalse();
+      assertThat(config.isPluginWeaving()).isFalse();
+      assertThat(config.isAsyncSqlLogging()).isFalse();
+      assertNull(config.getSqlLogSampling());
+      assertNull(config.getSqlLogRateLimit());
+      assertNull(config.getNestedSelectBatchSize());
+      assertNull(config.getAsyncSqlLogger());
+      assertNull(config.getMapperSnapshot());
+      assertNull(config.getMaxBatchSize());
+      assertNull(config.getMaxBatchBytes());
+      assertThat(config.isRewriteBatchedInserts()).isFalse();
       assertNull(config.getLogPrefix());
       assertNull(config.getLogImpl());
       assertNull(config.getConfigurationFactory());
@@ -190,6 +207,22 @@ class XmlConfigBuilderTest {
       assertThat(config.isSafeResultHandlerEnabled()).isFalse();
       assertThat(config.getDefaultScriptingLanuageInstance()).isInstanceOf(RawLanguageDriver.class);
       assertThat(config.isCallSettersOnNulls()).isTrue();
+      assertThat(config.isUseCompiledRowMappers()).isTrue();
+      assertThat(config.isUseMethodHandleInvokers()).isTrue();
+      assertThat(config.isUseCompiledDynamicSql()).isTrue();
+      assertThat(config.getDynamicSqlCacheSize()).isEqualTo(100);
+      assertThat(config.isParallelMapperParsing()).isTrue();
+      assertThat(config.isUseStaxMapperParser()).isTrue();
+      assertThat(config.isLazyStatementBuilding()).isTrue();
+      assertThat(config.isPluginWeaving()).isTrue();
+      assertThat(config.isAsyncSqlLogging()).isTrue();
+      assertThat(config.getSqlLogSampling()).isEqualTo(10);
+      assertThat(config.getSqlLogRateLimit()).isEqualTo(100);
+      assertThat(config.getNestedSelectBatchSize()).isEqualTo(50);
+      assertThat(config.getAsyncSqlLogger()).isNotNull();
+      assertThat(config.getMaxBatchSize()).isEqualTo(500);
+      assertThat(config.getMaxBatchBytes()).isEqualTo(1048576);
+      assertThat(config.isRewriteBatchedInserts()).isTrue();
       assertThat(config.getLogPrefix()).isEqualTo("mybatis_");
       assertThat(config.getLogImpl().getName()).isEqualTo(Slf4jImpl.class.getName());
       assertThat(config.getVfsImpl().getName()).isEqualTo(JBoss6VFS.class.getName());
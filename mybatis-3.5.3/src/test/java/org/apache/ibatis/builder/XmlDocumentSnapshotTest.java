@@ -0,0 +1,120 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.builder.xml.XmlDocumentSnapshot;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class XmlDocumentSnapshotTest {
+
+  private static final List<String> MAPPERS = Arrays.asList("org/apache/ibatis/builder/AuthorMapper.xml",
+      "org/apache/ibatis/builder/BlogMapper.xml", "org/apache/ibatis/builder/CachedAuthorMapper.xml",
+      "org/apache/ibatis/builder/PostMapper.xml", "org/apache/ibatis/builder/NestedBlogMapper.xml");
+
+  @Test
+  void shouldReadSameDocumentsFromSnapshot() throws Exception {
+    XmlDocumentSnapshot snapshot = new XmlDocumentSnapshot();
+    for (String mapper : MAPPERS) {
+      snapshot.add(mapper, read(mapper));
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    snapshot.write(out);
+    XmlDocumentSnapshot copy = XmlDocumentSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(MAPPERS, Arrays.asList(copy.getResources().toArray()));
+    for (String mapper : MAPPERS) {
+      assertTrue(copy.isUpToDate(mapper, read(mapper)));
+      XPathParser expected = new XPathParser(new ByteArrayInputStream(read(mapper)), true, null, new XMLMapperEntityResolver());
+      XPathParser actual = copy.newParser(mapper, new ByteArrayInputStream(read(mapper)), null);
+      assertEquals(expected.evalNode("/mapper").toString(), actual.evalNode("/mapper").toString());
+    }
+  }
+
+  @Test
+  void shouldParseSourceChangedSinceSnapshot() throws Exception {
+    String mapper = "org/apache/ibatis/builder/AuthorMapper.xml";
+    XmlDocumentSnapshot snapshot = new XmlDocumentSnapshot();
+    snapshot.add(mapper, read(mapper));
+    byte[] changed = new String(read(mapper), StandardCharsets.UTF_8).replace("selectAllAuthors", "selectEveryAuthor")
+        .getBytes(StandardCharsets.UTF_8);
+    assertFalse(snapshot.isUpToDate(mapper, changed));
+    assertFalse(snapshot.isUpToDate("org/apache/ibatis/builder/BlogMapper.xml", read(mapper)));
+    XPathParser parser = snapshot.newParser(mapper, new ByteArrayInputStream(changed), null);
+    assertTrue(parser.evalNode("/mapper").toString().contains("selectEveryAuthor"));
+    assertFalse(parser.evalNode("/mapper").toString().contains("selectAllAuthors"));
+  }
+
+  @Test
+  void shouldBuildConfigurationFromSnapshot() throws Exception {
+    String config = "org/apache/ibatis/builder/MapperConfig.xml";
+    File snapshotFile = new File(Resources.getResourceAsFile(config).getParentFile(), "MapperConfig.snapshot");
+    try {
+      XmlDocumentSnapshot.main(new String[] { config, snapshotFile.getPath() });
+      String xml = new String(read(config), StandardCharsets.UTF_8).replace("<settings>",
+          "<settings>\n    <setting name=\"mapperSnapshot\" value=\"org/apache/ibatis/builder/MapperConfig.snapshot\"/>");
+
+      Configuration configuration = new XMLConfigBuilder(new StringReader(xml)).parse();
+      Configuration expected;
+      try (Reader reader = Resources.getResourceAsReader(config)) {
+        expected = new XMLConfigBuilder(reader).parse();
+      }
+
+      assertEquals(MAPPERS, Arrays.asList(configuration.getMapperSnapshot().getResources().toArray()));
+      assertEquals(expected.getMappedStatementNames(), configuration.getMappedStatementNames());
+      assertEquals(expected.getResultMapNames(), configuration.getResultMapNames());
+      for (String name : expected.getMappedStatementNames()) {
+        if (name.indexOf('.') == -1) {
+          // short names may be ambiguous
+          continue;
+        }
+        assertEquals(expected.getMappedStatement(name).getSqlSource().getClass(),
+            configuration.getMappedStatement(name).getSqlSource().getClass());
+      }
+    } finally {
+      Files.deleteIfExists(snapshotFile.toPath());
+    }
+  }
+
+  private static byte[] read(String resource) throws Exception {
+    try (InputStream in = Resources.getResourceAsStream(resource)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    }
+  }
+
+}
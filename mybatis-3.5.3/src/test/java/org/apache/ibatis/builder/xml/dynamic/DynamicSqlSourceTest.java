@@ -16,6 +16,7 @@
 package org.apache.ibatis.builder.xml.dynamic;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -29,6 +30,7 @@ import java.util.Map;
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.scripting.xmltags.ChooseSqlNode;
 import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
 import org.apache.ibatis.scripting.xmltags.ForEachSqlNode;
@@ -36,6 +38,8 @@ import org.apache.ibatis.scripting.xmltags.IfSqlNode;
 import org.apache.ibatis.scripting.xmltags.MixedSqlNode;
 import org.apache.ibatis.scripting.xmltags.SetSqlNode;
 import org.apache.ibatis.scripting.xmltags.SqlNode;
+import org.apache.ibatis.scripting.xmltags.SqlTemplateCache;
+import org.apache.ibatis.scripting.xmltags.StaticTextSqlNode;
 import org.apache.ibatis.scripting.xmltags.TextSqlNode;
 import org.apache.ibatis.scripting.xmltags.WhereSqlNode;
 import org.apache.ibatis.session.Configuration;
@@ -376,6 +380,114 @@ class DynamicSqlSourceTest extends BaseDataTest {
     assertEquals("__frch_u_0", boundSql.getParameterMappings().get(3).getProperty());
   }
 
+  @Test
+  void shouldBuildSameSqlWhenCompiled() {
+    final Map<String, Object> param = new HashMap<>();
+    param.put("ids", Arrays.asList(new Bean("a"), new Bean("b")));
+    param.put("name", "Steve");
+    param.put("column", "#{name}");
+    assertCompiledAsInterpreted(param,
+        new TextSqlNode("SELECT * FROM BLOG"),
+        new WhereSqlNode(new Configuration(), mixedContents(
+            new IfSqlNode(mixedContents(new TextSqlNode("AND name = #{name,jdbcType=VARCHAR}")), "name != null"),
+            new IfSqlNode(mixedContents(new TextSqlNode("AND title = ${column}")), "column != null"),
+            new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{id.id} = #{ id , javaType=string} or #{i}")),
+                "ids", "i", "id", "AND (", ")", "OR"))));
+  }
+
+  @Test
+  void shouldBuildSameSqlWhenCompiledWithSetAndChoose() {
+    final Map<String, Object> param = new HashMap<>();
+    param.put("id", 1);
+    param.put("title", "Title");
+    assertCompiledAsInterpreted(param,
+        new TextSqlNode("UPDATE BLOG"),
+        new SetSqlNode(new Configuration(), mixedContents(
+            new IfSqlNode(mixedContents(new TextSqlNode("title = #{title},")), "title != null"),
+            new ChooseSqlNode(Arrays.asList(
+                new IfSqlNode(mixedContents(new TextSqlNode("author_id = #{author.id},")), "author != null")),
+                mixedContents(new TextSqlNode("author_id = #{id}, "))))),
+        new StaticTextSqlNode("WHERE id = #{id}"));
+  }
+
+  @Test
+  void shouldBuildSameSqlWhenCompiledWithEscapedPlaceholders() {
+    final Map<String, Object> param = new HashMap<>();
+    param.put("id", 1);
+    assertCompiledAsInterpreted(param,
+        new TextSqlNode("SELECT * FROM BLOG WHERE id = #{id}"),
+        new TextSqlNode("AND note = '\\#{literal}' AND title = '#{unclosed'"));
+  }
+
+  @Test
+  void shouldReuseParsedSqlForSameBranches() {
+    Configuration configuration = new Configuration();
+    configuration.setDynamicSqlCacheSize(10);
+    DynamicSqlSource source = new DynamicSqlSource(configuration, mixedContents(
+        new TextSqlNode("SELECT * FROM BLOG"),
+        new WhereSqlNode(configuration, mixedContents(
+            new IfSqlNode(mixedContents(new TextSqlNode("AND name = #{name}")), "name != null"),
+            new ForEachSqlNode(configuration, mixedContents(new TextSqlNode("#{id}")), "ids", null, "id", "AND id in (", ")", ",")))));
+    final Map<String, Object> param = new HashMap<>();
+    param.put("name", "Steve");
+    param.put("ids", Arrays.asList(1, 2));
+    BoundSql first = source.getBoundSql(param);
+    BoundSql second = source.getBoundSql(param);
+    assertEquals("SELECT * FROM BLOG WHERE  name = ?AND id in (?,?)", second.getSql());
+    assertSame(first.getParameterMappings(), second.getParameterMappings());
+    assertEquals(2, second.getAdditionalParameter("__frch_id_1"));
+
+    param.put("ids", Arrays.asList("a", "b"));
+    BoundSql otherTypes = source.getBoundSql(param);
+    assertEquals(String.class, otherTypes.getParameterMappings().get(1).getJavaType());
+    param.put("name", null);
+    source.getBoundSql(param);
+
+    SqlTemplateCache cache = source.getTemplateCache();
+    assertEquals(2, cache.getSize());
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+    assertEquals(0.25, cache.getHitRatio());
+  }
+
+  @Test
+  void shouldNotCacheMoreThanMaxSize() {
+    Configuration configuration = new Configuration();
+    configuration.setDynamicSqlCacheSize(1);
+    configuration.setUseCompiledDynamicSql(true);
+    DynamicSqlSource source = new DynamicSqlSource(configuration, mixedContents(
+        new TextSqlNode("SELECT * FROM ${table} WHERE id = #{id}")));
+    final Map<String, Object> param = new HashMap<>();
+    param.put("id", 1);
+    for (String table : Arrays.asList("BLOG", "AUTHOR", "BLOG", "AUTHOR")) {
+      param.put("table", table);
+      assertEquals("SELECT * FROM " + table + " WHERE id = ?", source.getBoundSql(param).getSql());
+    }
+    assertEquals(1, source.getTemplateCache().getSize());
+    assertEquals(1, source.getTemplateCache().getHits());
+  }
+
+  private void assertCompiledAsInterpreted(Object param, SqlNode... contents) {
+    Configuration configuration = new Configuration();
+    BoundSql interpreted = new DynamicSqlSource(configuration, mixedContents(contents)).getBoundSql(param);
+    configuration.setUseCompiledDynamicSql(true);
+    DynamicSqlSource compiledSource = new DynamicSqlSource(configuration, mixedContents(contents));
+    for (int i = 0; i < 2; i++) {
+      BoundSql compiled = compiledSource.getBoundSql(param);
+      assertEquals(interpreted.getSql(), compiled.getSql());
+      assertEquals(interpreted.getParameterMappings().size(), compiled.getParameterMappings().size());
+      for (int j = 0; j < interpreted.getParameterMappings().size(); j++) {
+        ParameterMapping expected = interpreted.getParameterMappings().get(j);
+        ParameterMapping actual = compiled.getParameterMappings().get(j);
+        assertEquals(expected.getProperty(), actual.getProperty());
+        assertEquals(expected.getJavaType(), actual.getJavaType());
+        assertEquals(expected.getJdbcType(), actual.getJdbcType());
+        assertEquals(expected.getTypeHandler().getClass(), actual.getTypeHandler().getClass());
+        assertEquals(interpreted.getAdditionalParameter(expected.getProperty()), compiled.getAdditionalParameter(actual.getProperty()));
+      }
+    }
+  }
+
   private DynamicSqlSource createDynamicSqlSource(SqlNode... contents) throws IOException, SQLException {
     createBlogDataSource();
     final String resource = "org/apache/ibatis/builder/MapperConfig.xml";
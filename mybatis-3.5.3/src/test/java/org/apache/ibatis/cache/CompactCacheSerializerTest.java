@@ -0,0 +1,146 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.ibatis.cache.impl.CompactCacheSerializer;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.jupiter.api.Test;
+
+class CompactCacheSerializerTest {
+
+  private final CacheSerializer serializer = new CompactCacheSerializer();
+
+  @Test
+  void shouldRoundTripSimpleValues() {
+    Timestamp timestamp = new Timestamp(1234567890123L);
+    timestamp.setNanos(123456789);
+    List<Object> values = Arrays.asList(null, "text", "", "été", 0, -1, Integer.MIN_VALUE, Long.MAX_VALUE,
+        -1.5d, 2.5f, (short) -3, (byte) 4, true, false, 'c', new BigDecimal("-123.4500"),
+        new BigInteger("123456789012345678901234567890"), new Date(1L), new java.sql.Date(-86400000L),
+        new Time(3600000L), timestamp, Section.NEWS);
+    for (Object value : values) {
+      assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+    }
+    assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) serializer.deserialize(serializer.serialize(new byte[] { 1, 2, 3 })));
+  }
+
+  @Test
+  void shouldRoundTripCollectionsAndMaps() {
+    List<Object> list = new ArrayList<>(Arrays.asList(1, "two", null));
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("b", list);
+    map.put("a", new LinkedList<>(list));
+    map.put("c", new LinkedHashSet<>(Arrays.asList(3, 2, 1)));
+    map.put("d", new HashMap<>(map));
+    Object copy = serializer.deserialize(serializer.serialize(map));
+    assertEquals(map, copy);
+    assertEquals(LinkedHashMap.class, copy.getClass());
+    assertEquals(Arrays.asList("b", "a", "c", "d"), new ArrayList<>(((Map<?, ?>) copy).keySet()));
+  }
+
+  @Test
+  void shouldRoundTripBeansFieldByField() {
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "", Section.NEWS);
+    Author copy = (Author) serializer.deserialize(serializer.serialize(author));
+    assertNotSame(author, copy);
+    assertEquals(101, copy.getId());
+    assertEquals("jim", copy.getUsername());
+    assertEquals(Section.NEWS, copy.getFavouriteSection());
+  }
+
+  @Test
+  void shouldPreserveSharedAndCircularReferences() {
+    Node first = new Node("first");
+    Node second = new Node("second");
+    first.next = second;
+    second.next = first;
+    List<Node> nodes = new ArrayList<>(Arrays.asList(first, second, first));
+    @SuppressWarnings("unchecked")
+    List<Node> copy = (List<Node>) serializer.deserialize(serializer.serialize(nodes));
+    assertEquals("first", copy.get(0).name);
+    assertSame(copy.get(0), copy.get(2));
+    assertSame(copy.get(1), copy.get(0).next);
+    assertSame(copy.get(0), copy.get(1).next);
+    assertNull(copy.get(0).cached);
+  }
+
+  @Test
+  void shouldFallBackToJavaSerialization() {
+    Map<String, Integer> sorted = new TreeMap<>();
+    sorted.put("b", 2);
+    sorted.put("a", 1);
+    List<Object> values = new ArrayList<>(Arrays.asList(sorted, new Custom("value"), new int[] { 1, 2 }));
+    @SuppressWarnings("unchecked")
+    List<Object> copy = (List<Object>) serializer.deserialize(serializer.serialize(values));
+    assertEquals(sorted, copy.get(0));
+    assertEquals("value!", ((Custom) copy.get(1)).value);
+    assertArrayEquals(new int[] { 1, 2 }, (int[]) copy.get(2));
+  }
+
+  @Test
+  void shouldRejectNonSerializableValues() {
+    assertThrows(CacheException.class, () -> serializer.serialize(new Object()));
+    assertThrows(CacheException.class, () -> serializer.serialize(new ArrayList<>(Arrays.asList(new Object()))));
+  }
+
+  private static class Node implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String name;
+    private Node next;
+    private transient String cached;
+
+    Node() {
+    }
+
+    Node(String name) {
+      this.name = name;
+      this.cached = name;
+    }
+  }
+
+  private static class Custom implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String value;
+
+    Custom(String value) {
+      this.value = value;
+    }
+
+    private Object readResolve() {
+      return new Custom(value + "!");
+    }
+  }
+
+}
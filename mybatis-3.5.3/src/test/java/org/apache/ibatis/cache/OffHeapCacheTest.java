@@ -0,0 +1,195 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.JavaCacheSerializer;
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCacheTest {
+
+  @Test
+  void shouldReturnCopiesOfCachedValues() {
+    OffHeapCache cache = new OffHeapCache("default");
+    List<String> value = new ArrayList<>();
+    value.add("a");
+    cache.putObject(0, value);
+    value.add("b");
+    @SuppressWarnings("unchecked")
+    List<String> cached = (List<String>) cache.getObject(0);
+    assertEquals(1, cached.size());
+    assertNotSame(cached, cache.getObject(0));
+  }
+
+  @Test
+  void shouldStoreValuesLargerThanABlock() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(16);
+    cache.setCapacity(16 * 1024);
+    cache.setSegments(1);
+    cache.initialize();
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      value.append(i);
+    }
+    cache.putObject(0, value.toString());
+    assertEquals(value.toString(), cache.getObject(0));
+  }
+
+  @Test
+  void shouldEvictWhenOutOfMemory() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(64);
+    cache.setCapacity(64 * 4);
+    cache.setSegments(1);
+    cache.initialize();
+    for (int i = 0; i < 4; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(0, cache.getObject(0));
+    cache.putObject(4, 4);
+    assertEquals(4, cache.getSize());
+    assertEquals(0, cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertEquals(4, cache.getObject(4));
+  }
+
+  @Test
+  void shouldEvictWhenSizeIsReached() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setSegments(1);
+    cache.setSize(5);
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(5, cache.getSize());
+    assertEquals(9, cache.getObject(9));
+  }
+
+  @Test
+  void shouldNotCacheValuesLargerThanASegment() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(8);
+    cache.setCapacity(32);
+    cache.setSegments(1);
+    cache.putObject(0, 0);
+    cache.putObject(0, "a value that needs more than thirty-two bytes");
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldRemoveItemOnDemand() {
+    Cache cache = new OffHeapCache("default");
+    cache.putObject(0, "a");
+    assertEquals("a", cache.removeObject(0));
+    assertNull(cache.getObject(0));
+    assertNull(cache.removeObject(0));
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setSegments(1);
+    cache.setCapacity(256 * 5);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(5, cache.getSize());
+  }
+
+  @Test
+  void shouldUseConfiguredSerializer() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setSerializer(JavaCacheSerializer.class.getName());
+    cache.putObject(0, "a");
+    assertEquals("a", cache.getObject(0));
+    assertThrows(CacheException.class, () -> cache.setSerializer("unknown.Serializer"));
+  }
+
+  @Test
+  void shouldRejectNonSerializableValues() {
+    Cache cache = new OffHeapCache("default");
+    assertThrows(CacheException.class, () -> cache.putObject(0, new Object()));
+  }
+
+  @Test
+  void shouldNotBeWrappedInSerializedCache() {
+    Cache cache = new CacheBuilder("default").implementation(OffHeapCache.class).readWrite(true).build();
+    Cache current = cache;
+    while (current.getClass() != OffHeapCache.class) {
+      assertFalse(current instanceof SerializedCache);
+      current = getDelegate(current);
+    }
+  }
+
+  @Test
+  void shouldServeConcurrentReadersAndWriters() throws Exception {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setCapacity(64 * 1024);
+    cache.setSegments(4);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 2000; i++) {
+            int key = (thread * 31 + i) % 500;
+            cache.putObject(key, "value" + key);
+            Object value = cache.getObject(key);
+            assertTrue(value == null || ("value" + key).equals(value));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Cache getDelegate(Cache cache) {
+    try {
+      Field delegate = cache.getClass().getDeclaredField("delegate");
+      delegate.setAccessible(true);
+      return (Cache) delegate.get(cache);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,43 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class MultiRowInsertTest {
+
+  @Test
+  void shouldRepeatValuesRow() {
+    MultiRowInsert insert = MultiRowInsert.parse("insert into t (a, b) values (?, 'x''y')");
+    assertNotNull(insert);
+    assertEquals(1, insert.getParameterCount());
+    assertEquals("insert into t (a, b) values (?, 'x''y'), (?, 'x''y')", insert.getSql(2));
+  }
+
+  @Test
+  void shouldNotParseTextAfterValuesRow() {
+    assertNull(MultiRowInsert.parse("insert into t (a) values (?) on duplicate key update a = ?"));
+  }
+
+  @Test
+  void shouldNotParseBackslashInLiteral() {
+    assertNull(MultiRowInsert.parse("insert into t (a, b) values (?, 'it\\'s (x')"));
+    assertNull(MultiRowInsert.parse("insert into t (a, b) values (?, 'C:\\')"));
+  }
+
+}
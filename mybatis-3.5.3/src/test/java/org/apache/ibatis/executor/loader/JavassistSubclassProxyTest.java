@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+import javassist.util.proxy.Proxy;
+
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.executor.loader.javassist.JavassistSubclassProxyFactory;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class JavassistSubclassProxyTest extends JavassistProxyTest {
+
+  private final Configuration configuration = new Configuration();
+  private final ObjectFactory objectFactory = new DefaultObjectFactory();
+
+  @BeforeAll
+  static void createProxyFactory() {
+    proxyFactory = new JavassistSubclassProxyFactory();
+  }
+
+  @Test
+  void shouldCreateOneSubclassPerResultType() {
+    Object proxy1 = proxyFactory.createProxy(author, new ResultLoaderMap(), configuration, objectFactory, new ArrayList<>(), new ArrayList<>());
+    Object proxy2 = proxyFactory.createProxy(author, new ResultLoaderMap(), configuration, objectFactory, new ArrayList<>(), new ArrayList<>());
+    assertFalse(proxy1 instanceof Proxy);
+    assertEquals(Author.class, proxy1.getClass().getSuperclass());
+    assertSame(proxy1.getClass(), proxy2.getClass());
+    assertEquals(author, proxy1);
+  }
+
+  @Test
+  void shouldLoadAPropertyAddedAfterCreatingTheProxyOnce() {
+    ResultLoaderMap loader = new ResultLoaderMap();
+    Author proxy = (Author) proxyFactory.createProxy(author, loader, configuration, objectFactory, new ArrayList<>(), new ArrayList<>());
+    loader.addLoader("bio", null, null);
+    assertEquals("someone", proxy.getUsername());
+    assertEquals(1, loader.size());
+    // the loader has no meta object, the failed load removes it anyway
+    assertThrows(IllegalArgumentException.class, proxy::getBio);
+    assertEquals(0, loader.size());
+    assertEquals("blah", proxy.getBio());
+  }
+
+  @Test
+  void shouldNotLoadAPropertyAfterCallingItsSetter() {
+    ResultLoaderMap loader = new ResultLoaderMap();
+    Author proxy = (Author) proxyFactory.createProxy(author, loader, configuration, objectFactory, new ArrayList<>(), new ArrayList<>());
+    loader.addLoader("bio", null, null);
+    loader.addLoader("email", null, null);
+    proxy.setBio("other");
+    assertEquals(1, loader.size());
+    assertEquals("other", proxy.getBio());
+    assertThrows(IllegalArgumentException.class, proxy::getEmail);
+  }
+
+  @Test
+  void shouldLoadAllPropertiesWithATriggerMethod() {
+    Configuration configuration = new Configuration();
+    configuration.setLazyLoadTriggerMethods(new HashSet<>(Collections.singleton("toString")));
+    ResultLoaderMap loader = new ResultLoaderMap();
+    Author proxy = (Author) proxyFactory.createProxy(author, loader, configuration, objectFactory, new ArrayList<>(), new ArrayList<>());
+    loader.addLoader("bio", null, null);
+    proxy.hashCode();
+    assertEquals(1, loader.size());
+    assertThrows(IllegalArgumentException.class, proxy::toString);
+    assertEquals(0, loader.size());
+  }
+
+  @Test
+  void shouldFallBackToAProxyWhenTheSubclassCannotBeGenerated() {
+    Object proxy = proxyFactory.createProxy(new BeanWithFinalListenerMethod(), new ResultLoaderMap(), configuration, objectFactory, new ArrayList<>(), new ArrayList<>());
+    assertTrue(proxy instanceof Proxy);
+  }
+
+  public static class BeanWithFinalListenerMethod {
+    public final void loaderAdded(String property) {
+      // the generated subclass cannot implement ResultLoaderMap.Listener
+    }
+  }
+
+}
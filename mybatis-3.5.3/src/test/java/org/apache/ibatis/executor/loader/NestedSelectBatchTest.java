@@ -0,0 +1,41 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+class NestedSelectBatchTest {
+
+  @Test
+  void shouldNormalizeNumbersOfDifferentTypes() {
+    assertEquals(NestedSelectBatch.normalize(1), NestedSelectBatch.normalize(1L));
+    assertEquals(NestedSelectBatch.normalize(1.5f), NestedSelectBatch.normalize(new BigDecimal("1.50")));
+    assertEquals("a", NestedSelectBatch.normalize("a"));
+  }
+
+  @Test
+  void shouldNormalizeNaNAndInfinity() {
+    assertEquals(NestedSelectBatch.normalize(Double.NaN), NestedSelectBatch.normalize(Float.NaN));
+    assertEquals(NestedSelectBatch.normalize(Double.POSITIVE_INFINITY), NestedSelectBatch.normalize(Float.POSITIVE_INFINITY));
+    assertNotEquals(NestedSelectBatch.normalize(Double.POSITIVE_INFINITY), NestedSelectBatch.normalize(Double.NEGATIVE_INFINITY));
+  }
+
+}
@@ -0,0 +1,180 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class StatementMetricsRegistryTest extends BaseDataTest {
+
+  private static DataSource ds;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    ds = createBlogDataSource();
+  }
+
+  @Test
+  void shouldRecordQueries() throws Exception {
+    StatementMetricsRegistry metrics = new StatementMetricsRegistry();
+    Configuration config = new Configuration();
+    config.setStatementMetrics(metrics);
+    MappedStatement select = selectAuthor(config);
+    Executor executor = new SimpleExecutor(config, new JdbcTransaction(ds, null, false));
+    try {
+      List<Author> authors = executor.query(select, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(1, authors.size());
+      authors = executor.query(select, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(1, authors.size());
+    } finally {
+      executor.close(false);
+    }
+    StatementSnapshot snapshot = metrics.snapshot("selectAuthor");
+    assertEquals(2, snapshot.getCalls());
+    assertEquals(0, snapshot.getFailures());
+    assertEquals(2, snapshot.getRows());
+    assertEquals(1, snapshot.getLocalCacheHits());
+    assertEquals(1, snapshot.getLocalCacheMisses());
+    assertEquals(0.5, snapshot.getLocalCacheHitRatio());
+    assertEquals(2, snapshot.getLatency().getCount());
+    assertEquals(1, snapshot.getPrepareLatency().getCount());
+    assertEquals(1, snapshot.getExecuteLatency().getCount());
+    assertEquals(1, snapshot.getMapLatency().getCount());
+    assertThat(snapshot.getLatency().getMax()).isGreaterThan(0);
+    assertThat(metrics.snapshot()).containsOnlyKeys("selectAuthor");
+  }
+
+  @Test
+  void shouldRecordUpdatesAndFailures() throws Exception {
+    StatementMetricsRegistry metrics = new StatementMetricsRegistry();
+    Configuration config = new Configuration();
+    config.setStatementMetrics(metrics);
+    MappedStatement update = statement(config, "updateAuthor", "UPDATE author SET bio = 'metrics' WHERE id = ?",
+        SqlCommandType.UPDATE, Integer.class);
+    MappedStatement invalid = statement(config, "invalid", "UPDATE no_such_table SET bio = 'metrics' WHERE id = ?",
+        SqlCommandType.UPDATE, Integer.class);
+    Executor executor = new SimpleExecutor(config, new JdbcTransaction(ds, null, false));
+    try {
+      assertEquals(1, executor.update(update, 101));
+      assertThrows(SQLException.class, () -> executor.update(invalid, 101));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+    StatementSnapshot updated = metrics.snapshot("updateAuthor");
+    assertEquals(1, updated.getCalls());
+    assertEquals(1, updated.getRows());
+    assertEquals(0, updated.getLocalCacheMisses());
+    StatementSnapshot failed = metrics.snapshot("invalid");
+    assertEquals(1, failed.getCalls());
+    assertEquals(1, failed.getFailures());
+    assertEquals(1, failed.getLatency().getCount());
+
+    metrics.reset();
+    assertEquals(0, metrics.snapshot("updateAuthor").getCalls());
+    assertEquals(0, metrics.snapshot("updateAuthor").getLatency().getCount());
+  }
+
+  @Test
+  void shouldComputePercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10000; i++) {
+      histogram.record(i * 1000L);
+    }
+    LatencySnapshot snapshot = histogram.snapshot();
+    assertEquals(10000, snapshot.getCount());
+    assertEquals(5000500, snapshot.getMean());
+    assertEquals(10000000, snapshot.getMax());
+    assertThat(snapshot.getMedian()).isBetween(5000000L, 5625000L);
+    assertThat(snapshot.getPercentile90()).isBetween(9000000L, 10000000L);
+    assertThat(snapshot.getPercentile99()).isBetween(9900000L, 10000000L);
+    assertEquals(10000000, snapshot.getPercentile999());
+  }
+
+  @Test
+  void shouldMapValuesToContiguousBuckets() {
+    for (long value = 0; value < 100000; value++) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertThat(LatencyHistogram.highestValue(index)).isGreaterThanOrEqualTo(value);
+      if (index > 0) {
+        assertThat(LatencyHistogram.highestValue(index - 1)).isLessThan(value);
+      }
+    }
+    assertEquals(LatencyHistogram.bucketIndex(1L << 41), LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+  }
+
+  @Test
+  void shouldExposeSnapshotsThroughJmx() throws Exception {
+    StatementMetricsRegistry metrics = new StatementMetricsRegistry();
+    Configuration config = new Configuration();
+    metrics.statementCompleted(selectAuthor(config), 1000, 1);
+    ObjectName name = metrics.registerMBean("test");
+    try {
+      assertThrows(IllegalStateException.class, () -> metrics.registerMBean("test"));
+      CompositeData[] statements = (CompositeData[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name,
+          "Statements");
+      assertEquals(1, statements.length);
+      assertEquals("selectAuthor", statements[0].get("id"));
+      assertEquals(1L, statements[0].get("calls"));
+      assertEquals(1000L, ((CompositeData) statements[0].get("latency")).get("max"));
+    } finally {
+      metrics.unregisterMBean();
+    }
+    assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name)).isFalse();
+  }
+
+  private static MappedStatement selectAuthor(Configuration config) {
+    return statement(config, "selectAuthor", "SELECT id, username, password, email, bio FROM author WHERE id = ?",
+        SqlCommandType.SELECT, Author.class);
+  }
+
+  private static MappedStatement statement(Configuration config, String id, String sql, SqlCommandType type,
+      Class<?> resultType) {
+    List<ParameterMapping> parameterMappings = new ArrayList<>();
+    parameterMappings.add(new ParameterMapping.Builder(config, "id", Integer.class).build());
+    List<ResultMap> resultMaps = Collections.singletonList(
+        new ResultMap.Builder(config, id + "-Inline", resultType, new ArrayList<>()).build());
+    return new MappedStatement.Builder(config, id, new StaticSqlSource(config, sql, parameterMappings), type)
+        .resultMaps(type == SqlCommandType.SELECT ? resultMaps : new ArrayList<>()).build();
+  }
+
+}
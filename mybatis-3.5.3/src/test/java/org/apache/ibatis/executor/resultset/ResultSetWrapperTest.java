@@ -0,0 +1,177 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.ColumnIndexAccessible;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResultSetWrapperTest {
+
+  @Mock
+  private ResultSet rs;
+  @Mock
+  private ResultSetMetaData rsmd;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rsmd.getColumnCount()).thenReturn(3);
+    when(rsmd.getColumnType(1)).thenReturn(Types.INTEGER);
+    when(rsmd.getColumnType(2)).thenReturn(Types.VARCHAR);
+    when(rsmd.getColumnType(3)).thenReturn(Types.INTEGER);
+  }
+
+  private void labels() throws Exception {
+    when(rsmd.getColumnLabel(1)).thenReturn("ID");
+    when(rsmd.getColumnLabel(2)).thenReturn("p_name");
+    when(rsmd.getColumnLabel(3)).thenReturn("Id");
+  }
+
+  @Test
+  void shouldFindFirstColumnIgnoringCase() throws Exception {
+    labels();
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, new Configuration());
+    assertThat(rsw.getColumnIndex("id")).isEqualTo(1);
+    assertThat(rsw.getColumnIndex("P_NAME")).isEqualTo(2);
+    assertThat(rsw.getColumnIndex("other")).isEqualTo(-1);
+    assertThat(rsw.getJdbcType("p_Name")).isEqualTo(JdbcType.VARCHAR);
+    assertThat(rsw.getTypeHandler(Integer.class, "id")).isSameAs(rsw.getTypeHandler(Integer.class, "ID"));
+  }
+
+  @Test
+  void shouldReadByIndexWithBuiltInTypeHandlersOnly() throws Exception {
+    labels();
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, new Configuration());
+    assertThat(rsw.getResultColumnIndex(new StringTypeHandler(), "P_NAME")).isEqualTo(2);
+    assertThat(rsw.getResultColumnIndex(new CustomStringTypeHandler(), "P_NAME")).isZero();
+    assertThat(rsw.getResultColumnIndex(new StringTypeHandler(), "other")).isZero();
+  }
+
+  @Test
+  void shouldReadByNameWhenSubclassChangesReadingByName() throws Exception {
+    labels();
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, new Configuration());
+    assertThat(rsw.getResultColumnIndex(new TrimmingStringTypeHandler(), "P_NAME")).isZero();
+    assertThat(rsw.getResultColumnIndex(new MarkedTrimmingStringTypeHandler(), "P_NAME")).isEqualTo(2);
+    assertThat(rsw.getResultColumnIndex(new StringTypeHandler() {}, "P_NAME")).isEqualTo(2);
+  }
+
+  @Test
+  void shouldSkipColumnsWithoutLabel() throws Exception {
+    when(rsmd.getColumnLabel(1)).thenReturn("ID");
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, new Configuration());
+    assertThat(rsw.getColumnIndex("ID")).isEqualTo(1);
+    assertThat(rsw.getColumnIndex(null)).isEqualTo(-1);
+    assertThat(rsw.getResultColumnIndex(new IntegerTypeHandler(), null)).isZero();
+  }
+
+  @Test
+  void shouldReadByNameWhenColumnNamesAreUsed() throws Exception {
+    when(rsmd.getColumnName(1)).thenReturn("ID");
+    when(rsmd.getColumnName(2)).thenReturn("NAME");
+    when(rsmd.getColumnName(3)).thenReturn("ID");
+    Configuration configuration = new Configuration();
+    configuration.setUseColumnLabel(false);
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+    assertThat(rsw.getColumnIndex("name")).isEqualTo(2);
+    assertThat(rsw.getResultColumnIndex(new StringTypeHandler(), "NAME")).isZero();
+  }
+
+  @Test
+  void shouldResolvePropertyColumnsOncePerResultMapAndPrefix() throws Exception {
+    labels();
+    Configuration configuration = new Configuration();
+    ResultMap resultMap = new ResultMap.Builder(configuration, "map", HashMap.class, Arrays.asList(
+        new ResultMapping.Builder(configuration, "id", "id", new IntegerTypeHandler()).build(),
+        new ResultMapping.Builder(configuration, "name", "name", new CustomStringTypeHandler()).build(),
+        new ResultMapping.Builder(configuration, "missing", "missing", new IntegerTypeHandler()).build())).build();
+    ResultSetWrapper rsw = new ResultSetWrapper(rs, configuration);
+
+    ResultSetWrapper.ResultMapColumns columns = rsw.getResultMapColumns(resultMap, null);
+    assertThat(rsw.getResultMapColumns(resultMap, null)).isSameAs(columns);
+    assertThat(columns.getPropertyColumnIndex(0)).isEqualTo(1);
+    assertThat(columns.getPropertyColumnIndex(1)).isZero();
+    assertThat(columns.getPropertyColumnIndex(2)).isZero();
+
+    ResultSetWrapper.ResultMapColumns prefixed = rsw.getResultMapColumns(resultMap, "P_");
+    assertThat(prefixed.getPropertyColumnIndex(0)).isZero();
+    assertThat(prefixed.getPropertyColumnIndex(1)).isEqualTo(ResultSetWrapper.ResultMapColumns.BY_NAME);
+    assertThat(rsw.getMappedColumnNames(resultMap, "P_")).containsExactly("P_NAME");
+    assertThat(rsw.getUnmappedColumnNames(resultMap, "P_")).containsExactly("ID", "Id");
+  }
+
+  static class TrimmingStringTypeHandler extends StringTypeHandler {
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+      String value = super.getNullableResult(rs, columnName);
+      return value == null ? null : value.trim();
+    }
+  }
+
+  static class MarkedTrimmingStringTypeHandler extends TrimmingStringTypeHandler implements ColumnIndexAccessible {
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+      String value = super.getNullableResult(rs, columnIndex);
+      return value == null ? null : value.trim();
+    }
+  }
+
+  static class CustomStringTypeHandler extends BaseTypeHandler<String> {
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) {
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) {
+      return null;
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) {
+      return null;
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) {
+      return null;
+    }
+  }
+
+}
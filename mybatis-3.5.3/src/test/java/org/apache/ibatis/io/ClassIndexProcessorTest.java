@@ -0,0 +1,117 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ClassIndexProcessorTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void shouldIndexCompiledClassesWithTheirSupertypes() throws Exception {
+    Path classes = compile();
+    List<String> index = Files.readAllLines(classes.resolve(ClassIndex.RESOURCE), StandardCharsets.UTF_8);
+    assertThat(index).contains(
+        "sample.Base;java.lang.Object",
+        "sample.Base$Inner;java.lang.Object",
+        "sample.Handler;java.lang.Object,java.lang.Runnable",
+        "sample.sub.SubHandler;sample.Handler,java.lang.Object,java.lang.Runnable");
+  }
+
+  @Test
+  void shouldFindIndexedClassesWithoutLoadingUnrelatedOnes() throws Exception {
+    Path classes = compile();
+    List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+    try (URLClassLoader loader = new URLClassLoader(new URL[] { classes.toUri().toURL() }, getClass().getClassLoader()) {
+      @Override
+      protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        loaded.add(name);
+        return super.loadClass(name, resolve);
+      }
+    }) {
+      ResolverUtil<Runnable> resolverUtil = new ResolverUtil<>();
+      resolverUtil.setClassLoader(loader);
+      resolverUtil.findImplementations(Runnable.class, "sample");
+      assertThat(resolverUtil.getClasses().stream().map(Class::getName).collect(Collectors.toList()))
+          .containsExactlyInAnyOrder("sample.Handler", "sample.sub.SubHandler");
+      assertThat(loaded).doesNotContain("sample.Base", "sample.Base$Inner");
+
+      ResolverUtil<Object> all = new ResolverUtil<>();
+      all.setClassLoader(loader);
+      all.find(new ResolverUtil.IsA(Object.class), "sample.sub");
+      assertThat(all.getClasses()).hasSize(1);
+    }
+  }
+
+  @Test
+  void shouldNotIndexPackagesOutsideTheCompilation() throws Exception {
+    Path classes = compile();
+    try (URLClassLoader loader = new URLClassLoader(new URL[] { classes.toUri().toURL() }, null)) {
+      ClassIndex index = ClassIndex.forClassLoader(loader);
+      assertThat(index.isIndexed("sample")).isTrue();
+      assertThat(index.isIndexed("sample.sub")).isTrue();
+      assertThat(index.isIndexed("org.apache.ibatis.io")).isFalse();
+      assertThat(index.getEntries("sample")).hasSize(4);
+    }
+  }
+
+  private Path compile() throws Exception {
+    Path sources = Files.createDirectories(dir.resolve("src"));
+    Path classes = Files.createDirectories(dir.resolve("classes"));
+    List<String> files = Arrays.asList(
+        write(sources, "sample/Base.java", "package sample; public class Base { public static class Inner {} }"),
+        write(sources, "sample/Handler.java", "package sample; public class Handler implements Runnable { public void run() {} }"),
+        write(sources, "sample/sub/SubHandler.java", "package sample.sub; public class SubHandler extends sample.Handler {}"));
+    List<String> arguments = new ArrayList<>(Arrays.asList(
+        "-d", classes.toString(),
+        "-processor", ClassIndexProcessor.class.getName(),
+        "-processorpath",
+        Paths.get(ClassIndexProcessor.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString()));
+    arguments.addAll(files);
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertThat(compiler.run(null, null, null, arguments.toArray(new String[0]))).isZero();
+    return classes;
+  }
+
+  private String write(Path root, String name, String source) throws IOException {
+    Path file = root.resolve(name);
+    Files.createDirectories(file.getParent());
+    Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    return file.toString();
+  }
+
+}
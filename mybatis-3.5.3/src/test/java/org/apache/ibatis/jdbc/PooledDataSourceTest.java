@@ -16,6 +16,7 @@
 package org.apache.ibatis.jdbc;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -24,10 +25,20 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -91,6 +102,126 @@ class PooledDataSourceTest extends BaseDataTest {
     c.close();
   }
 
+  @Test
+  void shouldOpenMinimumIdleConnectionsOnWarmUp() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(3);
+      ds.warmUp();
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(0, ds.getPoolState().getRequestCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldWarmUpPoolWhenBuildingSqlSessionFactory() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(2);
+      Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), ds));
+      new SqlSessionFactoryBuilder().build(configuration);
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldCloseConnectionReturnedAfterItsMaximumLifetime() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMaximumLifetime(10);
+      Connection c = ds.getConnection();
+      Connection realConnection = PooledDataSource.unwrapConnection(c);
+      Thread.sleep(20);
+      c.close();
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      assertTrue(realConnection.isClosed());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldEvictBrokenAndExpiredIdleConnectionsInBackground() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolMaximumLifetime(200);
+      ds.setPoolHousekeepingInterval(20);
+      ds.warmUp();
+      List<Connection> originals = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        originals.add(ds.getConnection());
+      }
+      List<Connection> realConnections = new ArrayList<>();
+      for (Connection c : originals) {
+        realConnections.add(PooledDataSource.unwrapConnection(c));
+        c.close();
+      }
+      // break one idle connection behind the pool's back
+      realConnections.get(0).close();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (ds.getPoolState().getBadConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+      while (!realConnections.get(1).isClosed() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertTrue(realConnections.get(1).isClosed());
+      while (ds.getPoolState().getIdleConnectionCount() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.setPoolHousekeepingInterval(0);
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldCountConnectionsUnderValidationAsActive() throws Exception {
+    CountDownLatch validating = new CountDownLatch(1);
+    CountDownLatch validated = new CountDownLatch(1);
+    AtomicInteger opened = new AtomicInteger();
+    ManuallyHousekeptDataSource ds = new ManuallyHousekeptDataSource(new UnpooledDataSource() {
+      @Override
+      public Connection getConnection() throws SQLException {
+        opened.incrementAndGet();
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.isValid(anyInt())).thenAnswer(invocation -> {
+          validating.countDown();
+          return validated.await(5, TimeUnit.SECONDS);
+        });
+        return connection;
+      }
+    });
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolTimeToWait(50);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ds.getConnection().close();
+      Future<?> housekeeping = executor.submit(ds::housekeep);
+      assertTrue(validating.await(5, TimeUnit.SECONDS));
+      Future<Connection> checkout = executor.submit(() -> ds.getConnection());
+      Thread.sleep(100);
+      assertFalse(checkout.isDone());
+      validated.countDown();
+      housekeeping.get(5, TimeUnit.SECONDS);
+      checkout.get(5, TimeUnit.SECONDS).close();
+      assertEquals(1, opened.get());
+    } finally {
+      validated.countDown();
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
   @Disabled("See the comments")
   @Test
   void shouldReconnectWhenServerKilledLeakedConnection() throws Exception {
@@ -144,4 +275,17 @@ class PooledDataSourceTest extends BaseDataTest {
       }
     }
   }
+
+  private static class ManuallyHousekeptDataSource extends PooledDataSource {
+
+    ManuallyHousekeptDataSource(UnpooledDataSource dataSource) {
+      super(dataSource);
+    }
+
+    @Override
+    protected void housekeep() {
+      super.housekeep();
+    }
+  }
+
 }
@@ -0,0 +1,178 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.logging.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.junit.jupiter.api.Test;
+
+class AsyncSqlLoggerTest {
+
+  @Test
+  void shouldLogStatementsLikeTheProxies() throws Exception {
+    RecordingLog log = new RecordingLog();
+    AsyncSqlLogger logger = new AsyncSqlLogger(16, 1, 0);
+    logger.log(log, "select *\n  from blog where id = ?", new Object[] {10, null}, 2_500_000, 3, false, 0);
+    logger.log(log, "update blog set title = 'x'", null, 1_000_000, 1, true, 0);
+    logger.log(log, "insert into blog values (?)", new Object[] {"a"}, -1, -1, true, 0);
+    assertTrue(logger.flush(10, TimeUnit.SECONDS));
+    assertThat(log.lines).containsExactly(
+        "==>  Preparing: select * from blog where id = ? ",
+        "==> Parameters: 10(Integer), null",
+        "<==      Total: 3, Time: 2.500 ms",
+        "==>  Executing: update blog set title = 'x' ",
+        "<==    Updates: 1, Time: 1.000 ms",
+        "==>  Preparing: insert into blog values (?) ",
+        "==> Parameters: a(String)");
+  }
+
+  @Test
+  void shouldLogResultAfterTheStatement() throws Exception {
+    RecordingLog log = new RecordingLog();
+    AsyncSqlLogger logger = new AsyncSqlLogger(16, 1, 0);
+    logger.log(log, "select * from blog", new Object[0], 2_000_000, -1, false, 0);
+    logger.log(log, "select * from author", new Object[0], 1_000_000, 1, false, 0);
+    logger.logResult(log, 2_000_000, 3, false);
+    assertTrue(logger.flush(10, TimeUnit.SECONDS));
+    assertThat(log.lines).containsExactly(
+        "==>  Preparing: select * from blog ",
+        "==> Parameters: ",
+        "==>  Preparing: select * from author ",
+        "==> Parameters: ",
+        "<==      Total: 1, Time: 1.000 ms",
+        "<==      Total: 3, Time: 2.000 ms");
+  }
+
+  @Test
+  void shouldFormatMutableParametersWhenQueued() throws Exception {
+    RecordingLog log = new RecordingLog();
+    AsyncSqlLogger logger = new AsyncSqlLogger(16, 1, 0);
+    List<String> names = new ArrayList<>(Arrays.asList("a"));
+    logger.log(log, "select ?, ?", new Object[] {names, "b"}, -1, -1, false, 0);
+    names.add("c");
+    assertTrue(logger.flush(10, TimeUnit.SECONDS));
+    assertThat(log.lines).contains("==> Parameters: [a](ArrayList), b(String)");
+  }
+
+  @Test
+  void shouldReportSkippedExecutions() throws Exception {
+    RecordingLog log = new RecordingLog();
+    AsyncSqlLogger logger = new AsyncSqlLogger(16, 1, 0);
+    logger.log(log, "select 1", new Object[0], 1000, 1, false, 4);
+    assertTrue(logger.flush(10, TimeUnit.SECONDS));
+    assertEquals("==>    Skipped: 4 execution(s) not logged", log.lines.get(0));
+  }
+
+  @Test
+  void shouldSampleExecutionsPerStatement() {
+    AsyncSqlLogger logger = new AsyncSqlLogger(16, 3, 0);
+    List<Long> samples = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      samples.add(logger.sample("a"));
+    }
+    assertThat(samples).containsExactly(0L, -1L, -1L, 2L, -1L, -1L, 2L);
+    assertEquals(0L, logger.sample("b"));
+  }
+
+  @Test
+  void shouldRateLimitExecutionsPerStatement() {
+    AsyncSqlLogger logger = new AsyncSqlLogger(16, 1, 1000);
+    int logged = 0;
+    for (int i = 0; i < 1500; i++) {
+      if (logger.sample("a") >= 0) {
+        logged++;
+      }
+    }
+    // the loop may span two seconds
+    assertThat(logged).isBetween(1000, 1500);
+    assertThat(logger.sample("b")).isEqualTo(0L);
+  }
+
+  @Test
+  void shouldDropStatementsWhenTheBufferIsFull() throws Exception {
+    CountDownLatch formatting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingLog blockingLog = new RecordingLog() {
+      @Override
+      public void debug(String s) {
+        formatting.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    RecordingLog log = new RecordingLog();
+    AsyncSqlLogger logger = new AsyncSqlLogger(2, 1, 0);
+    try {
+      logger.log(blockingLog, "select 1", null, 1, -1, false, 0);
+      assertTrue(formatting.await(10, TimeUnit.SECONDS));
+      // the first entry is still being formatted, so one more fits
+      logger.log(log, "select 2", null, 1, -1, false, 0);
+      logger.log(log, "select 3", null, 1, -1, false, 0);
+    } finally {
+      release.countDown();
+    }
+    assertTrue(logger.flush(10, TimeUnit.SECONDS));
+    assertThat(log.lines).containsExactly("==>  Executing: select 2 ");
+  }
+
+  private static class RecordingLog implements Log {
+    final List<String> lines = new ArrayList<>();
+
+    @Override
+    public boolean isDebugEnabled() {
+      return true;
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+      return false;
+    }
+
+    @Override
+    public void error(String s, Throwable e) {
+    }
+
+    @Override
+    public void error(String s) {
+    }
+
+    @Override
+    public void debug(String s) {
+      lines.add(s);
+    }
+
+    @Override
+    public void trace(String s) {
+    }
+
+    @Override
+    public void warn(String s) {
+    }
+  }
+
+}
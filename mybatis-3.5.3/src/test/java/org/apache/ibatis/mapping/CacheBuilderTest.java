@@ -18,6 +18,13 @@ package org.apache.ibatis.mapping;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.ThreadSafeCache;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.ScheduledCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -43,6 +50,41 @@ class CacheBuilderTest {
       .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
   }
 
+  @Test
+  void testSynchronizedByDefault() {
+    Cache cache = new CacheBuilder("test").build();
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+    Assertions.assertThat((Cache) unwrap(unwrap(cache))).isInstanceOf(LruCache.class);
+  }
+
+  @Test
+  void testThreadSafeCacheIsNotSynchronized() {
+    Cache cache = new CacheBuilder("test").implementation(ConcurrentCache.class).addDecorator(LruCache.class).size(10).build();
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    ConcurrentCache concurrentCache = unwrap(cache);
+    for (int i = 0; i < 20; i++) {
+      concurrentCache.putObject(i, i);
+    }
+    Assertions.assertThat(concurrentCache.getSize()).isEqualTo(10);
+  }
+
+  @Test
+  void testCustomThreadSafeCacheGetsStandardDecorators() {
+    Cache cache = new CacheBuilder("test").implementation(CustomThreadSafeCache.class).clearInterval(60000L).build();
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat((Cache) unwrap(cache)).isInstanceOf(ScheduledCache.class);
+    Assertions.assertThat((Cache) unwrap(unwrap(cache))).isInstanceOf(CustomThreadSafeCache.class);
+  }
+
+  @Test
+  void testScheduledOffHeapCacheIsNotSerialized() {
+    Cache cache = new CacheBuilder("test").implementation(OffHeapCache.class).clearInterval(60000L).readWrite(true)
+        .build();
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat((Cache) unwrap(cache)).isInstanceOf(ScheduledCache.class);
+    Assertions.assertThat((Cache) unwrap(unwrap(cache))).isInstanceOf(OffHeapCache.class);
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T unwrap(Cache cache) {
     Field field;
@@ -76,6 +118,14 @@ class CacheBuilderTest {
 
   }
 
+  private static class CustomThreadSafeCache extends PerpetualCache implements ThreadSafeCache {
+
+    public CustomThreadSafeCache(String id) {
+      super(id);
+    }
+
+  }
+
   private static class InitializingFailureCache extends PerpetualCache implements InitializingObject {
 
     public InitializingFailureCache(String id) {
@@ -0,0 +1,74 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.io.Resources;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+
+class StaxDocumentBuilderTest {
+
+  @Test
+  void shouldBuildSameMappersAsDomParser() throws Exception {
+    for (String mapper : Arrays.asList("org/apache/ibatis/builder/AuthorMapper.xml",
+        "org/apache/ibatis/builder/BlogMapper.xml", "org/apache/ibatis/builder/CachedAuthorMapper.xml",
+        "org/apache/ibatis/builder/PostMapper.xml", "org/apache/ibatis/builder/NestedBlogMapper.xml",
+        "org/apache/ibatis/submitted/dynsql/DynSqlMapper.xml")) {
+      XPathParser expected;
+      try (InputStream inputStream = Resources.getResourceAsStream(mapper)) {
+        expected = new XPathParser(inputStream, false, null, new XMLMapperEntityResolver());
+      }
+      XPathParser actual;
+      try (InputStream inputStream = Resources.getResourceAsStream(mapper)) {
+        actual = new XPathParser(StaxDocumentBuilder.build(inputStream, new XMLMapperEntityResolver()), false, null,
+            new XMLMapperEntityResolver());
+      }
+      assertEquals(expected.evalNode("/mapper").toString(), actual.evalNode("/mapper").toString(), mapper);
+    }
+  }
+
+  @Test
+  void shouldKeepCdataAndReplaceEntities() {
+    String xml = "<?xml version=\"1.0\"?>\n<!DOCTYPE mapper [<!ENTITY table \"BLOG\">]>\n"
+        + "<mapper><!-- ignored --><select id=\"a\">select * from &table; where id &lt; <![CDATA[ 10 and x > 1 ]]></select></mapper>";
+    XPathParser parser = new XPathParser(
+        StaxDocumentBuilder.build(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), null));
+    XNode select = parser.evalNode("/mapper/select");
+    assertEquals("a", select.getStringAttribute("id"));
+    Node text = select.getNode().getFirstChild();
+    assertEquals(Node.TEXT_NODE, text.getNodeType());
+    assertEquals("select * from BLOG where id < ", text.getNodeValue());
+    assertEquals(Node.CDATA_SECTION_NODE, text.getNextSibling().getNodeType());
+    assertEquals(" 10 and x > 1 ", text.getNextSibling().getNodeValue());
+    assertEquals(1, parser.evalNode("/mapper").getChildren().size());
+  }
+
+  @Test
+  void shouldReportMalformedDocuments() {
+    assertThrows(BuilderException.class, () -> StaxDocumentBuilder
+        .build(new ByteArrayInputStream("<mapper><select></mapper>".getBytes(StandardCharsets.UTF_8)), null));
+  }
+
+}
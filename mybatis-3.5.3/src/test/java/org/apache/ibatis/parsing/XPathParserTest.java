@@ -151,6 +151,33 @@ class XPathParserTest {
     testEvalMethod(parser);
   }
 
+  @Test
+  void shouldSelectElementsByNameAsXPathDoes() throws IOException {
+    try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+      XPathParser parser = new XPathParser(inputStream, false, null, null);
+      // the expressions with an axis are evaluated by XPath
+      assertSameNodes(parser.evalNodes("/child::employee/child::birth_date/child::*"),
+          parser.evalNodes("/employee/birth_date/day|/employee/birth_date/month|/employee/birth_date/year"));
+      assertSameNodes(parser.evalNodes("/child::employee/child::birth_date/child::month"),
+          parser.evalNodes("/employee/birth_date/month"));
+      XNode employee = parser.evalNode("/employee");
+      assertSameNodes(employee.evalNodes("child::last_name|child::height|child::first_name"),
+          employee.evalNodes("last_name|height|first_name"));
+      assertSameNodes(employee.evalNodes("child::birth_date/child::year"), employee.evalNodes("birth_date/year"));
+      assertEquals("first_name", employee.evalNode("weight|first_name").getName());
+      assertEquals(0, employee.evalNodes("year").size());
+      assertEquals(null, employee.evalNode("missing"));
+      assertEquals(org.w3c.dom.Node.DOCUMENT_NODE, employee.evalNode("/").getNode().getNodeType());
+    }
+  }
+
+  private void assertSameNodes(java.util.List<XNode> expected, java.util.List<XNode> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getNode(), actual.get(i).getNode());
+    }
+  }
+
   private Document getDocument(String resource) {
     try {
       InputSource inputSource = new InputSource(Resources.getResourceAsReader(resource));
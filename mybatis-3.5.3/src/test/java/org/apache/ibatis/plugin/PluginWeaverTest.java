@@ -0,0 +1,225 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.plugin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PluginWeaverTest {
+
+  @Test
+  void shouldCallInterceptorsInTheOrderOfNestedProxies() {
+    List<String> woven = new ArrayList<>();
+    List<String> nested = new ArrayList<>();
+    Calculator wovenCalculator = (Calculator) chain(true, new First(woven), new Second(woven)).pluginAll(new SimpleCalculator());
+    Calculator nestedCalculator = (Calculator) chain(false, new First(nested), new Second(nested)).pluginAll(new SimpleCalculator());
+    assertEquals(3, wovenCalculator.add(1, 2));
+    assertEquals(3, nestedCalculator.add(1, 2));
+    assertEquals(Arrays.asList("second", "first"), woven);
+    assertEquals(nested, woven);
+    assertFalse(Proxy.isProxyClass(wovenCalculator.getClass()));
+  }
+
+  @Test
+  void shouldCallNotInterceptedMethodsDirectly() {
+    List<String> calls = new ArrayList<>();
+    Calculator calculator = (Calculator) chain(true, new First(calls)).pluginAll(new SimpleCalculator());
+    assertEquals("calculator", calculator.name());
+    assertEquals(6, calculator.multiply(2, 3));
+    assertEquals("SimpleCalculator", calculator.toString());
+    assertTrue(calls.isEmpty());
+  }
+
+  @Test
+  void shouldWrapTargetExceptionsLikeMethodInvoke() {
+    List<String> calls = new ArrayList<>();
+    Calculator calculator = (Calculator) chain(true, new Unwrapping(calls)).pluginAll(new SimpleCalculator());
+    assertThrows(ArithmeticException.class, () -> calculator.divide(1, 0));
+    assertEquals(Arrays.asList("java.lang.ArithmeticException"), calls);
+  }
+
+  @Test
+  void shouldPassTargetToInterceptors() {
+    SimpleCalculator target = new SimpleCalculator();
+    Calculator calculator = (Calculator) chain(true, new First(new ArrayList<>()), new Second(new ArrayList<>()),
+        new TargetChecking(target)).pluginAll(target);
+    assertEquals(2, calculator.divide(4, 2));
+  }
+
+  @Test
+  void shouldApplyInterceptorsOverridingPluginByThatMethod() {
+    List<String> calls = new ArrayList<>();
+    Calculator calculator = (Calculator) chain(true, new First(calls), new Wrapping(calls), new Second(calls))
+        .pluginAll(new SimpleCalculator());
+    assertEquals(3, calculator.add(1, 2));
+    assertEquals(Arrays.asList("second", "wrapping", "first"), calls);
+  }
+
+  @Test
+  void shouldReturnTargetWhenNothingIsIntercepted() {
+    Object target = new Object();
+    assertEquals(target, chain(true, new First(new ArrayList<>())).pluginAll(target));
+  }
+
+  private static InterceptorChain chain(boolean weaving, Interceptor... interceptors) {
+    InterceptorChain chain = new InterceptorChain();
+    chain.setWeaving(weaving);
+    for (Interceptor interceptor : interceptors) {
+      chain.addInterceptor(interceptor);
+    }
+    return chain;
+  }
+
+  public interface Calculator {
+    int add(int a, int b);
+
+    long multiply(long a, long b);
+
+    int divide(int a, int b);
+
+    String name();
+  }
+
+  public static class SimpleCalculator implements Calculator {
+    @Override
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    @Override
+    public long multiply(long a, long b) {
+      return a * b;
+    }
+
+    @Override
+    public int divide(int a, int b) {
+      return a / b;
+    }
+
+    @Override
+    public String name() {
+      return "calculator";
+    }
+
+    @Override
+    public String toString() {
+      return "SimpleCalculator";
+    }
+  }
+
+  @Intercepts({
+      @Signature(type = Calculator.class, method = "add", args = {int.class, int.class})})
+  public static class First implements Interceptor {
+    private final List<String> calls;
+
+    First(List<String> calls) {
+      this.calls = calls;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      calls.add("first");
+      return invocation.proceed();
+    }
+  }
+
+  @Intercepts({
+      @Signature(type = Calculator.class, method = "add", args = {int.class, int.class}),
+      @Signature(type = Calculator.class, method = "divide", args = {int.class, int.class})})
+  public static class Second implements Interceptor {
+    private final List<String> calls;
+
+    Second(List<String> calls) {
+      this.calls = calls;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      calls.add("second");
+      return invocation.proceed();
+    }
+  }
+
+  @Intercepts({
+      @Signature(type = Calculator.class, method = "add", args = {int.class, int.class})})
+  public static class Wrapping implements Interceptor {
+    private final List<String> calls;
+
+    Wrapping(List<String> calls) {
+      this.calls = calls;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      calls.add("wrapping");
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+  }
+
+  @Intercepts({
+      @Signature(type = Calculator.class, method = "divide", args = {int.class, int.class})})
+  public static class Unwrapping implements Interceptor {
+    private final List<String> calls;
+
+    Unwrapping(List<String> calls) {
+      this.calls = calls;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      try {
+        return invocation.proceed();
+      } catch (InvocationTargetException e) {
+        calls.add(e.getTargetException().getClass().getName());
+        throw e.getTargetException();
+      }
+    }
+  }
+
+  @Intercepts({
+      @Signature(type = Calculator.class, method = "divide", args = {int.class, int.class})})
+  public static class TargetChecking implements Interceptor {
+    private final Object target;
+
+    TargetChecking(Object target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      assertThat(invocation.getTarget()).isSameAs(target);
+      assertEquals("divide", invocation.getMethod().getName());
+      return invocation.proceed();
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class MethodHandleInvokersTest {
+
+  @Test
+  void shouldUseLambdaForPublicAccessors() throws Exception {
+    Reflector reflector = new Reflector(Bean.class, true);
+    Bean bean = new Bean();
+
+    Invoker setter = reflector.getSetInvoker("name");
+    assertTrue(setter instanceof LambdaMethodInvoker);
+    setter.invoke(bean, new Object[] {"mybatis"});
+    assertEquals("mybatis", reflector.getGetInvoker("name").invoke(bean, new Object[0]));
+    assertTrue(reflector.getGetInvoker("name") instanceof LambdaMethodInvoker);
+
+    reflector.getSetInvoker("age").invoke(bean, new Object[] {42});
+    assertEquals(42, reflector.getGetInvoker("age").invoke(bean, null));
+  }
+
+  @Test
+  void shouldUseMethodHandlesForNonPublicMembers() throws Exception {
+    Reflector reflector = new Reflector(Bean.class, true);
+    Bean bean = new Bean();
+
+    Invoker setter = reflector.getSetInvoker("secret");
+    assertTrue(setter instanceof MethodHandleMethodInvoker);
+    setter.invoke(bean, new Object[] {"hidden"});
+    assertEquals("hidden", reflector.getGetInvoker("secret").invoke(bean, null));
+
+    Invoker fieldSetter = reflector.getSetInvoker("counter");
+    assertTrue(fieldSetter instanceof MethodHandleSetFieldInvoker);
+    fieldSetter.invoke(bean, new Object[] {7L});
+    Invoker fieldGetter = reflector.getGetInvoker("counter");
+    assertTrue(fieldGetter instanceof MethodHandleGetFieldInvoker);
+    assertEquals(7L, fieldGetter.invoke(bean, null));
+
+    reflector.getSetInvoker("id").invoke(bean, new Object[] {3});
+    assertEquals(3, reflector.getGetInvoker("id").invoke(bean, null));
+  }
+
+  @Test
+  void shouldUseReflectionForStaticFields() {
+    Reflector reflector = new Reflector(Bean.class, true);
+    assertEquals(GetFieldInvoker.class, reflector.getGetInvoker("DEFAULT_NAME").getClass());
+  }
+
+  @Test
+  void shouldWrapExceptionsThrownByTheMember() {
+    Reflector reflector = new Reflector(Bean.class, true);
+    InvocationTargetException e = assertThrows(InvocationTargetException.class,
+        () -> reflector.getSetInvoker("failing").invoke(new Bean(), new Object[] {"x"}));
+    assertTrue(e.getTargetException() instanceof IllegalStateException);
+  }
+
+  @Test
+  void shouldResolveGenericGetterType() {
+    MetaClass metaClass = MetaClass.forClass(Bean.class, new DefaultReflectorFactory() {
+      {
+        setMethodHandlesEnabled(true);
+      }
+    });
+    assertEquals(String.class, metaClass.getGetterType("tags[0]"));
+  }
+
+  @Test
+  void shouldConfigureDefaultReflectorFactory() {
+    Configuration configuration = new Configuration();
+    DefaultReflectorFactory reflectorFactory = (DefaultReflectorFactory) configuration.getReflectorFactory();
+    Reflector before = reflectorFactory.findForClass(Bean.class);
+    configuration.setUseMethodHandleInvokers(true);
+    assertTrue(reflectorFactory.isMethodHandlesEnabled());
+    Reflector after = reflectorFactory.findForClass(Bean.class);
+    assertNotSame(before, after);
+    assertTrue(after.getSetInvoker("name") instanceof LambdaMethodInvoker);
+  }
+
+  public static class Bean {
+    public static final String DEFAULT_NAME = "none";
+
+    private final int id = 0;
+    private String name;
+    private int age;
+    private String secret;
+    private long counter;
+    private List<String> tags = Collections.emptyList();
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public int getAge() {
+      return age;
+    }
+
+    public void setAge(int age) {
+      this.age = age;
+    }
+
+    String getSecret() {
+      return secret;
+    }
+
+    private void setSecret(String secret) {
+      this.secret = secret;
+    }
+
+    public List<String> getTags() {
+      return tags;
+    }
+
+    public void setFailing(String failing) {
+      throw new IllegalStateException(failing);
+    }
+  }
+
+}
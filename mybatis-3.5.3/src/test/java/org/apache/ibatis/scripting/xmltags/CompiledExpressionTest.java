@@ -0,0 +1,169 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class CompiledExpressionTest {
+
+  private final ExpressionEvaluator ognlEvaluator = new ExpressionEvaluator();
+  private final ExpressionEvaluator compiledEvaluator = new CompiledExpressionEvaluator();
+
+  @Test
+  void shouldCompileSupportedExpressions() {
+    for (String expression : Arrays.asList("name != null", "name != null and name != ''", "id > 0 && id <= 10",
+        "not flag", "!(a == b) || c", "list != null and list.size() > 0", "author.username eq 'cbegin'",
+        "type == 'A'", "rate gte 1.5", "_parameter != null", "name.trim().length() lt 3")) {
+      assertNotNull(CompiledExpression.compile(expression), expression);
+    }
+  }
+
+  @Test
+  void shouldNotCompileOtherExpressions() {
+    for (String expression : Arrays.asList("id + 1 > 2", "list[0] != null", "@java.lang.Math@max(a, b)",
+        "name.equals('x')", "flag ? a : b", "id in {1, 2}", "#this", "name == 'it\\'s'", "id > -1", "10L",
+        "010", "a = 1", "a & b", "size()", "")) {
+      assertNull(CompiledExpression.compile(expression), expression);
+    }
+  }
+
+  @Test
+  void shouldEvaluateAsOgnlDoes() {
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("name", " cbegin ");
+    parameter.put("empty", "");
+    parameter.put("id", 5);
+    parameter.put("longId", 5L);
+    parameter.put("zero", 0);
+    parameter.put("rate", 1.5d);
+    parameter.put("flag", Boolean.TRUE);
+    parameter.put("type", "A");
+    parameter.put("nothing", null);
+    parameter.put("list", Arrays.asList(1, 2, 3));
+    parameter.put("emptyList", Collections.emptyList());
+    parameter.put("author", new Author(1, "cbegin", "******", "cbegin@apache.org", "N/A", Section.NEWS));
+    Map<String, Object> bindings = new DynamicContext(new Configuration(), parameter).getBindings();
+
+    List<String> expressions = Arrays.asList("name", "nothing", "missing", "id", "zero", "rate", "empty",
+        "name != null", "name == null", "nothing == null", "missing != null", "name != null and name != ''",
+        "empty != null and empty != ''", "empty == ''", "id == 5", "id eq 5", "id == longId", "id == '5'",
+        "id != 4", "id neq 5", "id > 4", "id gt 5", "id < 6", "id lt 5", "id >= 5", "id gte 6", "id <= 5",
+        "id lte 4", "rate > 1", "rate == 1.5", "zero or id", "zero || nothing", "id and rate", "zero && id",
+        "not flag", "!flag", "!nothing", "not (id > 4 and zero)", "(id > 4 or zero) and flag", "flag == true",
+        "flag != false", "type == 'A '", "type == \"A\"", "type != 'BC'", "name.trim() == 'cbegin'",
+        "name.length() > 3", "list.size() == 3", "list.isEmpty()", "emptyList.isEmpty()",
+        "author.username == 'cbegin'", "author.id > 0", "author.favouriteSection != null",
+        "_parameter.id == 5", "_parameter != null", "_databaseId == null");
+    for (String expression : expressions) {
+      assertNotNull(CompiledExpression.compile(expression), expression);
+      assertEquals(ognlEvaluator.evaluateBoolean(expression, bindings),
+          compiledEvaluator.evaluateBoolean(expression, bindings), expression);
+    }
+    // a single character between single quotes is a char, that OGNL does not compare with a string
+    assertThrows(NumberFormatException.class, () -> ognlEvaluator.evaluateBoolean("type == 'A'", bindings));
+    assertThrows(NumberFormatException.class, () -> compiledEvaluator.evaluateBoolean("type == 'A'", bindings));
+  }
+
+  @Test
+  void shouldReadPropertiesOfBeanParameter() {
+    Author author = new Author(1, "cbegin", null, "cbegin@apache.org", "N/A", Section.NEWS);
+    Map<String, Object> bindings = new DynamicContext(new Configuration(), author).getBindings();
+    assertTrue(compiledEvaluator.evaluateBoolean("username == 'cbegin' and password == null", bindings));
+    assertTrue(compiledEvaluator.evaluateBoolean("favouriteSection.name() == 'NEWS'", bindings));
+    assertFalse(compiledEvaluator.evaluateBoolean("id > 1", bindings));
+  }
+
+  @Test
+  void shouldIterateOverCompiledExpression() {
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("array", new int[] { 1, 2, 3 });
+    parameter.put("list", Arrays.asList("a", "b"));
+    Map<String, Object> bindings = new DynamicContext(new Configuration(), parameter).getBindings();
+    assertEquals(Arrays.asList(1, 2, 3), compiledEvaluator.evaluateIterable("array", bindings));
+    assertEquals(Arrays.asList("a", "b"), compiledEvaluator.evaluateIterable("list", bindings));
+  }
+
+  @Test
+  void shouldFallBackToOgnl() {
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("list", Arrays.asList(1, 2, 3));
+    parameter.put("map", Collections.singletonMap("a", 1));
+    parameter.put("id", 5);
+    parameter.put("nothing", null);
+    Map<String, Object> bindings = new DynamicContext(new Configuration(), parameter).getBindings();
+    // unsupported syntax
+    assertTrue(compiledEvaluator.evaluateBoolean("id + 1 == 6", bindings));
+    assertTrue(compiledEvaluator.evaluateBoolean("list[0] == 1", bindings));
+    // names that OGNL does not resolve as properties
+    assertTrue(compiledEvaluator.evaluateBoolean("list.size == 3", bindings));
+    assertTrue(compiledEvaluator.evaluateBoolean("map.size == 1", bindings));
+    // errors are reported by OGNL
+    BuilderException e = assertThrows(BuilderException.class,
+        () -> compiledEvaluator.evaluateBoolean("missing.name == 'a'", bindings));
+    assertTrue(e.getMessage().contains("missing.name == 'a'"));
+    assertThrows(NullPointerException.class, () -> compiledEvaluator.evaluateBoolean("nothing.length() > 0", bindings));
+  }
+
+  @Test
+  void shouldCallGettersOnce() {
+    Counter counter = new Counter();
+    Map<String, Object> bindings = new DynamicContext(new Configuration(),
+        Collections.singletonMap("counter", counter)).getBindings();
+    // the last step is resolved by OGNL, on the value that the getter returned
+    assertTrue(compiledEvaluator.evaluateBoolean("counter.next.size == 0", bindings));
+    assertEquals(1, counter.calls);
+    assertFalse(compiledEvaluator.evaluateBoolean("counter.next > 5 and counter.next.missing == null", bindings));
+    assertEquals(2, counter.calls);
+  }
+
+  @Test
+  void shouldReportExceptionOfGetter() {
+    Counter counter = new Counter();
+    Map<String, Object> bindings = new DynamicContext(new Configuration(),
+        Collections.singletonMap("counter", counter)).getBindings();
+    BuilderException e = assertThrows(BuilderException.class,
+        () -> compiledEvaluator.evaluateBoolean("counter.failing != null", bindings));
+    assertEquals(IllegalStateException.class, e.getCause().getClass());
+    assertTrue(e.getMessage().contains("counter.failing != null"));
+    assertEquals(1, counter.calls);
+  }
+
+  public static class Counter {
+    private int calls;
+
+    public Object getNext() {
+      return ++calls == 1 ? Collections.emptyList() : Integer.valueOf(calls);
+    }
+
+    public Object getFailing() {
+      calls++;
+      throw new IllegalStateException("failed");
+    }
+  }
+
+}
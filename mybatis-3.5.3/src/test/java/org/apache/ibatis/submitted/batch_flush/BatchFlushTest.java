@@ -0,0 +1,309 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_flush;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.BatchExecutorException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchFlushTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private Configuration configuration;
+  private final List<List<BatchResult>> listenedBatches = new ArrayList<>();
+  private final List<String> preparedSqls = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources
+        .getResourceAsReader("org/apache/ibatis/submitted/batch_flush/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    configuration = sqlSessionFactory.getConfiguration();
+    configuration.addInterceptor(new PrepareRecorder(preparedSqls));
+
+    // populate in-memory database
+    BaseDataTest.runScript(configuration.getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_flush/CreateDB.sql");
+  }
+
+  @Test
+  void shouldExecuteBatchWhenMaxBatchSizeIsReached() {
+    configuration.setMaxBatchSize(2);
+    configuration.setBatchResultListener(listenedBatches::add);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      assertEquals(2, listenedBatches.size());
+
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(1, results.get(0).getParameterObjects().size());
+      assertEquals(3, listenedBatches.size());
+      assertSame(results, listenedBatches.get(2));
+      sqlSession.commit();
+    }
+    assertEquals(5, countUsers());
+  }
+
+  @Test
+  void shouldExecuteBatchWhenMaxBatchBytesIsReached() {
+    configuration.setMaxBatchBytes(100);
+    configuration.setBatchResultListener(listenedBatches::add);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 4; i++) {
+        User user = new User(i, "U");
+        user.setPhoto(new byte[60]);
+        mapper.insertUser(user);
+      }
+      assertEquals(2, listenedBatches.size());
+      assertTrue(sqlSession.flushStatements().isEmpty());
+      sqlSession.commit();
+    }
+    assertEquals(4, countUsers());
+  }
+
+  @Test
+  void shouldReturnAutoFlushedResultsWithoutListener() {
+    configuration.setMaxBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 3; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      mapper.updateUser(new User(1, "Updated"));
+
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      assertEquals(1, results.get(1).getParameterObjects().size());
+      assertEquals(1, results.get(2).getParameterObjects().size());
+      assertTrue(sqlSession.flushStatements().isEmpty());
+      sqlSession.commit();
+    }
+    assertEquals("Updated", getUsers().get(0).getName());
+  }
+
+  @Test
+  void shouldDiscardAutoFlushedResultsOnRollback() {
+    configuration.setMaxBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 3; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      sqlSession.rollback();
+      assertTrue(sqlSession.flushStatements().isEmpty());
+    }
+    assertEquals(0, countUsers());
+  }
+
+  @Test
+  void shouldRewriteBatchedInserts() {
+    configuration.setRewriteBatchedInserts(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 3; i++) {
+        User user = new User(i, "User" + i);
+        user.setPhoto(new byte[] { (byte) i });
+        mapper.insertUser(user);
+      }
+      mapper.insertUserWithUpperName(new User(4, "User4"));
+      mapper.insertUserWithUpperName(new User(5, "User5"));
+      mapper.updateUser(new User(1, "Updated"));
+
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertArrayEquals(new int[] { 1, 1, 1 }, results.get(0).getUpdateCounts());
+      assertArrayEquals(new int[] { 1, 1 }, results.get(1).getUpdateCounts());
+      assertArrayEquals(new int[] { 1 }, results.get(2).getUpdateCounts());
+      sqlSession.commit();
+    }
+    assertTrue(preparedSqls.contains(
+        "insert into users (id, name, photo) values (?, ?, ?), (?, ?, ?), (?, ?, ?)"));
+    assertTrue(preparedSqls.contains("insert into users (id, name) values (?, upper(?)), (?, upper(?))"));
+    List<User> users = getUsers();
+    assertEquals(5, users.size());
+    assertEquals("Updated", users.get(0).getName());
+    assertEquals("User2", users.get(1).getName());
+    assertArrayEquals(new byte[] { 3 }, users.get(2).getPhoto());
+    assertEquals("USER5", users.get(4).getName());
+  }
+
+  @Test
+  void shouldBindRewrittenInsertsWhenQueued() {
+    configuration.setRewriteBatchedInserts(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = new User();
+      for (int i = 1; i <= 3; i++) {
+        user.setId(i);
+        user.setName("User" + i);
+        mapper.insertUser(user);
+      }
+      sqlSession.commit();
+    }
+    List<User> users = getUsers();
+    assertEquals(3, users.size());
+    assertEquals("User1", users.get(0).getName());
+    assertEquals("User3", users.get(2).getName());
+  }
+
+  @Test
+  void shouldSplitLargeRewrittenInserts() {
+    configuration.setRewriteBatchedInserts(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 700; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(700, results.get(0).getUpdateCounts().length);
+      sqlSession.commit();
+    }
+    // 3 parameters per row, so at most 666 rows per statement
+    assertEquals(2, preparedSqls.size());
+    assertEquals(700, countUsers());
+  }
+
+  @Test
+  void shouldReportFailedRewrittenInsert() {
+    configuration.setRewriteBatchedInserts(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      mapper.insertUser(new User(1, "Duplicate"));
+      PersistenceException e = assertThrows(PersistenceException.class, sqlSession::flushStatements);
+      BatchExecutorException cause = (BatchExecutorException) e.getCause();
+      assertEquals("org.apache.ibatis.submitted.batch_flush.Mapper.insertUser",
+          cause.getFailingStatementId());
+            assertEquals(0, cause.getBatchUpdateException().getUpdateCounts().length);
+    }
+    assertEquals(0, countUsers());
+  }
+
+  @Test
+  void shouldNotRewriteWithParameterHandlerPlugin() {
+    configuration.setRewriteBatchedInserts(true);
+    ParameterRecorder parameterRecorder = new ParameterRecorder();
+    configuration.addInterceptor(parameterRecorder);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      mapper.insertUser(new User(2, "User2"));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertArrayEquals(new int[] { 1, 1 }, results.get(0).getUpdateCounts());
+      sqlSession.commit();
+    }
+    assertEquals(1, preparedSqls.size());
+    assertEquals("insert into users (id, name, photo) values (?, ?, ?)", preparedSqls.get(0));
+    assertEquals(2, parameterRecorder.count);
+  }
+
+  @Test
+  void shouldNotRewriteWhenDisabled() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      mapper.insertUser(new User(2, "User2"));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertArrayEquals(new int[] { 1, 1 }, results.get(0).getUpdateCounts());
+      sqlSession.commit();
+    }
+    assertEquals(1, preparedSqls.size());
+    assertEquals("insert into users (id, name, photo) values (?, ?, ?)", preparedSqls.get(0));
+  }
+
+  private List<User> getUsers() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(Mapper.class).getUsers();
+    }
+  }
+
+  private int countUsers() {
+    return getUsers().size();
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class, Integer.class }))
+  public static class PrepareRecorder implements Interceptor {
+
+    private final List<String> sqls;
+
+    PrepareRecorder(List<String> sqls) {
+      this.sqls = sqls;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      StatementHandler handler = (StatementHandler) invocation.getTarget();
+      String sql = handler.getBoundSql().getSql();
+      if (sql.startsWith("insert")) {
+        sqls.add(sql);
+      }
+      return invocation.proceed();
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+  }
+
+  @Intercepts(@Signature(type = ParameterHandler.class, method = "setParameters", args = { PreparedStatement.class }))
+  public static class ParameterRecorder implements Interceptor {
+
+    private int count;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      count++;
+      return invocation.proceed();
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+  }
+
+}
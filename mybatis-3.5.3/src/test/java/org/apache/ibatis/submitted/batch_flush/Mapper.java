@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_flush;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+public interface Mapper {
+
+  @Insert("insert into users (id, name, photo) values (#{id}, #{name}, #{photo})")
+  int insertUser(User user);
+
+  @Insert("insert into users (id, name) values (#{id}, upper(#{name}))")
+  int insertUserWithUpperName(User user);
+
+  @Insert("insert into users (id, name) values (#{id}, #{name})")
+  @Options(useGeneratedKeys = true, keyProperty = "id")
+  int insertUserWithGeneratedKeys(User user);
+
+  @Update("update users set name = #{name} where id = #{id}")
+  int updateUser(User user);
+
+  @Delete("delete from users")
+  int deleteUsers();
+
+  @Select("select id, name, photo from users order by id")
+  List<User> getUsers();
+
+}
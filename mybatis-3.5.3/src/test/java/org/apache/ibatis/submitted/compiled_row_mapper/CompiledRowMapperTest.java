@@ -0,0 +1,180 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_row_mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CompiledRowMapperTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources
+        .getResourceAsReader("org/apache/ibatis/submitted/compiled_row_mapper/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/compiled_row_mapper/CreateDB.sql");
+  }
+
+  @Test
+  void shouldMapAutomaticMappings() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 2; i++) {
+        List<User> users = mapper.getUsers();
+        assertEquals(3, users.size());
+        assertUser(users.get(0), 1, "User1", 30);
+        assertUser(users.get(1), 2, "User2", 0);
+        assertUser(users.get(2), 3, null, 0);
+      }
+    }
+    assertEquals(1, rowMappers("getUsers"));
+  }
+
+  @Test
+  void shouldMapPropertyMappings() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersMapped();
+      assertEquals(3, users.size());
+      assertUser(users.get(0), 1, "User1", 30);
+      assertUser(users.get(1), 2, "User2", 0);
+      assertUser(users.get(2), 3, null, 0);
+    }
+    assertEquals(1, rowMappers("getUsersMapped"));
+  }
+
+  @Test
+  void shouldReturnNullForEmptyRow() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getNames();
+      assertEquals(3, users.size());
+      assertEquals("User1", users.get(0).getName());
+      assertEquals("User2", users.get(1).getName());
+      assertNull(users.get(2));
+    }
+  }
+
+  @Test
+  void shouldCompileOneRowMapperPerColumnLayout() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertUser(mapper.getUsersWithColumns("id, name").get(0), 1, "User1", 0);
+      assertUser(mapper.getUsersWithColumns("name, age").get(0), null, "User1", 30);
+      assertUser(mapper.getUsersWithColumns("id, name").get(0), 1, "User1", 0);
+    }
+    assertEquals(2, rowMappers("getUsersWithColumns"));
+  }
+
+  @Test
+  void shouldMapRowsOfCursor() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = new ArrayList<>();
+      try (Cursor<User> cursor = mapper.getUserCursor()) {
+        cursor.forEach(users::add);
+      }
+      assertEquals(3, users.size());
+      assertUser(users.get(0), 1, "User1", 30);
+      assertUser(users.get(2), 3, null, 0);
+    }
+    assertEquals(1, rowMappers("getUserCursor"));
+  }
+
+  @Test
+  void shouldFallBackForTypeHandlerReadingByName() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersReadByName();
+      assertEquals(3, users.size());
+      assertUser(users.get(0), 1, "name:User1", 30);
+      assertUser(users.get(1), 2, "name:User2", 0);
+      assertUser(users.get(2), 3, null, 0);
+    }
+    assertFalse(compiled("getUsersReadByName"));
+  }
+
+  @Test
+  void shouldFallBackWithoutColumnLabels() throws Exception {
+    SqlSessionFactory factory;
+    try (Reader reader = Resources
+        .getResourceAsReader("org/apache/ibatis/submitted/compiled_row_mapper/mybatis-config.xml")) {
+      factory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    factory.getConfiguration().setUseColumnLabel(false);
+    try (SqlSession sqlSession = factory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsers();
+      assertEquals(3, users.size());
+      assertUser(users.get(0), 1, "User1", 30);
+    }
+    MappedStatement ms = factory.getConfiguration()
+        .getMappedStatement("org.apache.ibatis.submitted.compiled_row_mapper.Mapper.getUsers");
+    assertFalse(ms.getRowMappers().values().stream().anyMatch(Optional::isPresent));
+  }
+
+  @Test
+  void shouldFallBackForDiscriminatedResultMap() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getDiscriminatedUsers();
+      assertEquals(3, users.size());
+      assertTrue(users.get(0) instanceof Admin);
+      assertUser(users.get(0), 1, "User1", 30);
+      assertFalse(users.get(1) instanceof Admin);
+      assertUser(users.get(1), 2, "User2", 0);
+    }
+  }
+
+  private static void assertUser(User user, Integer id, String name, int age) {
+    assertEquals(id, user.getId());
+    assertEquals(name, user.getName());
+    assertEquals(age, user.getAge());
+  }
+
+  private static boolean compiled(String statement) {
+    MappedStatement ms = sqlSessionFactory.getConfiguration()
+        .getMappedStatement("org.apache.ibatis.submitted.compiled_row_mapper.Mapper." + statement);
+    return ms.getRowMappers().values().stream().anyMatch(Optional::isPresent);
+  }
+
+  private static int rowMappers(String statement) {
+    MappedStatement ms = sqlSessionFactory.getConfiguration()
+        .getMappedStatement("org.apache.ibatis.submitted.compiled_row_mapper.Mapper." + statement);
+    return ms.getRowMappers().size();
+  }
+
+}
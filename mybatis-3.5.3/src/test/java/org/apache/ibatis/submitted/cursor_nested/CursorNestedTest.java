@@ -28,6 +28,8 @@ import org.junit.jupiter.api.Test;
 
 import java.io.Reader;
 import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 class CursorNestedTest {
 
@@ -88,6 +90,20 @@ class CursorNestedTest {
     Assertions.assertFalse(usersCursor.isOpen());
   }
 
+  @Test
+  void shouldStreamNestedResults() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      List<User> users = usersCursor.stream().collect(Collectors.toList());
+      Assertions.assertEquals(4, users.size());
+      Assertions.assertEquals(2, users.get(0).getGroups().size());
+      Assertions.assertEquals(3, users.get(0).getRoles().size());
+      Assertions.assertEquals(2, users.get(3).getGroups().size());
+      Assertions.assertEquals(2, users.get(3).getRoles().size());
+      Assertions.assertTrue(usersCursor.isConsumed());
+    }
+  }
+
   @Test
   void testCursorWithRowBound() {
     try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
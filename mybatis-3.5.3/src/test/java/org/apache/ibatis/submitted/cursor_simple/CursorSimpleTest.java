@@ -32,6 +32,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class CursorSimpleTest {
 
@@ -360,6 +362,33 @@ class CursorSimpleTest {
     }
   }
 
+  @Test
+  void shouldStreamAllUsers() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      List<String> names = usersCursor.stream().map(User::getName).collect(Collectors.toList());
+      Assertions.assertEquals(5, names.size());
+      Assertions.assertEquals("User1", names.get(0));
+      Assertions.assertEquals("User5", names.get(4));
+      Assertions.assertTrue(usersCursor.isConsumed());
+    }
+  }
+
+  @Test
+  void shouldFetchStreamedUsersOnDemandAndCloseCursorWithStream() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsers();
+      try (Stream<User> users = usersCursor.stream()) {
+        Assertions.assertFalse(usersCursor.isOpen());
+        Assertions.assertEquals("User2", users.skip(1).findFirst().map(User::getName).orElse(null));
+        Assertions.assertEquals(1, usersCursor.getCurrentIndex());
+        Assertions.assertTrue(usersCursor.isOpen());
+      }
+      Assertions.assertFalse(usersCursor.isOpen());
+      Assertions.assertFalse(usersCursor.isConsumed());
+    }
+  }
+
   @Test
   void shouldThrowIllegalStateExceptionUsingIteratorOnSessionClosed() {
     Cursor<User> usersCursor;
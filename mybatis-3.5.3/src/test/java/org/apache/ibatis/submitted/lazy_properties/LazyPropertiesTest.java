@@ -25,6 +25,7 @@ import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
+import org.apache.ibatis.executor.loader.javassist.JavassistSubclassProxyFactory;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
@@ -162,6 +163,11 @@ class LazyPropertiesTest {
     shoulInvokingSetterInvalidateLazyLoading(new CglibProxyFactory());
   }
 
+  @Test
+  void shouldInvokingSetterInvalidateLazyLoading_Subclass() {
+    shoulInvokingSetterInvalidateLazyLoading(new JavassistSubclassProxyFactory());
+  }
+
   private void shoulInvokingSetterInvalidateLazyLoading(ProxyFactory proxyFactory) {
     Configuration config = sqlSessionFactory.getConfiguration();
     config.setProxyFactory(proxyFactory);
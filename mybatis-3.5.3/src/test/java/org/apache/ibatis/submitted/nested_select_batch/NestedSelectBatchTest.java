@@ -0,0 +1,200 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_select_batch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NestedSelectBatchTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private final List<String> executedSqls = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/nested_select_batch/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().addInterceptor(new QueryRecorder(executedSqls));
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/nested_select_batch/CreateDB.sql");
+  }
+
+  @Test
+  void shouldLoadEagerAssociationsWithOneQuery() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getPosts();
+      assertAuthors(posts);
+      assertEquals(2, executedSqls.size());
+      assertTrue(executedSqls.get(1).contains("id IN (?, ?, ?)"), executedSqls.get(1));
+    }
+  }
+
+  @Test
+  void shouldLoadEagerCollectionsWithOneQuery() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(Mapper.class).getBlogs();
+      assertEquals(3, blogs.size());
+      assertEquals(2, blogs.get(0).getPosts().size());
+      assertEquals("Post1", blogs.get(0).getPosts().get(0).getSubject());
+      assertEquals("Post2", blogs.get(0).getPosts().get(1).getSubject());
+      assertEquals(2, blogs.get(1).getPosts().size());
+      assertEquals("Post3", blogs.get(1).getPosts().get(0).getSubject());
+      assertEquals("Author1", blogs.get(1).getPosts().get(0).getAuthor().getName());
+      assertTrue(blogs.get(2).getPosts().isEmpty());
+      // blogs, posts of all blogs, authors of all posts
+      assertEquals(3, executedSqls.size());
+    }
+  }
+
+  @Test
+  void shouldSplitTheBatchesByBatchSize() {
+    sqlSessionFactory.getConfiguration().setNestedSelectBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getPosts();
+      assertAuthors(posts);
+      assertEquals(3, executedSqls.size());
+    }
+  }
+
+  @Test
+  void shouldLoadLazyAssociationsWithOneQuery() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getPostsWithLazyAuthor();
+      assertEquals(1, executedSqls.size());
+      assertEquals("Author3", posts.get(3).getAuthor().getName());
+      assertEquals(2, executedSqls.size());
+      assertAuthors(posts);
+      assertEquals(2, executedSqls.size());
+    }
+  }
+
+  @Test
+  void shouldLoadOneByOneWhenTheSelectCannotBeBatched() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getPostsWithAuthorOr();
+      assertAuthors(posts);
+      // the second post of Author1 is found in the local cache
+      assertEquals(4, executedSqls.size());
+    }
+  }
+
+  @Test
+  void shouldLoadOneByOneWhenTheRowsCannotBeMatched() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getPostsWithAuthorName();
+      assertEquals("Author1", posts.get(0).getAuthor().getName());
+      assertEquals("Author2", posts.get(1).getAuthor().getName());
+      assertEquals("Author1", posts.get(2).getAuthor().getName());
+      assertEquals("Author3", posts.get(3).getAuthor().getName());
+      // the batch, then one query per author
+      assertEquals(5, executedSqls.size());
+    }
+  }
+
+  @Test
+  void shouldLoadOneByOneWithoutBatchSize() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setNestedSelectBatchSize(null);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getPosts();
+      assertAuthors(posts);
+      assertEquals(4, executedSqls.size());
+    }
+  }
+
+  @Test
+  void shouldNotReturnRowsWhoseOnlyNestedSelectIsEmpty() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getAuthorsOfPosts();
+      assertEquals(4, posts.size());
+      assertEquals("Author1", posts.get(0).getAuthor().getName());
+      assertEquals("Author2", posts.get(1).getAuthor().getName());
+      assertNull(posts.get(2));
+      assertNull(posts.get(3));
+    }
+  }
+
+  @Test
+  void shouldLoadOneByOneWithExecutorPlugin() {
+    sqlSessionFactory.getConfiguration().addInterceptor(new ExecutorPlugin());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Post> posts = sqlSession.getMapper(Mapper.class).getPosts();
+      assertAuthors(posts);
+      assertEquals(4, executedSqls.size());
+    }
+  }
+
+  private void assertAuthors(List<Post> posts) {
+    assertEquals(4, posts.size());
+    assertEquals("Author1", posts.get(0).getAuthor().getName());
+    assertEquals("Author2", posts.get(1).getAuthor().getName());
+    assertEquals("Author1", posts.get(2).getAuthor().getName());
+    assertEquals(Integer.valueOf(3), posts.get(3).getAuthor().getId());
+  }
+
+  @Intercepts(@Signature(type = Executor.class, method = "query",
+      args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }))
+  public static class ExecutorPlugin implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      return invocation.proceed();
+    }
+
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "query", args = { Statement.class, ResultHandler.class }))
+  public static class QueryRecorder implements Interceptor {
+
+    private final List<String> sqls;
+
+    QueryRecorder(List<String> sqls) {
+      this.sqls = sqls;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      sqls.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql());
+      return invocation.proceed();
+    }
+
+  }
+
+}
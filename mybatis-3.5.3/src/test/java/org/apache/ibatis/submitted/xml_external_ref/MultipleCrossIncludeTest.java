@@ -46,6 +46,23 @@ class MultipleCrossIncludeTest {
     testCrossReference(getSqlSessionFactoryJavaConfig());
   }
 
+  @Test
+  void testMultipleCrossIncludeParallelXmlConfig() throws Exception {
+    try (Reader configReader = Resources
+        .getResourceAsReader("org/apache/ibatis/submitted/xml_external_ref/MultipleCrossIncludeParallelMapperConfig.xml")) {
+      SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configReader);
+      Configuration configuration = sqlSessionFactory.getConfiguration();
+      assertTrue(configuration.getIncompleteResultMaps().isEmpty());
+      assertTrue(configuration.getIncompleteCacheRefs().isEmpty());
+      assertTrue(configuration.getIncompleteStatements().isEmpty());
+      assertSame(configuration.getMappedStatement("org.apache.ibatis.submitted.xml_external_ref.MultipleCrossIncludePetMapper.select").getCache(),
+          configuration.getMappedStatement("org.apache.ibatis.submitted.xml_external_ref.MultipleCrossIncludePersonMapper.select").getCache());
+
+      initDb(sqlSessionFactory);
+      testCrossReference(sqlSessionFactory);
+    }
+  }
+
   @Test
   void testMappedStatementCache() throws Exception {
     try (Reader configReader = Resources.getResourceAsReader("org/apache/ibatis/submitted/xml_external_ref/MultipleCrossIncludeMapperConfig.xml")) {
@@ -15,6 +15,9 @@
  */
 package org.apache.ibatis.type;
 
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -68,6 +71,18 @@ class UnknownTypeHandlerTest extends BaseTypeHandlerTest {
     // Unnecessary
   }
 
+  @Test
+  void shouldGetResultByLabelWhenResolvedTypeHandlerReadsByNameOnly() throws Exception {
+    TypeHandlerRegistry registry = new TypeHandlerRegistry();
+    registry.register(String.class, JdbcType.VARCHAR, new ByNameStringTypeHandler());
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rsmd.getColumnClassName(1)).thenReturn(String.class.getName());
+    when(rsmd.getColumnType(1)).thenReturn(JdbcType.VARCHAR.TYPE_CODE);
+    when(rsmd.getColumnLabel(1)).thenReturn("column");
+    when(rs.getString("column")).thenReturn("Hello");
+    assertEquals("Hello!", new UnknownTypeHandler(registry).getResult(rs, 1));
+  }
+
   @Override
   @Test
   public void shouldGetResultFromCallableStatement() throws Exception {
@@ -148,4 +163,26 @@ class UnknownTypeHandlerTest extends BaseTypeHandlerTest {
     }
   }
 
-}
\ No newline at end of file
+  // in the package of the built-in type handlers, but not marked ColumnIndexAccessible
+  static class ByNameStringTypeHandler extends BaseTypeHandler<String> {
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) {
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+      return rs.getString(columnName) + "!";
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) {
+      return null;
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.benchmarks.domain.Post;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserts a number of rows in one session, then rolls them back so that every invocation starts from the same data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchInsertBenchmark {
+
+  private static final int FIRST_ID = 1000000;
+
+  @Param({ "SIMPLE", "REUSE", "BATCH" })
+  public ExecutorType executorType;
+
+  @Param("100")
+  public int inserts;
+
+  private SqlSessionFactory sqlSessionFactory;
+  private Post[] posts;
+
+  @Setup
+  public void setup() throws Exception {
+    sqlSessionFactory = BenchmarkDatabase.create("STATEMENT", "PERPETUAL");
+    posts = new Post[inserts];
+    Date now = new Date();
+    for (int i = 0; i < inserts; i++) {
+      posts[i] = new Post(FIRST_ID + i, 1, "Subject " + i, "Body " + i, now);
+    }
+  }
+
+  @Benchmark
+  public int insert() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+      int rows = 0;
+      for (Post post : posts) {
+        rows += sqlSession.insert("org.apache.ibatis.benchmarks.BenchmarkMapper.insertPost", post);
+      }
+      sqlSession.flushStatements();
+      sqlSession.rollback(true);
+      return rows;
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+
+/**
+ * Creates a seeded in-memory HSQLDB database and a {@link SqlSessionFactory} on top of it.
+ * Every call gets its own database, so benchmarks cannot see each other's data.
+ */
+public final class BenchmarkDatabase {
+
+  public static final String DRIVER = "org.hsqldb.jdbcDriver";
+
+  public static final int AUTHORS = 1000;
+  public static final int BLOGS = 100;
+  public static final int POSTS_PER_BLOG = 10;
+
+  private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+  private BenchmarkDatabase() {
+  }
+
+  public static String newUrl() {
+    return "jdbc:hsqldb:mem:benchmark" + SEQUENCE.incrementAndGet();
+  }
+
+  public static SqlSessionFactory create(String localCacheScope, String cacheType) throws IOException, SQLException {
+    Properties variables = new Properties();
+    variables.setProperty("url", newUrl());
+    variables.setProperty("localCacheScope", localCacheScope);
+    variables.setProperty("cacheType", cacheType);
+    SqlSessionFactory factory;
+    try (Reader reader = Resources.getResourceAsReader("mybatis-config.xml")) {
+      factory = new SqlSessionFactoryBuilder().build(reader, variables);
+    }
+    try (SqlSession session = factory.openSession()) {
+      Connection connection = session.getConnection();
+      ScriptRunner runner = new ScriptRunner(connection);
+      runner.setLogWriter(null);
+      runner.setStopOnError(true);
+      try (Reader schema = Resources.getResourceAsReader("org/apache/ibatis/benchmarks/schema.sql")) {
+        runner.runScript(schema);
+      }
+      seed(connection);
+      connection.commit();
+    }
+    return factory;
+  }
+
+  private static void seed(Connection connection) throws SQLException {
+    try (PreparedStatement ps = connection.prepareStatement("insert into author (id, username, email, bio) values (?, ?, ?, ?)")) {
+      for (int i = 1; i <= AUTHORS; i++) {
+        ps.setInt(1, i);
+        ps.setString(2, "author" + i);
+        ps.setString(3, "author" + i + "@example.org");
+        ps.setString(4, "Biography of author " + i);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+    try (PreparedStatement ps = connection.prepareStatement("insert into blog (id, author_id, title) values (?, ?, ?)")) {
+      for (int i = 1; i <= BLOGS; i++) {
+        ps.setInt(1, i);
+        ps.setInt(2, i);
+        ps.setString(3, "Blog " + i);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    try (PreparedStatement ps = connection.prepareStatement("insert into post (id, blog_id, subject, body, created_on) values (?, ?, ?, ?, ?)")) {
+      for (int i = 1; i <= BLOGS * POSTS_PER_BLOG; i++) {
+        ps.setInt(1, i);
+        ps.setInt(2, (i - 1) / POSTS_PER_BLOG + 1);
+        ps.setString(3, "Post " + i);
+        ps.setString(4, "Body of post " + i);
+        ps.setTimestamp(5, now);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+  }
+
+}
@@ -0,0 +1,100 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.benchmarks.domain.Author;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries answered by the caches: the second level cache of a namespace, for each cache type,
+ * and the local cache of a session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+  private static final int CACHED_AUTHORS = 100;
+
+  @Param({ "SIMPLE", "REUSE", "BATCH" })
+  public ExecutorType executorType;
+
+  @Param({ "PERPETUAL", "CONCURRENT", "OFF_HEAP" })
+  public String cacheType;
+
+  private SqlSessionFactory sqlSessionFactory;
+  private SqlSession localCacheSession;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    sqlSessionFactory = BenchmarkDatabase.create("SESSION", cacheType);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      for (int id = 1; id <= CACHED_AUTHORS; id++) {
+        sqlSession.selectOne("org.apache.ibatis.benchmarks.CachedMapper.selectAuthor", id);
+      }
+      // the second level cache is filled on commit
+      sqlSession.commit(true);
+    }
+    localCacheSession = sqlSessionFactory.openSession(executorType);
+    for (int id = 1; id <= CACHED_AUTHORS; id++) {
+      localCacheSession.selectOne("org.apache.ibatis.benchmarks.BenchmarkMapper.selectAuthor", id);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    localCacheSession.close();
+  }
+
+  @Benchmark
+  public Author secondLevelCacheHit() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+      return sqlSession.selectOne("org.apache.ibatis.benchmarks.CachedMapper.selectAuthor", nextId());
+    }
+  }
+
+  @Benchmark
+  public Author localCacheHit() {
+    return localCacheSession.selectOne("org.apache.ibatis.benchmarks.BenchmarkMapper.selectAuthor", nextId());
+  }
+
+  private int nextId() {
+    next = next % CACHED_AUTHORS + 1;
+    return next;
+  }
+
+}
@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.session.RowBounds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a {@link CacheKey} the way the executors do, and looking it up in a map of cached keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+  private static final String STATEMENT_ID = "org.apache.ibatis.benchmarks.BenchmarkMapper.selectAuthor";
+  private static final String SQL = "select id, username, email, bio from author where id = ?";
+  private static final int KEYS = 1024;
+
+  private final Map<CacheKey, Object> cache = new HashMap<>();
+  private int next;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < KEYS; i++) {
+      cache.put(createCacheKey(i), i);
+    }
+  }
+
+  @Benchmark
+  public CacheKey create() {
+    return createCacheKey(nextId());
+  }
+
+  @Benchmark
+  public Object lookup() {
+    return cache.get(createCacheKey(nextId()));
+  }
+
+  private int nextId() {
+    next = (next + 1) % KEYS;
+    return next;
+  }
+
+  private static CacheKey createCacheKey(Integer id) {
+    CacheKey cacheKey = new CacheKey(6);
+    cacheKey.update(STATEMENT_ID);
+    cacheKey.update(RowBounds.DEFAULT.getOffset());
+    cacheKey.update(RowBounds.DEFAULT.getLimit());
+    cacheKey.update(SQL);
+    cacheKey.update(id);
+    cacheKey.update("benchmark");
+    return cacheKey;
+  }
+
+}
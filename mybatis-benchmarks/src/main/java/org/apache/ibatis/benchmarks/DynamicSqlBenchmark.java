@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.benchmarks.domain.Author;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dynamic SQL with a foreach over a growing number of ids: building the {@link BoundSql} alone,
+ * and the whole query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicSqlBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int ids;
+
+  private SqlSessionFactory sqlSessionFactory;
+  private MappedStatement selectAuthorsByIds;
+  private Map<String, Object> parameter;
+
+  @Setup
+  public void setup() throws Exception {
+    sqlSessionFactory = BenchmarkDatabase.create("STATEMENT", "PERPETUAL");
+    selectAuthorsByIds = sqlSessionFactory.getConfiguration()
+        .getMappedStatement("org.apache.ibatis.benchmarks.BenchmarkMapper.selectAuthorsByIds");
+    List<Integer> values = new ArrayList<>();
+    for (int i = 1; i <= ids; i++) {
+      values.add(i);
+    }
+    parameter = new HashMap<>();
+    parameter.put("ids", values);
+    parameter.put("username", null);
+  }
+
+  @Benchmark
+  public BoundSql getBoundSql() {
+    return selectAuthorsByIds.getBoundSql(parameter);
+  }
+
+  @Benchmark
+  public List<Author> select() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.selectList(selectAuthorsByIds.getId(), parameter);
+    }
+  }
+
+}
@@ -0,0 +1,84 @@
+/**
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.benchmarks.domain.Author;
+import org.apache.ibatis.benchmarks.domain.Blog;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Query execution and result mapping: explicit result maps, auto-mapping and nested (joined) result maps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultMappingBenchmark {
+
+  @Param({ "SIMPLE", "REUSE", "BATCH" })
+  public ExecutorType executorType;
+
+  @Param("100")
+  public int rows;
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Setup
+  public void setup() throws Exception {
+    sqlSessionFactory = BenchmarkDatabase.create("STATEMENT", "PERPETUAL");
+  }
+
+  @Benchmark
+  public List<Author> resultMap() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+      return sqlSession.selectList("org.apache.ibatis.benchmarks.BenchmarkMapper.selectAuthors", rows);
+    }
+  }
+
+  @Benchmark
+  public List<Author> autoMapping() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+      return sqlSession.selectList("org.apache.ibatis.benchmarks.BenchmarkMapper.selectAuthorsAutoMapped", rows);
+    }
+  }
+
+  @Benchmark
+  public List<Blog> nestedResultMap() {
+    // the same number of rows as the other benchmarks, grouped in blogs with their posts
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+      return sqlSession.selectList("org.apache.ibatis.benchmarks.BenchmarkMapper.selectBlogs", rows / BenchmarkDatabase.POSTS_PER_BLOG);
+    }
+  }
+
+}